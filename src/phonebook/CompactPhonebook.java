@@ -0,0 +1,149 @@
+package phonebook;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import phonebook.hashes.BidirectionalIndex;
+import phonebook.utils.KVPair;
+
+/**
+ * <p>{@link CompactPhonebook} is a {@link Phonebook} that stores every entry <b>once</b>. Instead of two independent
+ * {@link phonebook.hashes.HashTable}s, each with a {@link KVPair} per entry, it keeps its entries in a single
+ * {@link BidirectionalIndex}, whose two lookup directions are {@code int} arrays that refer to the shared entries by
+ * id. Both lookups remain amortized constant time.</p>
+ *
+ * <p>Since an entry cannot be half-present, names and numbers stay <b>one-to-one</b>: adding an entry replaces any
+ * entry that holds its name or its number, so the two lookup directions always agree on the size of the
+ * {@link CompactPhonebook}.</p>
+ *
+ * @see Phonebook
+ * @see BidirectionalIndex
+ */
+public class CompactPhonebook extends Phonebook {
+
+    private final BidirectionalIndex index = new BidirectionalIndex();
+
+    /**
+     * Instantiates a new, empty {@link CompactPhonebook}.
+     */
+    public CompactPhonebook() {
+    }
+
+    @Override
+    public String getNumberOf(String name) {
+        return index.getNumberOf(name);
+    }
+
+    @Override
+    public String getOwnerOf(String number) {
+        return index.getNameOf(number);
+    }
+
+    @Override
+    public String getNumberOf(CharSequence name) {
+        return index.getNumberOf(name);
+    }
+
+    @Override
+    public String getNumberOf(byte[] utf8, int offset, int length) {
+        return index.getNumberOf(utf8, offset, length);
+    }
+
+    @Override
+    public String getOwnerOf(CharSequence number) {
+        return index.getNameOf(number);
+    }
+
+    @Override
+    public String getOwnerOf(byte[] utf8, int offset, int length) {
+        return index.getNameOf(utf8, offset, length);
+    }
+
+    @Override
+    public void getNumbersOf(String[] names, String[] out) {
+        index.getNumbersOf(names, out);
+    }
+
+    @Override
+    public void getOwnersOf(String[] numbers, String[] out) {
+        index.getNamesOf(numbers, out);
+    }
+
+    /** {@inheritDoc} Any other entry with the same name or the same number is removed. */
+    @Override
+    public void addEntry(String name, String number) {
+        if(name == null || number == null)
+            throw new IllegalArgumentException("Provided: name=" + name + " and number= " + number);
+        String displacedName = index.getNameOf(number), displacedNumber = index.getNumberOf(name);
+        index.put(name, number);
+        if (displacedName != null && !displacedName.equals(name))
+            nameRemoved(displacedName);
+        if (displacedNumber != null && !displacedNumber.equals(number))
+            numberRemoved(displacedNumber);
+        nameAdded(name, number);
+        numberAdded(number);
+    }
+
+    @Override
+    public void addEntries(List<KVPair> entries) {
+        checkEntries(entries);
+        for (KVPair entry : entries) {
+            addEntry(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /** {@inheritDoc} Both the entry of name and the entry of number are removed, if they differ. */
+    @Override
+    public void deleteEntry(String name, String number) {
+        if(number == null || name == null)
+            throw new IllegalArgumentException("Provided: name=" + name + " and number= " + number);
+        String owner = index.getNameOf(number), ownNumber = index.getNumberOf(name);
+        index.remove(name, number);
+        nameRemoved(name);
+        numberRemoved(number);
+        if (owner != null)
+            nameRemoved(owner);
+        if (ownNumber != null)
+            numberRemoved(ownNumber);
+    }
+
+    @Override
+    public void saveSnapshot(Path path) throws IOException {
+        SnapshotFormat.write(path, index.size(), index.capacity(), index.capacity(), index.entries().iterator());
+    }
+
+    /** {@inheritDoc} The index is presized to hold every entry of the snapshot, since its capacities do not follow
+     * those of the {@link phonebook.hashes.HashTable}s. */
+    @Override
+    public void loadSnapshot(Path path) throws IOException {
+        if (index.size() != 0)
+            throw new IllegalStateException("Snapshots can only be loaded into an empty phonebook.");
+        try (SnapshotFormat.Reader reader = SnapshotFormat.Reader.open(path)) {
+            index.presize((int) Math.min(2L * reader.size(), Integer.MAX_VALUE));
+            while (reader.next()) {
+                String name = reader.name(), number = reader.number();
+                index.put(name, number);
+                nameAdded(name, number);
+                numberAdded(number);
+            }
+        }
+    }
+
+    @Override
+    public Stream<KVPair> entries() {
+        return index.entries();
+    }
+
+    @Override
+    public void forEachEntry(Consumer<? super KVPair> action) {
+        index.entries().forEach(action);
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+}
@@ -0,0 +1,392 @@
+package phonebook;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import phonebook.hashes.*;
+import phonebook.utils.KVPair;
+import phonebook.utils.Keys;
+
+/**
+ * <p>{@link ConcurrentPhonebook} is a <b>thread-safe</b> {@link Phonebook}. {@link Phonebook#addEntry(String, String)}
+ * and {@link Phonebook#deleteEntry(String, String)} update the name and the number index in two separate steps; here,
+ * both steps happen under the write mode of a single {@link StampedLock}, so no reader can ever observe a name whose
+ * number does not map back to it, or the other way around.</p>
+ *
+ * <p>Lookups are <b>optimistic</b>: they read the underlying {@link HashTable} without taking any lock and then
+ * validate that no writer has run in the meantime, which costs a couple of memory fences when nobody writes. If a
+ * writer did run, the lookup is repeated under the read lock. Since none of the plain {@link HashTable}s are built for
+ * concurrent access, an optimistic lookup may see a table in the middle of an update and fail in arbitrary ways; any
+ * {@link RuntimeException} it throws is treated like a failed validation. This makes {@link ConcurrentPhonebook} work
+ * with <b>every</b> combination of {@link CollisionResolver}s. With membership filters, only the lookup that is kept
+ * counts toward the {@link FilteredHashTable.Metrics}.</p>
+ *
+ * @see Phonebook
+ * @see StampedLock
+ */
+public class ConcurrentPhonebook extends Phonebook {
+
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Instantiates a new {@link ConcurrentPhonebook}. The parameters provide the collision resolution strategy
+     * for lookups based on name or number, respectively.
+     *
+     * @param namesToNumbersHash A {@link CollisionResolver} that will govern which subtype of {@link HashTable} will be used to
+     *                           create our hash table with <b>peoples' names</b> as keys.
+     * @param numbersToNamesHash A {@link CollisionResolver} that will govern which subtype of {@link HashTable} will be used to
+     *                           create our hash table with <b>phone numbers</b> as keys.
+     * @see Phonebook#Phonebook(CollisionResolver, CollisionResolver)
+     */
+    public ConcurrentPhonebook(CollisionResolver namesToNumbersHash, CollisionResolver numbersToNamesHash) {
+        super(namesToNumbersHash, numbersToNamesHash);
+    }
+
+    /**
+     * Instantiates a new {@link ConcurrentPhonebook} with membership filters.
+     *
+     * @param namesToNumbersHash A {@link CollisionResolver} for the hash table with <b>peoples' names</b> as keys.
+     * @param numbersToNamesHash A {@link CollisionResolver} for the hash table with <b>phone numbers</b> as keys.
+     * @param falsePositiveRate The share of absent names and numbers that the filters may let through to the tables.
+     * @throws IllegalArgumentException if falsePositiveRate is not in (0, 1).
+     * @see Phonebook#Phonebook(CollisionResolver, CollisionResolver, double)
+     */
+    public ConcurrentPhonebook(CollisionResolver namesToNumbersHash, CollisionResolver numbersToNamesHash,
+                               double falsePositiveRate) {
+        super(namesToNumbersHash, numbersToNamesHash, falsePositiveRate);
+    }
+
+    @Override
+    public String getNumberOf(String name) {
+        if (name == null)
+            return null;
+        return read(() -> getNumberOfUncounted(name), () -> super.getNumberOf(name),
+                number -> countNameLookup(name::hashCode, number));
+    }
+
+    @Override
+    public String getOwnerOf(String number) {
+        if (number == null)
+            return null;
+        return read(() -> getOwnerOfUncounted(number), () -> super.getOwnerOf(number),
+                owner -> countNumberLookup(number::hashCode, owner));
+    }
+
+    @Override
+    public String getNumberOf(CharSequence name) {
+        if (name == null)
+            return null;
+        return read(() -> getNumberOfUncounted(name), () -> super.getNumberOf(name),
+                number -> countNameLookup(() -> Keys.hash(name), number));
+    }
+
+    @Override
+    public String getNumberOf(byte[] utf8, int offset, int length) {
+        return read(() -> getNumberOfUncounted(utf8, offset, length), () -> super.getNumberOf(utf8, offset, length),
+                number -> countNameLookup(() -> Keys.hashUtf8(utf8, offset, length), number));
+    }
+
+    @Override
+    public String getOwnerOf(CharSequence number) {
+        if (number == null)
+            return null;
+        return read(() -> getOwnerOfUncounted(number), () -> super.getOwnerOf(number),
+                owner -> countNumberLookup(() -> Keys.hash(number), owner));
+    }
+
+    @Override
+    public String getOwnerOf(byte[] utf8, int offset, int length) {
+        return read(() -> getOwnerOfUncounted(utf8, offset, length), () -> super.getOwnerOf(utf8, offset, length),
+                owner -> countNumberLookup(() -> Keys.hashUtf8(utf8, offset, length), owner));
+    }
+
+    // Runs the optimistic lookup, which the filter metrics do not count, and keeps its result if no writer ran in the
+    // meantime, counting it then. Otherwise, or if the lookup threw, repeats the counted lookup under the read lock.
+    private String read(Supplier<String> optimistic, Supplier<String> locked, Consumer<String> count) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                String value = optimistic.get();
+                if (lock.validate(stamp)) {
+                    count.accept(value);
+                    return value;
+                }
+            } catch (RuntimeException torn) {
+                // A writer got in the way; retry under the read lock.
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return locked.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** {@inheritDoc} Takes the read lock once for the whole batch. */
+    @Override
+    public void getNumbersOf(String[] names, String[] out) {
+        long stamp = lock.readLock();
+        try {
+            super.getNumbersOf(names, out);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** {@inheritDoc} Takes the read lock once for the whole batch. */
+    @Override
+    public void getOwnersOf(String[] numbers, String[] out) {
+        long stamp = lock.readLock();
+        try {
+            super.getOwnersOf(numbers, out);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void addEntry(String name, String number) {
+        if(name == null || number == null)
+            throw new IllegalArgumentException("Provided: name=" + name + " and number= " + number);
+        long stamp = lock.writeLock();
+        try {
+            super.addEntry(name, number);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** {@inheritDoc} Takes the write lock once for the whole batch. */
+    @Override
+    public void addEntries(List<KVPair> entries) {
+        checkEntries(entries);
+        long stamp = lock.writeLock();
+        try {
+            super.addEntries(entries);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void deleteEntry(String name, String number) {
+        if(number == null || name == null)
+            throw new IllegalArgumentException("Provided: name=" + name + " and number= " + number);
+        long stamp = lock.writeLock();
+        try {
+            super.deleteEntry(name, number);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** {@inheritDoc} Both tables are snapshotted under the read lock, so the snapshot holds the entries of a single
+     * moment. The snapshot is a plain {@link Phonebook}, for use by a single thread. */
+    @Override
+    public Phonebook snapshot() {
+        long stamp = lock.readLock();
+        try {
+            return super.snapshot();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** {@inheritDoc} The snapshot is written under the read lock, so it holds the entries of a single moment;
+     * lookups carry on while it is written, writers wait. */
+    @Override
+    public void saveSnapshot(Path path) throws IOException {
+        long stamp = lock.readLock();
+        try {
+            super.saveSnapshot(path);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void loadSnapshot(Path path) throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            super.loadSnapshot(path);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void enableNamePrefixIndex() {
+        long stamp = lock.writeLock();
+        try {
+            super.enableNamePrefixIndex();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void enableNumberPrefixIndex() {
+        long stamp = lock.writeLock();
+        try {
+            super.enableNumberPrefixIndex();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** {@inheritDoc} The matching numbers are copied out under the read lock, so the {@link Stream} is unaffected
+     * by later writes.
+     */
+    @Override
+    public Stream<String> findNumbersByPrefix(String prefix) {
+        long stamp = lock.readLock();
+        try {
+            return super.findNumbersByPrefix(prefix).collect(Collectors.toList()).stream();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int countNumbersByPrefix(String prefix) {
+        long stamp = lock.readLock();
+        try {
+            return super.countNumbersByPrefix(prefix);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void enableSortedNameIndex() {
+        long stamp = lock.writeLock();
+        try {
+            super.enableSortedNameIndex();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public List<KVPair> range(String fromName, String toName) {
+        long stamp = lock.readLock();
+        try {
+            return super.range(fromName, toName);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<KVPair> page(String afterName, int n) {
+        long stamp = lock.readLock();
+        try {
+            return super.page(afterName, n);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void enableFuzzyNameIndex() {
+        long stamp = lock.writeLock();
+        try {
+            super.enableFuzzyNameIndex();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public FilteredHashTable.Metrics getNameFilterMetrics() {
+        long stamp = lock.readLock();
+        try {
+            return super.getNameFilterMetrics();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public FilteredHashTable.Metrics getNumberFilterMetrics() {
+        long stamp = lock.readLock();
+        try {
+            return super.getNumberFilterMetrics();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<String> findSimilarNames(String name, int k) {
+        long stamp = lock.readLock();
+        try {
+            return super.findSimilarNames(name, k);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Runs under the write lock, from the methods that enable a secondary index.
+    @Override
+    Stream<KVPair> entriesToIndex() {
+        return super.entries();
+    }
+
+    /** {@inheritDoc} Takes the read lock: unlike a hash lookup, a walk over the index is too long to repeat cheaply. */
+    @Override
+    public List<String> findNamesByPrefix(String prefix, int limit) {
+        long stamp = lock.readLock();
+        try {
+            return super.findNamesByPrefix(prefix, limit);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** {@inheritDoc} The entries are copied out under the read lock, so the {@link Stream} reflects a single point
+     * in time and is unaffected by later writes.
+     */
+    @Override
+    public Stream<KVPair> entries() {
+        long stamp = lock.readLock();
+        try {
+            List<KVPair> copy = new ArrayList<>(super.size());
+            super.entries().forEach(pair -> copy.add(new KVPair(pair.getKey(), pair.getValue())));
+            return copy.stream();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** {@inheritDoc} The walk runs under the read lock, so it sees the entries of a single moment; lookups carry on
+     * meanwhile, writers wait until action has seen every entry. */
+    @Override
+    public void forEachEntry(Consumer<? super KVPair> action) {
+        long stamp = lock.readLock();
+        try {
+            super.forEachEntry(action);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** {@inheritDoc} Takes the read lock, since the two indexes only agree on their size between writes. */
+    @Override
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return super.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package phonebook;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.Varints;
+
+/**
+ * <p>{@link CsvExporter} writes the entries of a {@link Phonebook} to a CSV file of {@code name,number} rows, under a
+ * {@code name,number} header, which {@link CsvImporter} reads back. The entries are taken from
+ * {@link Phonebook#forEachEntry(java.util.function.Consumer)}, in place, and written through a {@link FileChannel} in
+ * blocks of {@value #BUFFER_SIZE} bytes. Fields that hold a comma, a quote or a line break are quoted.</p>
+ *
+ * <p>{@link #export(Phonebook, Path)} writes the entries in the order of the phonebook's storage, and holds no more
+ * than one block in memory. {@link #exportSorted(Phonebook, Path, int)} writes them in the
+ * ({@link String#compareTo(String)}) order of their names, by <b>external merge sort</b>: the entries are cut into
+ * runs of a fixed number of entries, each run is sorted in parallel with {@link Arrays#parallelSort} and spilled to a
+ * temporary file next to the output, and the runs are then merged, {@value #MAX_FAN_IN} at a time at most, with a
+ * priority queue. A phonebook that fits into a single run is sorted in memory and not spilled at all. Either way, the
+ * heap that an export takes is bounded by the size of a run and of the merge buffers, whatever the size of the
+ * phonebook.</p>
+ *
+ * <p>Like a snapshot, the file is written next to its path first and then moved over it, so a failed export never
+ * leaves a partial file behind.</p>
+ *
+ * @see CsvImporter
+ */
+public final class CsvExporter {
+
+    /**
+     * The default number of entries in a sorted run.
+     */
+    public static final int DEFAULT_RUN_SIZE = 1 << 20;
+
+    /**
+     * The largest number of runs that are merged at once. More runs are first merged into longer ones.
+     */
+    public static final int MAX_FAN_IN = 64;
+
+    private static final int BUFFER_SIZE = 1 << 20; // Of the output
+    private static final int RUN_BUFFER_SIZE = 64 << 10; // Of each run that is being merged or written
+    private static final byte[] HEADER = "name,number\n".getBytes(StandardCharsets.US_ASCII);
+    private static final Comparator<KVPair> BY_NAME = Comparator.comparing(KVPair::getKey);
+
+    private CsvExporter() {
+    }
+
+    /**
+     * Writes the entries of a phonebook to a CSV file, in the order of the phonebook's storage.
+     *
+     * @param phonebook The phonebook to export.
+     * @param file      The file to write. It is replaced if it exists.
+     * @return The number of rows written.
+     * @throws IOException if the file cannot be written.
+     */
+    public static long export(Phonebook phonebook, Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        long rows = -1;
+        try (CsvWriter writer = new CsvWriter(temporary)) {
+            try {
+                phonebook.forEachEntry(pair -> writer.uncheckedWrite(pair.getKey(), pair.getValue()));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            rows = writer.finish();
+        } finally {
+            if (rows < 0)
+                Files.deleteIfExists(temporary);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rows;
+    }
+
+    /**
+     * Writes the entries of a phonebook to a CSV file, sorted by name, in runs of {@value #DEFAULT_RUN_SIZE} entries.
+     *
+     * @param phonebook The phonebook to export.
+     * @param file      The file to write. It is replaced if it exists.
+     * @return The number of rows written.
+     * @throws IOException if the file or the runs cannot be written.
+     * @see #exportSorted(Phonebook, Path, int)
+     */
+    public static long exportSorted(Phonebook phonebook, Path file) throws IOException {
+        return exportSorted(phonebook, file, DEFAULT_RUN_SIZE);
+    }
+
+    /**
+     * Writes the entries of a phonebook to a CSV file, sorted by name.
+     *
+     * @param phonebook The phonebook to export.
+     * @param file      The file to write. It is replaced if it exists.
+     * @param runSize   The number of entries to sort in memory at a time.
+     * @return The number of rows written.
+     * @throws IOException if the file or the runs cannot be written.
+     * @throws IllegalArgumentException if runSize is not positive.
+     */
+    public static long exportSorted(Phonebook phonebook, Path file, int runSize) throws IOException {
+        if (runSize <= 0)
+            throw new IllegalArgumentException("Provided: runSize=" + runSize);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        List<Path> runs = new ArrayList<>();
+        long rows = -1;
+        try {
+            List<KVPair> run = new ArrayList<>(Math.min(runSize, phonebook.size()));
+            try {
+                phonebook.forEachEntry(pair -> {
+                    run.add(pair);
+                    if (run.size() == runSize) {
+                        runs.add(spill(run, file));
+                        run.clear();
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            try (CsvWriter writer = new CsvWriter(temporary)) {
+                if (runs.isEmpty()) { // Everything fits into one run
+                    KVPair[] sorted = run.toArray(new KVPair[0]);
+                    Arrays.parallelSort(sorted, BY_NAME);
+                    for (KVPair pair : sorted) {
+                        writer.write(pair.getKey(), pair.getValue());
+                    }
+                } else {
+                    if (!run.isEmpty())
+                        runs.add(spill(run, file));
+                    run.clear();
+                    while (runs.size() > MAX_FAN_IN) {
+                        List<Path> group = new ArrayList<>(runs.subList(0, MAX_FAN_IN));
+                        Path merged = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName() + ".",
+                                ".run");
+                        runs.add(merged);
+                        try (RunWriter runWriter = new RunWriter(merged)) {
+                            merge(group, runWriter);
+                        }
+                        for (Path done : group) {
+                            Files.delete(done);
+                        }
+                        runs.subList(0, MAX_FAN_IN).clear();
+                    }
+                    merge(runs, writer);
+                }
+                rows = writer.finish();
+            }
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+            if (rows < 0)
+                Files.deleteIfExists(temporary);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rows;
+    }
+
+    // Sorts run and writes it to a new temporary file next to file.
+    private static Path spill(List<KVPair> run, Path file) {
+        KVPair[] sorted = run.toArray(new KVPair[0]);
+        Arrays.parallelSort(sorted, BY_NAME);
+        try {
+            Path path = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName() + ".", ".run");
+            try (RunWriter writer = new RunWriter(path)) {
+                for (KVPair pair : sorted) {
+                    writer.write(pair.getKey(), pair.getValue());
+                }
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(path);
+                throw e;
+            }
+            return path;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Merges sorted runs into out, by name.
+    private static void merge(List<Path> runs, BlockWriter out) throws IOException {
+        PriorityQueue<RunReader> heads = new PriorityQueue<>(runs.size(),
+                Comparator.comparing((RunReader reader) -> reader.name));
+        try {
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run);
+                if (reader.next())
+                    heads.add(reader);
+                else
+                    reader.close();
+            }
+            while (!heads.isEmpty()) {
+                RunReader reader = heads.poll();
+                out.write(reader.name, reader.number);
+                if (reader.next())
+                    heads.add(reader);
+                else
+                    reader.close();
+            }
+        } finally {
+            for (RunReader reader : heads) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Writes through a {@link FileChannel} in blocks.
+     */
+    private abstract static class BlockWriter implements AutoCloseable {
+        final FileChannel channel;
+        final ByteBuffer buffer;
+
+        BlockWriter(Path path, int bufferSize) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer = ByteBuffer.allocate(bufferSize);
+        }
+
+        abstract void write(String name, String number) throws IOException;
+
+        // Makes room for bytes more bytes, if the buffer can hold that many at all.
+        void reserve(int bytes) throws IOException {
+            if (buffer.remaining() < bytes)
+                flush();
+        }
+
+        void put(byte[] bytes) throws IOException {
+            if (bytes.length <= buffer.remaining()) {
+                buffer.put(bytes);
+                return;
+            }
+            flush(); // Longer than what is left: write it out directly
+            writeFully(ByteBuffer.wrap(bytes));
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            writeFully(buffer);
+            buffer.clear();
+        }
+
+        private void writeFully(ByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes the CSV output.
+     */
+    private static final class CsvWriter extends BlockWriter {
+        private long rows;
+
+        CsvWriter(Path path) throws IOException {
+            super(path, BUFFER_SIZE);
+            buffer.put(HEADER);
+        }
+
+        @Override
+        void write(String name, String number) throws IOException {
+            byte[] nameField = field(name), numberField = field(number);
+            reserve(nameField.length + numberField.length + 2);
+            put(nameField);
+            buffer.put((byte) ',');
+            put(numberField);
+            buffer.put((byte) '\n');
+            rows++;
+        }
+
+        void uncheckedWrite(String name, String number) {
+            try {
+                write(name, number);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // Flushes the last block and forces the file to the device; returns the number of rows written.
+        long finish() throws IOException {
+            flush();
+            channel.force(true);
+            return rows;
+        }
+
+        private static byte[] field(String value) {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote)
+                return value.getBytes(StandardCharsets.UTF_8);
+            return ('"' + value.replace("\"", "\"\"") + '"').getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Writes a sorted run: every entry as its name and then its number, each one an unsigned LEB128 byte count
+     * followed by that many bytes of UTF-8, as in a snapshot.
+     */
+    private static final class RunWriter extends BlockWriter {
+
+        RunWriter(Path path) throws IOException {
+            super(path, RUN_BUFFER_SIZE);
+        }
+
+        @Override
+        void write(String name, String number) throws IOException {
+            putString(name);
+            putString(number);
+        }
+
+        private void putString(String s) throws IOException {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            reserve(Varints.MAX_BYTES + utf8.length);
+            Varints.put(buffer, utf8.length);
+            put(utf8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                super.close();
+            }
+        }
+    }
+
+    /**
+     * Reads a sorted run back, one entry at a time.
+     */
+    private static final class RunReader implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(RUN_BUFFER_SIZE);
+        String name, number;
+
+        RunReader(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            buffer.limit(0);
+        }
+
+        // Moves to the next entry; false at the end of the run.
+        boolean next() throws IOException {
+            if (!buffer.hasRemaining() && !fill(1))
+                return false;
+            name = getString();
+            number = getString();
+            return true;
+        }
+
+        private String getString() throws IOException {
+            int length;
+            while ((length = Varints.get(buffer)) < 0) {
+                if (buffer.remaining() >= Varints.MAX_BYTES || !fill(buffer.remaining() + 1))
+                    throw new EOFException("Run truncated while being read.");
+            }
+            if (length > buffer.capacity()) { // Longer than the buffer: read it directly
+                byte[] utf8 = new byte[length];
+                int copied = buffer.remaining();
+                buffer.get(utf8, 0, copied);
+                ByteBuffer rest = ByteBuffer.wrap(utf8, copied, length - copied);
+                while (rest.hasRemaining()) {
+                    if (channel.read(rest) < 0)
+                        throw new EOFException("Run truncated while being read.");
+                }
+                return new String(utf8, StandardCharsets.UTF_8);
+            }
+            if (buffer.remaining() < length && !fill(length))
+                throw new EOFException("Run truncated while being read.");
+            String s = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return s;
+        }
+
+        // Reads until at least bytes bytes are buffered; false if the run ends first.
+        private boolean fill(int bytes) throws IOException {
+            buffer.compact();
+            try {
+                while (buffer.position() < bytes) {
+                    if (channel.read(buffer) < 0)
+                        return false;
+                }
+                return true;
+            } finally {
+                buffer.flip();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package phonebook;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import phonebook.utils.KVPair;
+
+/**
+ * <p>{@link CsvImporter} streams a CSV file of {@code name,number} rows into a {@link Phonebook}. The file is read in
+ * chunks of a fixed size, each one cut at its last line break, and the chunks are parsed in parallel on a
+ * {@link ForkJoinPool}. The parsed batches are handed to {@link Phonebook#addEntries(List)} on the calling thread, in
+ * the order of the file, so the phonebook ends up as it would with one {@link Phonebook#addEntry(String, String)}
+ * per row.</p>
+ *
+ * <p>At most a fixed number of chunks are in flight, read but not yet added; once that many are, reading waits for
+ * the oldest one to be parsed and added. This <b>backpressure</b> bounds the memory that an import takes to about
+ * that number of chunks and their parsed entries, whatever the size of the file, and keeps a slow phonebook from
+ * being flooded.</p>
+ *
+ * <p>The file is UTF-8, and each line is one row of exactly two fields. A field may be quoted, in which case it may
+ * hold commas, and a doubled quote stands for a quote; it may not hold a line break. A trailing {@code \r} is
+ * dropped and empty lines are ignored. Any other line, including one with an empty field, an unterminated quote,
+ * invalid UTF-8 or more than a chunk's worth of bytes, is <b>malformed</b>: it is counted, the first few are kept as
+ * samples for the {@link Report}, and the import carries on.</p>
+ *
+ * @see Phonebook#addEntries(List)
+ */
+public class CsvImporter {
+
+    /**
+     * The default size of a chunk, in bytes.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4 << 20;
+
+    /**
+     * The number of malformed rows that a {@link Report} keeps as samples.
+     */
+    public static final int MAX_SAMPLES = 10;
+
+    private static final int SAMPLE_LENGTH = 80; // Characters of a malformed row that its sample shows
+
+    private final Phonebook phonebook;
+    private final boolean header;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+    private final int maxChunksInFlight;
+
+    /**
+     * Creates an importer into phonebook that parses chunks of {@value #DEFAULT_CHUNK_SIZE} bytes on the common
+     * {@link ForkJoinPool}, with twice as many chunks in flight as the pool has threads.
+     *
+     * @param phonebook The phonebook to import into.
+     * @param header    Whether the first line of a file is a header, which is skipped.
+     * @throws IllegalArgumentException if phonebook is {@code null}.
+     */
+    public CsvImporter(Phonebook phonebook, boolean header) {
+        this(phonebook, header, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool(),
+                2 * ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * Creates an importer into phonebook.
+     *
+     * @param phonebook         The phonebook to import into.
+     * @param header            Whether the first line of a file is a header, which is skipped.
+     * @param chunkSize         The size of a chunk, in bytes; also the longest line that can be imported.
+     * @param pool              The pool to parse chunks on.
+     * @param maxChunksInFlight The number of chunks that may be read but not yet added to phonebook.
+     * @throws IllegalArgumentException if phonebook or pool is {@code null}, or chunkSize or maxChunksInFlight is not
+     *                                  positive.
+     */
+    public CsvImporter(Phonebook phonebook, boolean header, int chunkSize, ForkJoinPool pool, int maxChunksInFlight) {
+        if (phonebook == null || pool == null || chunkSize <= 0 || maxChunksInFlight <= 0)
+            throw new IllegalArgumentException("Provided: phonebook=" + phonebook + ", chunkSize=" + chunkSize
+                    + ", pool=" + pool + " and maxChunksInFlight=" + maxChunksInFlight);
+        this.phonebook = phonebook;
+        this.header = header;
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+        this.maxChunksInFlight = maxChunksInFlight;
+    }
+
+    /**
+     * Imports a file.
+     *
+     * @param file The CSV file to import.
+     * @return A {@link Report} of the import.
+     * @throws IOException if the file cannot be read. The rows of the chunks that were added before the failure stay
+     *                     in the phonebook.
+     */
+    public Report importFile(Path file) throws IOException {
+        return importFile(file, report -> { });
+    }
+
+    /**
+     * Imports a file, reporting progress along the way.
+     *
+     * @param file     The CSV file to import.
+     * @param progress Called on the calling thread with a {@link Report} of the import so far, every time a chunk has
+     *                 been added to the phonebook.
+     * @return A {@link Report} of the import.
+     * @throws IOException if the file cannot be read. The rows of the chunks that were added before the failure stay
+     *                     in the phonebook.
+     */
+    public Report importFile(Path file, Consumer<Report> progress) throws IOException {
+        Totals totals = new Totals(System.nanoTime());
+        ArrayDeque<ForkJoinTask<Chunk>> inFlight = new ArrayDeque<>();
+        ArrayDeque<byte[]> free = new ArrayDeque<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            byte[] carry = new byte[chunkSize];
+            int carried = 0; // The bytes of an unfinished line, which go first in the next buffer
+            long offset = 0; // The position in the file of the first byte of the buffer
+            boolean eof = false, skipping = false, first = header;
+            while (!eof) {
+                byte[] buffer = free.isEmpty() ? new byte[chunkSize] : free.pop();
+                System.arraycopy(carry, 0, buffer, 0, carried);
+                int filled = carried;
+                while (filled < buffer.length) {
+                    int read = channel.read(ByteBuffer.wrap(buffer, filled, buffer.length - filled));
+                    if (read < 0) {
+                        eof = true;
+                        break;
+                    }
+                    filled += read;
+                }
+
+                int start = 0;
+                if (skipping) { // Still in the middle of a line that did not fit into a chunk
+                    int lineBreak = indexOf(buffer, 0, filled);
+                    start = lineBreak < 0 ? filled : lineBreak + 1;
+                    skipping = lineBreak < 0;
+                }
+                int end = eof ? filled : Math.max(start, lastIndexOf(buffer, start, filled) + 1);
+                if (end == 0 && !eof) { // No line break in a whole chunk
+                    totals.malformed(1, List.of("byte " + offset + ": a line longer than " + chunkSize + " bytes"));
+                    skipping = true;
+                    start = end = filled;
+                }
+                carried = skipping ? 0 : filled - end;
+                System.arraycopy(buffer, end, carry, 0, carried);
+                if (start < end) {
+                    Chunk chunk = new Chunk(buffer, start, end, offset, first);
+                    inFlight.add(pool.submit(chunk::parse));
+                    first = false;
+                } else {
+                    free.push(buffer);
+                }
+                offset += end;
+
+                while (inFlight.size() >= maxChunksInFlight || (eof && !inFlight.isEmpty())) {
+                    Chunk chunk = inFlight.remove().join();
+                    phonebook.addEntries(chunk.entries);
+                    totals.add(chunk);
+                    free.push(chunk.buffer);
+                    progress.accept(totals.report());
+                }
+            }
+        } finally {
+            for (ForkJoinTask<Chunk> task : inFlight) {
+                task.cancel(false);
+            }
+        }
+        return totals.report();
+    }
+
+    private static int indexOf(byte[] buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == '\n')
+                return i;
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(byte[] buffer, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (buffer[i] == '\n')
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * A range of whole lines of the file, and what parsing them produced.
+     */
+    private static final class Chunk {
+        final byte[] buffer;
+        final int start, end;
+        final long offset; // Of buffer[0] in the file
+        final boolean header;
+        List<KVPair> entries;
+        int malformed;
+        List<String> samples = List.of();
+
+        Chunk(byte[] buffer, int start, int end, long offset, boolean header) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+            this.offset = offset;
+            this.header = header;
+        }
+
+        Chunk parse() {
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder(); // Reports invalid input by default
+            entries = new ArrayList<>((end - start) / 32);
+            boolean skip = header;
+            for (int line = start; line < end; ) {
+                int lineBreak = indexOf(buffer, line, end), next = lineBreak < 0 ? end : lineBreak + 1;
+                int to = lineBreak < 0 ? end : lineBreak;
+                if (to > line && buffer[to - 1] == '\r')
+                    to--;
+                if (skip) {
+                    skip = false;
+                } else if (to > line) {
+                    KVPair entry = parseRow(buffer, line, to, decoder);
+                    if (entry != null) {
+                        entries.add(entry);
+                    } else if (malformed++ < MAX_SAMPLES) {
+                        if (samples.isEmpty())
+                            samples = new ArrayList<>();
+                        String row = new String(buffer, line, to - line, StandardCharsets.UTF_8);
+                        samples.add("byte " + (offset + line) + ": "
+                                + (row.length() > SAMPLE_LENGTH ? row.substring(0, SAMPLE_LENGTH) + "..." : row));
+                    }
+                }
+                line = next;
+            }
+            return this;
+        }
+
+        // The entry of the row in [from, to), or null if the row is malformed.
+        private static KVPair parseRow(byte[] row, int from, int to, CharsetDecoder decoder) {
+            String[] fields = new String[2];
+            int count = 0;
+            for (int i = from; ; i++) { // i is at the start of a field
+                if (count == fields.length)
+                    return null;
+                if (i < to && row[i] == '"') {
+                    byte[] field = new byte[to - i];
+                    int length = 0;
+                    for (i++; ; i++) {
+                        if (i == to)
+                            return null; // Unterminated
+                        if (row[i] == '"') {
+                            if (i + 1 < to && row[i + 1] == '"')
+                                i++; // An escaped quote
+                            else
+                                break;
+                        }
+                        field[length++] = row[i];
+                    }
+                    i++; // Past the closing quote
+                    fields[count++] = decode(field, 0, length, decoder);
+                } else {
+                    int comma = i;
+                    while (comma < to && row[comma] != ',') {
+                        comma++;
+                    }
+                    fields[count++] = decode(row, i, comma - i, decoder);
+                    i = comma;
+                }
+                if (fields[count - 1] == null)
+                    return null;
+                if (i == to)
+                    break;
+                if (row[i] != ',')
+                    return null; // Something after a closing quote
+            }
+            if (count != fields.length || fields[0].isEmpty() || fields[1].isEmpty())
+                return null;
+            return new KVPair(fields[0], fields[1]);
+        }
+
+        // The UTF-8 in the given range, or null if it is not valid.
+        private static String decode(byte[] bytes, int offset, int length, CharsetDecoder decoder) {
+            for (int i = offset; i < offset + length; i++) {
+                if (bytes[i] < 0) {
+                    try {
+                        CharBuffer chars = decoder.reset().decode(ByteBuffer.wrap(bytes, offset, length));
+                        return chars.toString();
+                    } catch (CharacterCodingException e) {
+                        return null;
+                    }
+                }
+            }
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1); // ASCII: nothing to decode
+        }
+    }
+
+    /**
+     * The running totals of an import. Only the calling thread touches them.
+     */
+    private static final class Totals {
+        final long start;
+        long rows, malformed, bytes;
+        final List<String> samples = new ArrayList<>();
+
+        Totals(long start) {
+            this.start = start;
+        }
+
+        void add(Chunk chunk) {
+            rows += chunk.entries.size();
+            bytes += chunk.end - chunk.start;
+            malformed(chunk.malformed, chunk.samples);
+        }
+
+        void malformed(int count, List<String> rowSamples) {
+            malformed += count;
+            for (int i = 0; i < rowSamples.size() && samples.size() < MAX_SAMPLES; i++) {
+                samples.add(rowSamples.get(i));
+            }
+        }
+
+        Report report() {
+            return new Report(rows, malformed, bytes, System.nanoTime() - start, samples);
+        }
+    }
+
+    /**
+     * <p>What an import has done so far: the number of rows added, the number of malformed rows skipped, the bytes
+     * parsed and the time taken.</p>
+     */
+    public static final class Report {
+        private final long rows, malformedRows, bytes, elapsedNanos;
+        private final List<String> malformedSamples;
+
+        Report(long rows, long malformedRows, long bytes, long elapsedNanos, List<String> malformedSamples) {
+            this.rows = rows;
+            this.malformedRows = malformedRows;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+            this.malformedSamples = Collections.unmodifiableList(new ArrayList<>(malformedSamples));
+        }
+
+        /**
+         * Returns the number of rows added to the phonebook.
+         *
+         * @return The number of well-formed rows.
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * Returns the number of malformed rows, which were skipped.
+         *
+         * @return The number of malformed rows.
+         */
+        public long getMalformedRows() {
+            return malformedRows;
+        }
+
+        /**
+         * Returns samples of the malformed rows, at most {@value CsvImporter#MAX_SAMPLES}, each one as its position
+         * in the file and its first characters.
+         *
+         * @return The samples of malformed rows.
+         */
+        public List<String> getMalformedSamples() {
+            return malformedSamples;
+        }
+
+        /**
+         * Returns the number of bytes of the file that were parsed and added.
+         *
+         * @return The number of bytes.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Returns the time since the import started.
+         *
+         * @return The elapsed time, in nanoseconds.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Returns the throughput of the import.
+         *
+         * @return The number of rows added per second.
+         */
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d rows (%,d malformed), %,d bytes in %.1f ms: %,.0f rows/s", rows, malformedRows,
+                    bytes, elapsedNanos / 1e6, getRowsPerSecond());
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package phonebook;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import phonebook.hashes.CollisionResolver;
+import phonebook.hashes.HashTable;
+import phonebook.utils.KVPair;
+
+/**
+ * <p>{@link DurablePhonebook} is a {@link ConcurrentPhonebook} whose entries survive a crash. It keeps two files in a
+ * directory of its own: a snapshot, in the format of {@link #saveSnapshot(Path)}, and a <b>write-ahead log</b> of every
+ * {@link #addEntry(String, String)} and {@link #deleteEntry(String, String)} made since the snapshot was taken. A
+ * mutation returns only once its log record has been forced to the device, but writers that run concurrently share a
+ * single {@code fsync}: the log is synced in <b>group commits</b>, at most once per sync interval.</p>
+ *
+ * <p>On construction, the snapshot is loaded and the log replayed on top of it. {@link #checkpoint()} writes a new
+ * snapshot and empties the log, which bounds both the size of the log and the time that a restart takes to replay it.
+ * A crash at any point of a checkpoint leaves either the old snapshot and its log, or the new snapshot, whose log is
+ * recognized as stale and discarded.</p>
+ *
+ * @see ConcurrentPhonebook
+ * @see WriteAheadLog
+ */
+public class DurablePhonebook extends ConcurrentPhonebook implements AutoCloseable {
+
+    /**
+     * The name of the snapshot file in the directory of a {@link DurablePhonebook}.
+     */
+    public static final String SNAPSHOT_FILE = "phonebook.snapshot";
+
+    /**
+     * The name of the log file in the directory of a {@link DurablePhonebook}.
+     */
+    public static final String LOG_FILE = "phonebook.wal";
+
+    private final Path snapshotFile;
+    private final WriteAheadLog log;
+    private final Object writeOrder = new Object(); // Keeps the log in the order the mutations were applied in
+
+    /**
+     * Opens the {@link DurablePhonebook} stored in directory, creating the directory if it does not exist, and
+     * recovers its entries.
+     *
+     * @param namesToNumbersHash A {@link CollisionResolver} that will govern which subtype of {@link HashTable} will be used to
+     *                           create our hash table with <b>peoples' names</b> as keys.
+     * @param numbersToNamesHash A {@link CollisionResolver} that will govern which subtype of {@link HashTable} will be used to
+     *                           create our hash table with <b>phone numbers</b> as keys.
+     * @param directory          Where the snapshot and the log are kept.
+     * @param syncIntervalMillis How long to gather mutations before every sync of the log, or {@code 0} to sync as soon
+     *                           as there is something to sync.
+     * @throws IOException if the files cannot be read or written, or the snapshot is corrupt.
+     * @throws IllegalArgumentException if directory is {@code null} or syncIntervalMillis is negative.
+     */
+    public DurablePhonebook(CollisionResolver namesToNumbersHash, CollisionResolver numbersToNamesHash, Path directory,
+                            long syncIntervalMillis) throws IOException {
+        super(namesToNumbersHash, numbersToNamesHash);
+        if (directory == null || syncIntervalMillis < 0)
+            throw new IllegalArgumentException("Provided: directory=" + directory + " and syncIntervalMillis="
+                    + syncIntervalMillis);
+        Files.createDirectories(directory);
+        snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        int snapshotChecksum = 0;
+        if (Files.exists(snapshotFile)) {
+            super.loadSnapshot(snapshotFile);
+            snapshotChecksum = SnapshotFormat.checksumOf(snapshotFile);
+        }
+        log = WriteAheadLog.open(directory.resolve(LOG_FILE), snapshotChecksum,
+                TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis),
+                (add, name, number) -> {
+                    if (add)
+                        super.addEntry(name, number);
+                    else
+                        super.deleteEntry(name, number);
+                });
+    }
+
+    /** {@inheritDoc} The entry is durable when this method returns.
+     * @throws UncheckedIOException if the log is closed, or cannot be written; in the latter case the entry is in the
+     * phonebook, but may not survive a crash. */
+    @Override
+    public void addEntry(String name, String number) {
+        mutate(true, name, number);
+    }
+
+    /** {@inheritDoc} The entries are applied and logged together, and are durable when this method returns; the
+     * batch waits for a single sync.
+     * @throws UncheckedIOException if the log is closed, or cannot be written; in the latter case the entries are in
+     * the phonebook, but may not survive a crash. */
+    @Override
+    public void addEntries(List<KVPair> entries) {
+        checkEntries(entries);
+        try {
+            long record = -1;
+            synchronized (writeOrder) {
+                log.checkWritable();
+                super.addEntries(entries);
+                for (KVPair entry : entries) {
+                    record = log.append(true, entry.getKey(), entry.getValue());
+                }
+            }
+            if (record >= 0)
+                log.awaitDurable(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** {@inheritDoc} The deletion is durable when this method returns.
+     * @throws UncheckedIOException if the log is closed, or cannot be written; in the latter case the entry is gone
+     * from the phonebook, but may come back after a crash. */
+    @Override
+    public void deleteEntry(String name, String number) {
+        mutate(false, name, number);
+    }
+
+    private void mutate(boolean add, String name, String number) {
+        try {
+            long record;
+            synchronized (writeOrder) {
+                log.checkWritable();
+                if (add)
+                    super.addEntry(name, number);
+                else
+                    super.deleteEntry(name, number);
+                record = log.append(add, name, number);
+            }
+            log.awaitDurable(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** {@inheritDoc} The loaded entries are made durable with a {@link #checkpoint()}. */
+    @Override
+    public void loadSnapshot(Path path) throws IOException {
+        synchronized (writeOrder) {
+            super.loadSnapshot(path);
+            checkpoint();
+        }
+    }
+
+    /**
+     * Saves a snapshot of the phonebook into its directory and empties the log. Writers wait while the snapshot is
+     * being written; lookups do not.
+     *
+     * @throws IOException if the snapshot or the log cannot be written.
+     */
+    public void checkpoint() throws IOException {
+        synchronized (writeOrder) {
+            saveSnapshot(snapshotFile);
+            log.reset(SnapshotFormat.checksumOf(snapshotFile));
+        }
+    }
+
+    /**
+     * Returns the number of times the log has been synced since the phonebook was opened.
+     *
+     * @return The number of group commits so far.
+     */
+    public long getSyncCount() {
+        return log.syncs();
+    }
+
+    /**
+     * Returns the number of mutations logged since the phonebook was opened; divided by {@link #getSyncCount()}, it
+     * gives the average size of a group commit.
+     *
+     * @return The number of mutations logged so far.
+     */
+    public long getLoggedCount() {
+        return log.records();
+    }
+
+    /**
+     * Syncs any pending log records and closes the log. The entries remain readable, but no more can be added or
+     * deleted.
+     *
+     * @throws IOException if the log cannot be synced or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+}
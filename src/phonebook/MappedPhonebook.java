@@ -0,0 +1,70 @@
+package phonebook;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import phonebook.hashes.MappedHashTable;
+import phonebook.utils.KVPair;
+
+/**
+ * <p>{@link MappedPhonebook} is a <b>read-only</b> {@link Phonebook} over two {@link MappedHashTable}s, for nodes that
+ * only serve lookups from a phonebook that is published elsewhere. {@link #write(Phonebook, Path)} is the build step:
+ * it lays out the entries of any {@link Phonebook} as two mapped files in a directory, and {@link #open(Path)} maps
+ * them, in constant time whatever their size. Lookups read the mapped pages directly, and every JVM on a host that
+ * opens the same directory shares those pages.</p>
+ *
+ * <p>Since nothing ever changes, a {@link MappedPhonebook} is thread-safe. {@link #addEntry(String, String)},
+ * {@link #deleteEntry(String, String)} and {@link #loadSnapshot(Path)} throw an
+ * {@link UnsupportedOperationException}. The secondary indexes may be enabled, as on any {@link Phonebook}; they are
+ * then built on the heap.</p>
+ *
+ * @see MappedHashTable
+ */
+public class MappedPhonebook extends ReadOnlyPhonebook {
+
+    /**
+     * The name of the file with peoples' names as keys, in the directory of a {@link MappedPhonebook}.
+     */
+    public static final String NAMES_FILE = "names.map";
+
+    /**
+     * The name of the file with phone numbers as keys, in the directory of a {@link MappedPhonebook}.
+     */
+    public static final String NUMBERS_FILE = "numbers.map";
+
+    private MappedPhonebook(MappedHashTable namesToNumbers, MappedHashTable numbersToNames) {
+        super(namesToNumbers, numbersToNames);
+    }
+
+    /**
+     * Maps the phonebook that {@link #write(Phonebook, Path)} wrote into directory.
+     *
+     * @param directory The directory of the phonebook.
+     * @return A read-only {@link MappedPhonebook} over the files in directory.
+     * @throws IOException if either file cannot be mapped.
+     */
+    public static MappedPhonebook open(Path directory) throws IOException {
+        return new MappedPhonebook(MappedHashTable.open(directory.resolve(NAMES_FILE)),
+                MappedHashTable.open(directory.resolve(NUMBERS_FILE)));
+    }
+
+    /**
+     * Writes the entries of a phonebook into directory, creating it if it does not exist, for {@link #open(Path)} to
+     * map. Each file is replaced atomically, but not both at once: to publish a new version to nodes that may be
+     * opening the old one, write it into a new directory and then point the nodes to it.
+     *
+     * @param phonebook The phonebook to write.
+     * @param directory The directory to write the files into.
+     * @throws IOException if the files cannot be written.
+     */
+    public static void write(Phonebook phonebook, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        List<KVPair> entries = phonebook.entries().collect(Collectors.toList()); // Both files from one view
+        MappedHashTable.write(directory.resolve(NAMES_FILE), entries.iterator());
+        MappedHashTable.write(directory.resolve(NUMBERS_FILE),
+                entries.stream().map(pair -> new KVPair(pair.getValue(), pair.getKey())).iterator());
+    }
+}
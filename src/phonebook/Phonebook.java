@@ -1,6 +1,18 @@
 package phonebook;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.stream.Stream;
+
 import phonebook.hashes.*;
+import phonebook.indexes.NamePrefixIndex;
+import phonebook.indexes.NumberPrefixIndex;
+import phonebook.indexes.SortedNameIndex;
+import phonebook.indexes.TrigramIndex;
+import phonebook.utils.KVPair;
 
 /**
  * <p>{@link Phonebook} is an abstraction over phonebooks: databases of &lt; Full Name,
@@ -30,6 +42,10 @@ public class Phonebook {
 
     private HashTable namesToNumbers ;
     private HashTable numbersToNames ;
+    private NamePrefixIndex namePrefixIndex; // null unless enabled
+    private NumberPrefixIndex numberPrefixIndex; // null unless enabled
+    private SortedNameIndex sortedNameIndex; // null unless enabled
+    private TrigramIndex trigramIndex; // null unless enabled
 
 
     /**
@@ -43,39 +59,71 @@ public class Phonebook {
      * @see CollisionResolver
      */
     public Phonebook(CollisionResolver namesToNumbersHash, CollisionResolver numbersToNamesHash) {
+        namesToNumbers = newHashTable(namesToNumbersHash);
+        numbersToNames = newHashTable(numbersToNamesHash);
+    }
 
-        switch(namesToNumbersHash){
-            case SEPARATE_CHAINING:
-                namesToNumbers = new SeparateChainingHashTable();
-                break;
-            case LINEAR_PROBING:
-                namesToNumbers = new LinearProbingHashTable(false);
-                break;
-            case ORDERED_LINEAR_PROBING:
-                namesToNumbers = new OrderedLinearProbingHashTable(false);
-                break;
-            case QUADRATIC_PROBING:
-                namesToNumbers = new QuadraticProbingHashTable(false);
-                break;
-            default:
-                throw new RuntimeException("Encountered unsupported CollisionResolver argument: " + namesToNumbersHash  + "." );
-        }
+    /**
+     * Instantiates a new {@link Phonebook} with <b>membership filters</b>: a {@link FilteredHashTable} in front of
+     * both hash tables, so that most lookups of names and numbers that are not in the phonebook are answered by a
+     * {@link CountingBloomFilter} from a single cache line, without walking a probe sequence or chain. The filters
+     * cost a few bytes per entry, and slow down {@link #addEntry(String, String)} and
+     * {@link #deleteEntry(String, String)} by one lookup each.
+     *
+     * @param namesToNumbersHash A {@link CollisionResolver} that will govern which subtype of {@link HashTable} will be used to
+     *                           create our hash table with <b>peoples' names</b> as keys.
+     * @param numbersToNamesHash A {@link CollisionResolver} that will govern which subtype of {@link HashTable} will be used to
+     *                           create our hash table with <b>phone numbers</b> as keys.
+     * @param falsePositiveRate The share of absent names and numbers that the filters may let through to the tables.
+     *                          Lower rates take more memory.
+     * @throws IllegalArgumentException if falsePositiveRate is not in (0, 1).
+     * @see #getNameFilterMetrics()
+     * @see #getNumberFilterMetrics()
+     */
+    public Phonebook(CollisionResolver namesToNumbersHash, CollisionResolver numbersToNamesHash,
+                     double falsePositiveRate) {
+        this(new FilteredHashTable(newHashTable(namesToNumbersHash), falsePositiveRate),
+                new FilteredHashTable(newHashTable(numbersToNamesHash), falsePositiveRate));
+    }
+
+    /**
+     * For subclasses that keep their entries in storage of their own, and so override every method that would
+     * otherwise reach the two {@link HashTable}s.
+     */
+    Phonebook() {
+    }
+
+    /**
+     * For subclasses that bring {@link HashTable}s of their own, already filled.
+     * @param namesToNumbers The table with peoples' names as keys.
+     * @param numbersToNames The table with phone numbers as keys.
+     */
+    Phonebook(HashTable namesToNumbers, HashTable numbersToNames) {
+        this.namesToNumbers = namesToNumbers;
+        this.numbersToNames = numbersToNames;
+    }
 
-        switch(numbersToNamesHash){
+    /** Creates an empty {@link HashTable} of the subtype that the provided {@link CollisionResolver} stands for.
+     * Openly addressed tables use hard deletion.
+     * @param resolver The collision resolution strategy of the new table.
+     * @return A new, empty {@link HashTable}.
+     */
+    static HashTable newHashTable(CollisionResolver resolver) {
+        switch(resolver){
             case SEPARATE_CHAINING:
-                numbersToNames = new SeparateChainingHashTable();
-                break;
+                return new SeparateChainingHashTable();
             case LINEAR_PROBING:
-                numbersToNames = new LinearProbingHashTable(false);
-                break;
+                return new LinearProbingHashTable(false);
             case ORDERED_LINEAR_PROBING:
-                numbersToNames = new OrderedLinearProbingHashTable(false);
-                break;
+                return new OrderedLinearProbingHashTable(false);
             case QUADRATIC_PROBING:
-                numbersToNames = new QuadraticProbingHashTable(false);
-                break;
+                return new QuadraticProbingHashTable(false);
+            case CONCURRENT_SEPARATE_CHAINING:
+                return new ConcurrentSeparateChainingHashTable();
+            case HASH_ARRAY_MAPPED_TRIE:
+                return new PersistentHashTable();
             default:
-                throw new RuntimeException("Encountered unsupported Collision Resolver " + numbersToNamesHash + ".");
+                throw new RuntimeException("Encountered unsupported CollisionResolver argument: " + resolver  + "." );
         }
     }
 
@@ -99,6 +147,82 @@ public class Phonebook {
         return (number == null) ? null : numbersToNames.get(number);
     }
 
+    /** Retrieves the phone number associated with a full name given as any {@link CharSequence}, e.g. a
+     * {@link java.nio.CharBuffer} that a request was parsed into. The {@link HashTable}s that support it look the name
+     * up in place, without creating a {@link String}.
+     * @param name The full name of the owner of the phone number that is being searched for.
+     * @return The phone number associated with name, or {@code null} if name is {@code null} or if name
+     * is not in the {@link Phonebook}.
+     * @see HashTable#get(CharSequence)
+     */
+    public String getNumberOf(CharSequence name) {
+        return namesToNumbers.get(name);
+    }
+
+    /** Retrieves the phone number associated with a full name given as a slice of UTF-8 bytes, e.g. the bytes of a
+     * request. The {@link HashTable}s that support it look the name up in place, without decoding it.
+     * @param utf8 The bytes.
+     * @param offset The index of the first byte of the name.
+     * @param length The number of bytes of the name.
+     * @return The phone number associated with the name, or {@code null} if the bytes are not well-formed UTF-8 or
+     * if the name is not in the {@link Phonebook}.
+     * @throws IllegalArgumentException if utf8 is {@code null} or the slice is out of its bounds.
+     * @see HashTable#get(byte[], int, int)
+     */
+    public String getNumberOf(byte[] utf8, int offset, int length) {
+        return namesToNumbers.get(utf8, offset, length);
+    }
+
+    /** Retrieves the full name of the owner of a phone number given as any {@link CharSequence}. The
+     * {@link HashTable}s that support it look the number up in place, without creating a {@link String}.
+     * @param number The phone number whose owner is being searched for.
+     * @return The full name of the owner of number, or {@code null} if number is {@code null} or if number
+     * is not in the {@link Phonebook}.
+     * @see HashTable#get(CharSequence)
+     */
+    public String getOwnerOf(CharSequence number) {
+        return numbersToNames.get(number);
+    }
+
+    /** Retrieves the full name of the owner of a phone number given as a slice of UTF-8 bytes. The
+     * {@link HashTable}s that support it look the number up in place, without decoding it.
+     * @param utf8 The bytes.
+     * @param offset The index of the first byte of the phone number.
+     * @param length The number of bytes of the phone number.
+     * @return The full name of the owner of the number, or {@code null} if the bytes are not well-formed UTF-8 or
+     * if the number is not in the {@link Phonebook}.
+     * @throws IllegalArgumentException if utf8 is {@code null} or the slice is out of its bounds.
+     * @see HashTable#get(byte[], int, int)
+     */
+    public String getOwnerOf(byte[] utf8, int offset, int length) {
+        return numbersToNames.get(utf8, offset, length);
+    }
+
+    /** Retrieves the phone numbers associated with many full names at once. This is faster than calling
+     * {@link #getNumberOf(String)} in a loop, since the underlying {@link HashTable} can overlap the memory accesses
+     * of several lookups.
+     * @param names The full names to search for.
+     * @param out Where to store the phone number associated with names[i], or {@code null} if names[i] is
+     *            {@code null} or not in the {@link Phonebook}, at index i. Must be at least as long as names.
+     * @throws IllegalArgumentException if either array is {@code null}, or out is shorter than names.
+     * @see HashTable#getAll(String[], String[])
+     */
+    public void getNumbersOf(String[] names, String[] out) {
+        namesToNumbers.getAll(names, out);
+    }
+
+    /** Retrieves the owners of many phone numbers at once. This is faster than calling {@link #getOwnerOf(String)}
+     * in a loop, since the underlying {@link HashTable} can overlap the memory accesses of several lookups.
+     * @param numbers The phone numbers to search for.
+     * @param out Where to store the full name of the owner of numbers[i], or {@code null} if numbers[i] is
+     *            {@code null} or not in the {@link Phonebook}, at index i. Must be at least as long as numbers.
+     * @throws IllegalArgumentException if either array is {@code null}, or out is shorter than numbers.
+     * @see HashTable#getAll(String[], String[])
+     */
+    public void getOwnersOf(String[] numbers, String[] out) {
+        numbersToNames.getAll(numbers, out);
+    }
+
     /** Adds the tuple &lt; name, number &gt; in the {@link Phonebook}. If either name or
      * number are already in the collection, then the entire entry is <b>updated</b>.
      * @param name The full name of the number's owner.
@@ -110,6 +234,40 @@ public class Phonebook {
             throw new IllegalArgumentException("Provided: name=" + name + " and number= " + number);
         namesToNumbers.put(name, number);
         numbersToNames.put(number, name);
+        nameAdded(name, number);
+        numberAdded(number);
+    }
+
+    /** Adds a batch of entries, as if by {@link #addEntry(String, String)} in order, so that a later entry with the
+     * same name or number updates an earlier one. Bulk loaders call this method rather than
+     * {@link #addEntry(String, String)} once per entry, because thread-safe subclasses then synchronize once per
+     * batch instead of once per entry. Every entry is checked before any is added.
+     * @param entries The &lt; name, number &gt; pairs to add.
+     * @throws IllegalArgumentException if entries, any entry, or any name or number in it is {@code null}.
+     */
+    public void addEntries(List<KVPair> entries) {
+        checkEntries(entries);
+        for (KVPair entry : entries) {
+            String name = entry.getKey(), number = entry.getValue();
+            namesToNumbers.put(name, number);
+            numbersToNames.put(number, name);
+            nameAdded(name, number);
+            numberAdded(number);
+        }
+    }
+
+    /** Checks a batch of entries for {@link #addEntries(List)}.
+     * @param entries The batch to check.
+     * @throws IllegalArgumentException if entries, any entry, or any name or number in it is {@code null}.
+     */
+    static void checkEntries(List<KVPair> entries) {
+        if (entries == null)
+            throw new IllegalArgumentException("Provided: entries=null");
+        for (KVPair entry : entries) {
+            if (entry == null || entry.getKey() == null || entry.getValue() == null)
+                throw new IllegalArgumentException("Provided: entry=" + (entry == null ? null
+                        : "name=" + entry.getKey() + " and number= " + entry.getValue()));
+        }
     }
 
     /** Deletes the entry characterized by the arguments provided. If either argument is {@code null}, or if the
@@ -123,6 +281,360 @@ public class Phonebook {
             throw new IllegalArgumentException("Provided: name=" + name + " and number= " + number);
         namesToNumbers.remove(name);
         numbersToNames.remove(number);
+        nameRemoved(name);
+        numberRemoved(number);
+    }
+
+    /** Streams the entries of the phonebook as &lt; name, number &gt; pairs, in the order of the names' hash table.
+     * Call {@link Stream#parallel()} on the result to export or analyze the entries in parallel.
+     * @return A sequential {@link Stream} over the entries of this {@link Phonebook}.
+     * @see HashTable#entries()
+     */
+    public Stream<KVPair> entries() {
+        return namesToNumbers.entries();
+    }
+
+    /** Passes every entry of the phonebook to action, walking the names' hash table in place rather than copying the
+     * entries out first, so that exporting a phonebook of any size takes no more memory than the action itself does.
+     * @param action Called once per entry, as a &lt; name, number &gt; pair.
+     * @see #entries()
+     */
+    public void forEachEntry(Consumer<? super KVPair> action) {
+        namesToNumbers.forEach(action);
+    }
+
+    /** Takes a snapshot of the phonebook in O(1) time: a new {@link Phonebook} with the entries of this one, which
+     * shares all of its storage with this one, and which later writes to either one do not affect. Both hash tables
+     * are snapshotted together, so the snapshot is a consistent phonebook. The secondary indexes are not carried over.
+     * @return A new {@link Phonebook} with the entries of this one.
+     * @throws UnsupportedOperationException if either hash table is not a
+     * {@link CollisionResolver#HASH_ARRAY_MAPPED_TRIE}, whose tables are the only ones that can be snapshotted
+     * without copying them.
+     * @see PersistentHashTable#snapshot()
+     */
+    public Phonebook snapshot() {
+        if (!(namesToNumbers instanceof PersistentHashTable && numbersToNames instanceof PersistentHashTable))
+            throw new UnsupportedOperationException("Only phonebooks over HASH_ARRAY_MAPPED_TRIE tables can be snapshotted.");
+        return new Phonebook(((PersistentHashTable) namesToNumbers).snapshot(),
+                ((PersistentHashTable) numbersToNames).snapshot());
+    }
+
+    /** Saves the entries of the phonebook to a compact binary snapshot file, along with the capacities of its hash
+     * tables, so that {@link #loadSnapshot(Path)} can rebuild it without parsing or resizing. The snapshot is written
+     * next to path first and then moved over it, so a crash never leaves a half-written file at path.
+     * @param path The file to save the snapshot to. It is replaced if it exists.
+     * @throws IOException if the file cannot be written.
+     * @see #loadSnapshot(Path)
+     */
+    public void saveSnapshot(Path path) throws IOException {
+        SnapshotFormat.write(path, namesToNumbers.size(), namesToNumbers.capacity(), numbersToNames.capacity(),
+                namesToNumbers.iterator());
+    }
+
+    /** Loads the entries of a snapshot that {@link #saveSnapshot(Path)} wrote into this empty phonebook. Both hash
+     * tables are first presized to the capacities recorded in the snapshot, and the entries are then streamed into
+     * them, so the load does not resize. The file is checked against its checksum before any entry is loaded, and
+     * enabled secondary indexes are kept up to date. Snapshots may be loaded into any kind of {@link Phonebook},
+     * whatever kind saved them.
+     * @param path The snapshot file to load.
+     * @throws IOException if the file cannot be read, is not a snapshot of a supported version, or is corrupt.
+     * @throws IllegalStateException if the phonebook is not empty.
+     * @see #saveSnapshot(Path)
+     */
+    public void loadSnapshot(Path path) throws IOException {
+        if (namesToNumbers.size() != 0 || numbersToNames.size() != 0)
+            throw new IllegalStateException("Snapshots can only be loaded into an empty phonebook.");
+        try (SnapshotFormat.Reader reader = SnapshotFormat.Reader.open(path)) {
+            namesToNumbers.presize(reader.namesCapacity());
+            numbersToNames.presize(reader.numbersCapacity());
+            while (reader.next()) {
+                String name = reader.name(), number = reader.number();
+                namesToNumbers.put(name, number);
+                numbersToNames.put(number, name);
+                nameAdded(name, number);
+                numberAdded(number);
+            }
+        }
+    }
+
+    /** Builds an index over the names of the phonebook that supports {@link #findNamesByPrefix(String, int)}, and
+     * keeps it up to date from then on. The index costs memory and slows down {@link #addEntry(String, String)} and
+     * {@link #deleteEntry(String, String)} a little, which is why it is optional. Calling this method again has no
+     * effect.
+     * @see NamePrefixIndex
+     */
+    public void enableNamePrefixIndex() {
+        if (namePrefixIndex == null) {
+            NamePrefixIndex index = new NamePrefixIndex();
+            entriesToIndex().forEach(pair -> index.add(pair.getKey()));
+            namePrefixIndex = index;
+        }
+    }
+
+    /** Retrieves up to limit names that start with the provided prefix, in alphabetical order. Runs in time
+     * proportional to the length of the prefix plus the length of the result.
+     * @param prefix The prefix to search for. The empty prefix matches every name.
+     * @param limit The largest number of names to return.
+     * @return A new {@link List} of at most limit names.
+     * @throws IllegalArgumentException if prefix is {@code null} or limit is negative.
+     * @throws IllegalStateException if {@link #enableNamePrefixIndex()} has not been called.
+     */
+    public List<String> findNamesByPrefix(String prefix, int limit) {
+        if (namePrefixIndex == null)
+            throw new IllegalStateException("The name prefix index is not enabled; call enableNamePrefixIndex() first.");
+        return namePrefixIndex.findByPrefix(prefix, limit);
+    }
+
+    /** Builds an index over the phone numbers of the phonebook that supports {@link #findNumbersByPrefix(String)}
+     * and {@link #countNumbersByPrefix(String)}, and keeps it up to date from then on. Like the name prefix index,
+     * it is optional. Calling this method again has no effect.
+     * @see NumberPrefixIndex
+     */
+    public void enableNumberPrefixIndex() {
+        if (numberPrefixIndex == null) {
+            NumberPrefixIndex index = new NumberPrefixIndex();
+            entriesToIndex().forEach(pair -> index.add(pair.getValue()));
+            numberPrefixIndex = index;
+        }
+    }
+
+    /** Streams the phone numbers whose digits start with the digits of the provided prefix, e.g. all numbers of
+     * an area code. Anything but digits is ignored, in the prefix and in the numbers alike, so {@code "894-59"}
+     * matches {@code "894-59-0011"} and {@code "(894) 590011"}. The numbers are produced lazily, in the order of
+     * their digits; the phonebook should not be modified while the {@link Stream} is in use.
+     * @param prefix The prefix to search for.
+     * @return A sequential {@link Stream} over the matching numbers.
+     * @throws IllegalArgumentException if prefix is {@code null}.
+     * @throws IllegalStateException if {@link #enableNumberPrefixIndex()} has not been called.
+     */
+    public Stream<String> findNumbersByPrefix(String prefix) {
+        if (numberPrefixIndex == null)
+            throw new IllegalStateException("The number prefix index is not enabled; call enableNumberPrefixIndex() first.");
+        return numberPrefixIndex.findByPrefix(prefix);
+    }
+
+    /** Counts the phone numbers whose digits start with the digits of the provided prefix, in time proportional
+     * to the length of the prefix.
+     * @param prefix The prefix to search for.
+     * @return The number of matching phone numbers.
+     * @throws IllegalArgumentException if prefix is {@code null}.
+     * @throws IllegalStateException if {@link #enableNumberPrefixIndex()} has not been called.
+     * @see #findNumbersByPrefix(String)
+     */
+    public int countNumbersByPrefix(String prefix) {
+        if (numberPrefixIndex == null)
+            throw new IllegalStateException("The number prefix index is not enabled; call enableNumberPrefixIndex() first.");
+        return numberPrefixIndex.countByPrefix(prefix);
+    }
+
+    /** Builds an index that keeps the entries of the phonebook in alphabetical order of their names, to support
+     * {@link #range(String, String)} and {@link #page(String, int)}, and keeps it up to date from then on. Lookups
+     * by name or number never consult it, so it does not slow them down. Calling this method again has no effect.
+     * @see SortedNameIndex
+     */
+    public void enableSortedNameIndex() {
+        if (sortedNameIndex == null) {
+            SortedNameIndex index = new SortedNameIndex();
+            entriesToIndex().forEach(pair -> index.put(pair.getKey(), pair.getValue()));
+            sortedNameIndex = index;
+        }
+    }
+
+    /** Lists the entries whose names lie between fromName, inclusive, and toName, exclusive, in alphabetical
+     * order, in O(log n + k) time for k entries.
+     * @param fromName The smallest name to list.
+     * @param toName The name to stop before.
+     * @return A new {@link List} of &lt; name, number &gt; pairs.
+     * @throws IllegalArgumentException if either argument is {@code null}, or if fromName comes after toName.
+     * @throws IllegalStateException if {@link #enableSortedNameIndex()} has not been called.
+     */
+    public List<KVPair> range(String fromName, String toName) {
+        if (sortedNameIndex == null)
+            throw new IllegalStateException("The sorted name index is not enabled; call enableSortedNameIndex() first.");
+        return sortedNameIndex.range(fromName, toName);
+    }
+
+    /** Lists up to n entries whose names come right after afterName, in alphabetical order, in O(log n + k) time
+     * for k entries. Passing the last name of a page returns the next one.
+     * @param afterName The name to list the entries after, or {@code null} to start from the first name.
+     * @param n The largest number of entries to list.
+     * @return A new {@link List} of at most n &lt; name, number &gt; pairs.
+     * @throws IllegalArgumentException if n is negative.
+     * @throws IllegalStateException if {@link #enableSortedNameIndex()} has not been called.
+     */
+    public List<KVPair> page(String afterName, int n) {
+        if (sortedNameIndex == null)
+            throw new IllegalStateException("The sorted name index is not enabled; call enableSortedNameIndex() first.");
+        return sortedNameIndex.page(afterName, n);
+    }
+
+    /** Builds an index of the trigrams of the names in the phonebook that supports
+     * {@link #findSimilarNames(String, int)}, and keeps it up to date from then on. Calling this method again has
+     * no effect.
+     * @see TrigramIndex
+     */
+    public void enableFuzzyNameIndex() {
+        if (trigramIndex == null) {
+            TrigramIndex index = new TrigramIndex();
+            entriesToIndex().forEach(pair -> index.add(pair.getKey()));
+            trigramIndex = index;
+        }
+    }
+
+    /** Retrieves up to k names of the phonebook that are most similar to the provided, possibly mistyped, name,
+     * most similar first. Only names that share some three-letter sequence with the provided name are considered.
+     * @param name The name to search for.
+     * @param k The largest number of names to return.
+     * @return A new {@link List} of at most k names.
+     * @throws IllegalArgumentException if name is {@code null} or k is negative.
+     * @throws IllegalStateException if {@link #enableFuzzyNameIndex()} has not been called.
+     */
+    public List<String> findSimilarNames(String name, int k) {
+        if (trigramIndex == null)
+            throw new IllegalStateException("The fuzzy name index is not enabled; call enableFuzzyNameIndex() first.");
+        return trigramIndex.findSimilar(name, k);
+    }
+
+    /** Reports how well the filter in front of the names does.
+     * @return The {@link FilteredHashTable.Metrics} of the filter of the names.
+     * @throws IllegalStateException if the phonebook was not created with membership filters.
+     */
+    public FilteredHashTable.Metrics getNameFilterMetrics() {
+        if (!(namesToNumbers instanceof FilteredHashTable))
+            throw new IllegalStateException("The membership filters are not enabled; pass a false-positive rate to the "
+                    + "constructor.");
+        return ((FilteredHashTable) namesToNumbers).metrics();
+    }
+
+    /** Reports how well the filter in front of the phone numbers does, e.g. how many {@link #getOwnerOf(String)}
+     * calls for numbers that are not in the phonebook it answered.
+     * @return The {@link FilteredHashTable.Metrics} of the filter of the phone numbers.
+     * @throws IllegalStateException if the phonebook was not created with membership filters.
+     */
+    public FilteredHashTable.Metrics getNumberFilterMetrics() {
+        if (!(numbersToNames instanceof FilteredHashTable))
+            throw new IllegalStateException("The membership filters are not enabled; pass a false-positive rate to the "
+                    + "constructor.");
+        return ((FilteredHashTable) numbersToNames).metrics();
+    }
+
+    /** Looks a name up like {@link #getNumberOf(String)}, but without counting the lookup in the
+     * {@link #getNameFilterMetrics() metrics} of the name filter, for lookups that may be thrown away and repeated.
+     * {@link #countNameLookup(IntSupplier, String)} counts the one that is kept.
+     * @param name The name to look up.
+     * @return The number that name maps to, or {@code null}.
+     * @see FilteredHashTable#uncounted()
+     */
+    String getNumberOfUncounted(String name) {
+        return (name == null) ? null : uncounted(namesToNumbers).get(name);
+    }
+
+    /** Like {@link #getNumberOfUncounted(String)}, for a name given as any {@link CharSequence}. */
+    String getNumberOfUncounted(CharSequence name) {
+        return uncounted(namesToNumbers).get(name);
+    }
+
+    /** Like {@link #getNumberOfUncounted(String)}, for a name given as a slice of UTF-8 bytes. */
+    String getNumberOfUncounted(byte[] utf8, int offset, int length) {
+        return uncounted(namesToNumbers).get(utf8, offset, length);
+    }
+
+    /** Looks a number up like {@link #getOwnerOf(String)}, but without counting the lookup in the
+     * {@link #getNumberFilterMetrics() metrics} of the number filter, for lookups that may be thrown away and
+     * repeated. {@link #countNumberLookup(IntSupplier, String)} counts the one that is kept.
+     * @param number The number to look up.
+     * @return The name that number maps to, or {@code null}.
+     * @see FilteredHashTable#uncounted()
+     */
+    String getOwnerOfUncounted(String number) {
+        return (number == null) ? null : uncounted(numbersToNames).get(number);
+    }
+
+    /** Like {@link #getOwnerOfUncounted(String)}, for a number given as any {@link CharSequence}. */
+    String getOwnerOfUncounted(CharSequence number) {
+        return uncounted(numbersToNames).get(number);
+    }
+
+    /** Like {@link #getOwnerOfUncounted(String)}, for a number given as a slice of UTF-8 bytes. */
+    String getOwnerOfUncounted(byte[] utf8, int offset, int length) {
+        return uncounted(numbersToNames).get(utf8, offset, length);
+    }
+
+    private static HashTable uncounted(HashTable table) {
+        return table instanceof FilteredHashTable ? ((FilteredHashTable) table).uncounted() : table;
+    }
+
+    /** Counts an uncounted lookup of a name that is kept, if the phonebook has membership filters.
+     * @param hash Computes the {@link String#hashCode()} of the name, only if there is a filter to count in.
+     * @param number The number that the lookup returned.
+     * @see FilteredHashTable#count(int, String)
+     */
+    void countNameLookup(IntSupplier hash, String number) {
+        if (namesToNumbers instanceof FilteredHashTable)
+            ((FilteredHashTable) namesToNumbers).count(hash.getAsInt(), number);
+    }
+
+    /** Counts an uncounted lookup of a number that is kept, if the phonebook has membership filters.
+     * @param hash Computes the {@link String#hashCode()} of the number, only if there is a filter to count in.
+     * @param name The name that the lookup returned.
+     * @see FilteredHashTable#count(int, String)
+     */
+    void countNumberLookup(IntSupplier hash, String name) {
+        if (numbersToNames instanceof FilteredHashTable)
+            ((FilteredHashTable) numbersToNames).count(hash.getAsInt(), name);
+    }
+
+    /** Streams the entries that a newly enabled secondary index starts out with. Subclasses whose
+     * {@link #entries()} takes a lock that is already held while an index is enabled override this method.
+     * @return A {@link Stream} over the entries of this {@link Phonebook}.
+     */
+    Stream<KVPair> entriesToIndex() {
+        return entries();
+    }
+
+    /** Keeps the secondary indexes up to date with a name that is now in the phonebook. Subclasses that override
+     * {@link #addEntry(String, String)} without calling it must call this method instead.
+     * @param name The name that was added.
+     * @param number The phone number that the name now maps to.
+     */
+    void nameAdded(String name, String number) {
+        if (namePrefixIndex != null)
+            namePrefixIndex.add(name);
+        if (sortedNameIndex != null)
+            sortedNameIndex.put(name, number);
+        if (trigramIndex != null)
+            trigramIndex.add(name);
+    }
+
+    /** Keeps the secondary indexes up to date with a name that is no longer in the phonebook. Subclasses that
+     * override {@link #deleteEntry(String, String)} without calling it must call this method instead.
+     * @param name The name that was removed.
+     */
+    void nameRemoved(String name) {
+        if (namePrefixIndex != null)
+            namePrefixIndex.remove(name);
+        if (sortedNameIndex != null)
+            sortedNameIndex.remove(name);
+        if (trigramIndex != null)
+            trigramIndex.remove(name);
+    }
+
+    /** Keeps the secondary indexes up to date with a phone number that is now in the phonebook.
+     * @param number The phone number that was added.
+     * @see #nameAdded(String, String)
+     */
+    void numberAdded(String number) {
+        if (numberPrefixIndex != null)
+            numberPrefixIndex.add(number);
+    }
+
+    /** Keeps the secondary indexes up to date with a phone number that is no longer in the phonebook.
+     * @param number The phone number that was removed.
+     * @see #nameRemoved(String)
+     */
+    void numberRemoved(String number) {
+        if (numberPrefixIndex != null)
+            numberPrefixIndex.remove(number);
     }
 
     /** Returns the number of entries in the phonebook.
@@ -0,0 +1,71 @@
+package phonebook;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import phonebook.hashes.HashTable;
+import phonebook.utils.KVPair;
+
+/**
+ * <p>{@link ReadOnlyPhonebook} is the base of the <b>read-only</b> {@link Phonebook}s, which are built once over
+ * {@link HashTable}s that are already filled. {@link #addEntry(String, String)}, {@link #addEntries(List)},
+ * {@link #deleteEntry(String, String)} and {@link #loadSnapshot(Path)} throw an {@link UnsupportedOperationException};
+ * lookups, iteration and the secondary indexes work as on any {@link Phonebook}.</p>
+ *
+ * @see MappedPhonebook
+ * @see StaticPhonebook
+ */
+abstract class ReadOnlyPhonebook extends Phonebook {
+
+    /**
+     * @param namesToNumbers The filled table with peoples' names as keys.
+     * @param numbersToNames The filled table with phone numbers as keys.
+     */
+    ReadOnlyPhonebook(HashTable namesToNumbers, HashTable numbersToNames) {
+        super(namesToNumbers, numbersToNames);
+    }
+
+    private UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException(getClass().getSimpleName() + " is read-only.");
+    }
+
+    /**
+     * Not supported: the phonebook is read-only.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public final void addEntry(String name, String number) {
+        throw readOnly();
+    }
+
+    /**
+     * Not supported: the phonebook is read-only.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public final void addEntries(List<KVPair> entries) {
+        throw readOnly();
+    }
+
+    /**
+     * Not supported: the phonebook is read-only.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public final void deleteEntry(String name, String number) {
+        throw readOnly();
+    }
+
+    /**
+     * Not supported: the phonebook is read-only. Build a new one from the snapshot instead.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public final void loadSnapshot(Path path) {
+        throw readOnly();
+    }
+}
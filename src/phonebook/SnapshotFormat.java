@@ -0,0 +1,302 @@
+package phonebook;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.zip.CRC32C;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.Varints;
+
+/**
+ * <p>The file format of {@link Phonebook#saveSnapshot(Path)} and {@link Phonebook#loadSnapshot(Path)}. All numbers
+ * are big-endian:</p>
+ *
+ * <ul>
+ *     <li>a header of five {@code int}s: the magic number {@value #MAGIC}, the format {@value #VERSION}, the number
+ *     of entries, and the capacities that the names' and the numbers' tables had when the snapshot was taken;</li>
+ *     <li>every entry, as its name and then its number, each one an unsigned LEB128 byte count followed by that many
+ *     bytes of UTF-8;</li>
+ *     <li>the CRC-32C of everything before it, as an {@code int}.</li>
+ * </ul>
+ *
+ * <p>The capacities stand for the state of the tables' {@link phonebook.utils.PrimeGenerator}s: since capacities
+ * only ever take the primes of its growth sequence, presizing a table to the recorded capacity puts its generator
+ * back where it was, and the load does not resize. Both sides go through a {@link FileChannel} with a buffer of
+ * {@value #BUFFER_SIZE} bytes, so that a snapshot is written and read in a few large system calls.</p>
+ */
+final class SnapshotFormat {
+
+    static final int MAGIC = 0x5048424b; // "PHBK"
+    static final int VERSION = 1;
+
+    private static final int HEADER = 5 * Integer.BYTES;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private SnapshotFormat() {
+    }
+
+    /**
+     * Writes a snapshot to a temporary file next to path, forces it to the device and then moves it over path, so
+     * that path holds either the old snapshot or the whole new one.
+     *
+     * @param path            The file to write.
+     * @param size            The number of entries.
+     * @param namesCapacity   The capacity of the names' table.
+     * @param numbersCapacity The capacity of the numbers' table.
+     * @param entries         Exactly size &lt; name, number &gt; pairs.
+     * @throws IOException if the file cannot be written.
+     * @throws IllegalStateException if entries does not yield exactly size pairs, i.e. the phonebook changed while
+     *                               it was being saved.
+     */
+    static void write(Path path, int size, int namesCapacity, int numbersCapacity, Iterator<KVPair> entries)
+            throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        boolean written = false;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer writer = new Writer(channel);
+            writer.buffer.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(namesCapacity).putInt(numbersCapacity);
+            int count = 0;
+            while (entries.hasNext()) {
+                KVPair pair = entries.next();
+                writer.putString(pair.getKey());
+                writer.putString(pair.getValue());
+                count++;
+            }
+            if (count != size)
+                throw new IllegalStateException("Expected " + size + " entries, found " + count + ".");
+            writer.finish();
+            channel.force(true);
+            written = true;
+        } finally {
+            if (!written)
+                Files.deleteIfExists(temporary);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the checksum in the trailer of a snapshot without verifying it, as an identifier of the snapshot's
+     * contents: two snapshots with the same checksum almost certainly hold the same entries.
+     *
+     * @param path A snapshot file.
+     * @return The CRC-32C of the snapshot, as stored in its last four bytes.
+     * @throws IOException if the file cannot be read or is too short to be a snapshot.
+     */
+    static int checksumOf(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER + Integer.BYTES)
+                throw new IOException("Not a phonebook snapshot: only " + size + " bytes.");
+            ByteBuffer trailer = ByteBuffer.allocate(Integer.BYTES);
+            while (trailer.hasRemaining()) {
+                if (channel.read(trailer, size - trailer.remaining()) < 0)
+                    throw new EOFException("Snapshot truncated while being read.");
+            }
+            return trailer.getInt(0);
+        }
+    }
+
+    private static final class Writer {
+        final FileChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        final CRC32C checksum = new CRC32C();
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putString(String s) throws IOException {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            if (buffer.remaining() < Varints.MAX_BYTES + utf8.length)
+                flush();
+            Varints.put(buffer, utf8.length);
+            if (utf8.length <= buffer.remaining()) {
+                buffer.put(utf8);
+                return;
+            }
+            flush(); // Longer than the buffer: write it out directly
+            checksum.update(utf8);
+            writeFully(ByteBuffer.wrap(utf8));
+        }
+
+        void finish() throws IOException {
+            flush();
+            buffer.putInt((int) checksum.getValue());
+            buffer.flip();
+            writeFully(buffer);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.array(), buffer.arrayOffset(), buffer.limit());
+            writeFully(buffer);
+            buffer.clear();
+        }
+
+        private void writeFully(ByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot, one entry at a time. {@link #open(Path)} checks the header and the checksum of the whole
+     * file before it returns, so that a corrupt snapshot is rejected before anything is loaded from it.
+     */
+    static final class Reader implements AutoCloseable {
+        private final FileChannel channel;
+        private final long end; // Where the checksum starts
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final int size, namesCapacity, numbersCapacity;
+        private int read;
+        private String name, number;
+
+        private Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            end = channel.size() - Integer.BYTES;
+            if (end < HEADER)
+                throw new IOException("Not a phonebook snapshot: only " + channel.size() + " bytes.");
+            buffer.limit(0);
+            fill(HEADER);
+            int magic = buffer.getInt(), version = buffer.getInt();
+            if (magic != MAGIC)
+                throw new IOException("Not a phonebook snapshot: bad magic number " + Integer.toHexString(magic) + ".");
+            if (version != VERSION)
+                throw new IOException("Unsupported snapshot version " + version + "; expected " + VERSION + ".");
+            size = buffer.getInt();
+            namesCapacity = buffer.getInt();
+            numbersCapacity = buffer.getInt();
+            if (size < 0)
+                throw new IOException("Corrupt snapshot: " + size + " entries.");
+            verifyChecksum();
+            channel.position(HEADER);
+            buffer.clear().limit(0);
+        }
+
+        /**
+         * Opens a snapshot and verifies its header and checksum.
+         *
+         * @param path The file to read.
+         * @return A {@link Reader} positioned before the first entry.
+         * @throws IOException if the file cannot be read, is not a snapshot of a supported version, or is corrupt.
+         */
+        static Reader open(Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                return new Reader(channel);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        int namesCapacity() {
+            return namesCapacity;
+        }
+
+        int numbersCapacity() {
+            return numbersCapacity;
+        }
+
+        /**
+         * Reads the next entry, which {@link #name()} and {@link #number()} then return.
+         *
+         * @return {@code true} if there was another entry, {@code false} once all {@link #size()} have been read.
+         * @throws IOException if the file cannot be read or its entries do not match its header.
+         */
+        boolean next() throws IOException {
+            if (read == size) {
+                if (channel.position() - buffer.remaining() != end)
+                    throw new IOException("Corrupt snapshot: trailing bytes after " + size + " entries.");
+                return false;
+            }
+            name = readString();
+            number = readString();
+            read++;
+            return true;
+        }
+
+        String name() {
+            return name;
+        }
+
+        String number() {
+            return number;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private void verifyChecksum() throws IOException {
+            CRC32C checksum = new CRC32C();
+            ByteBuffer trailer = ByteBuffer.allocate(Integer.BYTES);
+            channel.position(0);
+            buffer.clear();
+            for (long left = end; left > 0; ) {
+                buffer.limit((int) Math.min(buffer.capacity(), left));
+                int n = channel.read(buffer);
+                if (n < 0)
+                    throw new EOFException("Snapshot truncated while being read.");
+                buffer.flip();
+                checksum.update(buffer);
+                left -= n;
+                buffer.clear();
+            }
+            while (trailer.hasRemaining()) {
+                if (channel.read(trailer) < 0)
+                    throw new EOFException("Snapshot truncated while being read.");
+            }
+            if (trailer.getInt(0) != (int) checksum.getValue())
+                throw new IOException("Corrupt snapshot: checksum mismatch.");
+        }
+
+        private String readString() throws IOException {
+            int length;
+            while ((length = Varints.get(buffer)) < 0) {
+                if (buffer.remaining() >= Varints.MAX_BYTES)
+                    throw new IOException("Corrupt snapshot: bad length.");
+                fill(buffer.remaining() + 1);
+            }
+            if (length > end)
+                throw new IOException("Corrupt snapshot: bad length " + length + ".");
+            fill(length);
+            String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return s;
+        }
+
+        // Makes sure that at least n bytes of the entries are ready to be read from buffer.
+        private void fill(int n) throws IOException {
+            if (buffer.remaining() >= n)
+                return;
+            if (buffer.capacity() < n) { // A string longer than the buffer
+                ByteBuffer larger = ByteBuffer.allocate(n);
+                larger.put(buffer).flip();
+                buffer = larger;
+            }
+            buffer.compact();
+            while (buffer.position() < n) {
+                if (channel.position() >= end || channel.read(buffer) < 0)
+                    throw new EOFException("Corrupt snapshot: entries run past the end of the file.");
+            }
+            buffer.flip();
+        }
+    }
+}
@@ -0,0 +1,472 @@
+package phonebook;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import phonebook.hashes.*;
+import phonebook.utils.KVPair;
+import phonebook.utils.Keys;
+
+/**
+ * <p>{@link SnapshotPhonebook} is a <b>thread-safe</b> {@link Phonebook} for read-mostly workloads. Readers work on an
+ * immutable snapshot of both indexes, which they find through a single {@code volatile} field: they never take a lock
+ * and never observe a half-applied {@link #addEntry(String, String)}. Writers do not touch the published snapshot at
+ * all. They queue their mutations, and a <b>publisher</b> periodically applies the whole batch to a copy of the snapshot
+ * and publishes the copy with one {@code volatile} write.</p>
+ *
+ * <p>Each index is split into {@value #SHARDS} shards, each one a {@link HashTable} of the requested
+ * {@link CollisionResolver}. Publishing copies only the shards that the batch touches; every other shard is shared,
+ * by reference, between the old snapshot and the new one. A shard of {@link CollisionResolver#HASH_ARRAY_MAPPED_TRIE}
+ * is copied in O(1) time, by taking a {@link PersistentHashTable#snapshot()} of it. The batching interval bounds how
+ * often that copying happens: with an interval of {@code 0}, every write publishes on its own, synchronously;
+ * otherwise a background thread publishes whatever has queued up once per interval, and {@link #flush()} publishes on
+ * demand.</p>
+ *
+ * <p>A write becomes visible to readers, including the writer itself, only once it has been published.
+ * {@link #close()} publishes any pending writes and stops the background thread.</p>
+ *
+ * <p>The secondary indexes are kept up to date by the publisher, under the lock that it publishes under, and their
+ * queries take that lock too, so that they always agree with the snapshot that readers see. Lookups by name or number
+ * never take it.</p>
+ *
+ * @see Phonebook
+ * @see ConcurrentPhonebook
+ */
+public class SnapshotPhonebook extends Phonebook implements AutoCloseable {
+
+    /**
+     * The number of shards of each index.
+     */
+    public static final int SHARDS = 16;
+
+    /**
+     * An immutable pair of indexes. Its tables are never written to once the snapshot has been published.
+     */
+    private static final class Snapshot {
+        final HashTable[] namesToNumbers, numbersToNames;
+        final int size;
+
+        Snapshot(HashTable[] namesToNumbers, HashTable[] numbersToNames) {
+            this.namesToNumbers = namesToNumbers;
+            this.numbersToNames = numbersToNames;
+            int size = 0;
+            for (HashTable shard : namesToNumbers) {
+                size += shard.size();
+            }
+            this.size = size;
+        }
+    }
+
+    private static final class Mutation {
+        final String name, number;
+        final boolean add;
+
+        Mutation(String name, String number, boolean add) {
+            this.name = name;
+            this.number = number;
+            this.add = add;
+        }
+    }
+
+    /**
+     * The snapshot that readers see, along with a read-only {@link HashTable} view of each of its indexes. The views
+     * are the tables that {@link Phonebook} is built on, so that the methods of {@link Phonebook} that this class does
+     * not override read the published snapshot.
+     */
+    private static final class Published {
+        volatile Snapshot snapshot;
+        final HashTable namesToNumbers = new View(true), numbersToNames = new View(false);
+
+        private final class View implements HashTable {
+            private final boolean names;
+
+            View(boolean names) {
+                this.names = names;
+            }
+
+            private HashTable[] shards() {
+                return names ? snapshot.namesToNumbers : snapshot.numbersToNames;
+            }
+
+            @Override
+            public String put(String key, String value) {
+                throw new UnsupportedOperationException("The published tables of a SnapshotPhonebook are read-only.");
+            }
+
+            @Override
+            public String get(String key) {
+                return key == null ? null : shards()[shard(key)].get(key);
+            }
+
+            @Override
+            public String get(CharSequence key) {
+                return key == null ? null : shards()[shard(Keys.hash(key))].get(key);
+            }
+
+            @Override
+            public String get(byte[] utf8, int offset, int length) {
+                return shards()[shard(Keys.hashUtf8(utf8, offset, length))].get(utf8, offset, length);
+            }
+
+            // All keys are looked up in the same snapshot.
+            @Override
+            public void getAll(String[] keys, String[] out) {
+                if (keys == null || out == null || out.length < keys.length)
+                    throw new IllegalArgumentException("Provided: keys=" + (keys == null ? null : keys.length + " keys")
+                            + " and out=" + (out == null ? null : out.length + " cells"));
+                HashTable[] shards = shards();
+                for (int i = 0; i < keys.length; i++) {
+                    out[i] = keys[i] == null ? null : shards[shard(keys[i])].get(keys[i]);
+                }
+            }
+
+            @Override
+            public String remove(String key) {
+                throw new UnsupportedOperationException("The published tables of a SnapshotPhonebook are read-only.");
+            }
+
+            @Override
+            public boolean containsKey(String key) {
+                return get(key) != null;
+            }
+
+            @Override
+            public boolean containsValue(String value) {
+                for (HashTable shard : shards()) {
+                    if (shard.containsValue(value))
+                        return true;
+                }
+                return false;
+            }
+
+            @Override
+            public int size() {
+                return snapshot.size;
+            }
+
+            // The total over the shards.
+            @Override
+            public int capacity() {
+                return SnapshotPhonebook.capacity(shards());
+            }
+
+            // Covers a single snapshot, so it is unaffected by later writes.
+            @Override
+            public Spliterator<KVPair> spliterator() {
+                return Arrays.stream(shards()).flatMap(HashTable::entries).spliterator();
+            }
+        }
+    }
+
+    private final CollisionResolver namesToNumbersHash, numbersToNamesHash;
+    private final Published published;
+    private List<Mutation> pending = new ArrayList<>(); // Guarded by pendingLock
+    private final Object pendingLock = new Object(), publishLock = new Object();
+    private final ScheduledExecutorService publisher;
+
+    /**
+     * Instantiates a new {@link SnapshotPhonebook} that publishes every write as soon as it is made.
+     *
+     * @param namesToNumbersHash A {@link CollisionResolver} that will govern which subtype of {@link HashTable} will be used to
+     *                           create our hash tables with <b>peoples' names</b> as keys.
+     * @param numbersToNamesHash A {@link CollisionResolver} that will govern which subtype of {@link HashTable} will be used to
+     *                           create our hash tables with <b>phone numbers</b> as keys.
+     * @see #SnapshotPhonebook(CollisionResolver, CollisionResolver, long)
+     */
+    public SnapshotPhonebook(CollisionResolver namesToNumbersHash, CollisionResolver numbersToNamesHash) {
+        this(namesToNumbersHash, numbersToNamesHash, 0);
+    }
+
+    /**
+     * Instantiates a new {@link SnapshotPhonebook} that publishes the writes it collects once every
+     * {@code batchingIntervalMillis} milliseconds.
+     *
+     * @param namesToNumbersHash     A {@link CollisionResolver} that will govern which subtype of {@link HashTable} will be used to
+     *                               create our hash tables with <b>peoples' names</b> as keys.
+     * @param numbersToNamesHash     A {@link CollisionResolver} that will govern which subtype of {@link HashTable} will be used to
+     *                               create our hash tables with <b>phone numbers</b> as keys.
+     * @param batchingIntervalMillis The number of milliseconds between two publications, or {@code 0} to publish
+     *                               every write synchronously.
+     * @throws IllegalArgumentException if {@code batchingIntervalMillis} is negative.
+     */
+    public SnapshotPhonebook(CollisionResolver namesToNumbersHash, CollisionResolver numbersToNamesHash,
+                             long batchingIntervalMillis) {
+        this(new Published(), namesToNumbersHash, numbersToNamesHash, batchingIntervalMillis);
+    }
+
+    private SnapshotPhonebook(Published published, CollisionResolver namesToNumbersHash,
+                              CollisionResolver numbersToNamesHash, long batchingIntervalMillis) {
+        super(published.namesToNumbers, published.numbersToNames);
+        if (batchingIntervalMillis < 0)
+            throw new IllegalArgumentException("Batching interval must be non-negative, provided: " + batchingIntervalMillis);
+        this.namesToNumbersHash = namesToNumbersHash;
+        this.numbersToNamesHash = numbersToNamesHash;
+        this.published = published;
+        HashTable[] names = new HashTable[SHARDS], numbers = new HashTable[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            names[i] = newHashTable(namesToNumbersHash);
+            numbers[i] = newHashTable(numbersToNamesHash);
+        }
+        published.snapshot = new Snapshot(names, numbers);
+        if (batchingIntervalMillis == 0) {
+            publisher = null;
+        } else {
+            publisher = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "SnapshotPhonebook publisher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            publisher.scheduleWithFixedDelay(this::flush, batchingIntervalMillis, batchingIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static int shard(String key) {
+        return shard(key.hashCode());
+    }
+
+    private static int shard(int hash) {
+        return (hash & 0x7fffffff) % SHARDS;
+    }
+
+    /** {@inheritDoc} The entry becomes visible once it has been published. */
+    @Override
+    public void addEntry(String name, String number) {
+        if(name == null || number == null)
+            throw new IllegalArgumentException("Provided: name=" + name + " and number= " + number);
+        enqueue(new Mutation(name, number, true));
+    }
+
+    /** {@inheritDoc} The entries are queued together, and become visible once they have been published. */
+    @Override
+    public void addEntries(List<KVPair> entries) {
+        checkEntries(entries);
+        synchronized (pendingLock) {
+            for (KVPair entry : entries) {
+                pending.add(new Mutation(entry.getKey(), entry.getValue(), true));
+            }
+        }
+        if (publisher == null || publisher.isShutdown())
+            flush();
+    }
+
+    /** {@inheritDoc} The deletion becomes visible once it has been published. */
+    @Override
+    public void deleteEntry(String name, String number) {
+        if(number == null || name == null)
+            throw new IllegalArgumentException("Provided: name=" + name + " and number= " + number);
+        enqueue(new Mutation(name, number, false));
+    }
+
+    private void enqueue(Mutation mutation) {
+        synchronized (pendingLock) {
+            pending.add(mutation);
+        }
+        if (publisher == null || publisher.isShutdown())
+            flush();
+    }
+
+    /**
+     * Publishes every write made so far. When this method returns, readers see all writes that happened before the
+     * call.
+     */
+    public void flush() {
+        synchronized (publishLock) {
+            List<Mutation> batch;
+            synchronized (pendingLock) {
+                if (pending.isEmpty())
+                    return;
+                batch = pending;
+                pending = new ArrayList<>();
+            }
+            Snapshot current = published.snapshot;
+            HashTable[] names = current.namesToNumbers.clone(), numbers = current.numbersToNames.clone();
+            boolean[] copiedNames = new boolean[SHARDS], copiedNumbers = new boolean[SHARDS];
+            for (Mutation mutation : batch) {
+                int nameShard = shard(mutation.name), numberShard = shard(mutation.number);
+                if (!copiedNames[nameShard]) {
+                    names[nameShard] = copy(names[nameShard], namesToNumbersHash);
+                    copiedNames[nameShard] = true;
+                }
+                if (!copiedNumbers[numberShard]) {
+                    numbers[numberShard] = copy(numbers[numberShard], numbersToNamesHash);
+                    copiedNumbers[numberShard] = true;
+                }
+                if (mutation.add) {
+                    names[nameShard].put(mutation.name, mutation.number);
+                    numbers[numberShard].put(mutation.number, mutation.name);
+                    nameAdded(mutation.name, mutation.number);
+                    numberAdded(mutation.number);
+                } else {
+                    names[nameShard].remove(mutation.name);
+                    numbers[numberShard].remove(mutation.number);
+                    nameRemoved(mutation.name);
+                    numberRemoved(mutation.number);
+                }
+            }
+            published.snapshot = new Snapshot(names, numbers);
+        }
+    }
+
+    // Tries share all of their storage with their snapshots, so copying one takes O(1) time. Other tables are copied
+    // into a table presized to the capacity of the shard, so that the copy never resizes.
+    private static HashTable copy(HashTable shard, CollisionResolver resolver) {
+        if (shard instanceof PersistentHashTable)
+            return ((PersistentHashTable) shard).snapshot();
+        HashTable copy = newHashTable(resolver);
+        copy.presize(shard.capacity());
+        shard.forEach(pair -> copy.put(pair.getKey(), pair.getValue()));
+        return copy;
+    }
+
+    /** {@inheritDoc} The snapshot file holds a single published snapshot; the capacities it records are the totals
+     * over the shards. */
+    @Override
+    public void saveSnapshot(Path path) throws IOException {
+        Snapshot current = published.snapshot;
+        SnapshotFormat.write(path, current.size, capacity(current.namesToNumbers), capacity(current.numbersToNames),
+                Arrays.stream(current.namesToNumbers).flatMap(HashTable::entries).iterator());
+    }
+
+    /** {@inheritDoc} The shards are filled off to the side, each one presized to its share of the recorded capacities,
+     * and then published all at once. */
+    @Override
+    public void loadSnapshot(Path path) throws IOException {
+        if (published.snapshot.size != 0)
+            throw new IllegalStateException("Snapshots can only be loaded into an empty phonebook.");
+        HashTable[] names = new HashTable[SHARDS], numbers = new HashTable[SHARDS];
+        try (SnapshotFormat.Reader reader = SnapshotFormat.Reader.open(path)) {
+            for (int i = 0; i < SHARDS; i++) {
+                names[i] = newHashTable(namesToNumbersHash);
+                names[i].presize((reader.namesCapacity() + SHARDS - 1) / SHARDS);
+                numbers[i] = newHashTable(numbersToNamesHash);
+                numbers[i].presize((reader.numbersCapacity() + SHARDS - 1) / SHARDS);
+            }
+            while (reader.next()) {
+                String name = reader.name(), number = reader.number();
+                names[shard(name)].put(name, number);
+                numbers[shard(number)].put(number, name);
+            }
+        }
+        synchronized (publishLock) {
+            synchronized (pendingLock) {
+                if (published.snapshot.size != 0 || !pending.isEmpty())
+                    throw new IllegalStateException("Snapshots can only be loaded into an empty phonebook.");
+            }
+            for (HashTable shard : names) {
+                shard.forEach(pair -> {
+                    nameAdded(pair.getKey(), pair.getValue());
+                    numberAdded(pair.getValue());
+                });
+            }
+            published.snapshot = new Snapshot(names, numbers);
+        }
+    }
+
+    private static int capacity(HashTable[] shards) {
+        long capacity = 0;
+        for (HashTable shard : shards) {
+            capacity += shard.capacity();
+        }
+        return (int) Math.min(capacity, Integer.MAX_VALUE);
+    }
+
+    /** {@inheritDoc} The index is built from the published snapshot, under the publisher's lock. */
+    @Override
+    public void enableNamePrefixIndex() {
+        synchronized (publishLock) {
+            super.enableNamePrefixIndex();
+        }
+    }
+
+    @Override
+    public List<String> findNamesByPrefix(String prefix, int limit) {
+        synchronized (publishLock) {
+            return super.findNamesByPrefix(prefix, limit);
+        }
+    }
+
+    @Override
+    public void enableNumberPrefixIndex() {
+        synchronized (publishLock) {
+            super.enableNumberPrefixIndex();
+        }
+    }
+
+    /** {@inheritDoc} The matching numbers are copied out under the publisher's lock, so the {@link Stream} is
+     * unaffected by later publications.
+     */
+    @Override
+    public Stream<String> findNumbersByPrefix(String prefix) {
+        synchronized (publishLock) {
+            return super.findNumbersByPrefix(prefix).collect(Collectors.toList()).stream();
+        }
+    }
+
+    @Override
+    public int countNumbersByPrefix(String prefix) {
+        synchronized (publishLock) {
+            return super.countNumbersByPrefix(prefix);
+        }
+    }
+
+    @Override
+    public void enableSortedNameIndex() {
+        synchronized (publishLock) {
+            super.enableSortedNameIndex();
+        }
+    }
+
+    @Override
+    public List<KVPair> range(String fromName, String toName) {
+        synchronized (publishLock) {
+            return super.range(fromName, toName);
+        }
+    }
+
+    @Override
+    public List<KVPair> page(String afterName, int n) {
+        synchronized (publishLock) {
+            return super.page(afterName, n);
+        }
+    }
+
+    @Override
+    public void enableFuzzyNameIndex() {
+        synchronized (publishLock) {
+            super.enableFuzzyNameIndex();
+        }
+    }
+
+    @Override
+    public List<String> findSimilarNames(String name, int k) {
+        synchronized (publishLock) {
+            return super.findSimilarNames(name, k);
+        }
+    }
+
+    @Override
+    public int size() {
+        return published.snapshot.size;
+    }
+
+    /**
+     * Publishes any pending writes and stops the background publisher, if there is one. Writes made after this
+     * method returns are published synchronously.
+     */
+    @Override
+    public void close() {
+        if (publisher != null)
+            publisher.shutdownNow();
+        flush();
+    }
+}
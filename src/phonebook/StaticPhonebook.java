@@ -0,0 +1,40 @@
+package phonebook;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import phonebook.hashes.MinimalPerfectHashTable;
+import phonebook.utils.KVPair;
+
+/**
+ * <p>{@link StaticPhonebook} is a <b>read-only</b> {@link Phonebook} over two {@link MinimalPerfectHashTable}s, for a
+ * phonebook whose entries are final: {@link #of(Phonebook)} freezes the entries of any {@link Phonebook}, building one
+ * table after the other from the same copy of the entries, after which every lookup by name or by number reads one
+ * slot and compares one key.</p>
+ *
+ * <p>Since nothing ever changes, a {@link StaticPhonebook} is thread-safe. {@link #addEntry(String, String)},
+ * {@link #deleteEntry(String, String)} and {@link #loadSnapshot(Path)} throw an
+ * {@link UnsupportedOperationException}. The secondary indexes may be enabled, as on any {@link Phonebook}.</p>
+ *
+ * @see MinimalPerfectHashTable
+ */
+public class StaticPhonebook extends ReadOnlyPhonebook {
+
+    private StaticPhonebook(MinimalPerfectHashTable namesToNumbers, MinimalPerfectHashTable numbersToNames) {
+        super(namesToNumbers, numbersToNames);
+    }
+
+    /**
+     * Builds a read-only copy of a phonebook. The phonebook should not change meanwhile, unless it is thread-safe.
+     *
+     * @param phonebook The phonebook to copy.
+     * @return A {@link StaticPhonebook} with the entries of phonebook.
+     */
+    public static StaticPhonebook of(Phonebook phonebook) {
+        List<KVPair> entries = phonebook.entries().collect(Collectors.toList()); // Both tables from one view
+        return new StaticPhonebook(MinimalPerfectHashTable.build(entries.iterator()),
+                MinimalPerfectHashTable.build(
+                        entries.stream().map(pair -> new KVPair(pair.getValue(), pair.getKey())).iterator()));
+    }
+}
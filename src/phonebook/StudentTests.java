@@ -4,11 +4,24 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import phonebook.hashes.*;
+import phonebook.utils.KVPair;
 import phonebook.utils.NoMorePrimesException;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 import static phonebook.hashes.CollisionResolver.*;
@@ -253,5 +266,739 @@ public class StudentTests {
 
     }
 
+    // Every phonebook should stream back exactly the entries that were added to it.
+    @Test
+    public void testEntries() {
+        for (CollisionResolver namesToPhones : resolvers) {
+            for (CollisionResolver phonesToNames : resolvers) {
+                pb = new Phonebook(namesToPhones, phonesToNames);
+                Map<String, String> expected = new HashMap<>();
+                for (int i = 0; i < 100; i++) {
+                    pb.addEntry("Name" + i, "555-" + i);
+                    expected.put("Name" + i, "555-" + i);
+                }
+                Map<String, String> streamed = new HashMap<>();
+                pb.entries().forEach(pair -> streamed.put(pair.getKey(), pair.getValue()));
+                assertEquals(format("Streamed entries differ. ", namesToPhones, phonesToNames), expected, streamed);
+                assertEquals(format("Parallel stream count differs. ", namesToPhones, phonesToNames), 100,
+                        pb.entries().parallel().count());
+            }
+        }
+    }
+
+    // The thread-safe backend should behave like any other when used from a single thread.
+    @Test
+    public void testConcurrentSeparateChainingBackend() {
+        pb = new Phonebook(CONCURRENT_SEPARATE_CHAINING, CONCURRENT_SEPARATE_CHAINING);
+        for (Map.Entry<String, String> entry : testingPhoneBook.entrySet()) {
+            pb.addEntry(entry.getKey(), entry.getValue());
+        }
+        assertEquals("Jessie's number is wrong.", "705-12-7500", pb.getNumberOf("Jessie"));
+        assertEquals("Mary should own her number.", "Mary", pb.getOwnerOf("888-1212-3340"));
+        pb.deleteEntry("Mary", "888-1212-3340");
+        assertNull("Mary should be gone.", pb.getNumberOf("Mary"));
+        assertNull("Mary's number should be gone.", pb.getOwnerOf("888-1212-3340"));
+    }
+
+    // A ConcurrentPhonebook should behave like a Phonebook over every combination of resolvers.
+    @Test
+    public void testConcurrentPhonebook() {
+        for (CollisionResolver namesToPhones : CollisionResolver.values()) {
+            for (CollisionResolver phonesToNames : CollisionResolver.values()) {
+                pb = new ConcurrentPhonebook(namesToPhones, phonesToNames);
+                for (int i = 0; i < 100; i++) {
+                    pb.addEntry("Name" + i, "555-" + i);
+                }
+                for (int i = 0; i < 100; i += 2) {
+                    pb.deleteEntry("Name" + i, "555-" + i);
+                }
+                assertEquals(format("Size is wrong. ", namesToPhones, phonesToNames), 50, pb.size());
+                for (int i = 0; i < 100; i++) {
+                    assertEquals(format("Lookup by name is wrong. ", namesToPhones, phonesToNames),
+                            i % 2 == 0 ? null : "555-" + i, pb.getNumberOf("Name" + i));
+                    assertEquals(format("Lookup by number is wrong. ", namesToPhones, phonesToNames),
+                            i % 2 == 0 ? null : "Name" + i, pb.getOwnerOf("555-" + i));
+                }
+                assertEquals(format("Streamed entries differ. ", namesToPhones, phonesToNames), 50, pb.entries().count());
+            }
+        }
+    }
+
+    // Optimistic readers should never lose an entry while writers keep resizing the tables underneath them.
+    @Test
+    public void testConcurrentPhonebookUnderContention() throws InterruptedException {
+        pb = new ConcurrentPhonebook(LINEAR_PROBING, SEPARATE_CHAINING);
+        for (int i = 0; i < 50; i++) {
+            pb.addEntry("Preloaded" + i, "555-" + i);
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread[] readers = new Thread[2], writers = new Thread[2];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(() -> {
+                while (!done.get()) {
+                    for (int i = 0; i < 50; i++) {
+                        if (!("555-" + i).equals(pb.getNumberOf("Preloaded" + i))
+                                || !("Preloaded" + i).equals(pb.getOwnerOf("555-" + i)))
+                            failure.compareAndSet(null, "Reader lost Preloaded" + i);
+                    }
+                }
+            });
+        }
+        for (int t = 0; t < writers.length; t++) {
+            int id = t;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    pb.addEntry("Writer" + id + "-" + i, id + "-" + i);
+                    if (i % 2 == 0)
+                        pb.deleteEntry("Writer" + id + "-" + i, id + "-" + i);
+                }
+            });
+        }
+        for (Thread reader : readers)
+            reader.start();
+        for (Thread writer : writers)
+            writer.start();
+        for (Thread writer : writers)
+            writer.join();
+        done.set(true);
+        for (Thread reader : readers)
+            reader.join();
+        assertNull(failure.get());
+        assertEquals(50 + writers.length * 500, pb.size());
+    }
+
+    // A SnapshotPhonebook that publishes every write should behave like a Phonebook over every combination of resolvers.
+    @Test
+    public void testSnapshotPhonebook() {
+        for (CollisionResolver namesToPhones : resolvers) {
+            for (CollisionResolver phonesToNames : resolvers) {
+                SnapshotPhonebook snapshots = new SnapshotPhonebook(namesToPhones, phonesToNames);
+                for (int i = 0; i < 200; i++) {
+                    snapshots.addEntry("Name" + i, "555-" + i);
+                }
+                for (int i = 0; i < 200; i += 2) {
+                    snapshots.deleteEntry("Name" + i, "555-" + i);
+                }
+                assertEquals(format("Size is wrong. ", namesToPhones, phonesToNames), 100, snapshots.size());
+                for (int i = 0; i < 200; i++) {
+                    assertEquals(format("Lookup by name is wrong. ", namesToPhones, phonesToNames),
+                            i % 2 == 0 ? null : "555-" + i, snapshots.getNumberOf("Name" + i));
+                    assertEquals(format("Lookup by number is wrong. ", namesToPhones, phonesToNames),
+                            i % 2 == 0 ? null : "Name" + i, snapshots.getOwnerOf("555-" + i));
+                }
+                assertEquals(format("Streamed entries differ. ", namesToPhones, phonesToNames), 100,
+                        snapshots.entries().count());
+            }
+        }
+    }
+
+    // Batched writes should stay invisible to readers until they are published, and then appear all at once.
+    @Test
+    public void testSnapshotPhonebookBatching() {
+        try (SnapshotPhonebook snapshots = new SnapshotPhonebook(LINEAR_PROBING, SEPARATE_CHAINING, 3_600_000)) {
+            for (Map.Entry<String, String> entry : testingPhoneBook.entrySet()) {
+                snapshots.addEntry(entry.getKey(), entry.getValue());
+            }
+            assertTrue("Nothing should have been published yet.", snapshots.isEmpty());
+            assertNull("Jessie should not be visible yet.", snapshots.getNumberOf("Jessie"));
+            snapshots.flush();
+            assertEquals("All four entries should have been published together.", 4, snapshots.size());
+            assertEquals("Jessie's number is wrong.", "705-12-7500", snapshots.getNumberOf("Jessie"));
+            snapshots.deleteEntry("Mary", "888-1212-3340");
+            assertEquals("Mary's deletion should not be visible yet.", "Mary", snapshots.getOwnerOf("888-1212-3340"));
+        }
+    }
+
+    // A CompactPhonebook keeps names and numbers one-to-one, so it can never disagree with itself about its size.
+    @Test
+    public void testCompactPhonebook() {
+        pb = new CompactPhonebook();
+        for (Map.Entry<String, String> entry : testingPhoneBook.entrySet()) {
+            pb.addEntry(entry.getKey(), entry.getValue());
+        }
+        // Arnold and Tiffany share a number, so only one of them can own it.
+        assertEquals("Arnold and Tiffany should share one entry.", 3, pb.size());
+        String owner = pb.getOwnerOf("894-59-0011");
+        assertEquals("The owner's number is wrong.", "894-59-0011", pb.getNumberOf(owner));
+        pb.deleteEntry("Mary", "888-1212-3340");
+        assertNull("Mary should be gone.", pb.getNumberOf("Mary"));
+        assertNull("Mary's number should be gone.", pb.getOwnerOf("888-1212-3340"));
+        assertEquals("Streamed entries differ.", 2, pb.entries().count());
+        for (int i = 0; i < 10000; i++) {
+            pb.addEntry("Name" + i, "555-" + i);
+        }
+        assertEquals("CompactPhonebook should not run out of room.", 10002, pb.size());
+    }
+
+    // The name prefix index should follow additions and deletions on every kind of phonebook that supports it.
+    @Test
+    public void testFindNamesByPrefix() {
+        Phonebook[] phonebooks = { new Phonebook(LINEAR_PROBING, SEPARATE_CHAINING),
+                new ConcurrentPhonebook(QUADRATIC_PROBING, LINEAR_PROBING), new CompactPhonebook(),
+                new SnapshotPhonebook(HASH_ARRAY_MAPPED_TRIE, SEPARATE_CHAINING) };
+        for (Phonebook phonebook : phonebooks) {
+            phonebook.addEntry("Johanna", "555-0001");
+            phonebook.enableNamePrefixIndex(); // Existing entries are indexed too
+            phonebook.addEntry("John", "555-0002");
+            phonebook.addEntry("Mary", "555-0003");
+            phonebook.addEntry("Joe", "555-0004");
+            String kind = phonebook.getClass().getSimpleName() + ": ";
+            assertEquals(kind + "Prefix search is wrong.", List.of("Joe", "Johanna", "John"), phonebook.findNamesByPrefix("Jo", 10));
+            assertEquals(kind + "Limit was not respected.", List.of("Joe"), phonebook.findNamesByPrefix("Jo", 1));
+            phonebook.deleteEntry("John", "555-0002");
+            assertEquals(kind + "Deleted names should not be found.", List.of("Johanna"), phonebook.findNamesByPrefix("Joh", 10));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFindNamesByPrefixWithoutIndex() {
+        new Phonebook(LINEAR_PROBING, LINEAR_PROBING).findNamesByPrefix("Jo", 10);
+    }
+
+    // The number prefix index should follow additions and deletions on every kind of phonebook that supports it.
+    @Test
+    public void testNumbersByPrefix() {
+        Phonebook[] phonebooks = { new Phonebook(SEPARATE_CHAINING, QUADRATIC_PROBING),
+                new ConcurrentPhonebook(LINEAR_PROBING, ORDERED_LINEAR_PROBING), new CompactPhonebook(),
+                new SnapshotPhonebook(QUADRATIC_PROBING, HASH_ARRAY_MAPPED_TRIE) };
+        for (Phonebook phonebook : phonebooks) {
+            for (Map.Entry<String, String> entry : testingPhoneBook.entrySet()) {
+                if (!entry.getKey().equals("Tiffany")) // Arnold keeps his number in every kind of phonebook
+                    phonebook.addEntry(entry.getKey(), entry.getValue());
+            }
+            phonebook.enableNumberPrefixIndex(); // Existing entries are indexed too
+            phonebook.addEntry("Joe", "894-59-1234");
+            String kind = phonebook.getClass().getSimpleName() + ": ";
+            assertEquals(kind + "Area code count is wrong.", 2, phonebook.countNumbersByPrefix("894"));
+            assertEquals(kind + "Prefix search is wrong.", List.of("894-59-0011", "894-59-1234"),
+                    phonebook.findNumbersByPrefix("894 59").collect(Collectors.toList()));
+            phonebook.deleteEntry("Joe", "894-59-1234");
+            assertEquals(kind + "Deleted numbers should not be counted.", 1, phonebook.countNumbersByPrefix("89459"));
+            assertEquals(kind + "Every number should match the empty prefix.", 3, phonebook.countNumbersByPrefix(""));
+        }
+    }
+
+    // Paging through the sorted name index should visit every entry once, in alphabetical order.
+    @Test
+    public void testSortedNameIndex() {
+        Phonebook[] phonebooks = { new Phonebook(QUADRATIC_PROBING, SEPARATE_CHAINING),
+                new ConcurrentPhonebook(ORDERED_LINEAR_PROBING, LINEAR_PROBING), new CompactPhonebook(),
+                new SnapshotPhonebook(LINEAR_PROBING, QUADRATIC_PROBING) };
+        for (Phonebook phonebook : phonebooks) {
+            for (int i = 0; i < 50; i++) {
+                phonebook.addEntry("Name" + (char) ('A' + i % 26) + i, "555-" + i);
+            }
+            phonebook.enableSortedNameIndex(); // Existing entries are indexed too
+            for (int i = 50; i < 100; i++) {
+                phonebook.addEntry("Name" + (char) ('A' + i % 26) + i, "555-" + i);
+            }
+            phonebook.deleteEntry("NameA0", "555-0");
+            String kind = phonebook.getClass().getSimpleName() + ": ";
+            List<String> paged = new ArrayList<>();
+            String after = null;
+            for (List<KVPair> page = phonebook.page(after, 7); !page.isEmpty(); page = phonebook.page(after, 7)) {
+                for (KVPair pair : page) {
+                    assertEquals(kind + "Paged number is wrong.", phonebook.getNumberOf(pair.getKey()), pair.getValue());
+                    paged.add(pair.getKey());
+                }
+                after = paged.get(paged.size() - 1);
+            }
+            assertEquals(kind + "Paging should visit every entry.", 99, paged.size());
+            List<String> sorted = new ArrayList<>(paged);
+            Collections.sort(sorted);
+            assertEquals(kind + "Pages should be in alphabetical order.", sorted, paged);
+            assertEquals(kind + "Range is wrong.", 4, phonebook.range("NameB", "NameC").size());
+        }
+    }
+
+    // A mistyped name should still lead to the right entry once the fuzzy name index is enabled.
+    @Test
+    public void testFindSimilarNames() {
+        Phonebook[] phonebooks = { new Phonebook(LINEAR_PROBING, LINEAR_PROBING),
+                new ConcurrentPhonebook(SEPARATE_CHAINING, QUADRATIC_PROBING), new CompactPhonebook(),
+                new SnapshotPhonebook(ORDERED_LINEAR_PROBING, SEPARATE_CHAINING) };
+        for (Phonebook phonebook : phonebooks) {
+            for (Map.Entry<String, String> entry : testingPhoneBook.entrySet()) {
+                phonebook.addEntry(entry.getKey(), entry.getValue());
+            }
+            phonebook.enableFuzzyNameIndex(); // Existing entries are indexed too
+            phonebook.addEntry("Jessica", "705-12-7501");
+            String kind = phonebook.getClass().getSimpleName() + ": ";
+            assertEquals(kind + "Closest names are wrong.", List.of("Jessie", "Jessica"), phonebook.findSimilarNames("Jesse", 2));
+            phonebook.deleteEntry("Jessie", "705-12-7500");
+            assertEquals(kind + "Deleted names should not be found.", List.of("Jessica"), phonebook.findSimilarNames("Jesse", 1));
+        }
+    }
+
+    // Batched lookups should find what one lookup at a time finds, in every kind of phonebook. Arnold and Tiffany
+    // share a number, so which of them owns it is left to the phonebook.
+    @Test
+    public void testBatchLookups() {
+        List<Phonebook> phonebooks = new ArrayList<>();
+        for (CollisionResolver resolver : CollisionResolver.values()) {
+            phonebooks.add(new Phonebook(resolver, resolver));
+        }
+        phonebooks.add(new ConcurrentPhonebook(LINEAR_PROBING, QUADRATIC_PROBING));
+        phonebooks.add(new CompactPhonebook());
+        phonebooks.add(new SnapshotPhonebook(LINEAR_PROBING, SEPARATE_CHAINING));
+        String[] names = testingPhoneBook.keySet().toArray(new String[0]);
+        String[] queries = new String[names.length + 2], out = new String[queries.length];
+        System.arraycopy(names, 0, queries, 0, names.length);
+        queries[names.length] = "Nobody";
+        String[] numbers = new String[queries.length];
+        for (int i = 0; i < names.length; i++) {
+            numbers[i] = testingPhoneBook.get(names[i]);
+        }
+        numbers[names.length] = "000-00-0000";
+        for (Phonebook phonebook : phonebooks) {
+            String kind = phonebook.getClass().getSimpleName() + ": ";
+            for (Map.Entry<String, String> entry : testingPhoneBook.entrySet()) {
+                phonebook.addEntry(entry.getKey(), entry.getValue());
+            }
+            phonebook.getNumbersOf(queries, out);
+            for (int i = 0; i < names.length; i++) {
+                assertEquals(kind + "Batched number is wrong.", phonebook.getNumberOf(names[i]), out[i]);
+            }
+            assertNull(kind + "Missing names should map to null.", out[names.length]);
+            assertNull(kind + "Null names should map to null.", out[names.length + 1]);
+            phonebook.getOwnersOf(numbers, out);
+            for (int i = 0; i < names.length; i++) {
+                assertEquals(kind + "Batched owner is wrong.", phonebook.getOwnerOf(numbers[i]), out[i]);
+            }
+            assertNull(kind + "Missing numbers should map to null.", out[names.length]);
+        }
+    }
+
+    // Lookups from a CharSequence or UTF-8 bytes should find what String lookups find, and allocate nothing on the
+    // phonebooks whose tables look keys up in place.
+    @Test
+    public void testInPlaceLookups() {
+        List<Phonebook> phonebooks = new ArrayList<>();
+        for (CollisionResolver resolver : CollisionResolver.values()) {
+            phonebooks.add(new Phonebook(resolver, resolver));
+        }
+        phonebooks.add(new ConcurrentPhonebook(LINEAR_PROBING, QUADRATIC_PROBING));
+        phonebooks.add(new CompactPhonebook());
+        phonebooks.add(new SnapshotPhonebook(LINEAR_PROBING, SEPARATE_CHAINING));
+        StringBuilder query = new StringBuilder();
+        for (Phonebook phonebook : phonebooks) {
+            String kind = phonebook.getClass().getSimpleName() + ": ";
+            for (Map.Entry<String, String> entry : testingPhoneBook.entrySet()) {
+                phonebook.addEntry(entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<String, String> entry : testingPhoneBook.entrySet()) {
+                for (String key : new String[] { entry.getKey(), entry.getValue(), entry.getKey() + "?" }) {
+                    query.setLength(0);
+                    query.append(key);
+                    byte[] utf8 = ("GET " + key).getBytes(StandardCharsets.UTF_8);
+                    assertEquals(kind + "Number is wrong.", phonebook.getNumberOf(key), phonebook.getNumberOf(query));
+                    assertEquals(kind + "Number is wrong.", phonebook.getNumberOf(key), phonebook.getNumberOf(utf8, 4, utf8.length - 4));
+                    assertEquals(kind + "Owner is wrong.", phonebook.getOwnerOf(key), phonebook.getOwnerOf(query));
+                    assertEquals(kind + "Owner is wrong.", phonebook.getOwnerOf(key), phonebook.getOwnerOf(utf8, 4, utf8.length - 4));
+                }
+            }
+        }
+
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        byte[] utf8 = "Jessie".getBytes(StandardCharsets.UTF_8);
+        query.setLength(0);
+        query.append("705-12-7500");
+        for (Phonebook phonebook : new Phonebook[] { phonebooks.get(LINEAR_PROBING.ordinal()), new CompactPhonebook() }) {
+            phonebook.addEntry("Jessie", "705-12-7500");
+            String kind = phonebook.getClass().getSimpleName() + ": ";
+            long before = threads.getThreadAllocatedBytes(thread);
+            int found = 0;
+            for (int i = 0; i < 10_000; i++) {
+                found += phonebook.getNumberOf(utf8, 0, utf8.length) != null ? 1 : 0;
+                found += phonebook.getOwnerOf(query) != null ? 1 : 0;
+            }
+            long allocated = threads.getThreadAllocatedBytes(thread) - before;
+            assertEquals(kind + "Lookups failed.", 20_000, found);
+            // A single String per lookup would take hundreds of kilobytes; allow for unrelated JVM noise only.
+            assertTrue(kind + "Lookups allocated " + allocated + " bytes.", allocated < found);
+        }
+    }
+
+    // A snapshot of a phonebook over tries should keep the entries of the moment it was taken, whatever happens next.
+    @Test
+    public void testPhonebookSnapshot() {
+        Phonebook live = new ConcurrentPhonebook(HASH_ARRAY_MAPPED_TRIE, HASH_ARRAY_MAPPED_TRIE);
+        for (int i = 0; i < 100; i++) {
+            live.addEntry("Name" + i, "555-" + i);
+        }
+        Phonebook snapshot = live.snapshot();
+        for (int i = 0; i < 100; i += 2) {
+            live.deleteEntry("Name" + i, "555-" + i);
+        }
+        live.addEntry("Jessie", "705-12-7500");
+        snapshot.addEntry("Mary", "888-1212-3340");
+        assertEquals("The snapshot should not see later deletions.", 101, snapshot.size());
+        assertEquals("The phonebook should not see writes to the snapshot.", 51, live.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("Name" + i + "'s number is wrong in the snapshot.", "555-" + i, snapshot.getNumberOf("Name" + i));
+            assertEquals("555-" + i + "'s owner is wrong in the snapshot.", "Name" + i, snapshot.getOwnerOf("555-" + i));
+        }
+        assertNull("The snapshot should not see later additions.", snapshot.getOwnerOf("705-12-7500"));
+        assertNull("The phonebook should not see writes to the snapshot.", live.getNumberOf("Mary"));
+        try {
+            new Phonebook(HASH_ARRAY_MAPPED_TRIE, LINEAR_PROBING).snapshot();
+            fail("Only phonebooks over tries should be snapshotted.");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    // A snapshot should load into any kind of phonebook, whatever kind saved it, with every entry and no resizing.
+    @Test
+    public void testSnapshots() throws IOException {
+        Path file = Files.createTempFile("phonebook", ".snapshot");
+        try {
+            Phonebook[] phonebooks = { new Phonebook(LINEAR_PROBING, SEPARATE_CHAINING),
+                    new ConcurrentPhonebook(QUADRATIC_PROBING, ORDERED_LINEAR_PROBING), new CompactPhonebook(),
+                    new SnapshotPhonebook(SEPARATE_CHAINING, LINEAR_PROBING) };
+            for (Phonebook saved : phonebooks) {
+                Phonebook source = saved instanceof SnapshotPhonebook ? new SnapshotPhonebook(SEPARATE_CHAINING,
+                        LINEAR_PROBING) : saved instanceof CompactPhonebook ? new CompactPhonebook()
+                        : new Phonebook(LINEAR_PROBING, QUADRATIC_PROBING);
+                for (int i = 0; i < 1200; i++) {
+                    source.addEntry("Name" + i, "555-" + i);
+                }
+                source.addEntry("Zo\u00EB \uD83D\uDCDE", "\u260E 1"); // Multi-byte UTF-8 both ways
+                source.addEntry("", "0"); // Empty strings are entries too
+                source.saveSnapshot(file);
+                for (Phonebook loaded : new Phonebook[] { new Phonebook(SEPARATE_CHAINING, QUADRATIC_PROBING),
+                        new ConcurrentPhonebook(LINEAR_PROBING, LINEAR_PROBING), new CompactPhonebook(),
+                        new SnapshotPhonebook(LINEAR_PROBING, SEPARATE_CHAINING) }) {
+                    String kind = source.getClass().getSimpleName() + " to " + loaded.getClass().getSimpleName() + ": ";
+                    loaded.loadSnapshot(file);
+                    assertEquals(kind + "Size is wrong.", source.size(), loaded.size());
+                    for (KVPair pair : source.entries().collect(Collectors.toList())) {
+                        assertEquals(kind + "Number is wrong.", pair.getValue(), loaded.getNumberOf(pair.getKey()));
+                        assertEquals(kind + "Owner is wrong.", pair.getKey(), loaded.getOwnerOf(pair.getValue()));
+                    }
+                    loaded.addEntry("Mary", "888-1212-3340"); // Still writable
+                    assertEquals(kind + "Number is wrong.", "888-1212-3340", loaded.getNumberOf("Mary"));
+                    try {
+                        loaded.loadSnapshot(file);
+                        fail(kind + "Loading into a non-empty phonebook should fail.");
+                    } catch (IllegalStateException e) {
+                        // Expected
+                    }
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // A snapshot that is corrupt, truncated or of another version should be rejected before anything is loaded.
+    @Test
+    public void testBadSnapshots() throws IOException {
+        Path file = Files.createTempFile("phonebook", ".snapshot");
+        try {
+            pb = new Phonebook(LINEAR_PROBING, LINEAR_PROBING);
+            for (Map.Entry<String, String> entry : testingPhoneBook.entrySet()) {
+                pb.addEntry(entry.getKey(), entry.getValue());
+            }
+            pb.saveSnapshot(file);
+            byte[] good = Files.readAllBytes(file);
+            List<byte[]> bad = new ArrayList<>();
+            byte[] flipped = good.clone();
+            flipped[good.length / 2] ^= 1;
+            bad.add(flipped);
+            bad.add(Arrays.copyOf(good, good.length - 1));
+            byte[] newer = good.clone();
+            newer[7]++; // The version
+            bad.add(newer);
+            bad.add(new byte[3]);
+            for (byte[] bytes : bad) {
+                Files.write(file, bytes);
+                Phonebook loaded = new Phonebook(LINEAR_PROBING, LINEAR_PROBING);
+                try {
+                    loaded.loadSnapshot(file);
+                    fail("A bad snapshot was loaded.");
+                } catch (IOException e) {
+                    // Expected
+                }
+                assertTrue("Nothing should have been loaded.", loaded.isEmpty());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
 
+    // Mutations of a DurablePhonebook should survive a restart, with or without a checkpoint, and a torn or stale log
+    // should be recognized as such.
+    @Test
+    public void testDurablePhonebook() throws Exception {
+        Path directory = Files.createTempDirectory("phonebook");
+        Path logFile = directory.resolve(DurablePhonebook.LOG_FILE);
+        try {
+            try (DurablePhonebook durable = new DurablePhonebook(SEPARATE_CHAINING, LINEAR_PROBING, directory, 1)) {
+                Thread[] writers = new Thread[8];
+                for (int t = 0; t < writers.length; t++) {
+                    int first = t * 100;
+                    writers[t] = new Thread(() -> {
+                        for (int i = first; i < first + 100; i++) {
+                            durable.addEntry("Name" + i, "555-" + i);
+                        }
+                    });
+                    writers[t].start();
+                }
+                for (Thread writer : writers) {
+                    writer.join();
+                }
+                durable.deleteEntry("Name7", "555-7");
+                assertEquals("Every mutation should be logged.", 801, durable.getLoggedCount());
+                assertTrue("Concurrent writers should share syncs.", durable.getSyncCount() < 801);
+            }
+            try (DurablePhonebook durable = new DurablePhonebook(SEPARATE_CHAINING, LINEAR_PROBING, directory, 0)) {
+                assertEquals("The log should have been replayed.", 799, durable.size());
+                assertNull("The deletion should have been replayed.", durable.getNumberOf("Name7"));
+                assertEquals("Number is wrong.", "555-8", durable.getNumberOf("Name8"));
+                durable.checkpoint();
+                assertTrue("A checkpoint should empty the log.", Files.size(logFile) < 16);
+                durable.addEntry("Name7", "555-7b");
+            }
+            byte[] log = Files.readAllBytes(logFile);
+            Files.write(logFile, Arrays.copyOf(log, log.length + 5)); // A torn record
+            try (DurablePhonebook durable = new DurablePhonebook(SEPARATE_CHAINING, LINEAR_PROBING, directory, 0)) {
+                assertEquals("Snapshot and log should both be loaded.", 800, durable.size());
+                assertEquals("Number is wrong.", "555-7b", durable.getNumberOf("Name7"));
+                durable.deleteEntry("Name7", "555-7b"); // Appended after the torn record was cut off
+                durable.addEntry("Mary", "888-1212-3340");
+                log = Files.readAllBytes(logFile);
+                durable.checkpoint();
+            }
+            Files.write(logFile, log); // As if a crash had come between the snapshot and the reset of the log
+            try (DurablePhonebook durable = new DurablePhonebook(SEPARATE_CHAINING, LINEAR_PROBING, directory, 0)) {
+                assertEquals("Size is wrong.", 800, durable.size());
+                assertNull("Number is wrong.", durable.getNumberOf("Name7"));
+                assertEquals("Number is wrong.", "888-1212-3340", durable.getNumberOf("Mary"));
+                assertTrue("A stale log should be discarded.", Files.size(logFile) < 16);
+            }
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : files.collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    // A MappedPhonebook should answer every lookup of the phonebook it was written from, and refuse writes.
+    @Test
+    public void testMappedPhonebook() throws IOException {
+        Path directory = Files.createTempDirectory("phonebook");
+        try {
+            pb = new CompactPhonebook();
+            for (int i = 0; i < 3000; i++) {
+                pb.addEntry("Name" + i, "555-" + i);
+            }
+            MappedPhonebook.write(pb, directory);
+            MappedPhonebook mapped = MappedPhonebook.open(directory);
+            assertEquals("Size is wrong.", pb.size(), mapped.size());
+            String[] names = new String[3001], out = new String[names.length];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = "Name" + i;
+            }
+            mapped.getNumbersOf(names, out);
+            for (int i = 0; i < names.length; i++) {
+                assertEquals("Number is wrong.", pb.getNumberOf(names[i]), out[i]);
+                assertEquals("Owner is wrong.", pb.getOwnerOf("555-" + i), mapped.getOwnerOf("555-" + i));
+            }
+            mapped.enableNamePrefixIndex();
+            assertEquals("Prefix search is wrong.", List.of("Name2999"), mapped.findNamesByPrefix("Name2999", 10));
+            try {
+                mapped.addEntry("Mary", "888-1212-3340");
+                fail("A MappedPhonebook should be read-only.");
+            } catch (UnsupportedOperationException e) {
+                // Expected
+            }
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : files.collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testStaticPhonebook() {
+        pb = new CompactPhonebook();
+        for (int i = 0; i < 3000; i++) {
+            pb.addEntry("Name" + i, "555-" + i);
+        }
+        StaticPhonebook frozen = StaticPhonebook.of(pb);
+        assertEquals("Size is wrong.", pb.size(), frozen.size());
+        for (int i = 0; i <= 3000; i++) {
+            assertEquals("Number is wrong.", pb.getNumberOf("Name" + i), frozen.getNumberOf("Name" + i));
+            assertEquals("Owner is wrong.", pb.getOwnerOf("555-" + i), frozen.getOwnerOf("555-" + i));
+        }
+        try {
+            frozen.deleteEntry("Name1", "555-1");
+            fail("A StaticPhonebook should be read-only.");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testMembershipFilters() {
+        for (CollisionResolver namesToNumbers : resolvers) {
+            for (CollisionResolver numbersToNames : resolvers) {
+                for (Phonebook phonebook : new Phonebook[] { new Phonebook(namesToNumbers, numbersToNames, 0.01),
+                        new ConcurrentPhonebook(namesToNumbers, numbersToNames, 0.01) }) {
+                    String kind = phonebook.getClass().getSimpleName() + " " + namesToNumbers + "/" + numbersToNames
+                            + ": ";
+                    for (int i = 0; i < 1000; i++) {
+                        phonebook.addEntry("Name" + i, "555-" + i);
+                    }
+                    for (int i = 0; i < 1000; i += 3) {
+                        phonebook.deleteEntry("Name" + i, "555-" + i);
+                    }
+                    for (int i = 0; i < 1000; i++) {
+                        String number = i % 3 == 0 ? null : "555-" + i, name = i % 3 == 0 ? null : "Name" + i;
+                        assertEquals(kind + "Number is wrong.", number, phonebook.getNumberOf("Name" + i));
+                        assertEquals(kind + "Owner is wrong.", name, phonebook.getOwnerOf("555-" + i));
+                    }
+                    for (int i = 0; i < 5000; i++) {
+                        assertNull(kind + "Spam number found.", phonebook.getOwnerOf("900-" + i));
+                    }
+                    FilteredHashTable.Metrics metrics = phonebook.getNumberFilterMetrics();
+                    assertTrue(kind + metrics, metrics.getRejected() > 5000 * 0.95);
+                    assertEquals(kind + "Lookups are wrong.", 6000, metrics.getLookups());
+                    assertEquals(kind + "Name lookups are wrong.", 1000, phonebook.getNameFilterMetrics().getLookups());
+                }
+            }
+        }
+        for (Phonebook phonebook : new Phonebook[] { new Phonebook(SEPARATE_CHAINING, LINEAR_PROBING),
+                new CompactPhonebook(), new SnapshotPhonebook(SEPARATE_CHAINING, LINEAR_PROBING) }) {
+            try {
+                phonebook.getNumberFilterMetrics();
+                fail(phonebook.getClass().getSimpleName() + ": Metrics of filters that are not enabled.");
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void testCsvImport() throws IOException {
+        Path file = Files.createTempFile("phonebook", ".csv");
+        try {
+            StringBuilder csv = new StringBuilder("name,number\r\n");
+            for (int i = 0; i < 500; i++) {
+                csv.append("Name").append(i).append(",555-").append(i).append(i % 2 == 0 ? "\n" : "\r\n");
+            }
+            csv.append("\"Doe, John \"\"JJ\"\"\",555-9999\n"); // Quoted, with a comma and escaped quotes
+            csv.append("\n");
+            csv.append("Zo\u00EB \uD83D\uDCDE,\u260E 1\n");
+            csv.append("just a name\n").append("a,b,c\n").append("Mary,\n").append("\"Unterminated,555-1\n");
+            csv.append("x".repeat(200)).append(",555-0\n"); // Longer than a chunk
+            byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+            byte[] tail = { 'B', 'a', 'd', (byte) 0xC3, ',', '5', '\n', 'L', 'a', 's', 't', ',', '5' }; // Invalid UTF-8
+            byte[] all = Arrays.copyOf(bytes, bytes.length + tail.length); // and no line break at the end
+            System.arraycopy(tail, 0, all, bytes.length, tail.length);
+            Files.write(file, all);
+
+            for (Phonebook phonebook : new Phonebook[] { new Phonebook(SEPARATE_CHAINING, QUADRATIC_PROBING),
+                    new ConcurrentPhonebook(SEPARATE_CHAINING, LINEAR_PROBING), new CompactPhonebook(),
+                    new SnapshotPhonebook(SEPARATE_CHAINING, SEPARATE_CHAINING) }) {
+                String kind = phonebook.getClass().getSimpleName() + ": ";
+                List<CsvImporter.Report> progress = new ArrayList<>();
+                CsvImporter.Report report = new CsvImporter(phonebook, true, 64,
+                        java.util.concurrent.ForkJoinPool.commonPool(), 2).importFile(file, progress::add);
+                assertEquals(kind + "Rows are wrong.", 503, report.getRows());
+                assertEquals(kind + "Malformed rows are wrong.", 6, report.getMalformedRows());
+                assertEquals(kind + "Samples are wrong.", 6, report.getMalformedSamples().size());
+                assertFalse(kind + "Progress was not reported.", progress.isEmpty());
+                assertEquals(kind + "Size is wrong.", 503, phonebook.size());
+                assertEquals(kind + "Number is wrong.", "555-499", phonebook.getNumberOf("Name499"));
+                assertEquals(kind + "Number is wrong.", "555-9999", phonebook.getNumberOf("Doe, John \"JJ\""));
+                assertEquals(kind + "Number is wrong.", "\u260E 1", phonebook.getNumberOf("Zo\u00EB \uD83D\uDCDE"));
+                assertEquals(kind + "Number is wrong.", "5", phonebook.getNumberOf("Last"));
+                assertNull(kind + "The header was imported.", phonebook.getNumberOf("name"));
+                assertNull(kind + "A malformed row was imported.", phonebook.getNumberOf("Mary"));
+            }
+            try {
+                new CsvImporter(StaticPhonebook.of(new CompactPhonebook()), false).importFile(file);
+                fail("Importing into a read-only phonebook should fail.");
+            } catch (UnsupportedOperationException e) {
+                // Expected
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testAddEntries() {
+        for (Phonebook phonebook : new Phonebook[] { new Phonebook(LINEAR_PROBING, SEPARATE_CHAINING),
+                new ConcurrentPhonebook(QUADRATIC_PROBING, ORDERED_LINEAR_PROBING), new CompactPhonebook(),
+                new SnapshotPhonebook(SEPARATE_CHAINING, LINEAR_PROBING) }) {
+            String kind = phonebook.getClass().getSimpleName() + ": ";
+            phonebook.addEntries(List.of(new KVPair("Arnold", "894-59-0011"), new KVPair("Jessie", "893-23-9930")));
+            assertEquals(kind + "Size is wrong.", 2, phonebook.size());
+            assertEquals(kind + "Owner is wrong.", "Arnold", phonebook.getOwnerOf("894-59-0011"));
+            assertEquals(kind + "Number is wrong.", "893-23-9930", phonebook.getNumberOf("Jessie"));
+            try {
+                phonebook.addEntries(List.of(new KVPair("Mary", "888-1212-3340"), new KVPair("Bob", null)));
+                fail(kind + "A null number should be rejected.");
+            } catch (IllegalArgumentException e) {
+                assertNull(kind + "Part of a rejected batch was added.", phonebook.getNumberOf("Mary"));
+            }
+        }
+    }
+
+    @Test
+    public void testCsvExport() throws IOException {
+        Path directory = Files.createTempDirectory("phonebook");
+        Path file = directory.resolve("phonebook.csv");
+        try {
+            for (Phonebook source : new Phonebook[] { new Phonebook(SEPARATE_CHAINING, QUADRATIC_PROBING),
+                    new ConcurrentPhonebook(SEPARATE_CHAINING, SEPARATE_CHAINING), new CompactPhonebook(),
+                    new SnapshotPhonebook(SEPARATE_CHAINING, SEPARATE_CHAINING) }) {
+                String kind = source.getClass().getSimpleName() + ": ";
+                for (int i = 0; i < 1200; i++) {
+                    source.addEntry("Name" + i, "555-" + i);
+                }
+                source.addEntry("Doe, John \"JJ\"", "555-9999"); // Quoted on the way out
+                source.addEntry("Zo\u00EB \uD83D\uDCDE", "\u260E 1");
+                List<String> names = source.entries().map(KVPair::getKey).sorted().collect(Collectors.toList());
+
+                for (int runSize : new int[] { 0, 1 << 20, 100, 10 }) { // Unsorted; one run; a merge; merges of merges
+                    long rows = runSize == 0 ? CsvExporter.export(source, file)
+                            : CsvExporter.exportSorted(source, file, runSize);
+                    assertEquals(kind + "Rows are wrong.", source.size(), rows);
+                    Phonebook copy = new CompactPhonebook();
+                    CsvImporter.Report report = new CsvImporter(copy, true).importFile(file);
+                    assertEquals(kind + "Malformed rows were written.", 0, report.getMalformedRows());
+                    assertEquals(kind + "Size is wrong.", source.size(), copy.size());
+                    for (KVPair pair : source.entries().collect(Collectors.toList())) {
+                        assertEquals(kind + "Number is wrong.", pair.getValue(), copy.getNumberOf(pair.getKey()));
+                    }
+                    if (runSize > 0) {
+                        List<String> exported = new ArrayList<>();
+                        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+                        for (String line : lines.subList(1, lines.size())) { // Past the header
+                            exported.add(line.startsWith("\"") ? "Doe, John \"JJ\""
+                                    : line.substring(0, line.lastIndexOf(',')));
+                        }
+                        assertEquals(kind + "Rows are not sorted by name.", names, exported);
+                    }
+                    try (var files = Files.list(directory)) {
+                        assertEquals(kind + "Temporary files were left behind.", 1, files.count());
+                    }
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(directory);
+        }
+    }
 }
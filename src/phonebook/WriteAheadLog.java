@@ -0,0 +1,347 @@
+package phonebook;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+import phonebook.utils.Varints;
+
+/**
+ * <p>An append-only log of {@link Phonebook} mutations, for {@link DurablePhonebook}. The file starts with a header of
+ * three {@code int}s: the magic number {@value #MAGIC}, the format {@value #VERSION}, and the checksum of the snapshot
+ * that the log applies on top of (see {@link SnapshotFormat#checksumOf(Path)}), or {@code 0} if there is none. Every
+ * record then holds one mutation: an {@code int} byte count, the body, and the CRC-32C of the body. A body is
+ * {@link #ADD} or {@link #DELETE}, the UTF-8 name preceded by its unsigned LEB128 byte count, and the UTF-8 number in
+ * the rest of the body.</p>
+ *
+ * <p>{@link #append(boolean, String, String)} only copies a record into an in-memory buffer. A background
+ * <b>syncer</b> thread writes out everything that has been appended and forces it to the device with one
+ * {@code fsync}, then wakes up the writers whose records that covered: concurrent writers share their
+ * {@code fsync}s, in <b>group commits</b>. With a sync interval above zero, the syncer waits that long after the first
+ * record of a group before it syncs, so that the group grows larger at the cost of latency; with an interval of zero,
+ * it syncs as soon as there is anything to sync, and the records appended during a sync form the next group.</p>
+ *
+ * <p>A crash may tear the last records. {@link #open(Path, int, long, Replayer)} replays the log up to the first
+ * record that is incomplete or fails its checksum, and cuts the log off there. A log whose header names another
+ * snapshot than the current one is stale, because a checkpoint replaced its snapshot before it could
+ * {@link #reset(int)} the log, and it is discarded without being replayed.</p>
+ */
+final class WriteAheadLog implements AutoCloseable {
+
+    static final int MAGIC = 0x5048574c; // "PHWL"
+    static final int VERSION = 1;
+    static final byte ADD = 1, DELETE = 2;
+
+    private static final int HEADER = 3 * Integer.BYTES;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_RECORD = 1 << 28;
+
+    /**
+     * Applies the mutations of a log that is being replayed.
+     */
+    interface Replayer {
+        void apply(boolean add, String name, String number);
+    }
+
+    private final FileChannel channel;
+    private final long syncIntervalNanos;
+    private final Object fileLock = new Object(); // Held while the file is written to; taken before this
+    private final Thread syncer;
+    private ByteBuffer filling = ByteBuffer.allocate(BUFFER_SIZE), writing = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CRC32C checksum = new CRC32C(); // Guarded by this
+    private long appended, durable; // Record counts; guarded by this
+    private long syncs;
+    private IOException failure;
+    private boolean closed;
+
+    private WriteAheadLog(FileChannel channel, long syncIntervalNanos) {
+        this.channel = channel;
+        this.syncIntervalNanos = syncIntervalNanos;
+        syncer = new Thread(this::run, "WriteAheadLog syncer");
+        syncer.setDaemon(true);
+    }
+
+    /**
+     * Opens a log, creating it if it does not exist, replays its records if it applies on top of the snapshot with
+     * the given checksum, and starts its syncer.
+     *
+     * @param path              The log file.
+     * @param snapshotChecksum  The checksum of the snapshot that has been loaded, or {@code 0} if there is none.
+     * @param syncIntervalNanos How long the syncer gathers records before every sync; {@code 0} syncs right away.
+     * @param replayer          Where to apply the records of the log.
+     * @return The open log, positioned after its last intact record.
+     * @throws IOException if the log cannot be read or written.
+     */
+    static WriteAheadLog open(Path path, int snapshotChecksum, long syncIntervalNanos, Replayer replayer)
+            throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            WriteAheadLog log = new WriteAheadLog(channel, syncIntervalNanos);
+            if (!log.replay(snapshotChecksum, replayer))
+                log.reset(snapshotChecksum);
+            log.syncer.start();
+            return log;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks that records can still be appended, so that a mutation can be refused before it is applied.
+     *
+     * @throws IOException if an earlier sync failed, or the log is closed.
+     */
+    synchronized void checkWritable() throws IOException {
+        if (failure != null)
+            throw failure;
+        if (closed)
+            throw new IOException("The log is closed.");
+    }
+
+    /**
+     * Appends a record to the in-memory buffer. The record is durable once {@link #awaitDurable(long)} returns for
+     * the number this method returns.
+     *
+     * @param add    {@code true} for an addition, {@code false} for a deletion.
+     * @param name   The name of the entry.
+     * @param number The number of the entry.
+     * @return The number of the record.
+     * @throws IOException if an earlier sync failed, or the log is closed.
+     */
+    synchronized long append(boolean add, String name, String number) throws IOException {
+        checkWritable();
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8), numberBytes = number.getBytes(StandardCharsets.UTF_8);
+        int body = 1 + Varints.MAX_BYTES + nameBytes.length + numberBytes.length;
+        if (body > MAX_RECORD)
+            throw new IllegalArgumentException("Entry too long: " + body + " bytes.");
+        if (filling.remaining() < 2 * Integer.BYTES + body) { // Grow; the syncer shrinks it back after the sync
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * filling.capacity(), filling.position() + 8 + body));
+            filling.flip();
+            filling = larger.put(filling);
+        }
+        int start = filling.position();
+        filling.position(start + Integer.BYTES).put(add ? ADD : DELETE);
+        Varints.putString(filling, nameBytes);
+        filling.put(numberBytes);
+        int length = filling.position() - start - Integer.BYTES;
+        filling.putInt(start, length);
+        checksum.reset();
+        checksum.update(filling.array(), start + Integer.BYTES, length);
+        filling.putInt((int) checksum.getValue());
+        if (appended++ == durable)
+            notifyAll(); // Wake the syncer up
+        return appended;
+    }
+
+    /**
+     * Waits until the record with the given number, and every record before it, has been forced to the device.
+     *
+     * @param record A number returned by {@link #append(boolean, String, String)}.
+     * @throws IOException if the sync failed.
+     */
+    synchronized void awaitDurable(long record) throws IOException {
+        boolean interrupted = false;
+        while (durable < record && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true; // A record on its way to the device cannot be recalled; finish waiting.
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (durable < record)
+            throw failure;
+    }
+
+    /**
+     * Empties the log, once a checkpoint has written every record appended so far into the snapshot with the given
+     * checksum. Those records count as durable from then on.
+     *
+     * @param snapshotChecksum The checksum of the new snapshot.
+     * @throws IOException if the log cannot be written.
+     */
+    void reset(int snapshotChecksum) throws IOException {
+        synchronized (fileLock) {
+            long covered;
+            synchronized (this) {
+                filling.clear();
+                covered = appended;
+            }
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(MAGIC).putInt(VERSION).putInt(snapshotChecksum).flip();
+            writeFully(header, 0);
+            channel.force(true);
+            channel.position(HEADER);
+            synchronized (this) {
+                durable = Math.max(durable, covered);
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of syncs so far; together with {@link #records()}, it gives the average size of a group.
+     *
+     * @return The number of times the log has been forced to the device.
+     */
+    synchronized long syncs() {
+        return syncs;
+    }
+
+    /**
+     * Returns the number of records appended since the log was opened.
+     *
+     * @return The number of records appended.
+     */
+    synchronized long records() {
+        return appended;
+    }
+
+    /**
+     * Syncs whatever has been appended, stops the syncer and closes the file.
+     *
+     * @throws IOException if the last sync or the closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            notifyAll();
+        }
+        try {
+            syncer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                synchronized (this) {
+                    while (appended == durable && !closed && failure == null) {
+                        wait();
+                    }
+                    if (closed || failure != null)
+                        return;
+                }
+                if (syncIntervalNanos > 0)
+                    TimeUnit.NANOSECONDS.sleep(syncIntervalNanos); // Let the group grow
+                sync();
+            }
+        } catch (InterruptedException | IOException e) {
+            // sync() has recorded any failure for the writers.
+        }
+    }
+
+    // Writes out and forces everything that has been appended so far.
+    private void sync() throws IOException {
+        synchronized (fileLock) {
+            long covered;
+            synchronized (this) {
+                if (appended == durable || failure != null)
+                    return;
+                ByteBuffer batch = filling;
+                filling = writing.capacity() == BUFFER_SIZE ? writing : ByteBuffer.allocate(BUFFER_SIZE);
+                writing = batch;
+                covered = appended;
+            }
+            try {
+                writing.flip();
+                writeFully(writing, channel.position());
+                channel.position(channel.position() + writing.limit());
+                channel.force(false);
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                throw e;
+            } finally {
+                writing.clear();
+            }
+            synchronized (this) {
+                durable = Math.max(durable, covered);
+                syncs++;
+                notifyAll();
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer bytes, long position) throws IOException {
+        while (bytes.hasRemaining()) {
+            position += channel.write(bytes, position);
+        }
+    }
+
+    // Replays the log if it applies on top of the given snapshot, and cuts off any torn tail. Returns whether the log
+    // was replayed; if not, it has to be reset.
+    private boolean replay(int snapshotChecksum, Replayer replayer) throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        if (size < HEADER)
+            return false;
+        readFully(buffer.limit(HEADER), 0);
+        buffer.flip();
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != snapshotChecksum)
+            return false;
+        CRC32C crc = new CRC32C();
+        long position = HEADER;
+        while (size - position >= 2 * Integer.BYTES) {
+            buffer.clear().limit(Integer.BYTES);
+            readFully(buffer, position);
+            int length = buffer.getInt(0);
+            if (length < 2 || length > MAX_RECORD || size - position < 2L * Integer.BYTES + length)
+                break; // Torn
+            if (buffer.capacity() < length + Integer.BYTES)
+                buffer = ByteBuffer.allocate(length + Integer.BYTES);
+            buffer.clear().limit(length + Integer.BYTES);
+            readFully(buffer, position + Integer.BYTES);
+            crc.reset();
+            crc.update(buffer.array(), 0, length);
+            if (buffer.getInt(length) != (int) crc.getValue())
+                break; // Torn
+            byte operation = buffer.get(0);
+            long count = Varints.get(buffer.limit(length), 1); // The name's byte count, and the bytes it takes
+            int nameLength = (int) count, offset = 1 + (int) (count >>> 32);
+            if ((operation != ADD && operation != DELETE) || count < 0 || nameLength > length - offset)
+                throw new IOException("Corrupt log record at byte " + position + ".");
+            String name = new String(buffer.array(), offset, nameLength, StandardCharsets.UTF_8);
+            String number = new String(buffer.array(), offset + nameLength, length - offset - nameLength,
+                    StandardCharsets.UTF_8);
+            replayer.apply(operation == ADD, name, number);
+            position += 2 * Integer.BYTES + length;
+        }
+        if (position < size) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+        channel.position(position);
+        return true;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0)
+                throw new IOException("The log was truncated while being read.");
+            position += n;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package phonebook.benchmarks;
+
+import java.util.Random;
+
+import phonebook.CompactPhonebook;
+import phonebook.Phonebook;
+import phonebook.hashes.HashTable;
+import phonebook.hashes.LinearProbingHashTable;
+import phonebook.hashes.QuadraticProbingHashTable;
+
+/**
+ * <p>
+ * {@link BatchLookupBenchmark} compares batched lookups, through
+ * {@link HashTable#getAll(String[], String[])} and
+ * {@link Phonebook#getNumbersOf(String[], String[])}, with the same lookups made
+ * one at a time. Every round looks up a shuffled batch of keys, most of which are
+ * present, and reports the nanoseconds per key of both ways.
+ * </p>
+ *
+ * <p>
+ * Run as a Java application. The optional arguments are the number of
+ * milliseconds to measure every (table, batch size) pair for and the number of
+ * entries of the {@link CompactPhonebook}, which, unlike the prime-sized tables,
+ * can grow large enough for its lookups to miss the caches.
+ * </p>
+ *
+ * @see HashTable#getAll(String[], String[])
+ * @see Phonebook#getNumbersOf(String[], String[])
+ */
+public class BatchLookupBenchmark {
+
+    private static final int TABLE_ENTRIES = 2400; // Close to the largest prime capacity, half full
+    private static final int[] BATCH_SIZES = { 8, 64, 1024 };
+    private static final int MISS_PERCENT = 10;
+
+    public static void main(String[] args) {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        int phonebookEntries = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        for (HashTable table : new HashTable[] { new LinearProbingHashTable(false),
+                new QuadraticProbingHashTable(false) }) {
+            String[] keys = load(TABLE_ENTRIES, table::put);
+            System.out.println(table.getClass().getSimpleName() + ", " + TABLE_ENTRIES + " entries");
+            for (int batch : BATCH_SIZES) {
+                compare(keys, batch, millis, table::getAll, table::get);
+            }
+        }
+
+        Phonebook phonebook = new CompactPhonebook();
+        String[] names = load(phonebookEntries, phonebook::addEntry);
+        System.out.println("CompactPhonebook, " + phonebookEntries + " entries");
+        for (int batch : BATCH_SIZES) {
+            compare(names, batch, millis, phonebook::getNumbersOf, phonebook::getNumberOf);
+        }
+    }
+
+    private interface Batched {
+        void lookup(String[] keys, String[] out);
+    }
+
+    private interface Single {
+        String lookup(String key);
+    }
+
+    private interface Loader {
+        void add(String key, String value);
+    }
+
+    // Loads the entries and returns the keys to query: the loaded ones and some that are missing, shuffled.
+    private static String[] load(int entries, Loader loader) {
+        String[] keys = new String[entries];
+        Random rng = new Random(47);
+        for (int i = 0; i < entries; i++) {
+            String key = "Name" + i;
+            loader.add(key, "555-" + i);
+            keys[i] = rng.nextInt(100) < MISS_PERCENT ? "Missing" + i : key;
+        }
+        for (int i = keys.length - 1; i > 0; i--) {
+            int j = rng.nextInt(i + 1);
+            String swap = keys[i];
+            keys[i] = keys[j];
+            keys[j] = swap;
+        }
+        return keys;
+    }
+
+    private static void compare(String[] keys, int batch, long millis, Batched batched, Single single) {
+        String[] query = new String[batch], out = new String[batch];
+        measure(keys, query, out, millis / 4, batched, single, true); // Warm-up
+        measure(keys, query, out, millis / 4, batched, single, false);
+        double batchedNanos = measure(keys, query, out, millis, batched, single, true);
+        double singleNanos = measure(keys, query, out, millis, batched, single, false);
+        System.out.printf("  batch %4d: %6.1f ns/key batched, %6.1f ns/key one at a time  (x%.2f)%n", batch,
+                batchedNanos, singleNanos, singleNanos / batchedNanos);
+    }
+
+    private static double measure(String[] keys, String[] query, String[] out, long millis, Batched batched,
+            Single single, boolean useBatch) {
+        long deadline = System.nanoTime() + millis * 1_000_000, start = System.nanoTime(), lookups = 0;
+        int next = 0, found = 0;
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < query.length; i++) {
+                query[i] = keys[next];
+                next = next + 1 == keys.length ? 0 : next + 1;
+            }
+            if (useBatch) {
+                batched.lookup(query, out);
+            } else {
+                for (int i = 0; i < query.length; i++) {
+                    out[i] = single.lookup(query[i]);
+                }
+            }
+            found += out[0] == null ? 0 : 1; // Keeps the lookups from being optimized away
+            lookups += query.length;
+        }
+        if (found < 0)
+            System.out.println(found);
+        return (double) (System.nanoTime() - start) / lookups;
+    }
+}
@@ -0,0 +1,152 @@
+package phonebook.benchmarks;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import phonebook.ConcurrentPhonebook;
+import phonebook.Phonebook;
+import phonebook.hashes.CollisionResolver;
+import phonebook.server.BinaryPhonebookClient;
+import phonebook.server.BinaryPhonebookServer;
+import phonebook.server.HttpPhonebookServer;
+
+/**
+ * <p>
+ * {@link BinaryServerBenchmark} compares the lookup throughput of
+ * {@link BinaryPhonebookServer} with that of {@link HttpPhonebookServer}, over
+ * the loopback interface. A fixed number of client threads, each with its own
+ * connection, look up random preloaded names for a while:
+ * </p>
+ *
+ * <ul>
+ * <li>over HTTP/1.1, one request at a time, since HTTP/1.1 clients do not
+ * pipeline;</li>
+ * <li>over the binary protocol, one request at a time;</li>
+ * <li>over the binary protocol, in pipelined batches of
+ * {@value #BATCH} names.</li>
+ * </ul>
+ *
+ * <p>
+ * Run as a Java application. The optional arguments are the number of
+ * milliseconds to measure every variant for and the number of client
+ * connections. Requests per second are also reported per available core;
+ * clients and servers share both the JVM and the cores, so the figures
+ * understate what a server would do on a machine of its own.
+ * </p>
+ *
+ * @see BinaryPhonebookServer
+ * @see HttpLoadTest
+ */
+public class BinaryServerBenchmark {
+
+    private static final int PRELOADED_ENTRIES = 2000; // Linear probing tables stop growing at 4999 cells
+    private static final int BATCH = 256;
+
+    private interface Client {
+        // Performs some lookups and returns how many.
+        int lookups(ThreadLocalRandom rng) throws IOException, InterruptedException;
+    }
+
+    private interface ClientFactory {
+        Client connect() throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 3000;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        Phonebook phonebook = new ConcurrentPhonebook(CollisionResolver.LINEAR_PROBING,
+                CollisionResolver.LINEAR_PROBING);
+        for (int i = 0; i < PRELOADED_ENTRIES; i++) {
+            phonebook.addEntry("Name" + i, "555-" + i);
+        }
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try (var http = new HttpPhonebookServer(phonebook, new InetSocketAddress(loopback, 0));
+                var binary = new BinaryPhonebookServer(phonebook, new InetSocketAddress(loopback, 0))) {
+            http.start();
+            binary.start();
+            HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            String base = "http://" + loopback.getHostAddress() + ":" + http.getPort();
+            InetSocketAddress binaryAddress = new InetSocketAddress(loopback, binary.getPort());
+
+            ClientFactory httpFactory = () -> rng -> {
+                URI uri = URI.create(base + "/number?name=Name" + rng.nextInt(PRELOADED_ENTRIES));
+                httpClient.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofString());
+                return 1;
+            };
+            ClientFactory singleFactory = () -> {
+                BinaryPhonebookClient client = new BinaryPhonebookClient(binaryAddress);
+                return rng -> {
+                    client.getNumberOf("Name" + rng.nextInt(PRELOADED_ENTRIES));
+                    return 1;
+                };
+            };
+            ClientFactory batchFactory = () -> {
+                BinaryPhonebookClient client = new BinaryPhonebookClient(binaryAddress);
+                String[] names = new String[BATCH], numbers = new String[BATCH];
+                return rng -> {
+                    for (int i = 0; i < BATCH; i++) {
+                        names[i] = "Name" + rng.nextInt(PRELOADED_ENTRIES);
+                    }
+                    client.getNumbersOf(names, numbers);
+                    return BATCH;
+                };
+            };
+
+            System.out.println(connections + " connections, " + cores + " core(s)");
+            report("HTTP/1.1", httpFactory, connections, millis, cores);
+            report("binary, one at a time", singleFactory, connections, millis, cores);
+            report("binary, pipelined x" + BATCH, batchFactory, connections, millis, cores);
+        }
+    }
+
+    private static void report(String name, ClientFactory factory, int connections, long millis, int cores)
+            throws IOException, InterruptedException {
+        run(factory, connections, millis / 4); // Warm-up
+        double perSecond = run(factory, connections, millis);
+        System.out.printf("  %-28s %,12.0f requests/s  %,12.0f requests/s/core%n", name, perSecond,
+                perSecond / cores);
+    }
+
+    private static double run(ClientFactory factory, int connections, long millis)
+            throws IOException, InterruptedException {
+        Client[] clients = new Client[connections];
+        for (int i = 0; i < connections; i++) {
+            clients[i] = factory.connect();
+        }
+        LongAdder requests = new LongAdder();
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(connections);
+        for (Client client : clients) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom rng = ThreadLocalRandom.current();
+                try {
+                    while (!stop.get()) {
+                        requests.add(client.lookups(rng));
+                    }
+                } catch (IOException | InterruptedException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        long start = System.nanoTime();
+        Thread.sleep(millis);
+        stop.set(true);
+        done.await();
+        return requests.sum() * 1e9 / (System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,164 @@
+package phonebook.benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import phonebook.hashes.ConcurrentLinearProbingHashTable;
+import phonebook.hashes.ConcurrentSeparateChainingHashTable;
+import phonebook.hashes.HashTable;
+import phonebook.hashes.LinearProbingHashTable;
+import phonebook.hashes.NonBlockingHashTable;
+import phonebook.utils.KVPair;
+
+/**
+ * <p>
+ * {@link ConcurrentHashTableBenchmark} measures how the throughput of our
+ * thread-safe {@link HashTable}s scales with the number of threads, under a
+ * read-mostly workload: every thread performs 95&#37; {@link HashTable#get(String)}
+ * calls on a preloaded key set and 5&#37; writes, which alternately insert and
+ * remove a key of the thread's own. A {@link LinearProbingHashTable} behind a
+ * single monitor is measured as the baseline.
+ * </p>
+ *
+ * <p>
+ * Run as a Java application. The optional arguments are the number of
+ * milliseconds to measure every (table, thread count) pair for and the largest
+ * thread count to try.
+ * </p>
+ *
+ * @see ConcurrentLinearProbingHashTable
+ * @see NonBlockingHashTable
+ * @see ConcurrentSeparateChainingHashTable
+ */
+public class ConcurrentHashTableBenchmark {
+
+    private static final int PRELOADED_KEYS = 1000;
+    private static final int WRITE_PERCENT = 5;
+
+    public static void main(String[] args) throws InterruptedException {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+
+        Map<String, Supplier<HashTable>> tables = new LinkedHashMap<>();
+        tables.put("synchronized LinearProbingHashTable", () -> new SynchronizedHashTable(new LinearProbingHashTable(false)));
+        tables.put("ConcurrentLinearProbingHashTable", ConcurrentLinearProbingHashTable::new);
+        tables.put("NonBlockingHashTable", NonBlockingHashTable::new);
+        tables.put("ConcurrentSeparateChainingHashTable", ConcurrentSeparateChainingHashTable::new);
+
+        for (var table : tables.entrySet()) {
+            run(table.getValue().get(), 1, millis / 4); // Warm-up
+            System.out.println(table.getKey());
+            double single = 0;
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                double opsPerSec = run(table.getValue().get(), threads, millis);
+                if (threads == 1)
+                    single = opsPerSec;
+                System.out.printf("  %2d threads: %,14.0f ops/s  (x%.2f)%n", threads, opsPerSec, opsPerSec / single);
+            }
+        }
+    }
+
+    private static double run(HashTable table, int threads, long millis) throws InterruptedException {
+        String[] keys = new String[PRELOADED_KEYS];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "Name" + i;
+            table.put(keys[i], "555-" + i);
+        }
+        LongAdder ops = new LongAdder();
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            String own = "Writer" + t;
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom rng = ThreadLocalRandom.current();
+                boolean inserted = false;
+                long done = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (!stop.get()) {
+                    if (rng.nextInt(100) < WRITE_PERCENT) {
+                        if (inserted)
+                            table.remove(own);
+                        else
+                            table.put(own, "555-0000");
+                        inserted = !inserted;
+                    } else if (table.get(keys[rng.nextInt(keys.length)]) == null) {
+                        throw new IllegalStateException("Lost a preloaded key.");
+                    }
+                    done++;
+                }
+                ops.add(done);
+            });
+            workers[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(millis);
+        stop.set(true);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return ops.sum() * 1e9 / (System.nanoTime() - begin);
+    }
+
+    /**
+     * Today's approach: a non-thread-safe {@link HashTable} with every call behind one monitor.
+     */
+    private static final class SynchronizedHashTable implements HashTable {
+        private final HashTable table;
+
+        SynchronizedHashTable(HashTable table) {
+            this.table = table;
+        }
+
+        @Override
+        public synchronized String put(String key, String value) {
+            return table.put(key, value);
+        }
+
+        @Override
+        public synchronized String get(String key) {
+            return table.get(key);
+        }
+
+        @Override
+        public synchronized String remove(String key) {
+            return table.remove(key);
+        }
+
+        @Override
+        public synchronized boolean containsKey(String key) {
+            return table.containsKey(key);
+        }
+
+        @Override
+        public synchronized boolean containsValue(String value) {
+            return table.containsValue(value);
+        }
+
+        @Override
+        public synchronized int size() {
+            return table.size();
+        }
+
+        @Override
+        public synchronized int capacity() {
+            return table.capacity();
+        }
+
+        @Override
+        public synchronized Spliterator<KVPair> spliterator() {
+            return table.spliterator();
+        }
+    }
+}
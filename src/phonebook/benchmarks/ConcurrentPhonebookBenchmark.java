@@ -0,0 +1,149 @@
+package phonebook.benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import phonebook.ConcurrentPhonebook;
+import phonebook.Phonebook;
+import phonebook.hashes.CollisionResolver;
+
+/**
+ * <p>
+ * {@link ConcurrentPhonebookBenchmark} compares {@link ConcurrentPhonebook} with
+ * a {@link Phonebook} whose every method is {@code synchronized}, under rising
+ * contention. Every thread performs 95&#37; lookups (alternating between
+ * {@link Phonebook#getNumberOf(String)} and {@link Phonebook#getOwnerOf(String)})
+ * on a preloaded set of entries and 5&#37; writes, which alternately add and
+ * delete an entry of the thread's own.
+ * </p>
+ *
+ * <p>
+ * Run as a Java application. The optional arguments are the number of
+ * milliseconds to measure every (phonebook, thread count) pair for and the
+ * largest thread count to try.
+ * </p>
+ *
+ * @see ConcurrentPhonebook
+ * @see ConcurrentHashTableBenchmark
+ */
+public class ConcurrentPhonebookBenchmark {
+
+    private static final int PRELOADED_ENTRIES = 1000;
+    private static final int WRITE_PERCENT = 5;
+
+    public static void main(String[] args) throws InterruptedException {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+
+        Map<String, Supplier<Phonebook>> phonebooks = new LinkedHashMap<>();
+        for (CollisionResolver resolver : new CollisionResolver[] { CollisionResolver.LINEAR_PROBING,
+                CollisionResolver.SEPARATE_CHAINING }) {
+            phonebooks.put("synchronized Phonebook, " + resolver, () -> new SynchronizedPhonebook(resolver, resolver));
+            phonebooks.put("ConcurrentPhonebook, " + resolver, () -> new ConcurrentPhonebook(resolver, resolver));
+        }
+
+        for (var phonebook : phonebooks.entrySet()) {
+            run(phonebook.getValue().get(), 1, millis / 4); // Warm-up
+            System.out.println(phonebook.getKey());
+            double single = 0;
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                double opsPerSec = run(phonebook.getValue().get(), threads, millis);
+                if (threads == 1)
+                    single = opsPerSec;
+                System.out.printf("  %2d threads: %,14.0f ops/s  (x%.2f)%n", threads, opsPerSec, opsPerSec / single);
+            }
+        }
+    }
+
+    private static double run(Phonebook phonebook, int threads, long millis) throws InterruptedException {
+        String[] names = new String[PRELOADED_ENTRIES], numbers = new String[PRELOADED_ENTRIES];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "Name" + i;
+            numbers[i] = "555-" + i;
+            phonebook.addEntry(names[i], numbers[i]);
+        }
+        LongAdder ops = new LongAdder();
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            String ownName = "Writer" + t, ownNumber = "000-" + t;
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom rng = ThreadLocalRandom.current();
+                boolean added = false;
+                long done = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (!stop.get()) {
+                    int dice = rng.nextInt(100);
+                    if (dice < WRITE_PERCENT) {
+                        if (added)
+                            phonebook.deleteEntry(ownName, ownNumber);
+                        else
+                            phonebook.addEntry(ownName, ownNumber);
+                        added = !added;
+                    } else {
+                        int i = rng.nextInt(names.length);
+                        String found = (dice & 1) == 0 ? phonebook.getNumberOf(names[i]) : phonebook.getOwnerOf(numbers[i]);
+                        if (found == null)
+                            throw new IllegalStateException("Lost a preloaded entry.");
+                    }
+                    done++;
+                }
+                ops.add(done);
+            });
+            workers[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(millis);
+        stop.set(true);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return ops.sum() * 1e9 / (System.nanoTime() - begin);
+    }
+
+    /**
+     * Today's approach: a {@link Phonebook} with every call behind one monitor.
+     */
+    private static final class SynchronizedPhonebook extends Phonebook {
+
+        SynchronizedPhonebook(CollisionResolver namesToNumbersHash, CollisionResolver numbersToNamesHash) {
+            super(namesToNumbersHash, numbersToNamesHash);
+        }
+
+        @Override
+        public synchronized String getNumberOf(String name) {
+            return super.getNumberOf(name);
+        }
+
+        @Override
+        public synchronized String getOwnerOf(String number) {
+            return super.getOwnerOf(number);
+        }
+
+        @Override
+        public synchronized void addEntry(String name, String number) {
+            super.addEntry(name, number);
+        }
+
+        @Override
+        public synchronized void deleteEntry(String name, String number) {
+            super.deleteEntry(name, number);
+        }
+
+        @Override
+        public synchronized int size() {
+            return super.size();
+        }
+    }
+}
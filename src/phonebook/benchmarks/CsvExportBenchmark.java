@@ -0,0 +1,87 @@
+package phonebook.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import phonebook.CompactPhonebook;
+import phonebook.CsvExporter;
+import phonebook.Phonebook;
+import phonebook.utils.KVPair;
+
+/**
+ * <p>
+ * {@link CsvExportBenchmark} exports a {@link CompactPhonebook} of random
+ * entries to CSV in three ways: the old way, by collecting
+ * {@link Phonebook#entries()} into a list, sorting it and writing it through a
+ * {@link BufferedWriter}; with {@link CsvExporter#export(Phonebook, Path)}; and
+ * with {@link CsvExporter#exportSorted(Phonebook, Path, int)}, for several run
+ * sizes, and reports rows per second, or that an export ran out of memory.
+ * </p>
+ *
+ * <p>
+ * Run as a Java application. The optional argument is the number of entries.
+ * With a heap that barely holds the phonebook, for instance {@code -Xmx330m} for
+ * the default 2,000,000 entries, the list-based export runs out of memory while
+ * the others complete.
+ * </p>
+ *
+ * @see CsvExporter
+ */
+public class CsvExportBenchmark {
+
+    private static final int[] RUN_SIZES = { 100_000, CsvExporter.DEFAULT_RUN_SIZE };
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        Phonebook phonebook = new CompactPhonebook();
+        for (int i = 0; i < size; i++) {
+            phonebook.addEntry("Name" + Integer.toHexString(i * 0x9e3779b9), "555-" + i);
+        }
+        Path file = Files.createTempFile("phonebook", ".csv");
+        try {
+            System.out.printf("%-26s %14s%n", "export", "rows/s");
+            for (int round = 0; round < 2; round++) { // The first round warms up
+                boolean print = round > 0;
+                measure(print, "list, sorted", () -> {
+                    List<KVPair> entries = phonebook.entries().sorted(Comparator.comparing(KVPair::getKey))
+                            .collect(Collectors.toList());
+                    try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                        writer.write("name,number\n");
+                        for (KVPair pair : entries) {
+                            writer.write(pair.getKey() + "," + pair.getValue() + "\n");
+                        }
+                    }
+                    return entries.size();
+                });
+                measure(print, "streaming", () -> CsvExporter.export(phonebook, file));
+                for (int runSize : RUN_SIZES) {
+                    measure(print, "sorted, runs of " + runSize, () -> CsvExporter.exportSorted(phonebook, file, runSize));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private interface Export {
+        long run() throws IOException;
+    }
+
+    private static void measure(boolean print, String name, Export export) throws IOException {
+        long start = System.nanoTime();
+        try {
+            long rows = export.run();
+            if (print)
+                System.out.printf("%-26s %,14.0f%n", name, rows * 1e9 / (System.nanoTime() - start));
+        } catch (OutOfMemoryError e) {
+            if (print)
+                System.out.printf("%-26s %14s%n", name, "out of memory");
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package phonebook.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import phonebook.CompactPhonebook;
+import phonebook.CsvImporter;
+import phonebook.Phonebook;
+
+/**
+ * <p>
+ * {@link CsvImportBenchmark} writes a CSV file of random rows, a few of them
+ * malformed, and imports it into a {@link CompactPhonebook} twice: once line by
+ * line, with a {@link BufferedReader} and one
+ * {@link Phonebook#addEntry(String, String)} per row, and once with a
+ * {@link CsvImporter}, for several chunk sizes, and reports rows per second.
+ * </p>
+ *
+ * <p>
+ * Run as a Java application. The optional argument is the number of rows. The
+ * file is read from the page cache, since it was just written. Parsing runs on
+ * the common {@link ForkJoinPool}, so the gap between the two imports grows with
+ * the number of cores.
+ * </p>
+ *
+ * @see CsvImporter
+ */
+public class CsvImportBenchmark {
+
+    private static final int[] CHUNK_SIZES = { 64 << 10, 1 << 20, CsvImporter.DEFAULT_CHUNK_SIZE };
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        Path file = Files.createTempFile("phonebook", ".csv");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writer.write("name,number\n");
+                for (int i = 0; i < rows; i++) {
+                    if (i % 100_000 == 99_999)
+                        writer.write("a malformed row\n");
+                    else
+                        writer.write("\"Doe, Name" + i + "\",555-" + i + "\n");
+                }
+            }
+            System.out.printf("%,d rows, %,d bytes, %d threads%n", rows, Files.size(file),
+                    ForkJoinPool.getCommonPoolParallelism());
+            System.out.printf("%-24s %14s%n", "import", "rows/s");
+
+            for (int round = 0; round < 2; round++) { // The first round warms up
+                Phonebook phonebook = new CompactPhonebook();
+                long start = System.nanoTime(), imported = 0;
+                try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    reader.readLine(); // The header
+                    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                        int comma = line.lastIndexOf(',');
+                        if (line.startsWith("\"") && comma > 1) {
+                            phonebook.addEntry(line.substring(1, comma - 1), line.substring(comma + 1));
+                            imported++;
+                        }
+                    }
+                }
+                if (round > 0)
+                    print("line by line", imported * 1e9 / (System.nanoTime() - start));
+
+                for (int chunkSize : CHUNK_SIZES) {
+                    phonebook = new CompactPhonebook();
+                    CsvImporter.Report report = new CsvImporter(phonebook, true, chunkSize, ForkJoinPool.commonPool(),
+                            2 * ForkJoinPool.getCommonPoolParallelism()).importFile(file);
+                    if (report.getRows() != imported)
+                        throw new IllegalStateException("Lost rows: " + report);
+                    if (round > 0)
+                        print("chunks of " + (chunkSize >> 10) + " KiB", report.getRowsPerSecond());
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void print(String name, double rowsPerSecond) {
+        System.out.printf("%-24s %,14.0f%n", name, rowsPerSecond);
+    }
+}
@@ -0,0 +1,182 @@
+package phonebook.benchmarks;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import phonebook.ConcurrentPhonebook;
+import phonebook.Phonebook;
+import phonebook.hashes.CollisionResolver;
+import phonebook.server.HttpPhonebookServer;
+
+/**
+ * <p>
+ * {@link HttpLoadTest} starts an {@link HttpPhonebookServer} on the loopback
+ * interface and drives it with a fixed number of concurrent connections, each
+ * of which sends its next request as soon as the previous one is answered.
+ * Requests are 95&#37; lookups (alternating between {@code /number} and
+ * {@code /owner}) of preloaded entries and 5&#37; writes, which alternately add
+ * and delete an entry of the connection's own. After a warm-up, it reports the
+ * throughput and the median, 99th and 99.9th percentile latencies.
+ * </p>
+ *
+ * <p>
+ * Run as a Java application. The optional arguments are the number of
+ * concurrent connections (10,000 by default) and the number of seconds to
+ * measure for. Client and server share the JVM and the machine, so the figures
+ * are a lower bound on what the server alone can do; the process also needs a
+ * file descriptor limit of at least twice the number of connections. The JDK
+ * server is tuned by {@link HttpPhonebookServer#tuneJdkServer()}.
+ * </p>
+ *
+ * @see HttpPhonebookServer
+ */
+public class HttpLoadTest {
+
+    private static final int PRELOADED_ENTRIES = 10_000;
+    private static final int WRITE_PERCENT = 5;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 10;
+        HttpPhonebookServer.tuneJdkServer();
+
+        Phonebook phonebook = new ConcurrentPhonebook(CollisionResolver.SEPARATE_CHAINING,
+                CollisionResolver.SEPARATE_CHAINING);
+        for (int i = 0; i < PRELOADED_ENTRIES; i++) {
+            phonebook.addEntry("Name" + i, "555-" + i);
+        }
+        try (var server = new HttpPhonebookServer(phonebook, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            server.start();
+            System.out.println("Server on " + (server.usesVirtualThreads() ? "virtual" : "platform") + " threads, "
+                    + connections + " connections");
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(30)).build();
+            String base = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort();
+            run(client, base, connections, Math.max(1, seconds / 4)); // Warm-up, and opens the connections
+            run(client, base, connections, seconds).print();
+        }
+    }
+
+    /**
+     * The latencies of one measurement, in nanoseconds.
+     */
+    private static final class Result {
+        final long[] latencies;
+        final long errors, nanos;
+
+        Result(long[] latencies, long errors, long nanos) {
+            this.latencies = latencies;
+            this.errors = errors;
+            this.nanos = nanos;
+        }
+
+        void print() {
+            Arrays.sort(latencies);
+            System.out.printf("  %,d requests, %,.0f requests/s, %,d errors%n", latencies.length,
+                    latencies.length * 1e9 / nanos, errors);
+            System.out.printf("  latency: p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n", percentile(0.5),
+                    percentile(0.99), percentile(0.999), percentile(1));
+        }
+
+        private double percentile(double p) {
+            if (latencies.length == 0)
+                return Double.NaN;
+            return latencies[(int) Math.min(latencies.length - 1, Math.ceil(p * latencies.length) - 1)] / 1e6;
+        }
+    }
+
+    /**
+     * The requests of one connection, sent one after the other. Only one request
+     * is in flight at a time, so the latencies need no synchronization.
+     */
+    private static final class Connection {
+        private final HttpClient client;
+        private final String base, ownName, ownNumber;
+        private final long deadline;
+        private final CountDownLatch done;
+        private final AtomicLong errors;
+        private long[] latencies = new long[64];
+        private int count;
+        private boolean added;
+
+        Connection(HttpClient client, String base, int id, long deadline, CountDownLatch done, AtomicLong errors) {
+            this.client = client;
+            this.base = base;
+            this.ownName = "Writer" + id;
+            this.ownNumber = "000-" + id;
+            this.deadline = deadline;
+            this.done = done;
+            this.errors = errors;
+        }
+
+        void next() {
+            if (System.nanoTime() >= deadline) {
+                done.countDown();
+                return;
+            }
+            long start = System.nanoTime();
+            client.sendAsync(request(), HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                if (failure != null || response.statusCode() >= 500 || response.statusCode() == 400)
+                    errors.incrementAndGet();
+                if (count == latencies.length)
+                    latencies = Arrays.copyOf(latencies, count * 2);
+                latencies[count++] = System.nanoTime() - start;
+                next();
+            });
+        }
+
+        private HttpRequest request() {
+            ThreadLocalRandom rng = ThreadLocalRandom.current();
+            if (rng.nextInt(100) < WRITE_PERCENT) {
+                added = !added;
+                URI uri = URI.create(base + "/entry?name=" + encode(ownName) + "&number=" + encode(ownNumber));
+                return (added ? HttpRequest.newBuilder(uri).PUT(HttpRequest.BodyPublishers.noBody())
+                        : HttpRequest.newBuilder(uri).DELETE()).build();
+            }
+            int key = rng.nextInt(PRELOADED_ENTRIES);
+            String path = rng.nextBoolean() ? "/number?name=" + encode("Name" + key) : "/owner?number=" + encode("555-" + key);
+            return HttpRequest.newBuilder(URI.create(base + path)).GET().build();
+        }
+    }
+
+    private static Result run(HttpClient client, String base, int connections, long seconds)
+            throws InterruptedException {
+        long start = System.nanoTime(), deadline = start + seconds * 1_000_000_000L;
+        CountDownLatch done = new CountDownLatch(connections);
+        AtomicLong errors = new AtomicLong();
+        Connection[] all = new Connection[connections];
+        for (int i = 0; i < connections; i++) {
+            all[i] = new Connection(client, base, i, deadline, done, errors);
+            all[i].next();
+        }
+        done.await();
+        long nanos = System.nanoTime() - start;
+        long total = 0;
+        for (Connection connection : all) {
+            total += connection.count;
+        }
+        long[] latencies = new long[(int) total];
+        int offset = 0;
+        for (Connection connection : all) {
+            System.arraycopy(connection.latencies, 0, latencies, offset, connection.count);
+            offset += connection.count;
+        }
+        return new Result(latencies, errors.get(), nanos);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,76 @@
+package phonebook.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+import phonebook.CompactPhonebook;
+import phonebook.MappedPhonebook;
+import phonebook.Phonebook;
+
+/**
+ * <p>
+ * {@link MappedStartupBenchmark} shows that opening a {@link MappedPhonebook}
+ * takes the same time whatever the size of the phonebook, unlike
+ * {@link Phonebook#loadSnapshot(Path)}. For phonebooks of growing sizes, it
+ * reports the time to open the mapped files, the time of the first lookups,
+ * which page parts of the files in, and, for comparison, the time to load a
+ * snapshot of the same entries into a {@link CompactPhonebook}.
+ * </p>
+ *
+ * <p>
+ * Run as a Java application. The optional argument is the number of lookups to
+ * time after opening. The files are read from the page cache, since they were
+ * just written; on a cold cache, the first lookups take a disk read each, but
+ * opening does not.
+ * </p>
+ *
+ * @see MappedPhonebook
+ */
+public class MappedStartupBenchmark {
+
+    private static final int[] SIZES = { 10_000, 100_000, 1_000_000 };
+
+    public static void main(String[] args) throws IOException {
+        int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+
+        System.out.printf("%10s %12s %16s %16s%n", "entries", "open", lookups + " lookups", "loadSnapshot");
+        for (int size : SIZES) {
+            Path directory = Files.createTempDirectory("phonebook-mapped");
+            Path snapshot = directory.resolve("phonebook.snapshot");
+            try {
+                Phonebook source = new CompactPhonebook();
+                for (int i = 0; i < size; i++) {
+                    source.addEntry("Name" + i, "555-" + i);
+                }
+                MappedPhonebook.write(source, directory);
+                source.saveSnapshot(snapshot);
+                source = null;
+
+                long start = System.nanoTime();
+                MappedPhonebook mapped = MappedPhonebook.open(directory);
+                long open = System.nanoTime() - start;
+                ThreadLocalRandom rng = ThreadLocalRandom.current();
+                int found = 0;
+                start = System.nanoTime();
+                for (int i = 0; i < lookups; i++) {
+                    found += mapped.getNumberOf("Name" + rng.nextInt(size)) != null ? 1 : 0;
+                }
+                long lookup = System.nanoTime() - start;
+                if (found != lookups)
+                    throw new IllegalStateException("Lost entries: found " + found + " of " + lookups);
+
+                start = System.nanoTime();
+                new CompactPhonebook().loadSnapshot(snapshot);
+                long load = System.nanoTime() - start;
+                System.out.printf("%,10d %9.3f ms %13.1f ms %13.1f ms%n", size, open / 1e6, lookup / 1e6, load / 1e6);
+            } finally {
+                Files.deleteIfExists(snapshot);
+                Files.deleteIfExists(directory.resolve(MappedPhonebook.NAMES_FILE));
+                Files.deleteIfExists(directory.resolve(MappedPhonebook.NUMBERS_FILE));
+                Files.delete(directory);
+            }
+        }
+    }
+}
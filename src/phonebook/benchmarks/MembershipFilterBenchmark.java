@@ -0,0 +1,68 @@
+package phonebook.benchmarks;
+
+import phonebook.Phonebook;
+import phonebook.hashes.CollisionResolver;
+import phonebook.hashes.FilteredHashTable;
+
+/**
+ * <p>
+ * {@link MembershipFilterBenchmark} screens phone numbers against
+ * {@link Phonebook}s of every {@link CollisionResolver}, with and without
+ * {@link Phonebook#Phonebook(CollisionResolver, CollisionResolver, double)
+ * membership filters}: most numbers are not in the phonebook, as when incoming
+ * calls are checked for spam. It reports the average time of a
+ * {@link Phonebook#getOwnerOf(String)} call, and the
+ * {@link FilteredHashTable.Metrics} of the filter.
+ * </p>
+ *
+ * <p>
+ * Run as a Java application. The optional arguments are the share of numbers
+ * that are in the phonebook, 0.1 by default, and the target false-positive rate
+ * of the filters, 0.01 by default.
+ * </p>
+ */
+public class MembershipFilterBenchmark {
+
+    private static final int ENTRIES = 2000; // The largest openly addressed tables hold about 2,400 entries
+    private static final int LOOKUPS = 2_000_000;
+
+    public static void main(String[] args) {
+        double present = args.length > 0 ? Double.parseDouble(args[0]) : 0.1;
+        double rate = args.length > 1 ? Double.parseDouble(args[1]) : 0.01;
+
+        String[] numbers = new String[LOOKUPS];
+        for (int i = 0; i < numbers.length; i++) {
+            long mixed = i * 0x9e3779b97f4a7c15L >>> 11;
+            numbers[i] = (double) (mixed & 0xffff) / 0x10000 < present ? "555-" + (mixed >>> 16) % ENTRIES
+                    : "900-" + (mixed >>> 16) % 1_000_000; // Fresh, as if read from a request
+        }
+        System.out.printf("%-24s %14s %14s   %s%n", "numbers", "getOwnerOf", "filtered", "filter");
+        for (CollisionResolver resolver : new CollisionResolver[] { CollisionResolver.SEPARATE_CHAINING,
+                CollisionResolver.LINEAR_PROBING, CollisionResolver.ORDERED_LINEAR_PROBING,
+                CollisionResolver.QUADRATIC_PROBING, CollisionResolver.HASH_ARRAY_MAPPED_TRIE }) {
+            Phonebook plain = new Phonebook(resolver, resolver), filtered = new Phonebook(resolver, resolver, rate);
+            for (int i = 0; i < ENTRIES; i++) {
+                plain.addEntry("Name" + i, "555-" + i);
+                filtered.addEntry("Name" + i, "555-" + i);
+            }
+            time(plain, numbers); // Warm-up
+            time(filtered, numbers);
+            double without = time(plain, numbers), with = time(filtered, numbers);
+            System.out.printf("%-24s %11.1f ns %11.1f ns   %s%n", resolver, without, with,
+                    filtered.getNumberFilterMetrics());
+        }
+    }
+
+    // The average nanoseconds per lookup.
+    private static double time(Phonebook phonebook, String[] numbers) {
+        long start = System.nanoTime();
+        int found = 0;
+        for (String number : numbers) {
+            found += phonebook.getOwnerOf(number) != null ? 1 : 0;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (found == 0)
+            throw new IllegalStateException("No number was found.");
+        return (double) elapsed / numbers.length;
+    }
+}
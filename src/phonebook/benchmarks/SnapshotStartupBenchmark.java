@@ -0,0 +1,92 @@
+package phonebook.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+
+import phonebook.CompactPhonebook;
+import phonebook.Phonebook;
+import phonebook.hashes.CollisionResolver;
+
+/**
+ * <p>
+ * {@link SnapshotStartupBenchmark} compares two ways of rebuilding a phonebook
+ * at startup: parsing a CSV file and calling
+ * {@link Phonebook#addEntry(String, String)} for every line, and
+ * {@link Phonebook#loadSnapshot(Path)} on a snapshot of the same entries. Both
+ * files are written once, up front, and each way is timed from opening the file
+ * to the last entry being in place; the best of several rounds is reported.
+ * </p>
+ *
+ * <p>
+ * Run as a Java application. The optional arguments are the number of rounds
+ * and the number of entries of the {@link CompactPhonebook}; the
+ * {@link Phonebook} over separate chaining tables gets a fifth as many, since its
+ * chains lengthen once the tables stop growing.
+ * </p>
+ *
+ * @see Phonebook#saveSnapshot(Path)
+ * @see Phonebook#loadSnapshot(Path)
+ */
+public class SnapshotStartupBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int entries = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        compare("CompactPhonebook", CompactPhonebook::new, entries, rounds);
+        compare("Phonebook, separate chaining",
+                () -> new Phonebook(CollisionResolver.SEPARATE_CHAINING, CollisionResolver.SEPARATE_CHAINING),
+                entries / 5, rounds);
+    }
+
+    private static void compare(String name, Supplier<Phonebook> factory, int entries, int rounds)
+            throws IOException {
+        Path csv = Files.createTempFile("phonebook", ".csv"), snapshot = Files.createTempFile("phonebook", ".snapshot");
+        try {
+            Phonebook phonebook = factory.get();
+            try (BufferedWriter writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+                for (int i = 0; i < entries; i++) {
+                    String entryName = "Name" + i, number = "555-" + i;
+                    phonebook.addEntry(entryName, number);
+                    writer.write(entryName);
+                    writer.write(',');
+                    writer.write(number);
+                    writer.newLine();
+                }
+            }
+            phonebook.saveSnapshot(snapshot);
+
+            long bestCsv = Long.MAX_VALUE, bestSnapshot = Long.MAX_VALUE;
+            for (int round = 0; round < rounds; round++) {
+                long start = System.nanoTime();
+                Phonebook fromCsv = factory.get();
+                try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+                    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                        int comma = line.indexOf(',');
+                        fromCsv.addEntry(line.substring(0, comma), line.substring(comma + 1));
+                    }
+                }
+                bestCsv = Math.min(bestCsv, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                Phonebook fromSnapshot = factory.get();
+                fromSnapshot.loadSnapshot(snapshot);
+                bestSnapshot = Math.min(bestSnapshot, System.nanoTime() - start);
+                if (fromCsv.size() != entries || fromSnapshot.size() != entries)
+                    throw new IllegalStateException("Lost entries: " + fromCsv.size() + ", " + fromSnapshot.size());
+            }
+            System.out.printf("%s, %,d entries (snapshot %,d bytes)%n", name, entries, Files.size(snapshot));
+            System.out.printf("  CSV + addEntry  %,10.1f ms%n", bestCsv / 1e6);
+            System.out.printf("  loadSnapshot    %,10.1f ms  (%.1fx)%n", bestSnapshot / 1e6,
+                    (double) bestCsv / bestSnapshot);
+        } finally {
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(snapshot);
+        }
+    }
+}
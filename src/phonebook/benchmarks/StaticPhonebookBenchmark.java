@@ -0,0 +1,82 @@
+package phonebook.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+import phonebook.hashes.MinimalPerfectHash;
+import phonebook.hashes.MinimalPerfectHashTable;
+import phonebook.hashes.BidirectionalIndex;
+import phonebook.utils.KVPair;
+
+/**
+ * <p>
+ * {@link StaticPhonebookBenchmark} measures {@link MinimalPerfectHashTable}s of
+ * growing sizes: the time to build the {@link MinimalPerfectHash} of the keys,
+ * the bits per key that it takes, the number of levels it spreads the keys over,
+ * and the average time of a successful lookup, next to that of a
+ * {@link BidirectionalIndex}, the growable table of
+ * {@link phonebook.CompactPhonebook}, over the same pairs.
+ * </p>
+ *
+ * <p>
+ * Run as a Java application. The optional argument is the largest number of keys
+ * to measure; the default stays well within a small heap. The build runs on the
+ * common {@link ForkJoinPool}, whose parallelism is reported first, so the build
+ * times scale with the number of cores.
+ * </p>
+ *
+ * @see phonebook.StaticPhonebook
+ */
+public class StaticPhonebookBenchmark {
+
+    private static final int LOOKUPS = 1_000_000;
+
+    public static void main(String[] args) {
+        int largest = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        System.out.println("Parallelism: " + ForkJoinPool.getCommonPoolParallelism());
+        System.out.printf("%12s %12s %10s %8s %14s %14s%n", "keys", "build", "bits/key", "levels", "get (perfect)",
+                "get (compact)");
+        for (int size = 10_000; size <= largest; size *= 10) {
+            List<String> keys = new ArrayList<>(size);
+            List<KVPair> pairs = new ArrayList<>(size);
+            BidirectionalIndex compact = new BidirectionalIndex();
+            for (int i = 0; i < size; i++) {
+                keys.add("Name" + i);
+                pairs.add(new KVPair("Name" + i, "555-" + i));
+                compact.put("Name" + i, "555-" + i);
+            }
+            MinimalPerfectHash.build(keys); // Warm-up
+            long start = System.nanoTime();
+            MinimalPerfectHash function = MinimalPerfectHash.build(keys);
+            long build = System.nanoTime() - start;
+            MinimalPerfectHashTable perfect = MinimalPerfectHashTable.build(pairs.iterator());
+            pairs = null;
+
+            String[] probes = new String[LOOKUPS];
+            for (int i = 0; i < probes.length; i++) {
+                probes[i] = "Name" + (int) ((i * 0x9e3779b97f4a7c15L >>> 1) % size); // Fresh, as if read from a request
+            }
+            time(perfect::get, probes); // Warm-up
+            time(compact::getNumberOf, probes);
+            System.out.printf("%,12d %9.1f ms %10.2f %8d %11.1f ns %11.1f ns%n", size, build / 1e6,
+                    function.bitsPerKey(), function.levels(), time(perfect::get, probes),
+                    time(compact::getNumberOf, probes));
+        }
+    }
+
+    // The average nanoseconds per successful lookup.
+    private static double time(Function<String, String> get, String[] probes) {
+        long start = System.nanoTime();
+        int found = 0;
+        for (String probe : probes) {
+            found += get.apply(probe) != null ? 1 : 0;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (found != probes.length)
+            throw new IllegalStateException("Lost keys: found " + found + " of " + probes.length);
+        return (double) elapsed / probes.length;
+    }
+}
@@ -0,0 +1,102 @@
+package phonebook.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import phonebook.hashes.TieredHashTable;
+
+/**
+ * <p>
+ * {@link TieredHashTableBenchmark} fills a {@link TieredHashTable} with a
+ * million pairs, then looks up keys drawn from a Zipf distribution, as the
+ * numbers of a phonebook are looked up in practice, with hot tiers of growing
+ * sizes. For every size it reports the hit ratio of the hot tier, the disk reads
+ * and the read amplification of the lookups, and their average time. A size of
+ * 0 is the disk tier alone.
+ * </p>
+ *
+ * <p>
+ * Run as a Java application. The optional arguments are the number of pairs and
+ * the exponent of the Zipf distribution, 0.99 by default. The file is created in
+ * the temporary directory, where it is mostly served by the page cache, and
+ * deleted at the end.
+ * </p>
+ */
+public class TieredHashTableBenchmark {
+
+    private static final int LOOKUPS = 2_000_000;
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        double exponent = args.length > 1 ? Double.parseDouble(args[1]) : 0.99;
+
+        Path file = Files.createTempFile("phonebook", ".disk");
+        Files.delete(file);
+        try {
+            long start = System.nanoTime();
+            try (TieredHashTable table = new TieredHashTable(file, 0)) {
+                for (int i = 0; i < size; i++) {
+                    table.put("Name" + i, "555-" + i);
+                }
+            }
+            System.out.printf("Wrote %,d pairs in %.1f s, %,d bytes%n", size, (System.nanoTime() - start) / 1e9,
+                    Files.size(file));
+
+            String[] probes = zipf(size, exponent, LOOKUPS);
+            System.out.printf("%12s %10s %14s %14s %12s%n", "hot pairs", "hit ratio", "reads/lookup", "read amp.",
+                    "get");
+            for (int hot : new int[] { 0, 1_000, 10_000, 100_000 }) {
+                try (TieredHashTable table = new TieredHashTable(file, hot)) {
+                    lookUp(table, probes); // Warms the page cache and the JIT
+                }
+                try (TieredHashTable table = new TieredHashTable(file, hot)) {
+                    lookUp(table, probes); // Warms the hot tier, then measure a second pass
+                    long before = table.getDiskReads(), hits = table.getHits(), misses = table.getMisses();
+                    double elapsed = lookUp(table, probes);
+                    long lookups = table.getHits() + table.getMisses() - hits - misses;
+                    System.out.printf("%,12d %9.1f%% %14.3f %14.2f %9.1f ns%n", hot,
+                            100.0 * (table.getHits() - hits) / lookups,
+                            (double) (table.getDiskReads() - before) / lookups, table.getReadAmplification(),
+                            elapsed);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Keys of ranks drawn from a Zipf distribution over [0, size), by inverting its cumulative distribution.
+    private static String[] zipf(int size, double exponent, int count) {
+        double[] cumulative = new double[size];
+        double sum = 0;
+        for (int rank = 0; rank < size; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        String[] probes = new String[count];
+        for (int i = 0; i < count; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            rank = rank < 0 ? -rank - 1 : rank;
+            int key = (int) ((rank * 0x9e3779b97f4a7c15L >>> 1) % size); // Popular keys are spread over the file
+            probes[i] = "Name" + key;
+        }
+        return probes;
+    }
+
+    // The average nanoseconds per lookup.
+    private static double lookUp(TieredHashTable table, String[] probes) {
+        long start = System.nanoTime();
+        int found = 0;
+        for (String probe : probes) {
+            found += table.get(probe) != null ? 1 : 0;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (found != probes.length)
+            throw new IllegalStateException("Lost keys: found " + found + " of " + probes.length);
+        return (double) elapsed / probes.length;
+    }
+}
@@ -0,0 +1,102 @@
+package phonebook.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import phonebook.DurablePhonebook;
+import phonebook.hashes.CollisionResolver;
+
+/**
+ * <p>
+ * {@link WriteAheadLogBenchmark} measures the write throughput of a
+ * {@link DurablePhonebook} for several numbers of concurrent writers and sync
+ * intervals. Every writer adds and deletes random entries for a while, each
+ * mutation returning only once it is durable; the report gives the mutations per
+ * second and the average number of mutations that shared an {@code fsync}, i.e.
+ * the size of a group commit.
+ * </p>
+ *
+ * <p>
+ * Run as a Java application. The optional arguments are the number of
+ * milliseconds to measure every configuration for and the directory to keep the
+ * files in, which should be on the device of interest; by default, a temporary
+ * directory is used. Absolute figures depend almost entirely on how long the
+ * device takes to sync.
+ * </p>
+ *
+ * @see DurablePhonebook
+ */
+public class WriteAheadLogBenchmark {
+
+    private static final int[] WRITERS = { 1, 4, 16, 64 };
+    private static final long[] SYNC_INTERVALS_MILLIS = { 0, 1, 5 };
+    private static final int NAMES = 2000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        boolean temporary = args.length < 2;
+        Path directory = temporary ? Files.createTempDirectory("phonebook-wal") : Path.of(args[1]);
+
+        System.out.printf("%-8s %-10s %14s %12s%n", "writers", "interval", "mutations/s", "group size");
+        try {
+            for (long interval : SYNC_INTERVALS_MILLIS) {
+                for (int writers : WRITERS) {
+                    clear(directory);
+                    try (DurablePhonebook phonebook = new DurablePhonebook(CollisionResolver.SEPARATE_CHAINING,
+                            CollisionResolver.SEPARATE_CHAINING, directory, interval)) {
+                        run(phonebook, writers, millis / 4); // Warm-up
+                        long mutations = phonebook.getLoggedCount(), syncs = phonebook.getSyncCount();
+                        double perSecond = run(phonebook, writers, millis);
+                        mutations = phonebook.getLoggedCount() - mutations;
+                        syncs = phonebook.getSyncCount() - syncs;
+                        System.out.printf("%-8d %-10s %,14.0f %12.1f%n", writers, interval + " ms", perSecond,
+                                (double) mutations / Math.max(1, syncs));
+                    }
+                }
+            }
+        } finally {
+            clear(directory);
+            if (temporary)
+                Files.delete(directory);
+        }
+    }
+
+    private static double run(DurablePhonebook phonebook, int writers, long millis) throws InterruptedException {
+        long before = phonebook.getLoggedCount();
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(writers);
+        for (int t = 0; t < writers; t++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom rng = ThreadLocalRandom.current();
+                try {
+                    while (!stop.get()) {
+                        int i = rng.nextInt(NAMES);
+                        if (rng.nextBoolean())
+                            phonebook.addEntry("Name" + i, "555-" + i);
+                        else
+                            phonebook.deleteEntry("Name" + i, "555-" + i);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        long start = System.nanoTime();
+        Thread.sleep(millis);
+        stop.set(true);
+        done.await();
+        return (phonebook.getLoggedCount() - before) * 1e9 / (System.nanoTime() - start);
+    }
+
+    // Deletes the files of a DurablePhonebook, and nothing else, from directory.
+    private static void clear(Path directory) throws IOException {
+        Files.deleteIfExists(directory.resolve(DurablePhonebook.SNAPSHOT_FILE));
+        Files.deleteIfExists(directory.resolve(DurablePhonebook.LOG_FILE));
+    }
+}
@@ -0,0 +1,452 @@
+package phonebook.hashes;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.Keys;
+
+/**
+ * <p>
+ * {@link BidirectionalIndex} stores one-to-one &lt;name, number&gt; entries and
+ * finds them by <b>either</b> half in amortized constant time. Unlike a pair of
+ * {@link HashTable}s, it stores every entry <b>once</b>: the names and numbers
+ * live in two parallel arrays, indexed by an {@code int} entry id, and the two
+ * lookup directions are plain {@code int[]} tables of ids, openly addressed with
+ * Linear Probing. An entry costs two references in the entry arrays plus two
+ * {@code int}s per index cell, instead of two {@link KVPair}s and their table
+ * cells.
+ * </p>
+ *
+ * <p>
+ * The index tables have power-of-two lengths and are kept at most half full.
+ * Deletions shift the rest of the probe chain back instead of leaving
+ * tombstones, so lookups never slow down under churn. Ids of deleted entries are
+ * recycled.
+ * </p>
+ *
+ * <p>
+ * Since every name has exactly one number and vice versa, {@link #put(String, String)}
+ * first removes any other entry that holds the given name or the given number.
+ * </p>
+ *
+ * @see HashTable
+ */
+public class BidirectionalIndex {
+
+    private static final int INITIAL_CAPACITY = 16; // Index cells; must be a power of two
+    private static final int EMPTY = 0; // Index cells hold id + 1
+    private static final int LOOKUP_GROUP = 8; // Lookups whose probes the batch methods interleave
+
+    private String[] names, numbers;
+    private int[] byName, byNumber;
+    private int[] freeIds;
+    private int freeCount, nextId, count;
+    private int shift; // 32 - log2(index length)
+
+    /**
+     * Default constructor. Creates an empty index.
+     */
+    public BidirectionalIndex() {
+        names = new String[INITIAL_CAPACITY / 2];
+        numbers = new String[INITIAL_CAPACITY / 2];
+        freeIds = new int[INITIAL_CAPACITY / 2];
+        byName = new int[INITIAL_CAPACITY];
+        byNumber = new int[INITIAL_CAPACITY];
+        shift = 32 - Integer.numberOfTrailingZeros(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Retrieves the number paired with name.
+     *
+     * @param name The name to search for.
+     * @return The number of the entry with the given name, or {@code null} if
+     *         name is {@code null} or there is no such entry.
+     */
+    public String getNumberOf(String name) {
+        int id = find(byName, names, name);
+        return id < 0 ? null : numbers[id];
+    }
+
+    /**
+     * Retrieves the name paired with number.
+     *
+     * @param number The number to search for.
+     * @return The name of the entry with the given number, or {@code null} if
+     *         number is {@code null} or there is no such entry.
+     */
+    public String getNameOf(String number) {
+        int id = find(byNumber, numbers, number);
+        return id < 0 ? null : names[id];
+    }
+
+    /**
+     * Retrieves the number paired with a name given as any {@link CharSequence},
+     * without converting it into a {@link String}.
+     *
+     * @param name The name to search for.
+     * @return The number of the entry with the given name, or {@code null} if
+     *         name is {@code null} or there is no such entry.
+     */
+    public String getNumberOf(CharSequence name) {
+        int id = find(byName, names, name);
+        return id < 0 ? null : numbers[id];
+    }
+
+    /**
+     * Retrieves the number paired with a name given as a slice of UTF-8 bytes,
+     * without decoding it.
+     *
+     * @param utf8   The bytes.
+     * @param offset The index of the first byte of the name.
+     * @param length The number of bytes of the name.
+     * @return The number of the entry with the given name, or {@code null} if the
+     *         bytes are not well-formed UTF-8 or there is no such entry.
+     * @throws IllegalArgumentException if utf8 is {@code null} or the slice is out
+     *                                  of its bounds.
+     */
+    public String getNumberOf(byte[] utf8, int offset, int length) {
+        int id = find(byName, names, utf8, offset, length);
+        return id < 0 ? null : numbers[id];
+    }
+
+    /**
+     * Retrieves the name paired with a number given as any {@link CharSequence},
+     * without converting it into a {@link String}.
+     *
+     * @param number The number to search for.
+     * @return The name of the entry with the given number, or {@code null} if
+     *         number is {@code null} or there is no such entry.
+     */
+    public String getNameOf(CharSequence number) {
+        int id = find(byNumber, numbers, number);
+        return id < 0 ? null : names[id];
+    }
+
+    /**
+     * Retrieves the name paired with a number given as a slice of UTF-8 bytes,
+     * without decoding it.
+     *
+     * @param utf8   The bytes.
+     * @param offset The index of the first byte of the number.
+     * @param length The number of bytes of the number.
+     * @return The name of the entry with the given number, or {@code null} if the
+     *         bytes are not well-formed UTF-8 or there is no such entry.
+     * @throws IllegalArgumentException if utf8 is {@code null} or the slice is out
+     *                                  of its bounds.
+     */
+    public String getNameOf(byte[] utf8, int offset, int length) {
+        int id = find(byNumber, numbers, utf8, offset, length);
+        return id < 0 ? null : names[id];
+    }
+
+    /**
+     * Retrieves the numbers paired with many names at once, overlapping the memory
+     * accesses of several lookups.
+     *
+     * @param names The names to search for.
+     * @param out   Where to store the number of names[i], or {@code null}, at i.
+     *              Must be at least as long as names.
+     * @throws IllegalArgumentException if either array is {@code null}, or out is
+     *                                  shorter than names.
+     * @see HashTable#getAll(String[], String[])
+     */
+    public void getNumbersOf(String[] names, String[] out) {
+        findAll(byName, this.names, numbers, names, out);
+    }
+
+    /**
+     * Retrieves the names paired with many numbers at once, overlapping the memory
+     * accesses of several lookups.
+     *
+     * @param numbers The numbers to search for.
+     * @param out     Where to store the name of numbers[i], or {@code null}, at i.
+     *                Must be at least as long as numbers.
+     * @throws IllegalArgumentException if either array is {@code null}, or out is
+     *                                  shorter than numbers.
+     * @see HashTable#getAll(String[], String[])
+     */
+    public void getNamesOf(String[] numbers, String[] out) {
+        findAll(byNumber, this.numbers, names, numbers, out);
+    }
+
+    /**
+     * Pairs name with number. Any entry that holds either of them is replaced.
+     *
+     * @param name   The name of the entry.
+     * @param number The number of the entry.
+     * @throws IllegalArgumentException if either argument is {@code null}.
+     */
+    public void put(String name, String number) {
+        if (name == null || number == null)
+            throw new IllegalArgumentException("Provided: name=" + name + " and number=" + number);
+        int nameId = find(byName, names, name), numberId = find(byNumber, numbers, number);
+        if (nameId >= 0 && nameId == numberId)
+            return;
+        if (nameId >= 0) {
+            if (numberId >= 0)
+                release(numberId);
+            unlink(byNumber, numbers, slotOf(byNumber, numbers, nameId));
+            numbers[nameId] = number;
+            link(byNumber, numbers, nameId);
+        } else if (numberId >= 0) {
+            unlink(byName, names, slotOf(byName, names, numberId));
+            names[numberId] = name;
+            link(byName, names, numberId);
+        } else {
+            if ((count + 1) * 2 > byName.length)
+                grow();
+            int id = freeCount > 0 ? freeIds[--freeCount] : nextId++;
+            names[id] = name;
+            numbers[id] = number;
+            link(byName, names, id);
+            link(byNumber, numbers, id);
+            count++;
+        }
+    }
+
+    /**
+     * Removes the entry that holds name and the entry that holds number, if they
+     * exist. Either argument may be {@code null}, in which case only the other one
+     * is looked up.
+     *
+     * @param name   The name of an entry to remove.
+     * @param number The number of an entry to remove.
+     * @return The number of entries removed: 0, 1 or 2.
+     */
+    public int remove(String name, String number) {
+        int removed = 0, id = find(byName, names, name);
+        if (id >= 0) {
+            release(id);
+            removed++;
+        }
+        id = find(byNumber, numbers, number);
+        if (id >= 0) {
+            release(id);
+            removed++;
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the number of entries in this index.
+     *
+     * @return The number of entries in this index.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the number of cells of each of the two lookup tables.
+     *
+     * @return The length of the lookup tables.
+     */
+    public int capacity() {
+        return byName.length;
+    }
+
+    /**
+     * Grows the lookup tables, if needed, to at least capacity cells, so that a
+     * bulk load of a known size does not grow them along the way.
+     *
+     * @param capacity The number of cells each lookup table should have.
+     * @see #capacity()
+     */
+    public void presize(int capacity) {
+        while (byName.length < capacity && byName.length < 1 << 30) {
+            grow();
+        }
+    }
+
+    /**
+     * Streams the entries of this index as fresh &lt;name, number&gt;
+     * {@link KVPair}s, in id order. The index should not be modified while the
+     * {@link Stream} is in use.
+     *
+     * @return A sequential {@link Stream} over the entries of this index.
+     */
+    public Stream<KVPair> entries() {
+        return StreamSupport.stream(new EntrySpliterator(0, nextId), false);
+    }
+
+    private void release(int id) {
+        unlink(byName, names, slotOf(byName, names, id));
+        unlink(byNumber, numbers, slotOf(byNumber, numbers, id));
+        names[id] = null;
+        numbers[id] = null;
+        freeIds[freeCount++] = id;
+        count--;
+    }
+
+    private int home(String key) {
+        return home(key.hashCode());
+    }
+
+    private int home(int hash) {
+        return (hash * 0x9E3779B9) >>> shift; // Fibonacci hashing spreads the low-entropy bits
+    }
+
+    private int find(int[] index, String[] keys, String key) {
+        if (key == null)
+            return -1;
+        int mask = index.length - 1;
+        for (int slot = home(key);; slot = (slot + 1) & mask) {
+            int cell = index[slot];
+            if (cell == EMPTY)
+                return -1;
+            if (keys[cell - 1].equals(key))
+                return cell - 1;
+        }
+    }
+
+    private int find(int[] index, String[] keys, CharSequence key) {
+        if (key instanceof String || key == null)
+            return find(index, keys, (String) key);
+        int mask = index.length - 1;
+        for (int slot = home(Keys.hash(key));; slot = (slot + 1) & mask) {
+            int cell = index[slot];
+            if (cell == EMPTY)
+                return -1;
+            if (keys[cell - 1].contentEquals(key))
+                return cell - 1;
+        }
+    }
+
+    private int find(int[] index, String[] keys, byte[] utf8, int offset, int length) {
+        int mask = index.length - 1;
+        for (int slot = home(Keys.hashUtf8(utf8, offset, length));; slot = (slot + 1) & mask) {
+            int cell = index[slot];
+            if (cell == EMPTY)
+                return -1;
+            if (Keys.equalsUtf8(keys[cell - 1], utf8, offset, length))
+                return cell - 1;
+        }
+    }
+
+    // Hashes every query first, then probes in groups, one step at a time across the group, so that loads overlap.
+    private void findAll(int[] index, String[] keys, String[] values, String[] queries, String[] out) {
+        if (queries == null || out == null || out.length < queries.length)
+            throw new IllegalArgumentException("Provided: queries=" + (queries == null ? null : queries.length + " keys")
+                    + " and out=" + (out == null ? null : out.length + " cells"));
+        int mask = index.length - 1;
+        int[] slots = new int[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            slots[i] = queries[i] == null ? -1 : home(queries[i]);
+        }
+        int[] cells = new int[LOOKUP_GROUP];
+        String[] candidates = new String[LOOKUP_GROUP];
+        for (int base = 0; base < queries.length; base += LOOKUP_GROUP) {
+            int size = Math.min(LOOKUP_GROUP, queries.length - base);
+            for (int g = 0; g < size; g++) { // The home cells
+                int slot = slots[base + g];
+                cells[g] = slot < 0 ? EMPTY : index[slot];
+            }
+            for (int g = 0; g < size; g++) { // The entries they refer to
+                candidates[g] = cells[g] == EMPTY ? null : keys[cells[g] - 1];
+            }
+            for (int g = 0; g < size; g++) { // The comparisons, and probing on where the home cell did not match
+                String query = queries[base + g];
+                int cell = cells[g], slot = slots[base + g];
+                String candidate = candidates[g];
+                while (cell != EMPTY && !candidate.equals(query)) {
+                    slot = (slot + 1) & mask;
+                    cell = index[slot];
+                    candidate = cell == EMPTY ? null : keys[cell - 1];
+                }
+                out[base + g] = cell == EMPTY ? null : values[cell - 1];
+            }
+        }
+    }
+
+    // The slot of the index that refers to the (linked) entry id.
+    private int slotOf(int[] index, String[] keys, int id) {
+        int mask = index.length - 1, slot = home(keys[id]);
+        while (index[slot] != id + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void link(int[] index, String[] keys, int id) {
+        int mask = index.length - 1, slot = home(keys[id]);
+        while (index[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = id + 1;
+    }
+
+    // Empties a slot and shifts back the cells of its probe chain that would otherwise become unreachable.
+    private void unlink(int[] index, String[] keys, int slot) {
+        int mask = index.length - 1, hole = slot;
+        for (int i = (hole + 1) & mask; index[i] != EMPTY; i = (i + 1) & mask) {
+            int home = home(keys[index[i] - 1]);
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                index[hole] = index[i];
+                hole = i;
+            }
+        }
+        index[hole] = EMPTY;
+    }
+
+    private void grow() {
+        int length = byName.length * 2;
+        shift--;
+        byName = new int[length];
+        byNumber = new int[length];
+        names = Arrays.copyOf(names, length / 2);
+        numbers = Arrays.copyOf(numbers, length / 2);
+        freeIds = Arrays.copyOf(freeIds, length / 2);
+        for (int id = 0; id < nextId; id++) {
+            if (names[id] != null) {
+                link(byName, names, id);
+                link(byNumber, numbers, id);
+            }
+        }
+    }
+
+    private final class EntrySpliterator implements Spliterator<KVPair> {
+        private int id;
+        private final int fence;
+
+        EntrySpliterator(int id, int fence) {
+            this.id = id;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super KVPair> action) {
+            while (id < fence) {
+                int current = id++;
+                if (names[current] != null) {
+                    action.accept(new KVPair(names[current], numbers[current]));
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<KVPair> trySplit() {
+            int mid = (id + fence) >>> 1;
+            if (mid - id < ParallelScans.LEAF_SIZE)
+                return null;
+            var prefix = new EntrySpliterator(id, mid);
+            id = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - id;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | ORDERED;
+        }
+    }
+}
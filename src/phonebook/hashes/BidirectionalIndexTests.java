@@ -0,0 +1,137 @@
+package phonebook.hashes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BidirectionalIndexTests {
+    BidirectionalIndex index;
+
+    @Test
+    public void constructorTest1() {
+        index = new BidirectionalIndex();
+        assertEquals(0, index.size());
+        assertEquals(16, index.capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void putTest1() {
+        index = new BidirectionalIndex();
+        index.put("Jessie", null);
+    }
+
+    @Test
+    public void putTest2() {
+        index = new BidirectionalIndex();
+        index.put("Arnold", "894-59-0011");
+        index.put("Jessie", "705-12-7500");
+        assertEquals(2, index.size());
+        assertEquals("705-12-7500", index.getNumberOf("Jessie"));
+        assertEquals("Arnold", index.getNameOf("894-59-0011"));
+        assertNull(index.getNumberOf("Mary"));
+        assertNull(index.getNameOf(null));
+    }
+
+    @Test
+    public void putTest3() {
+        // a number taken over by another name leaves the old entry behind entirely
+        putTest2();
+        index.put("Tiffany", "894-59-0011");
+        assertEquals(2, index.size());
+        assertNull(index.getNumberOf("Arnold"));
+        assertEquals("Tiffany", index.getNameOf("894-59-0011"));
+        // and a name that takes over another entry's number replaces both
+        index.put("Tiffany", "705-12-7500");
+        assertEquals(1, index.size());
+        assertNull(index.getNumberOf("Jessie"));
+        assertNull(index.getNameOf("894-59-0011"));
+        assertEquals("Tiffany", index.getNameOf("705-12-7500"));
+    }
+
+    @Test
+    public void removeTest1() {
+        putTest2();
+        assertEquals(2, index.remove("Arnold", "705-12-7500"));
+        assertEquals(0, index.remove("Arnold", "705-12-7500"));
+        assertEquals(0, index.size());
+        assertNull(index.getNameOf("894-59-0011"));
+    }
+
+    @Test
+    public void randomizedTest1() {
+        // the index should agree with a pair of maps kept one-to-one by hand, through growth and churn
+        index = new BidirectionalIndex();
+        Map<String, String> numberOf = new HashMap<>(), nameOf = new HashMap<>();
+        Random rng = new Random(47);
+        for (int i = 0; i < 50000; i++) {
+            String name = "Name" + rng.nextInt(3000), number = "555-" + rng.nextInt(3000);
+            if (rng.nextInt(3) == 0) {
+                nameOf.remove(numberOf.remove(name));
+                numberOf.remove(nameOf.remove(number));
+                index.remove(name, number);
+            } else {
+                nameOf.remove(numberOf.remove(name));
+                numberOf.remove(nameOf.remove(number));
+                numberOf.put(name, number);
+                nameOf.put(number, name);
+                index.put(name, number);
+            }
+        }
+        assertEquals(numberOf.size(), index.size());
+        for (int i = 0; i < 3000; i++) {
+            assertEquals(numberOf.get("Name" + i), index.getNumberOf("Name" + i));
+            assertEquals(nameOf.get("555-" + i), index.getNameOf("555-" + i));
+        }
+        assertEquals(numberOf.size(), index.entries().count());
+    }
+
+    @Test
+    public void batchTest1() {
+        // batched lookups should agree with the single ones in both directions
+        index = new BidirectionalIndex();
+        for (int i = 0; i < 5000; i++) {
+            index.put("Name" + i, "555-" + i);
+        }
+        index.remove("Name" + 10, null);
+        String[] names = new String[5003], numbers = new String[5003], out = new String[5003];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = i == 20 ? null : "Name" + i;
+            numbers[i] = "555-" + i;
+        }
+        index.getNumbersOf(names, out);
+        for (int i = 0; i < names.length; i++) {
+            assertEquals(index.getNumberOf(names[i]), out[i]);
+        }
+        assertEquals("555-1", out[1]);
+        index.getNamesOf(numbers, out);
+        for (int i = 0; i < numbers.length; i++) {
+            assertEquals(index.getNameOf(numbers[i]), out[i]);
+        }
+        assertEquals(null, out[10]);
+        assertEquals("Name20", out[20]);
+    }
+
+    @Test
+    public void inPlaceTest1() {
+        // lookups from a CharSequence or UTF-8 bytes should agree with the String ones in both directions
+        index = new BidirectionalIndex();
+        for (int i = 0; i < 1000; i++) {
+            index.put("Name" + i, "555-" + i);
+        }
+        index.remove("Name" + 10, null);
+        for (int i = 0; i < 1100; i++) {
+            String name = "Name" + i, number = "555-" + i;
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8), numberBytes = number.getBytes(StandardCharsets.UTF_8);
+            assertEquals(index.getNumberOf(name), index.getNumberOf(new StringBuilder(name)));
+            assertEquals(index.getNumberOf(name), index.getNumberOf(nameBytes, 0, nameBytes.length));
+            assertEquals(index.getNameOf(number), index.getNameOf(new StringBuilder(number)));
+            assertEquals(index.getNameOf(number), index.getNameOf(numberBytes, 0, numberBytes.length));
+        }
+    }
+}
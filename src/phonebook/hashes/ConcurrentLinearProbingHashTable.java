@@ -0,0 +1,355 @@
+package phonebook.hashes;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.PrimeGenerator;
+
+/**
+ * <p>
+ * {@link ConcurrentLinearProbingHashTable} is a <b>thread-safe</b>
+ * {@link HashTable} which resolves collisions with <b>Linear Probing</b>, just
+ * like {@link LinearProbingHashTable}. The table is partitioned into a fixed
+ * number of contiguous <b>lock stripes</b>: a writer locks the stripe that holds
+ * its key's hash cell, so writers to different parts of the table proceed in
+ * parallel. Readers never lock: every cell is published with release semantics
+ * and read with acquire semantics, so {@link #get(String)} sees either the old or
+ * the new pair of a cell, never a half-built one.
+ * </p>
+ *
+ * <p>
+ * A probe sequence may run past the end of its stripe into cells that another
+ * writer guards. Writers therefore <b>claim</b> empty cells with a
+ * compare-and-set instead of a plain store, so two writers that started in
+ * different stripes can never take the same cell. Two writers for the
+ * <b>same</b> key always share a hash cell and hence a stripe, so they are
+ * serialized, and a key appears at most once in the table. Deletion is always
+ * <b>soft</b>: removing a key leaves a tombstone behind, because the hard
+ * deletion of {@link LinearProbingHashTable} re-inserts keys of other stripes.
+ * Insertions reuse the first tombstone on their probe path, and the rest are
+ * dropped at the next resize.
+ * </p>
+ *
+ * <p>
+ * Resizing is triggered by the same 50&#37; policy and moves through the same
+ * {@link PrimeGenerator} capacities as {@link OpenAddressingHashTable}, except
+ * that a table whose load is mostly tombstones is rebuilt in place. A resizing
+ * writer takes
+ * <b>every</b> stripe lock, rehashes into a new array and publishes it with a
+ * single volatile write. Readers that are still probing the old array see a
+ * consistent table, since no writer can touch it while the locks are held;
+ * writers that locked a stripe of the old array notice the swap and retry on the
+ * new one.
+ * </p>
+ *
+ * @see LinearProbingHashTable
+ * @see HashTable
+ */
+public class ConcurrentLinearProbingHashTable implements HashTable {
+
+    /**
+     * The default number of lock stripes.
+     */
+    public static final int DEFAULT_STRIPES = 32;
+
+    private static final KVPair TOMBSTONE = new KVPair("", "");
+    private static final VarHandle CELL = MethodHandles.arrayElementVarHandle(KVPair[].class);
+
+    private volatile KVPair[] table;
+    private final ReentrantLock[] stripes;
+    private final PrimeGenerator primeGenerator; // Only touched with every stripe held
+    private final AtomicInteger count;
+    private final AtomicInteger tombstoneCount;
+
+    /**
+     * Default constructor. Initializes the internal storage with a size equal to
+     * the starting value of {@link PrimeGenerator} and {@link #DEFAULT_STRIPES}
+     * lock stripes.
+     */
+    public ConcurrentLinearProbingHashTable() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Initializes the internal storage with a size equal to the starting value of
+     * {@link PrimeGenerator}, partitioned into the given number of lock stripes.
+     *
+     * @param stripes The number of lock stripes.
+     * @throws IllegalArgumentException if stripes is not positive.
+     */
+    public ConcurrentLinearProbingHashTable(int stripes) {
+        if (stripes < 1)
+            throw new IllegalArgumentException("Need at least one lock stripe, got " + stripes + ".");
+        this.stripes = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        primeGenerator = new PrimeGenerator();
+        table = new KVPair[primeGenerator.getCurrPrime()];
+        count = new AtomicInteger();
+        tombstoneCount = new AtomicInteger();
+    }
+
+    private static int hash(String key, int length) {
+        return (key.hashCode() & 0x7fffffff) % length;
+    }
+
+    // The stripe guarding a cell: stripes cover contiguous cell ranges.
+    private ReentrantLock stripeOf(int cell, int length) {
+        return stripes[(int) ((long) cell * stripes.length / length)];
+    }
+
+    private static KVPair cell(KVPair[] cells, int index) {
+        return (KVPair) CELL.getAcquire(cells, index);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        if (key == null || value == null)
+            throw new IllegalArgumentException("Provided: key=" + key + " and value=" + value);
+        while (true) {
+            if ((count.get() + tombstoneCount.get()) * 2 > capacity()) {
+                resize(true);
+            }
+            KVPair[] cells = table;
+            int home = hash(key, cells.length);
+            ReentrantLock lock = stripeOf(home, cells.length);
+            lock.lock();
+            try {
+                if (cells != table) {
+                    continue; // Resized while we waited for the lock
+                }
+                int free = -1, grave = -1;
+                for (int i = 0, index = home; i < cells.length; i++, index = (index + 1) % cells.length) {
+                    KVPair pair = cell(cells, index);
+                    if (pair == null) {
+                        free = index;
+                        break;
+                    }
+                    if (pair == TOMBSTONE) {
+                        if (grave == -1)
+                            grave = index;
+                    } else if (pair.getKey().equals(key)) {
+                        CELL.setRelease(cells, index, new KVPair(key, value)); // Update in place
+                        return value;
+                    }
+                }
+                // The key is absent. Reuse the first tombstone on its path if we can, so that churning
+                // keys do not grow their clusters; otherwise claim the first empty cell. Writers from
+                // other stripes may be racing us for either.
+                KVPair fresh = new KVPair(key, value);
+                if (grave != -1 && CELL.compareAndSet(cells, grave, TOMBSTONE, fresh)) {
+                    tombstoneCount.decrementAndGet();
+                    count.incrementAndGet();
+                    return value;
+                }
+                while (free != -1 && !CELL.compareAndSet(cells, free, (KVPair) null, fresh)) {
+                    free = nextEmpty(cells, free);
+                }
+                if (free != -1) {
+                    count.incrementAndGet();
+                    return value;
+                }
+            } finally {
+                lock.unlock();
+            }
+            resize(false); // Concurrent writers filled every cell: force a rebuild and retry
+        }
+    }
+
+    // The first empty cell after index, or -1 if there is none.
+    private static int nextEmpty(KVPair[] cells, int index) {
+        for (int i = 1; i < cells.length; i++) {
+            int next = (index + i) % cells.length;
+            if (cell(cells, next) == null) {
+                return next;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String get(String key) {
+        if (key == null)
+            return null;
+        KVPair[] cells = table;
+        int index = hash(key, cells.length);
+        for (int i = 0; i < cells.length; i++, index = (index + 1) % cells.length) {
+            KVPair pair = cell(cells, index);
+            if (pair == null) {
+                return null;
+            }
+            if (pair != TOMBSTONE && pair.getKey().equals(key)) {
+                return pair.getValue();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String remove(String key) {
+        if (key == null)
+            return null;
+        while (true) {
+            KVPair[] cells = table;
+            int index = hash(key, cells.length);
+            ReentrantLock lock = stripeOf(index, cells.length);
+            lock.lock();
+            try {
+                if (cells != table) {
+                    continue;
+                }
+                for (int i = 0; i < cells.length; i++, index = (index + 1) % cells.length) {
+                    KVPair pair = cell(cells, index);
+                    if (pair == null) {
+                        return null;
+                    }
+                    if (pair != TOMBSTONE && pair.getKey().equals(key)) {
+                        CELL.setRelease(cells, index, TOMBSTONE);
+                        count.decrementAndGet();
+                        tombstoneCount.incrementAndGet();
+                        return pair.getValue();
+                    }
+                }
+                return null;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public boolean containsValue(String value) {
+        KVPair[] cells = table;
+        for (int i = 0; i < cells.length; i++) {
+            KVPair pair = cell(cells, i);
+            if (pair != null && pair != TOMBSTONE && pair.getValue().equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return count.get();
+    }
+
+    @Override
+    public int capacity() {
+        return table.length;
+    }
+
+    /**
+     * Returns the pair stored at a cell of the table, {@code null} if the cell is empty.
+     *
+     * @param idx The index of the cell.
+     * @return The pair at cell idx, which may be a tombstone.
+     * @throws IndexOutOfBoundsException if idx is not a cell of the table.
+     */
+    public KVPair get(int idx) throws IndexOutOfBoundsException {
+        return cell(table, idx);
+    }
+
+    /**
+     * Rebuilds the table with every stripe locked, dropping its tombstones. With
+     * enlarge set, nothing happens unless the table is still more than half full
+     * once the locks are held. The table keeps its capacity if live pairs fill at
+     * most a quarter of it (so that delete-heavy workloads purge tombstones instead
+     * of growing forever), and grows to the next prime otherwise.
+     */
+    private void resize(boolean enlarge) {
+        for (ReentrantLock lock : stripes) {
+            lock.lock();
+        }
+        try {
+            KVPair[] old = table;
+            int live = count.get();
+            if (enlarge && (live + tombstoneCount.get()) * 2 <= old.length) {
+                return; // Someone else resized first
+            }
+            int length = live * 4 > old.length ? primeGenerator.getNextPrime() : old.length;
+            KVPair[] cells = new KVPair[length];
+            for (KVPair pair : old) {
+                if (pair != null && pair != TOMBSTONE) {
+                    int index = hash(pair.getKey(), length);
+                    while (cells[index] != null) {
+                        index = (index + 1) % length;
+                    }
+                    cells[index] = pair;
+                }
+            }
+            tombstoneCount.set(0);
+            table = cells; // Volatile write publishes every cell above
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                stripes[i].unlock();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc} The {@link Spliterator} is <b>weakly consistent</b>: it walks
+     * the array that was current when it was created, and may or may not reflect
+     * writes made during the traversal.
+     */
+    @Override
+    public Spliterator<KVPair> spliterator() {
+        return new CellSpliterator(table, 0, table.length);
+    }
+
+    private static final class CellSpliterator implements Spliterator<KVPair> {
+        private final KVPair[] cells;
+        private int index;
+        private final int fence;
+
+        CellSpliterator(KVPair[] cells, int index, int fence) {
+            this.cells = cells;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super KVPair> action) {
+            while (index < fence) {
+                KVPair pair = cell(cells, index++);
+                if (pair != null && pair != TOMBSTONE) {
+                    action.accept(pair);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<KVPair> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (mid - index < ParallelScans.LEAF_SIZE) {
+                return null;
+            }
+            var prefix = new CellSpliterator(cells, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | ORDERED | CONCURRENT;
+        }
+    }
+}
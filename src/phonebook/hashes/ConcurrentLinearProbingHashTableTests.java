@@ -0,0 +1,133 @@
+package phonebook.hashes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class ConcurrentLinearProbingHashTableTests {
+    ConcurrentLinearProbingHashTable clp;
+    String result;
+
+    @Test
+    public void constructorTest1() {
+        clp = new ConcurrentLinearProbingHashTable();
+        assertEquals(7, clp.capacity());
+        assertEquals(0, clp.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void putTest1() {
+        clp = new ConcurrentLinearProbingHashTable();
+        clp.put(null, "test");
+    }
+
+    @Test
+    public void putTest2() {
+        // collisions probe linearly, like LinearProbingHashTable
+        clp = new ConcurrentLinearProbingHashTable(4);
+        result = clp.put("test", "testy"); // hash of 1
+        result = clp.put("c", "cat"); // also hash of 1
+        assertEquals("cat", result);
+        assertEquals("test", clp.get(1).getKey());
+        assertEquals("c", clp.get(2).getKey());
+        assertEquals(2, clp.size());
+    }
+
+    @Test
+    public void putTest3() {
+        // an existing key is updated in place
+        putTest2();
+        result = clp.put("c", "cow");
+        assertEquals(2, clp.size());
+        assertEquals("cow", clp.get("c"));
+        assertEquals("c", clp.get(2).getKey());
+    }
+
+    @Test
+    public void removeTest1() {
+        // deletion is always soft
+        putTest2();
+        result = clp.remove("test");
+        assertEquals("testy", result);
+        assertEquals(1, clp.size());
+        assertNull(clp.get("test"));
+        assertEquals("cat", clp.get("c")); // still reachable past the tombstone
+        assertNull(clp.remove("test"));
+        assertFalse(clp.containsValue("testy"));
+        assertTrue(clp.containsValue("cat"));
+    }
+
+    @Test
+    public void enlargeTest1() {
+        clp = new ConcurrentLinearProbingHashTable();
+        String[] keys = { "test", "c", "e", "g", "h" };
+        for (String key : keys) {
+            clp.put(key, key + key);
+        }
+        assertEquals(13, clp.capacity());
+        assertEquals(5, clp.size());
+        for (String key : keys) {
+            assertEquals(key + key, clp.get(key));
+        }
+    }
+
+    @Test
+    public void purgeTest1() {
+        // churn through one key: tombstones are purged instead of growing the table
+        clp = new ConcurrentLinearProbingHashTable();
+        for (int i = 0; i < 1000; i++) {
+            clp.put("key" + i, "value");
+            clp.remove("key" + i);
+        }
+        assertEquals(0, clp.size());
+        assertEquals(7, clp.capacity());
+    }
+
+    @Test
+    public void iteratorTest1() {
+        removeTest1();
+        List<String> keys = new ArrayList<>();
+        clp.forEach(pair -> keys.add(pair.getKey()));
+        assertEquals(List.of("c"), keys);
+    }
+
+    @Test
+    public void concurrentPutTest1() throws InterruptedException {
+        // writers of disjoint key ranges race through several resizes while readers probe
+        clp = new ConcurrentLinearProbingHashTable(8);
+        int threads = 4, perThread = 300;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    clp.put("name" + id + "-" + i, "number" + i);
+                    if (!("number" + i).equals(clp.get("name" + id + "-" + i)))
+                        failure.compareAndSet(null, new AssertionError("Lost name" + id + "-" + i));
+                    if (i % 3 == 0)
+                        clp.remove("name" + id + "-" + i);
+                }
+            }));
+        }
+        for (Thread worker : workers)
+            worker.start();
+        for (Thread worker : workers)
+            worker.join();
+        assertNull(failure.get());
+        assertEquals(threads * (perThread - perThread / 3), clp.size());
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < perThread; i++) {
+                assertEquals(i % 3 == 0 ? null : "number" + i, clp.get("name" + t + "-" + i));
+            }
+        }
+        assertEquals(clp.size(), clp.entries().count());
+    }
+}
@@ -0,0 +1,386 @@
+package phonebook.hashes;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.NoMorePrimesException;
+import phonebook.utils.PrimeGenerator;
+
+/**
+ * <p>
+ * {@link ConcurrentSeparateChainingHashTable} is a <b>thread-safe</b>
+ * {@link HashTable} which resolves collisions with <b>Separate Chaining</b>, just
+ * like {@link SeparateChainingHashTable}. Its buckets are independent, so every
+ * bucket is guarded on its own: the first node of an empty bucket is installed
+ * with a compare-and-set, and every other change to a chain happens under that
+ * bucket's lock. Nodes publish their value and successor through
+ * {@code volatile} fields, so {@link #get(String)} walks a chain without locking
+ * and sees every completed write.
+ * </p>
+ *
+ * <p>
+ * Unlike {@link SeparateChainingHashTable}, the table enlarges itself once it
+ * holds more pairs than it has buckets, until {@link PrimeGenerator} runs out of
+ * primes. Resizing is <b>cooperative</b>: the old buckets are handed out to
+ * writers in small ranges, and each bucket is transferred under its lock and then
+ * replaced by a forwarding marker. Operations that reach a marker continue in the
+ * new table, so the table stays fully usable while it is being resized.
+ * </p>
+ *
+ * @see SeparateChainingHashTable
+ * @see CollisionResolver#CONCURRENT_SEPARATE_CHAINING
+ */
+public class ConcurrentSeparateChainingHashTable implements HashTable {
+
+    /**
+     * The number of buckets a writer transfers to a resized table before its own operation.
+     */
+    private static final int TRANSFER_STRIDE = 16;
+
+    private static final VarHandle BUCKET = MethodHandles.arrayElementVarHandle(Node[].class);
+
+    private static class Node {
+        final String key;
+        volatile String value;
+        volatile Node next;
+
+        Node(String key, String value, Node next) {
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Replaces a bucket that has been transferred. Keeps the bucket's old chain for
+     * the benefit of traversals that started on the old table.
+     */
+    private static final class Forward extends Node {
+        final Table table;
+
+        Forward(Table table, Node moved) {
+            super(null, null, moved);
+            this.table = table;
+        }
+    }
+
+    private static final class Table {
+        final Node[] buckets;
+        final Object[] locks;
+
+        Table(int length) {
+            buckets = new Node[length];
+            locks = new Object[length];
+            for (int i = 0; i < length; i++) {
+                locks[i] = new Object();
+            }
+        }
+
+        Node bucket(int index) {
+            return (Node) BUCKET.getVolatile(buckets, index);
+        }
+
+        int hash(String key) {
+            return (key.hashCode() & 0x7fffffff) % buckets.length;
+        }
+    }
+
+    /**
+     * The state of a resize in progress.
+     */
+    private static final class Transfer {
+        final Table from, to;
+        final AtomicInteger nextBucket = new AtomicInteger(); // Next range to hand to a helper
+        final AtomicInteger transferred = new AtomicInteger();
+
+        Transfer(Table from, Table to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private volatile Table table;
+    private volatile Transfer transfer;
+    private final PrimeGenerator primeGenerator; // Also the monitor that serializes starting a resize
+    private final AtomicInteger count;
+
+    /**
+     * Default constructor. Initializes the internal storage with a size equal to
+     * the default of {@link PrimeGenerator}.
+     */
+    public ConcurrentSeparateChainingHashTable() {
+        primeGenerator = new PrimeGenerator();
+        table = new Table(primeGenerator.getCurrPrime());
+        count = new AtomicInteger();
+    }
+
+    @Override
+    public String put(String key, String value) {
+        if (key == null || value == null)
+            throw new IllegalArgumentException("Provided: key=" + key + " and value=" + value);
+        helpTransfer();
+        Table t = table;
+        while (true) {
+            int index = t.hash(key);
+            Node head = t.bucket(index);
+            if (head == null) {
+                if (BUCKET.compareAndSet(t.buckets, index, (Node) null, new Node(key, value, null)))
+                    break;
+                continue;
+            }
+            if (head instanceof Forward) {
+                t = ((Forward) head).table;
+                continue;
+            }
+            synchronized (t.locks[index]) {
+                if (t.bucket(index) != head)
+                    continue; // Emptied or transferred while we waited
+                Node node = head;
+                while (true) {
+                    if (node.key.equals(key)) {
+                        node.value = value;
+                        return value;
+                    }
+                    if (node.next == null) {
+                        node.next = new Node(key, value, null);
+                        break;
+                    }
+                    node = node.next;
+                }
+            }
+            break;
+        }
+        if (count.incrementAndGet() > capacity()) {
+            startTransfer(true, true);
+            helpTransfer();
+        }
+        return value;
+    }
+
+    @Override
+    public String get(String key) {
+        if (key == null)
+            return null;
+        Table t = table;
+        Node node = t.bucket(t.hash(key));
+        while (node != null) {
+            if (node instanceof Forward) {
+                t = ((Forward) node).table;
+                node = t.bucket(t.hash(key));
+                continue;
+            }
+            if (node.key.equals(key))
+                return node.value;
+            node = node.next;
+        }
+        return null;
+    }
+
+    @Override
+    public String remove(String key) {
+        if (key == null)
+            return null;
+        helpTransfer();
+        Table t = table;
+        while (true) {
+            int index = t.hash(key);
+            Node head = t.bucket(index);
+            if (head == null)
+                return null;
+            if (head instanceof Forward) {
+                t = ((Forward) head).table;
+                continue;
+            }
+            synchronized (t.locks[index]) {
+                if (t.bucket(index) != head)
+                    continue;
+                Node previous = null;
+                for (Node node = head; node != null; previous = node, node = node.next) {
+                    if (node.key.equals(key)) {
+                        if (previous == null)
+                            BUCKET.setVolatile(t.buckets, index, node.next);
+                        else
+                            previous.next = node.next;
+                        count.decrementAndGet();
+                        return node.value;
+                    }
+                }
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public boolean containsValue(String value) {
+        return values().anyMatch(v -> v.equals(value));
+    }
+
+    @Override
+    public int size() {
+        return count.get();
+    }
+
+    @Override
+    public int capacity() {
+        return table.buckets.length;
+    }
+
+    /**
+     * Enlarges this hash table to the next prime of {@link PrimeGenerator}, helping
+     * to transfer buckets until the resize is complete. If another resize is already
+     * in progress, this method helps finish that one instead.
+     *
+     * @see PrimeGenerator#getNextPrime()
+     */
+    public void enlarge() {
+        startTransfer(true, false);
+        finishTransfer();
+    }
+
+    /**
+     * Shrinks this hash table to the previous prime of {@link PrimeGenerator},
+     * helping to transfer buckets until the resize is complete. If another resize is
+     * already in progress, this method helps finish that one instead.
+     *
+     * @see PrimeGenerator#getPreviousPrime()
+     */
+    public void shrink() {
+        startTransfer(false, false);
+        finishTransfer();
+    }
+
+    /**
+     * Begins a resize unless one is already running. An automatic resize (onlyIfFull)
+     * re-checks the load under the lock and quietly stops growing at the last prime,
+     * since chains can always get longer.
+     */
+    private void startTransfer(boolean enlarge, boolean onlyIfFull) {
+        synchronized (primeGenerator) {
+            if (transfer != null || (onlyIfFull && count.get() <= capacity()))
+                return;
+            int length;
+            try {
+                length = enlarge ? primeGenerator.getNextPrime() : primeGenerator.getPreviousPrime();
+            } catch (NoMorePrimesException e) {
+                if (onlyIfFull)
+                    return;
+                throw e;
+            }
+            transfer = new Transfer(table, new Table(length));
+        }
+    }
+
+    private void finishTransfer() {
+        while (transfer != null) {
+            helpTransfer();
+            Thread.onSpinWait(); // Other helpers may still hold the last ranges
+        }
+    }
+
+    // Transfers one range of buckets of the resize in progress, if there is one.
+    private void helpTransfer() {
+        Transfer current = transfer;
+        if (current == null)
+            return;
+        Node[] from = current.from.buckets;
+        int start = current.nextBucket.getAndAdd(TRANSFER_STRIDE);
+        int end = Math.min(start + TRANSFER_STRIDE, from.length);
+        for (int i = start; i < end; i++) {
+            transferBucket(current, i);
+        }
+        if (end > start && current.transferred.addAndGet(end - start) == from.length) {
+            table = current.to;
+            transfer = null;
+        }
+    }
+
+    private void transferBucket(Transfer current, int index) {
+        Table from = current.from;
+        synchronized (from.locks[index]) {
+            Node head = from.bucket(index);
+            // Only the first node of an empty bucket is installed without the lock, so that is the one race to lose.
+            if (head == null && BUCKET.compareAndSet(from.buckets, index, (Node) null, new Forward(current.to, null)))
+                return;
+            head = from.bucket(index);
+            Table to = current.to;
+            for (Node node = head; node != null; node = node.next) {
+                int target = to.hash(node.key);
+                synchronized (to.locks[target]) {
+                    Node first;
+                    do {
+                        first = to.bucket(target);
+                    } while (!BUCKET.compareAndSet(to.buckets, target, first, new Node(node.key, node.value, first)));
+                }
+            }
+            BUCKET.setVolatile(from.buckets, index, new Forward(to, head));
+        }
+    }
+
+    /**
+     * {@inheritDoc} The {@link Spliterator} is <b>weakly consistent</b>: it walks
+     * the buckets of the table that was current when it was created, and may or may
+     * not reflect writes made during the traversal. Every reported pair is a fresh
+     * {@link KVPair}.
+     */
+    @Override
+    public Spliterator<KVPair> spliterator() {
+        Node[] buckets = table.buckets;
+        return new BucketSpliterator(buckets, 0, buckets.length);
+    }
+
+    private static final class BucketSpliterator implements Spliterator<KVPair> {
+        private final Node[] buckets;
+        private int index;
+        private final int fence;
+        private Node current;
+
+        BucketSpliterator(Node[] buckets, int index, int fence) {
+            this.buckets = buckets;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super KVPair> action) {
+            while (current == null) {
+                if (index >= fence)
+                    return false;
+                current = (Node) BUCKET.getVolatile(buckets, index++);
+                if (current instanceof Forward)
+                    current = current.next; // The chain as it was when it moved
+            }
+            action.accept(new KVPair(current.key, current.value));
+            current = current.next;
+            return true;
+        }
+
+        @Override
+        public Spliterator<KVPair> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (current != null || mid - index < ParallelScans.LEAF_SIZE)
+                return null;
+            var prefix = new BucketSpliterator(buckets, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | CONCURRENT;
+        }
+    }
+}
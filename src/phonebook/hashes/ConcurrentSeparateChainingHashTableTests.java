@@ -0,0 +1,150 @@
+package phonebook.hashes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class ConcurrentSeparateChainingHashTableTests {
+    ConcurrentSeparateChainingHashTable csc;
+    String result;
+
+    @Test
+    public void constructorTest1() {
+        csc = new ConcurrentSeparateChainingHashTable();
+        assertEquals(7, csc.capacity());
+        assertEquals(0, csc.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void putTest1() {
+        csc = new ConcurrentSeparateChainingHashTable();
+        csc.put(null, "test");
+    }
+
+    @Test
+    public void putTest2() {
+        csc = new ConcurrentSeparateChainingHashTable();
+        result = csc.put("test", "testy"); // hash of 1
+        result = csc.put("c", "cat"); // also hash of 1
+        result = csc.put("d", "dog"); // hash of 2
+        assertEquals("dog", result);
+        assertEquals(3, csc.size());
+        assertEquals("testy", csc.get("test"));
+        assertEquals("cat", csc.get("c"));
+        assertNull(csc.get("e"));
+    }
+
+    @Test
+    public void putTest3() {
+        // an existing key is updated in place
+        putTest2();
+        csc.put("c", "cow");
+        assertEquals(3, csc.size());
+        assertEquals("cow", csc.get("c"));
+    }
+
+    @Test
+    public void removeTest1() {
+        putTest2();
+        assertEquals("testy", csc.remove("test")); // head of its chain
+        assertNull(csc.remove("test"));
+        assertEquals(2, csc.size());
+        assertTrue(csc.containsKey("c"));
+        assertFalse(csc.containsValue("testy"));
+        assertTrue(csc.containsValue("dog"));
+    }
+
+    @Test
+    public void enlargeTest1() {
+        // enlarges itself once there are more pairs than buckets
+        csc = new ConcurrentSeparateChainingHashTable();
+        for (int i = 0; i < 8; i++) {
+            csc.put("key" + i, "value" + i);
+        }
+        assertEquals(13, csc.capacity());
+        for (int i = 0; i < 8; i++) {
+            assertEquals("value" + i, csc.get("key" + i));
+        }
+    }
+
+    @Test
+    public void shrinkTest1() {
+        enlargeTest1();
+        csc.enlarge();
+        assertEquals(23, csc.capacity());
+        csc.shrink();
+        assertEquals(13, csc.capacity());
+        assertEquals(8, csc.size());
+        for (int i = 0; i < 8; i++) {
+            assertEquals("value" + i, csc.get("key" + i));
+        }
+    }
+
+    @Test
+    public void iteratorTest1() {
+        removeTest1();
+        Map<String, String> pairs = new HashMap<>();
+        csc.forEach(pair -> pairs.put(pair.getKey(), pair.getValue()));
+        assertEquals(Map.of("c", "cat", "d", "dog"), pairs);
+    }
+
+    @Test
+    public void concurrentResizeTest1() throws InterruptedException {
+        // readers must keep finding preloaded keys while writers force several resizes
+        csc = new ConcurrentSeparateChainingHashTable();
+        for (int i = 0; i < 50; i++) {
+            csc.put("preloaded" + i, "number" + i);
+        }
+        int writers = 4, perWriter = 500;
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            threads.add(new Thread(() -> {
+                while (!done.get()) {
+                    for (int i = 0; i < 50; i++) {
+                        if (!("number" + i).equals(csc.get("preloaded" + i)))
+                            failure.compareAndSet(null, "Reader lost preloaded" + i);
+                    }
+                }
+            }));
+        }
+        List<Thread> writerThreads = new ArrayList<>();
+        for (int t = 0; t < writers; t++) {
+            int id = t;
+            writerThreads.add(new Thread(() -> {
+                for (int i = 0; i < perWriter; i++) {
+                    csc.put("name" + id + "-" + i, "number" + i);
+                    if (i % 2 == 0)
+                        csc.remove("name" + id + "-" + i);
+                }
+            }));
+        }
+        threads.addAll(writerThreads);
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread writer : writerThreads)
+            writer.join();
+        done.set(true);
+        for (Thread thread : threads)
+            thread.join();
+        assertNull(failure.get());
+        assertEquals(50 + writers * perWriter / 2, csc.size());
+        for (int t = 0; t < writers; t++) {
+            for (int i = 0; i < perWriter; i++) {
+                assertEquals(i % 2 == 0 ? null : "number" + i, csc.get("name" + t + "-" + i));
+            }
+        }
+        assertEquals(csc.size(), csc.entries().count());
+    }
+}
@@ -0,0 +1,220 @@
+package phonebook.hashes;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * <p>
+ * {@link CountingBloomFilter} is a set of key hashes that answers
+ * {@link #mightContain(int)} with no false negatives and a bounded share of false
+ * positives, in a few bits per key. It is a <b>blocked</b> Bloom filter: a key
+ * hashes to one block of {@value #BLOCK_BYTES} bytes, one cache line, and all of
+ * its {@link #hashes()} counters are in that block, so a lookup costs a single
+ * memory access, hit or miss. It is also a <b>counting</b> Bloom filter: its
+ * cells are 4-bit counters instead of bits, so keys can be
+ * {@link #remove(int) removed} as well as added. A counter that reaches 15 stays
+ * there, which can only cost false positives.
+ * </p>
+ *
+ * <p>
+ * The filter is sized for a number of keys and a false-positive rate. Blocking
+ * raises the rate of a classic Bloom filter of the same size, since some blocks
+ * get more keys than others, so the size is grown until the rate averaged over
+ * the Poisson distributed number of keys per block meets the target; this takes
+ * about a fifth more memory at 1&#37;. {@link #estimatedFalsePositiveRate()}
+ * measures the actual rate from the counters. Adding more keys than the filter
+ * was sized for raises it.
+ * </p>
+ *
+ * <p>
+ * Lookups may run concurrently with each other and with one writer: every word
+ * is read and written atomically. Writers must be serialized by the caller.
+ * </p>
+ *
+ * @see FilteredHashTable
+ */
+public final class CountingBloomFilter {
+
+    private static final int BLOCK_BYTES = 64;
+    private static final int WORDS_PER_BLOCK = BLOCK_BYTES / Long.BYTES;
+    private static final int COUNTERS_PER_BLOCK = BLOCK_BYTES * 2; // 4 bits each
+    private static final int MAX_HASHES = 16;
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] words;
+    private final int blocks, hashes;
+    private final double falsePositiveRate;
+    private int size;
+
+    /**
+     * Creates an empty filter.
+     *
+     * @param expectedKeys      The number of keys the filter is sized for.
+     * @param falsePositiveRate The share of absent keys that the filter may let
+     *                          through, with expectedKeys keys in it.
+     * @throws IllegalArgumentException if expectedKeys is negative, or
+     *                                  falsePositiveRate is not in (0, 1).
+     */
+    public CountingBloomFilter(int expectedKeys, double falsePositiveRate) {
+        if (expectedKeys < 0 || !(falsePositiveRate > 0 && falsePositiveRate < 1))
+            throw new IllegalArgumentException("Provided: expectedKeys=" + expectedKeys + " and falsePositiveRate="
+                    + falsePositiveRate);
+        double cellsPerKey = -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        while (blockedRate(cellsPerKey) > falsePositiveRate) {
+            cellsPerKey *= 1.05;
+        }
+        long cells = (long) Math.ceil(Math.max(1, expectedKeys) * cellsPerKey);
+        long blockCount = (cells + COUNTERS_PER_BLOCK - 1) / COUNTERS_PER_BLOCK;
+        if (blockCount * WORDS_PER_BLOCK > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Provided: expectedKeys=" + expectedKeys + " and falsePositiveRate="
+                    + falsePositiveRate + ", which would take more than 16 GiB");
+        blocks = (int) blockCount;
+        words = new long[blocks * WORDS_PER_BLOCK];
+        hashes = hashesFor(cellsPerKey);
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    private static int hashesFor(double cellsPerKey) {
+        return (int) Math.max(1, Math.min(MAX_HASHES, Math.round(cellsPerKey * Math.log(2))));
+    }
+
+    // The false-positive rate of a blocked filter: that of a small classic filter, averaged over the Poisson
+    // distributed number of keys in a block.
+    private static double blockedRate(double cellsPerKey) {
+        int hashes = hashesFor(cellsPerKey);
+        double mean = COUNTERS_PER_BLOCK / cellsPerKey, rate = 0, probability = Math.exp(-mean);
+        for (int keys = 0; keys < mean + 10 * Math.sqrt(mean) + 10; probability *= mean / ++keys) {
+            rate += probability * Math.pow(1 - Math.pow(1 - 1.0 / COUNTERS_PER_BLOCK, (double) hashes * keys), hashes);
+        }
+        return rate;
+    }
+
+    /**
+     * Adds a key.
+     *
+     * @param hash The {@link String#hashCode()} of the key.
+     */
+    public void add(int hash) {
+        long mixed = mix(hash);
+        int base = block(mixed) * WORDS_PER_BLOCK;
+        for (int i = 0; i < hashes; i++) {
+            int counter = counter(mixed, i), word = base + (counter >>> 4), shift = (counter & 15) << 2;
+            long value = (long) WORDS.getOpaque(words, word);
+            if ((value >>> shift & 15) != 15)
+                WORDS.setRelease(words, word, value + (1L << shift));
+        }
+        size++;
+    }
+
+    /**
+     * Removes a key that was {@link #add(int) added}. Removing a key that was not
+     * added may cause false negatives.
+     *
+     * @param hash The {@link String#hashCode()} of the key.
+     */
+    public void remove(int hash) {
+        long mixed = mix(hash);
+        int base = block(mixed) * WORDS_PER_BLOCK;
+        for (int i = 0; i < hashes; i++) {
+            int counter = counter(mixed, i), word = base + (counter >>> 4), shift = (counter & 15) << 2;
+            long value = (long) WORDS.getOpaque(words, word), count = value >>> shift & 15;
+            if (count != 15 && count != 0) // Saturated counters no longer know how many keys they count
+                WORDS.setRelease(words, word, value - (1L << shift));
+        }
+        size--;
+    }
+
+    /**
+     * Checks whether a key may have been added.
+     *
+     * @param hash The {@link String#hashCode()} of the key.
+     * @return {@code false} if the key was certainly not added, or was removed
+     *         since; {@code true} if it probably was added.
+     */
+    public boolean mightContain(int hash) {
+        long mixed = mix(hash);
+        int base = block(mixed) * WORDS_PER_BLOCK;
+        for (int i = 0; i < hashes; i++) {
+            int counter = counter(mixed, i);
+            if (((long) WORDS.getAcquire(words, base + (counter >>> 4)) >>> ((counter & 15) << 2) & 15) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of keys added and not removed.
+     *
+     * @return The number of keys in the filter.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of counters that every key sets.
+     *
+     * @return The number of hash functions.
+     */
+    public int hashes() {
+        return hashes;
+    }
+
+    /**
+     * Returns the false-positive rate the filter was sized for.
+     *
+     * @return The target false-positive rate.
+     */
+    public double falsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /**
+     * Returns the memory the counters take.
+     *
+     * @return The size of the filter, in bytes.
+     */
+    public long memoryBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+
+    /**
+     * Estimates the false-positive rate of the filter as it is now: the chance
+     * that all the counters of an absent key are set, averaged over the blocks. It
+     * reads every counter.
+     *
+     * @return The share of absent keys that {@link #mightContain(int)} lets through.
+     */
+    public double estimatedFalsePositiveRate() {
+        double sum = 0;
+        for (int block = 0; block < blocks; block++) {
+            int set = 0;
+            for (int word = block * WORDS_PER_BLOCK; word < (block + 1) * WORDS_PER_BLOCK; word++) {
+                long value = (long) WORDS.getAcquire(words, word);
+                // Collapse every counter into its lowest bit, then count them
+                value = (value | value >>> 1 | value >>> 2 | value >>> 3) & 0x1111111111111111L;
+                set += Long.bitCount(value);
+            }
+            sum += Math.pow((double) set / COUNTERS_PER_BLOCK, hashes);
+        }
+        return blocks == 0 ? 0 : sum / blocks;
+    }
+
+    // Spreads a 32-bit hash over 64 bits: the block comes from the high bits, the counters from the rest.
+    private static long mix(int hash) {
+        long h = (hash & 0xffffffffL) * 0x9e3779b97f4a7c15L;
+        h ^= h >>> 32;
+        h *= 0xd6e8feb86659fd93L;
+        return h ^ h >>> 32;
+    }
+
+    private int block(long mixed) {
+        return (int) ((mixed >>> 32) * blocks >>> 32);
+    }
+
+    // The i-th counter of a key within its block: the top 7 bits of a rehash of the mixed hash, one of 128 counters.
+    private static int counter(long mixed, int i) {
+        long h = (mixed ^ (i + 1) * 0x9e3779b97f4a7c15L) * 0xbf58476d1ce4e5b9L;
+        return (int) ((h ^ h >>> 29) >>> 57);
+    }
+}
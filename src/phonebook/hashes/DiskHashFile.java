@@ -0,0 +1,431 @@
+package phonebook.hashes;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.Keys;
+import phonebook.utils.Varints;
+
+/**
+ * <p>
+ * A mutable hash table that lives in a file, the disk tier of a
+ * {@link TieredHashTable}. The file holds a header of four big-endian
+ * {@code int}s (the magic number {@value #MAGIC}, the format {@value #VERSION},
+ * the base-2 logarithm of the number of cells, and a reserved zero), then the
+ * cells, then the records. A cell is twelve bytes: the
+ * {@link String#hashCode()} of its key and the position of its record in the
+ * file, {@code 0} if the cell is empty or {@code -1} if it is a tombstone. A
+ * record is its key and then its value, each one an unsigned LEB128 byte count
+ * followed by that many bytes of UTF-8, as in a {@link MappedHashTable}.
+ * </p>
+ *
+ * <p>
+ * The cells are memory-mapped and probed linearly from a multiplicative hash of
+ * the hash code; they are at most half full, counting tombstones. Records are
+ * only ever appended, and read with positional reads, which are counted: a
+ * {@link #put(String, String)} of a key that is already there appends a new
+ * record and repoints the cell, and a {@link #remove(String)} leaves a tombstone.
+ * When the cells fill up, or when dead records take up more than half of the
+ * file, the table is <b>rebuilt</b> into a new file, with twice as many cells if
+ * need be and only the live records, which is then moved over the old one.
+ * </p>
+ *
+ * <p>
+ * Lookups may run concurrently with each other, but not with writes; the caller
+ * serializes them. The file is not forced to the device, so a crash of the
+ * operating system may lose the latest writes; a crash of the JVM does not.
+ * </p>
+ */
+final class DiskHashFile implements AutoCloseable {
+
+    static final int MAGIC = 0x50484453; // "PHDS"
+    static final int VERSION = 1;
+
+    private static final int HEADER = 4 * Integer.BYTES;
+    private static final int CELL = Integer.BYTES + Long.BYTES;
+    private static final long EMPTY = 0, TOMBSTONE = -1;
+    private static final int MIN_CELL_BITS = 10;
+    private static final int MAX_CELL_BITS = 27; // The cells must fit into one mapping
+    private static final int RECORD_READ = 128; // Bytes read at once for a record; longer ones take a second read
+    private static final int BUFFER_SIZE = 1 << 20; // Of the records that a rebuild writes
+    private static final long MIN_GARBAGE = 1 << 20; // Dead record bytes below which a rebuild is not worth it
+
+    private final Path path;
+    private FileChannel channel;
+    private MappedByteBuffer cells;
+    private int cellBits, count, tombstones, generation;
+    private long end, garbage; // garbage counts the dead records since the file was opened
+    private final LongAdder reads = new LongAdder(), bytesRead = new LongAdder();
+
+    private DiskHashFile(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Opens the table in path, or creates an empty one if there is no such file.
+     *
+     * @param path The file of the table.
+     * @return The table.
+     * @throws IOException if the file cannot be read or created, or is not a table.
+     */
+    static DiskHashFile open(Path path) throws IOException {
+        DiskHashFile file = new DiskHashFile(path);
+        if (!Files.exists(path))
+            create(path, MIN_CELL_BITS).close();
+        file.map(FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        return file;
+    }
+
+    // Creates an empty table of 2^cellBits cells in path, replacing any file there.
+    private static FileChannel create(Path path, int cellBits) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION).putInt(cellBits).putInt(0);
+            header.flip();
+            writeFully(channel, header, 0);
+            writeFully(channel, ByteBuffer.allocate(1), HEADER + ((long) CELL << cellBits) - 1); // Zeroed cells
+            return channel;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void map(FileChannel channel) throws IOException {
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            readFully(channel, header, 0);
+            header.flip();
+            int magic = header.getInt(), version = header.getInt(), bits = header.getInt();
+            if (magic != MAGIC)
+                throw new IOException("Not a disk hash file: bad magic number " + Integer.toHexString(magic) + ".");
+            if (version != VERSION)
+                throw new IOException("Unsupported disk hash file version " + version + "; expected " + VERSION + ".");
+            if (bits < MIN_CELL_BITS || bits > MAX_CELL_BITS || channel.size() < HEADER + ((long) CELL << bits))
+                throw new IOException("Corrupt disk hash file: " + bits + " cell bits in " + channel.size() + " bytes.");
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, HEADER, (long) CELL << bits);
+            int live = 0, dead = 0;
+            for (int cell = 0; cell < 1 << bits; cell++) {
+                long position = mapped.getLong(cell * CELL + Integer.BYTES);
+                if (position == TOMBSTONE)
+                    dead++;
+                else if (position != EMPTY)
+                    live++;
+            }
+            this.channel = channel;
+            cells = mapped;
+            cellBits = bits;
+            count = live;
+            tombstones = dead;
+            end = channel.size();
+            garbage = 0;
+            generation++;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Looks a key up.
+     *
+     * @param key The key to look up.
+     * @return Its value, or {@code null} if it is not in the table.
+     * @throws IOException if the file cannot be read.
+     */
+    String get(String key) throws IOException {
+        Probe probe = find(Keys.hash(key), key.getBytes(StandardCharsets.UTF_8), true);
+        return probe.cell < 0 ? null : probe.value;
+    }
+
+    /**
+     * Adds a pair, or repoints the cell of its key to a new record.
+     *
+     * @param key   The key.
+     * @param value The value.
+     * @throws IOException if the file cannot be written.
+     */
+    void put(String key, String value) throws IOException {
+        int hash = Keys.hash(key);
+        byte[] utf8 = key.getBytes(StandardCharsets.UTF_8);
+        Probe probe = find(hash, utf8, false);
+        long position = append(utf8, value.getBytes(StandardCharsets.UTF_8));
+        if (probe.cell >= 0) {
+            garbage += probe.recordLength;
+            setCell(probe.cell, hash, position);
+        } else {
+            if (cells.getLong(probe.free * CELL + Integer.BYTES) == TOMBSTONE)
+                tombstones--;
+            setCell(probe.free, hash, position);
+            count++;
+        }
+        rebuildIfNeeded();
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key The key to remove.
+     * @return The value it had, or {@code null} if it was not in the table.
+     * @throws IOException if the file cannot be read.
+     */
+    String remove(String key) throws IOException {
+        int hash = Keys.hash(key);
+        Probe probe = find(hash, key.getBytes(StandardCharsets.UTF_8), false);
+        if (probe.cell < 0)
+            return null;
+        setCell(probe.cell, hash, TOMBSTONE);
+        count--;
+        tombstones++;
+        garbage += probe.recordLength;
+        rebuildIfNeeded();
+        return probe.value;
+    }
+
+    int size() {
+        return count;
+    }
+
+    int capacity() {
+        return 1 << cellBits;
+    }
+
+    /**
+     * Returns a number that changes every time the table is rebuilt, when cells move.
+     *
+     * @return The generation of the cells.
+     */
+    int generation() {
+        return generation;
+    }
+
+    /**
+     * Reads the pair of a cell.
+     *
+     * @param cell The cell.
+     * @return Its pair, or {@code null} if it is empty or a tombstone.
+     * @throws IOException if the file cannot be read.
+     */
+    KVPair pairAt(int cell) throws IOException {
+        long position = cells.getLong(cell * CELL + Integer.BYTES);
+        if (position == EMPTY || position == TOMBSTONE)
+            return null;
+        Record record = readRecord(position, false);
+        return new KVPair(new String(record.key, StandardCharsets.UTF_8), record.value);
+    }
+
+    /**
+     * Returns the number of reads of records that lookups made. Writes, scans and
+     * rebuilds read records too, but do not count.
+     *
+     * @return The number of positional reads that {@link #get(String)} made.
+     */
+    long reads() {
+        return reads.sum();
+    }
+
+    /**
+     * Returns the number of bytes that lookups read: the cells they probed and the
+     * records they read.
+     *
+     * @return The number of bytes that {@link #get(String)} read.
+     */
+    long bytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Where a key is, or would go.
+     */
+    private static final class Probe {
+        int cell = -1, free = -1; // The cell of the key, or -1; the first cell that the key could take
+        int recordLength;
+        String value;
+    }
+
+    private Probe find(int hash, byte[] utf8, boolean counted) throws IOException {
+        Probe probe = new Probe();
+        int mask = (1 << cellBits) - 1;
+        for (int cell = (hash * 0x9E3779B9) >>> (32 - cellBits), probed = 0; probed <= mask;
+                cell = (cell + 1) & mask, probed++) {
+            int at = cell * CELL;
+            long position = cells.getLong(at + Integer.BYTES);
+            if (counted)
+                bytesRead.add(CELL);
+            if (position == EMPTY) {
+                if (probe.free < 0)
+                    probe.free = cell;
+                return probe;
+            }
+            if (position == TOMBSTONE) {
+                if (probe.free < 0)
+                    probe.free = cell;
+            } else if (cells.getInt(at) == hash) {
+                Record record = readRecord(position, counted);
+                if (Arrays.equals(record.key, utf8)) {
+                    probe.cell = cell;
+                    probe.recordLength = record.length;
+                    probe.value = record.value;
+                    return probe;
+                }
+            }
+        }
+        return probe; // Only tombstones and other keys, but the cells are never full
+    }
+
+    private void setCell(int cell, int hash, long position) {
+        cells.putInt(cell * CELL, hash);
+        cells.putLong(cell * CELL + Integer.BYTES, position);
+    }
+
+    /**
+     * A record, as read from the file.
+     */
+    private static final class Record {
+        byte[] key;
+        String value;
+        int length; // In the file
+    }
+
+    private Record readRecord(long position, boolean counted) throws IOException {
+        ByteBuffer buffer = read(position, (int) Math.min(RECORD_READ, end - position), counted);
+        int keyLength = getLength(buffer), keyStart = buffer.position();
+        // The value's length may be cut off
+        if (buffer.remaining() < keyLength + Varints.MAX_BYTES && buffer.limit() < end - position)
+            buffer = read(position, (int) Math.min(keyStart + keyLength + Varints.MAX_BYTES, end - position), counted);
+        buffer.position(keyStart + keyLength);
+        int valueLength = getLength(buffer), valueStart = buffer.position();
+        if (buffer.limit() < valueStart + valueLength)
+            buffer = read(position, valueStart + valueLength, counted);
+        Record record = new Record();
+        record.key = Arrays.copyOfRange(buffer.array(), keyStart, keyStart + keyLength);
+        record.value = new String(buffer.array(), valueStart, valueLength, StandardCharsets.UTF_8);
+        record.length = valueStart + valueLength;
+        return record;
+    }
+
+    // Reads length bytes at position, in one read, which counts if it serves a lookup.
+    private ByteBuffer read(long position, int length, boolean counted) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(channel, buffer, position);
+        if (counted) {
+            reads.increment();
+            bytesRead.add(length);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int getLength(ByteBuffer buffer) throws IOException {
+        int length = Varints.get(buffer);
+        if (length < 0)
+            throw new EOFException("Disk hash file truncated in a record.");
+        return length;
+    }
+
+    private long append(byte[] key, byte[] value) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(2 * Varints.MAX_BYTES + key.length + value.length);
+        Varints.putString(record, key);
+        Varints.putString(record, value);
+        record.flip();
+        long position = end;
+        writeFully(channel, record, position);
+        end += record.limit();
+        return position;
+    }
+
+    private void rebuildIfNeeded() throws IOException {
+        int capacity = 1 << cellBits;
+        if ((count + tombstones) * 2L > capacity)
+            rebuild(count * 4L > capacity ? cellBits + 1 : cellBits);
+        else if (garbage > MIN_GARBAGE && garbage * 2 > end)
+            rebuild(cellBits);
+    }
+
+    // Copies the live records into a new file of 2^bits cells, and moves it over the old one. The old file stays open
+    // until the new one has replaced it, so that the table is still usable if anything fails before.
+    private void rebuild(int bits) throws IOException {
+        if (bits > MAX_CELL_BITS)
+            throw new IllegalStateException("A disk hash file holds at most " + (1 << (MAX_CELL_BITS - 1)) + " keys.");
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        FileChannel rebuilt = null;
+        boolean moved = false;
+        try {
+            try (FileChannel target = create(temporary, bits)) {
+                MappedByteBuffer targetCells = target.map(FileChannel.MapMode.READ_WRITE, HEADER, (long) CELL << bits);
+                ByteBuffer records = ByteBuffer.allocate(BUFFER_SIZE);
+                long targetEnd = target.size();
+                int mask = (1 << bits) - 1;
+                for (int cell = 0; cell < 1 << cellBits; cell++) {
+                    long position = cells.getLong(cell * CELL + Integer.BYTES);
+                    if (position == EMPTY || position == TOMBSTONE)
+                        continue;
+                    int hash = cells.getInt(cell * CELL);
+                    Record record = readRecord(position, false);
+                    byte[] value = record.value.getBytes(StandardCharsets.UTF_8);
+                    if (records.remaining() < 2 * Varints.MAX_BYTES + record.key.length + value.length) {
+                        records.flip();
+                        targetEnd += writeFully(target, records, targetEnd);
+                        records = ByteBuffer.allocate(Math.max(BUFFER_SIZE,
+                                2 * Varints.MAX_BYTES + record.key.length + value.length));
+                    }
+                    int to = (hash * 0x9E3779B9) >>> (32 - bits);
+                    while (targetCells.getLong(to * CELL + Integer.BYTES) != EMPTY) {
+                        to = (to + 1) & mask;
+                    }
+                    targetCells.putInt(to * CELL, hash);
+                    targetCells.putLong(to * CELL + Integer.BYTES, targetEnd + records.position());
+                    Varints.putString(records, record.key);
+                    Varints.putString(records, value);
+                }
+                records.flip();
+                writeFully(target, records, targetEnd);
+                targetCells.force();
+            }
+            rebuilt = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+        } finally {
+            if (!moved) {
+                if (rebuilt != null)
+                    rebuilt.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+        FileChannel old = channel;
+        map(rebuilt); // The channel follows the file it opened to its new name
+        old.close();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException("Disk hash file truncated.");
+        }
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+        return written;
+    }
+}
@@ -0,0 +1,367 @@
+package phonebook.hashes;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.LongAdder;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.Keys;
+
+/**
+ * <p>
+ * {@link FilteredHashTable} puts a {@link CountingBloomFilter} of its keys in
+ * front of another {@link HashTable}, so that most lookups of absent keys are
+ * answered by the filter, from a single cache line, instead of walking a full
+ * probe sequence or chain of the table. Lookups of present keys pay for the
+ * filter on top of the table, so the filter pays off when many lookups miss,
+ * such as numbers screened against a phonebook.
+ * </p>
+ *
+ * <p>
+ * The filter is sized for twice the keys that the table holds when the
+ * {@link FilteredHashTable} is created, and at least {@value #MIN_EXPECTED_KEYS}.
+ * When the table outgrows it, the filter is rebuilt for twice as many keys from
+ * the keys of the table, so the false-positive rate stays near its target. A
+ * {@link #put(String, String)} looks its key up first, so as to count every key
+ * once; a {@link #remove(String)} also looks it up afterwards, since some tables
+ * hold duplicate keys.
+ * </p>
+ *
+ * <p>
+ * A {@link FilteredHashTable} is as thread-safe as its table, provided that
+ * writers are serialized: lookups may run concurrently with each other and with
+ * one writer. {@link #metrics()} tells how well the filter is doing. Callers
+ * that may throw a lookup away and repeat it, such as optimistic reads, look up
+ * in the {@link #uncounted()} view and {@link #count(int, String) count} only
+ * the lookup they keep.
+ * </p>
+ *
+ * @see CountingBloomFilter
+ */
+public class FilteredHashTable implements HashTable {
+
+    /**
+     * The fewest keys that a filter is sized for.
+     */
+    public static final int MIN_EXPECTED_KEYS = 1024;
+
+    private final HashTable table;
+    private final double falsePositiveRate;
+    private volatile CountingBloomFilter filter;
+    private int expectedKeys; // That filter was sized for
+    private final LongAdder lookups = new LongAdder(), rejected = new LongAdder(), falsePositives = new LongAdder();
+    private final HashTable uncounted = new Uncounted();
+
+    /**
+     * Puts a filter in front of a table, and fills it with the keys of the table.
+     *
+     * @param table             The table to filter.
+     * @param falsePositiveRate The share of absent keys that the filter may let
+     *                          through to the table.
+     * @throws IllegalArgumentException if table is {@code null}, or
+     *                                  falsePositiveRate is not in (0, 1).
+     */
+    public FilteredHashTable(HashTable table, double falsePositiveRate) {
+        if (table == null || !(falsePositiveRate > 0 && falsePositiveRate < 1))
+            throw new IllegalArgumentException("Provided: table=" + table + " and falsePositiveRate="
+                    + falsePositiveRate);
+        this.table = table;
+        this.falsePositiveRate = falsePositiveRate;
+        rebuild(Math.max(MIN_EXPECTED_KEYS, 2 * table.size()));
+    }
+
+    // Sizes a new filter for the given number of keys, fills it from the table and publishes it.
+    private void rebuild(int keys) {
+        CountingBloomFilter fresh = new CountingBloomFilter(keys, falsePositiveRate);
+        table.keys().forEach(key -> fresh.add(key.hashCode()));
+        expectedKeys = keys;
+        filter = fresh;
+    }
+
+    /**
+     * A snapshot of the counters of a {@link FilteredHashTable}.
+     */
+    public static final class Metrics {
+        private final long lookups, rejected, falsePositives, memoryBytes;
+        private final double targetFalsePositiveRate, estimatedFalsePositiveRate;
+
+        Metrics(long lookups, long rejected, long falsePositives, long memoryBytes, double targetFalsePositiveRate,
+                double estimatedFalsePositiveRate) {
+            this.lookups = lookups;
+            this.rejected = rejected;
+            this.falsePositives = falsePositives;
+            this.memoryBytes = memoryBytes;
+            this.targetFalsePositiveRate = targetFalsePositiveRate;
+            this.estimatedFalsePositiveRate = estimatedFalsePositiveRate;
+        }
+
+        /**
+         * @return The number of lookups so far.
+         */
+        public long getLookups() {
+            return lookups;
+        }
+
+        /**
+         * @return The number of lookups that the filter answered, without reaching the table.
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * @return The number of lookups that the filter let through, but the table did not find.
+         */
+        public long getFalsePositives() {
+            return falsePositives;
+        }
+
+        /**
+         * @return The share of lookups of absent keys that the filter let through so far, or 0 if there were none.
+         */
+        public double getObservedFalsePositiveRate() {
+            long absent = rejected + falsePositives;
+            return absent == 0 ? 0 : (double) falsePositives / absent;
+        }
+
+        /**
+         * @return The false-positive rate the filter is sized for.
+         */
+        public double getTargetFalsePositiveRate() {
+            return targetFalsePositiveRate;
+        }
+
+        /**
+         * @return The false-positive rate of the filter as it is now.
+         * @see CountingBloomFilter#estimatedFalsePositiveRate()
+         */
+        public double getEstimatedFalsePositiveRate() {
+            return estimatedFalsePositiveRate;
+        }
+
+        /**
+         * @return The memory the filter takes, in bytes.
+         */
+        public long getMemoryBytes() {
+            return memoryBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d lookups, %,d rejected, %,d false positives (%.3f%% observed, %.3f%% estimated, "
+                    + "%.3f%% target), %,d bytes", lookups, rejected, falsePositives,
+                    100 * getObservedFalsePositiveRate(), 100 * estimatedFalsePositiveRate,
+                    100 * targetFalsePositiveRate, memoryBytes);
+        }
+    }
+
+    /**
+     * Takes a snapshot of the counters of the filter. It reads the whole filter,
+     * to estimate its false-positive rate.
+     *
+     * @return The {@link Metrics} of the filter.
+     */
+    public Metrics metrics() {
+        CountingBloomFilter current = filter;
+        return new Metrics(lookups.sum(), rejected.sum(), falsePositives.sum(), current.memoryBytes(),
+                falsePositiveRate, current.estimatedFalsePositiveRate());
+    }
+
+    @Override
+    public String put(String key, String value) {
+        if (key == null || value == null)
+            throw new IllegalArgumentException("Provided: key=" + key + " and value=" + value);
+        if (table.containsKey(key))
+            return table.put(key, value);
+        if (filter.size() >= expectedKeys)
+            rebuild(2 * expectedKeys);
+        filter.add(key.hashCode()); // Before the table, so that no lookup finds a key the filter rejects
+        try {
+            return table.put(key, value);
+        } catch (RuntimeException e) {
+            filter.remove(key.hashCode()); // The key never made it into the table
+            throw e;
+        }
+    }
+
+    @Override
+    public String get(String key) {
+        if (key == null)
+            return null;
+        return admitted(key.hashCode()) ? checked(table.get(key)) : null;
+    }
+
+    @Override
+    public String get(CharSequence key) {
+        if (key == null)
+            return null;
+        return admitted(Keys.hash(key)) ? checked(table.get(key)) : null;
+    }
+
+    @Override
+    public String get(byte[] utf8, int offset, int length) {
+        return admitted(Keys.hashUtf8(utf8, offset, length)) ? checked(table.get(utf8, offset, length)) : null;
+    }
+
+    @Override
+    public void getAll(String[] keys, String[] out) {
+        if (keys == null || out == null || out.length < keys.length)
+            throw new IllegalArgumentException("Provided: keys=" + (keys == null ? null : keys.length + " keys")
+                    + " and out=" + (out == null ? null : out.length + " cells"));
+        int[] positions = new int[keys.length];
+        String[] survivors = new String[keys.length];
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            out[i] = null;
+            if (keys[i] != null && admitted(keys[i].hashCode())) {
+                positions[count] = i;
+                survivors[count++] = keys[i];
+            }
+        }
+        if (count == 0)
+            return;
+        String[] found = new String[count];
+        table.getAll(count == keys.length ? survivors : Arrays.copyOf(survivors, count), found);
+        for (int i = 0; i < count; i++) {
+            out[positions[i]] = checked(found[i]);
+        }
+    }
+
+    private boolean admitted(int hash) {
+        lookups.increment();
+        if (filter.mightContain(hash))
+            return true;
+        rejected.increment();
+        return false;
+    }
+
+    private String checked(String value) {
+        if (value == null)
+            falsePositives.increment();
+        return value;
+    }
+
+    /**
+     * Returns a view of this table whose lookups are not counted in the
+     * {@link #metrics()}. Its lookups are filtered all the same, and it does not
+     * support {@link #put(String, String)} or {@link #remove(String)}.
+     *
+     * @return The uncounted view.
+     * @see #count(int, String)
+     */
+    public HashTable uncounted() {
+        return uncounted;
+    }
+
+    /**
+     * Counts a lookup made in the {@link #uncounted()} view, as if the filter had
+     * answered it as it does now. A lookup that found no value is counted as
+     * rejected if the filter rejects the key now, and as a false positive
+     * otherwise, so it should be counted before the table is written again.
+     *
+     * @param hash  The {@link String#hashCode()} of the key, which
+     *              {@link Keys#hash(CharSequence)} and
+     *              {@link Keys#hashUtf8(byte[], int, int)} also compute.
+     * @param value The value that the lookup returned.
+     */
+    public void count(int hash, String value) {
+        if (value != null)
+            lookups.increment();
+        else if (admitted(hash))
+            falsePositives.increment();
+    }
+
+    // The lookups of the table through the filter, without the counters.
+    private final class Uncounted implements HashTable {
+
+        @Override
+        public String put(String key, String value) {
+            throw new UnsupportedOperationException("The uncounted view of a FilteredHashTable is read-only.");
+        }
+
+        @Override
+        public String get(String key) {
+            return key != null && filter.mightContain(key.hashCode()) ? table.get(key) : null;
+        }
+
+        @Override
+        public String get(CharSequence key) {
+            return key != null && filter.mightContain(Keys.hash(key)) ? table.get(key) : null;
+        }
+
+        @Override
+        public String get(byte[] utf8, int offset, int length) {
+            return filter.mightContain(Keys.hashUtf8(utf8, offset, length)) ? table.get(utf8, offset, length) : null;
+        }
+
+        @Override
+        public String remove(String key) {
+            throw new UnsupportedOperationException("The uncounted view of a FilteredHashTable is read-only.");
+        }
+
+        @Override
+        public boolean containsKey(String key) {
+            return FilteredHashTable.this.containsKey(key);
+        }
+
+        @Override
+        public boolean containsValue(String value) {
+            return table.containsValue(value);
+        }
+
+        @Override
+        public int size() {
+            return table.size();
+        }
+
+        @Override
+        public int capacity() {
+            return table.capacity();
+        }
+
+        @Override
+        public Spliterator<KVPair> spliterator() {
+            return table.spliterator();
+        }
+    }
+
+    @Override
+    public String remove(String key) {
+        if (key == null)
+            return null;
+        String value = table.remove(key);
+        if (value != null && !table.containsKey(key))
+            filter.remove(key.hashCode()); // After the table, for the same reason as in put
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return key != null && filter.mightContain(key.hashCode()) && table.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(String value) {
+        return table.containsValue(value);
+    }
+
+    @Override
+    public int size() {
+        return table.size();
+    }
+
+    @Override
+    public int capacity() {
+        return table.capacity();
+    }
+
+    @Override
+    public void presize(int capacity) {
+        table.presize(capacity);
+    }
+
+    @Override
+    public Spliterator<KVPair> spliterator() {
+        return table.spliterator();
+    }
+}
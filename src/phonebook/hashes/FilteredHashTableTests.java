@@ -0,0 +1,166 @@
+package phonebook.hashes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class FilteredHashTableTests {
+
+    @Test
+    public void filterTest1() {
+        // no false negatives, false positives near the target rate, and removed keys are forgotten
+        CountingBloomFilter filter = new CountingBloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.add(("key" + i).hashCode());
+        }
+        assertEquals(10000, filter.size());
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(filter.mightContain(("key" + i).hashCode()));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            falsePositives += filter.mightContain(("absent" + i).hashCode()) ? 1 : 0;
+        }
+        assertTrue("False positives: " + falsePositives, falsePositives < 100000 * 0.02);
+        double estimated = filter.estimatedFalsePositiveRate();
+        assertTrue("Estimated rate: " + estimated, estimated > 0.005 && estimated < 0.02);
+        assertTrue(filter.memoryBytes() < 10000 * 14 * 4 / 8); // At most 14 4-bit counters per key
+
+        for (int i = 0; i < 10000; i++) {
+            filter.remove(("key" + i).hashCode());
+        }
+        assertEquals(0, filter.size());
+        assertEquals(0, filter.estimatedFalsePositiveRate(), 0);
+        assertFalse(filter.mightContain("key7".hashCode()));
+    }
+
+    @Test
+    public void filterTest2() {
+        // arguments are checked
+        for (double rate : new double[] { 0, 1, -0.5, Double.NaN }) {
+            try {
+                new CountingBloomFilter(100, rate);
+                fail("A false-positive rate of " + rate + " should be rejected.");
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+        try {
+            new CountingBloomFilter(-1, 0.01);
+            fail("A negative number of keys should be rejected.");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void tableTest1() {
+        // lookups behave like the table's, through growth of the filter, and most misses stop at the filter
+        for (HashTable inner : new HashTable[] { new LinearProbingHashTable(false), new ConcurrentLinearProbingHashTable(),
+                new QuadraticProbingHashTable(true), new PersistentHashTable() }) {
+            FilteredHashTable table = new FilteredHashTable(inner, 0.01);
+            for (int i = 0; i < 2000; i++) { // Twice what the filter starts out sized for
+                assertEquals("number" + i, table.put("name" + i, "number" + i));
+            }
+            table.put("Zo\u00EB", "\u260E");
+            assertEquals(2001, table.size());
+            for (int i = 0; i < 2000; i++) {
+                assertEquals("number" + i, table.get("name" + i));
+            }
+            byte[] utf8 = "<Zo\u00EB>".getBytes(StandardCharsets.UTF_8);
+            assertEquals("\u260E", table.get(utf8, 1, utf8.length - 2));
+            assertEquals("\u260E", table.get(new StringBuilder("Zo\u00EB")));
+            for (int i = 0; i < 10000; i++) {
+                assertNull(table.get("absent" + i));
+            }
+            assertNull(table.get((String) null));
+            FilteredHashTable.Metrics metrics = table.metrics();
+            assertEquals(12002, metrics.getLookups());
+            assertEquals(10000, metrics.getRejected() + metrics.getFalsePositives());
+            assertTrue(metrics.toString(), metrics.getObservedFalsePositiveRate() < 0.03);
+            assertEquals(0.01, metrics.getTargetFalsePositiveRate(), 0);
+            assertTrue(metrics.getMemoryBytes() > 0);
+
+            for (int i = 0; i < 2000; i += 2) {
+                assertEquals("number" + i, table.remove("name" + i));
+            }
+            assertNull(table.remove("name0"));
+            String[] keys = { "name0", "name1", null, "absent", "name3" }, out = new String[5];
+            table.getAll(keys, out);
+            assertNull(out[0]);
+            assertEquals("number1", out[1]);
+            assertNull(out[2]);
+            assertNull(out[3]);
+            assertEquals("number3", out[4]);
+            assertTrue(table.containsKey("name1"));
+            assertFalse(table.containsKey("name2"));
+            assertTrue(table.containsValue("number7"));
+            assertEquals(table.size(), table.entries().count());
+            try {
+                table.put("name1", null);
+                fail("A null value should be rejected.");
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+
+    @Test
+    public void tableTest2() {
+        // lookups in the uncounted view are counted only when asked to, and count as they would have
+        FilteredHashTable table = new FilteredHashTable(new SeparateChainingHashTable(), 0.01);
+        for (int i = 0; i < 100; i++) {
+            table.put("name" + i, "number" + i);
+        }
+        HashTable uncounted = table.uncounted();
+        assertEquals("number7", uncounted.get("name7"));
+        assertEquals("number8", uncounted.get(new StringBuilder("name8")));
+        for (int i = 0; i < 1000; i++) {
+            assertNull(uncounted.get("absent" + i));
+        }
+        assertEquals(0, table.metrics().getLookups());
+        table.count("name7".hashCode(), "number7");
+        for (int i = 0; i < 1000; i++) {
+            table.count(("absent" + i).hashCode(), null);
+        }
+        FilteredHashTable.Metrics metrics = table.metrics();
+        assertEquals(1001, metrics.getLookups());
+        assertEquals(1000, metrics.getRejected() + metrics.getFalsePositives());
+        assertTrue(metrics.toString(), metrics.getRejected() > 1000 * 0.95);
+        try {
+            uncounted.put("name1", "number1");
+            fail("The uncounted view should be read-only.");
+        } catch (UnsupportedOperationException ignored) {
+        }
+    }
+
+    @Test
+    public void tableTest3() {
+        // a put that the table rejects leaves no key behind in the filter
+        FilteredHashTable table = new FilteredHashTable(new SeparateChainingHashTable() {
+            @Override
+            public String put(String key, String value) {
+                if (key.startsWith("bad"))
+                    throw new IllegalStateException("Provided: key=" + key);
+                return super.put(key, value);
+            }
+        }, 0.01);
+        table.put("good", "1");
+        for (int i = 0; i < 100; i++) {
+            try {
+                table.put("bad" + i, "2");
+                fail("The put should have failed.");
+            } catch (IllegalStateException ignored) {
+            }
+        }
+        for (int i = 0; i < 100; i++) {
+            assertNull(table.get("bad" + i));
+        }
+        FilteredHashTable.Metrics metrics = table.metrics();
+        assertTrue(metrics.toString(), metrics.getRejected() > 100 * 0.9);
+        assertEquals("1", table.get("good"));
+    }
+}
@@ -1,5 +1,14 @@
 package phonebook.hashes;
 
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.Keys;
+
 /**
  * <p>
  * {@link HashTable} is an abstraction over hash tables which store
@@ -24,7 +33,7 @@ package phonebook.hashes;
  * @see OrderedLinearProbingHashTable
  * @see QuadraticProbingHashTable
  */
-public interface HashTable {
+public interface HashTable extends Iterable<KVPair> {
 
     /**
      * Inserts the pair &lt;key, value&gt; into this. The container should
@@ -118,4 +127,130 @@ public interface HashTable {
      * @return the number of cells in the table.
      */
     int capacity();
+
+    /**
+     * Returns a {@link Spliterator} over the records of this {@link HashTable}.
+     * Implementations split it by <b>cell range</b>, so that streams over the
+     * table parallelize without copying the records out first, and skip empty
+     * cells (and tombstones) without allocating anything per record. The
+     * {@link HashTable} should not be modified while the {@link Spliterator} is in
+     * use.
+     *
+     * @return A {@link Spliterator} over the records of this.
+     */
+    @Override
+    Spliterator<KVPair> spliterator();
+
+    /**
+     * Returns an {@link Iterator} over the records of this {@link HashTable}, in
+     * cell order.
+     *
+     * @return An {@link Iterator} over the records of this.
+     * @see #spliterator()
+     */
+    @Override
+    default Iterator<KVPair> iterator() {
+        return Spliterators.iterator(spliterator());
+    }
+
+    /**
+     * Streams the records of this {@link HashTable}. Call
+     * {@link Stream#parallel()} on the result to process cell ranges in parallel.
+     *
+     * @return A sequential {@link Stream} over the records of this.
+     * @see #spliterator()
+     */
+    default Stream<KVPair> entries() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Streams the keys of this {@link HashTable}.
+     *
+     * @return A sequential {@link Stream} over the keys of this.
+     * @see #entries()
+     */
+    default Stream<String> keys() {
+        return entries().map(KVPair::getKey);
+    }
+
+    /**
+     * Streams the values of this {@link HashTable}.
+     *
+     * @return A sequential {@link Stream} over the values of this.
+     * @see #entries()
+     */
+    default Stream<String> values() {
+        return entries().map(KVPair::getValue);
+    }
+
+    /**
+     * Grows this {@link HashTable}, if needed, to the smallest capacity it would
+     * reach on its own that is at least capacity cells, so that a bulk load of a
+     * known size does not {@code resize()} along the way. Tables whose capacity is
+     * already large enough, and tables that do not support presizing, are left
+     * unchanged; the default implementation does nothing.
+     *
+     * @param capacity The number of cells the table should have.
+     * @see #capacity()
+     */
+    default void presize(int capacity) {
+    }
+
+    /**
+     * Looks up many keys at once: stores the value associated with keys[i] into
+     * out[i], or {@code null} if keys[i] is {@code null} or not in the
+     * {@link HashTable}. The default implementation calls {@link #get(String)} for
+     * every key; implementations may instead overlap the memory accesses of several
+     * lookups.
+     *
+     * @param keys The keys to search for.
+     * @param out  Where to store the associated values. Must be at least as long
+     *             as keys.
+     * @throws IllegalArgumentException if either array is {@code null}, or out is
+     *                                  shorter than keys.
+     */
+    default void getAll(String[] keys, String[] out) {
+        if (keys == null || out == null || out.length < keys.length)
+            throw new IllegalArgumentException("Provided: keys=" + (keys == null ? null : keys.length + " keys")
+                    + " and out=" + (out == null ? null : out.length + " cells"));
+        for (int i = 0; i < keys.length; i++) {
+            out[i] = keys[i] == null ? null : get(keys[i]);
+        }
+    }
+
+    /**
+     * Looks up a key given as any {@link CharSequence}, such as a
+     * {@link StringBuilder} or a {@link java.nio.CharBuffer} that is reused from
+     * request to request. The default implementation converts the key into a
+     * {@link String}; implementations may instead hash and compare it in place,
+     * with {@link Keys#hash(CharSequence)} and
+     * {@link String#contentEquals(CharSequence)}, and allocate nothing.
+     *
+     * @param key The key to search for.
+     * @return The associated value, or {@code null} if key is {@code null} or not
+     *         in the {@link HashTable}.
+     */
+    default String get(CharSequence key) {
+        return key == null ? null : get(key.toString());
+    }
+
+    /**
+     * Looks up a key given as a slice of UTF-8 bytes. The default implementation
+     * decodes the key into a {@link String}; implementations may instead hash and
+     * compare the bytes in place, with {@link Keys#hashUtf8(byte[], int, int)} and
+     * {@link Keys#equalsUtf8(String, byte[], int, int)}, and allocate nothing.
+     *
+     * @param utf8   The bytes.
+     * @param offset The index of the first byte of the key.
+     * @param length The number of bytes of the key.
+     * @return The associated value, or {@code null} if the bytes are not
+     *         well-formed UTF-8 or the key is not in the {@link HashTable}.
+     * @throws IllegalArgumentException if utf8 is {@code null} or the slice is out
+     *                                  of its bounds.
+     */
+    default String get(byte[] utf8, int offset, int length) {
+        String key = Keys.decodeUtf8(utf8, offset, length);
+        return key == null ? null : get(key);
+    }
 }
@@ -153,4 +153,12 @@ public class LinearProbingHashTable extends OpenAddressingHashTable {
         }
         return value; // Key not found, return null
     }
+
+    /**
+     * {@inheritDoc} Any insertion order yields a valid linear probing layout, so this table can be rehashed in parallel.
+     */
+    @Override
+    ProbeSequence probeSequence() {
+        return (home, attempt) -> (home + attempt) % table.length;
+    }
 }
@@ -4,6 +4,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Test;
 
 import phonebook.utils.Probes;
@@ -273,4 +277,126 @@ public class LinearProbingHashTableTests {
         assertTrue(lp.containsKey("h"));
         assertEquals("hippo", result);
     }
+
+    @Test
+    public void parallelResizeTest1() {
+        // the resize out of 2503 cells rehashes in parallel
+        lp = new LinearProbingHashTable(false); // hard deletes
+        for (int i = 0; i < 1500; i++) {
+            lp.put("name" + i, "number" + i);
+        }
+        assertEquals(4999, lp.capacity());
+        assertEquals(1500, lp.size());
+        for (int i = 0; i < 1500; i++) {
+            assertEquals("number" + i, lp.get("name" + i));
+        }
+    }
+
+    @Test
+    public void parallelContainsValueTest1() {
+        parallelResizeTest1();
+        assertTrue(lp.containsValue("number" + 0));
+        assertTrue(lp.containsValue("number" + 1499));
+        assertFalse(lp.containsValue("number" + 1500));
+        lp.remove("name" + 1499);
+        assertFalse(lp.containsValue("number" + 1499));
+    }
+
+    @Test
+    public void iteratorTest1() {
+        // tombstones and empty cells are skipped
+        lp = new LinearProbingHashTable(true); // soft deletes
+        result = lp.put("test", "testy"); // hash of 1
+        result = lp.put("c", "cat"); // hash of 1
+        result = lp.put("f", "fox"); // hash of 4
+        result = lp.remove("c");
+        List<String> keys = new ArrayList<>();
+        for (var pair : lp) {
+            keys.add(pair.getKey());
+        }
+        assertEquals(List.of("test", "f"), keys);
+        assertEquals(2, lp.keys().count());
+        assertTrue(lp.values().anyMatch("fox"::equals));
+    }
+
+    @Test
+    public void parallelStreamTest1() {
+        parallelResizeTest1();
+        assertTrue(lp.spliterator().trySplit() != null);
+        assertEquals(1500, lp.entries().parallel().count());
+        assertEquals(1500, lp.keys().parallel().distinct().count());
+    }
+
+    @Test
+    public void getAllTest1() {
+        // batched lookups should agree with get, across probe chains, tombstones and missing keys
+        lp = new LinearProbingHashTable(true); // soft deletes
+        for (int i = 0; i < 1500; i++) {
+            lp.put("name" + i, "number" + i);
+        }
+        for (int i = 0; i < 1500; i += 3) {
+            lp.remove("name" + i);
+        }
+        String[] keys = new String[1700], out = new String[1701];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i % 100 == 7 ? null : "name" + i;
+        }
+        lp.getAll(keys, out);
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(keys[i] == null ? null : lp.get(keys[i]), out[i]);
+        }
+        assertEquals(null, out[1700]);
+        assertEquals("number1", out[1]);
+        try {
+            lp.getAll(keys, new String[10]);
+            assertFalse(true); // shouldn't get here
+        } catch (IllegalArgumentException e) {
+            assertTrue(true); // should get here
+        }
+    }
+
+    @Test
+    public void inPlaceGetTest1() {
+        // lookups from a CharSequence or UTF-8 bytes should agree with get, across probe chains and tombstones
+        lp = new LinearProbingHashTable(true); // soft deletes
+        for (int i = 0; i < 1500; i++) {
+            lp.put("name" + i, "number" + i);
+        }
+        for (int i = 0; i < 1500; i += 3) {
+            lp.remove("name" + i);
+        }
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < 1600; i++) {
+            key.setLength(0);
+            key.append("name").append(i);
+            byte[] utf8 = ("<" + key + ">").getBytes(StandardCharsets.UTF_8);
+            assertEquals(lp.get(key.toString()), lp.get(key));
+            assertEquals(lp.get(key.toString()), lp.get(utf8, 1, utf8.length - 2));
+        }
+        assertEquals(null, lp.get((CharSequence) null));
+    }
+
+    @Test
+    public void presizeTest1() {
+        // presizing lands on the capacity that growth would reach, and the following puts do not resize
+        lp = new LinearProbingHashTable(false); // hard deletes
+        for (int i = 0; i < 600; i++) {
+            lp.put("name" + i, "number" + i);
+        }
+        int grown = lp.capacity();
+        LinearProbingHashTable presized = new LinearProbingHashTable(false);
+        presized.put("name0", "number0");
+        presized.presize(grown);
+        assertEquals(grown, presized.capacity());
+        assertEquals("number0", presized.get("name0"));
+        for (int i = 1; i < 600; i++) {
+            presized.put("name" + i, "number" + i);
+        }
+        assertEquals(grown, presized.capacity());
+        presized.presize(7); // never shrinks
+        assertEquals(grown, presized.capacity());
+        presized.presize(Integer.MAX_VALUE); // stops at the largest prime
+        assertEquals(4999, presized.capacity());
+        assertEquals(600, presized.size());
+    }
 }
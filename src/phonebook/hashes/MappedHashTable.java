@@ -0,0 +1,398 @@
+package phonebook.hashes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.Keys;
+import phonebook.utils.Varints;
+
+/**
+ * <p>
+ * {@link MappedHashTable} is a <b>read-only</b> {@link HashTable} that lives in a
+ * file, which {@link #write(Path, Iterator)} lays out as an openly addressed hash
+ * table once, and which {@link #open(Path)} then maps into memory with
+ * {@link FileChannel#map}. Opening reads nothing but the header, so it takes the
+ * same time whatever the size of the table; lookups read the mapped pages
+ * directly, and the operating system pages them in on first use. Every JVM on a
+ * host that maps the same file shares the same pages of the page cache, instead
+ * of each one holding a copy of the table on its heap.
+ * </p>
+ *
+ * <p>
+ * The file holds a header of four big-endian {@code int}s (the magic number
+ * {@value #MAGIC}, the format {@value #VERSION}, the number of pairs, and the
+ * base-2 logarithm of the number of cells), then the cells, then the pairs. A
+ * cell is eight bytes: the {@link String#hashCode()} of its key, and the position
+ * of its pair in the file, or {@code 0} if the cell is empty. Cells are found by
+ * linear probing from a multiplicative hash of the hash code, and are at most half
+ * full, so that a missing key is usually rejected after reading one or two cells;
+ * the stored hash codes spare almost all key comparisons. A pair is its key and
+ * then its value, each one an unsigned LEB128 byte count followed by that many
+ * bytes of UTF-8. A file is mapped as a single region, so it may not exceed 2 GiB.
+ * </p>
+ *
+ * <p>
+ * Since the contents never change, any number of threads may look keys up at the
+ * same time. {@link #put(String, String)} and {@link #remove(String)} throw an
+ * {@link UnsupportedOperationException}.
+ * </p>
+ *
+ * @see phonebook.MappedPhonebook
+ */
+public class MappedHashTable implements HashTable {
+
+    static final int MAGIC = 0x50484d50; // "PHMP"
+    static final int VERSION = 1;
+
+    private static final int HEADER = 4 * Integer.BYTES;
+    private static final int CELL = 2 * Integer.BYTES;
+    private static final int EMPTY = 0; // No pair starts inside the header
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final MappedByteBuffer file;
+    private final int count, cells, shift;
+
+    private MappedHashTable(MappedByteBuffer file, int count, int cellBits) {
+        this.file = file;
+        this.count = count;
+        cells = 1 << cellBits;
+        shift = 32 - cellBits;
+    }
+
+    /**
+     * Maps a file that {@link #write(Path, Iterator)} produced. Only the header is
+     * read; a file that was damaged after it was written may make lookups fail in
+     * arbitrary ways.
+     *
+     * @param path The file to map.
+     * @return A {@link MappedHashTable} over the file.
+     * @throws IOException if the file cannot be mapped, or its header is not that
+     *                     of a table of the supported version.
+     */
+    public static MappedHashTable open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER || size > Integer.MAX_VALUE)
+                throw new IOException("Not a mapped hash table: " + size + " bytes.");
+            MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, size); // Outlives the channel
+            int magic = file.getInt(0), version = file.getInt(4), count = file.getInt(8), cellBits = file.getInt(12);
+            if (magic != MAGIC)
+                throw new IOException("Not a mapped hash table: bad magic number " + Integer.toHexString(magic) + ".");
+            if (version != VERSION)
+                throw new IOException("Unsupported mapped hash table version " + version + "; expected " + VERSION + ".");
+            if (cellBits < 1 || cellBits > 27 || count < 0 || count > 1 << (cellBits - 1)
+                    || HEADER + ((long) CELL << cellBits) > size)
+                throw new IOException("Corrupt mapped hash table header.");
+            return new MappedHashTable(file, count, cellBits);
+        }
+    }
+
+    /**
+     * Writes the pairs into a new file in the layout that {@link #open(Path)}
+     * maps. The file is written next to path first and then moved over it, so that
+     * nodes that open path while a new table is being published map either the old
+     * table or the whole new one. If several pairs have the same key, the last one
+     * wins.
+     *
+     * @param path  The file to write. It is replaced if it exists.
+     * @param pairs The &lt; key, value &gt; pairs of the table.
+     * @throws IOException if the file cannot be written.
+     * @throws IllegalArgumentException if any key or value is {@code null}, or the
+     *                                  table would not fit in 2 GiB.
+     */
+    public static void write(Path path, Iterator<KVPair> pairs) throws IOException {
+        List<byte[]> keys = new ArrayList<>(), values = new ArrayList<>();
+        while (pairs.hasNext()) {
+            KVPair pair = pairs.next();
+            if (pair.getKey() == null || pair.getValue() == null)
+                throw new IllegalArgumentException("Provided: key=" + pair.getKey() + " and value=" + pair.getValue());
+            keys.add(pair.getKey().getBytes(StandardCharsets.UTF_8));
+            values.add(pair.getValue().getBytes(StandardCharsets.UTF_8));
+        }
+        int cellBits = 1;
+        while (1L << (cellBits - 1) < keys.size()) { // At most half full
+            cellBits++;
+        }
+        int cells = 1 << cellBits, shift = 32 - cellBits;
+        int[] hashes = new int[cells], ids = new int[cells]; // ids hold the index of a pair plus one
+        int count = 0;
+        for (int id = 0; id < keys.size(); id++) {
+            byte[] key = keys.get(id);
+            int hash = Keys.hashUtf8(key, 0, key.length);
+            for (int cell = home(hash, shift); ; cell = (cell + 1) & (cells - 1)) {
+                if (ids[cell] == EMPTY) {
+                    hashes[cell] = hash;
+                    ids[cell] = id + 1;
+                    count++;
+                    break;
+                }
+                if (hashes[cell] == hash && Arrays.equals(keys.get(ids[cell] - 1), key)) {
+                    ids[cell] = id + 1; // A later pair with the same key replaces the earlier one
+                    break;
+                }
+            }
+        }
+
+        long size = HEADER + (long) CELL * cells;
+        int[] positions = new int[cells];
+        for (int cell = 0; cell < cells; cell++) { // Pairs follow the cells, in cell order
+            if (ids[cell] != EMPTY) {
+                if (size > Integer.MAX_VALUE)
+                    break;
+                positions[cell] = (int) size;
+                size += pairLength(keys.get(ids[cell] - 1), values.get(ids[cell] - 1));
+            }
+        }
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The table would take more than 2 GiB.");
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        boolean written = false;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(cellBits);
+            for (int cell = 0; cell < cells; cell++) {
+                if (buffer.remaining() < CELL)
+                    flush(channel, buffer);
+                buffer.putInt(hashes[cell]).putInt(positions[cell]);
+            }
+            for (int cell = 0; cell < cells; cell++) {
+                if (ids[cell] != EMPTY) {
+                    putBytes(channel, buffer, keys.get(ids[cell] - 1));
+                    putBytes(channel, buffer, values.get(ids[cell] - 1));
+                }
+            }
+            flush(channel, buffer);
+            channel.force(true);
+            written = true;
+        } finally {
+            if (!written)
+                Files.deleteIfExists(temporary);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int home(int hash, int shift) {
+        return (hash * 0x9e3779b9) >>> shift; // Fibonacci hashing spreads String hash codes over the top bits
+    }
+
+    private static long pairLength(byte[] key, byte[] value) {
+        return Varints.sizeOf(key.length) + key.length + Varints.sizeOf(value.length) + value.length;
+    }
+
+    private static void putBytes(FileChannel channel, ByteBuffer buffer, byte[] bytes) throws IOException {
+        if (buffer.remaining() < Varints.MAX_BYTES)
+            flush(channel, buffer);
+        Varints.put(buffer, bytes.length);
+        for (int offset = 0; offset < bytes.length; ) {
+            if (!buffer.hasRemaining())
+                flush(channel, buffer);
+            int n = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, n);
+            offset += n;
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Not supported: a {@link MappedHashTable} is read-only.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public String put(String key, String value) {
+        throw new UnsupportedOperationException("MappedHashTable is read-only.");
+    }
+
+    @Override
+    public String get(String key) {
+        return get((CharSequence) key);
+    }
+
+    @Override
+    public String get(CharSequence key) {
+        if (key == null)
+            return null;
+        int hash = Keys.hash(key);
+        for (int cell = home(hash, shift); ; cell = (cell + 1) & (cells - 1)) {
+            int at = HEADER + cell * CELL, position = file.getInt(at + Integer.BYTES);
+            if (position == EMPTY)
+                return null;
+            if (file.getInt(at) == hash && keyEquals(key, position))
+                return valueAt(position);
+        }
+    }
+
+    @Override
+    public String get(byte[] utf8, int offset, int length) {
+        int hash = Keys.hashUtf8(utf8, offset, length);
+        for (int cell = home(hash, shift); ; cell = (cell + 1) & (cells - 1)) {
+            int at = HEADER + cell * CELL, position = file.getInt(at + Integer.BYTES);
+            if (position == EMPTY)
+                return null;
+            if (file.getInt(at) == hash && bytesEqual(utf8, offset, length, position))
+                return valueAt(position);
+        }
+    }
+
+    /**
+     * Not supported: a {@link MappedHashTable} is read-only.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public String remove(String key) {
+        throw new UnsupportedOperationException("MappedHashTable is read-only.");
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public boolean containsValue(String value) {
+        return value != null && entries().anyMatch(pair -> pair.getValue().equals(value));
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public int capacity() {
+        return cells;
+    }
+
+    @Override
+    public Spliterator<KVPair> spliterator() {
+        return new CellSpliterator(0, cells);
+    }
+
+    // The byte count at position, in its low 32 bits, and the number of bytes it takes, in the high ones.
+    private long lengthAt(int position) {
+        return Varints.get(file, position);
+    }
+
+    private String stringAt(int position, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = file.get(position + i); // Absolute gets, so that lookups may run concurrently
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String keyAt(int position) {
+        long length = lengthAt(position);
+        return stringAt(position + (int) (length >>> 32), (int) length);
+    }
+
+    private String valueAt(int position) {
+        long keyLength = lengthAt(position);
+        int valuePosition = position + (int) (keyLength >>> 32) + (int) keyLength;
+        long length = lengthAt(valuePosition);
+        return stringAt(valuePosition + (int) (length >>> 32), (int) length);
+    }
+
+    private boolean keyEquals(CharSequence key, int position) {
+        long length = lengthAt(position);
+        int start = position + (int) (length >>> 32), bytes = (int) length;
+        if (bytes == key.length()) { // Equal only if every char is ASCII: compare without decoding
+            for (int i = 0; i < bytes; i++) {
+                if (key.charAt(i) >= 0x80 || file.get(start + i) != key.charAt(i))
+                    return false;
+            }
+            return true;
+        }
+        if (bytes < key.length() || bytes > 3 * key.length())
+            return false;
+        byte[] utf8 = new byte[bytes];
+        for (int i = 0; i < bytes; i++) {
+            utf8[i] = file.get(start + i);
+        }
+        return Keys.equalsUtf8(key.toString(), utf8, 0, bytes);
+    }
+
+    // Stored keys are well-formed UTF-8 in its only valid encoding, so equal keys have equal bytes.
+    private boolean bytesEqual(byte[] utf8, int offset, int length, int position) {
+        long stored = lengthAt(position);
+        if ((int) stored != length)
+            return false;
+        int start = position + (int) (stored >>> 32);
+        for (int i = 0; i < length; i++) {
+            if (file.get(start + i) != utf8[offset + i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * A {@link Spliterator} over the cell range [index, fence), which decodes the
+     * pairs of the occupied cells and halves the range when split.
+     */
+    private final class CellSpliterator implements Spliterator<KVPair> {
+        private int index;
+        private final int fence;
+
+        CellSpliterator(int index, int fence) {
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super KVPair> action) {
+            while (index < fence) {
+                int position = file.getInt(HEADER + index++ * CELL + Integer.BYTES);
+                if (position != EMPTY) {
+                    action.accept(new KVPair(keyAt(position), valueAt(position)));
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<KVPair> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (mid - index < ParallelScans.LEAF_SIZE) {
+                return null;
+            }
+            var prefix = new CellSpliterator(index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index; // An upper bound: half of the cells are empty
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | ORDERED;
+        }
+    }
+}
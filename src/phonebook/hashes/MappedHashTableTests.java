@@ -0,0 +1,104 @@
+package phonebook.hashes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import phonebook.utils.KVPair;
+
+public class MappedHashTableTests {
+    Path file;
+    MappedHashTable mapped;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("phonebook", ".map");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void getTest1() throws IOException {
+        // every pair written is found, by String, CharSequence and UTF-8 bytes
+        LinearProbingHashTable lp = new LinearProbingHashTable(false);
+        for (int i = 0; i < 2000; i++) {
+            lp.put("name" + i, "number" + i);
+        }
+        lp.put("Zo\u00EB \uD83D\uDCDE", "\u260E 1");
+        lp.put("", "empty");
+        MappedHashTable.write(file, lp.iterator());
+        mapped = MappedHashTable.open(file);
+        assertEquals(2002, mapped.size());
+        assertTrue(mapped.capacity() >= 2 * mapped.size());
+        StringBuilder key = new StringBuilder();
+        for (KVPair pair : lp) {
+            key.setLength(0);
+            key.append(pair.getKey());
+            byte[] utf8 = ("<" + pair.getKey() + ">").getBytes(StandardCharsets.UTF_8);
+            assertEquals(pair.getValue(), mapped.get(pair.getKey()));
+            assertEquals(pair.getValue(), mapped.get(key));
+            assertEquals(pair.getValue(), mapped.get(utf8, 1, utf8.length - 2));
+        }
+        assertNull(mapped.get("name2000"));
+        assertNull(mapped.get("Zo\u00EB"));
+        assertNull(mapped.get((String) null));
+        assertTrue(mapped.containsKey("name7"));
+        assertTrue(mapped.containsValue("number7"));
+        assertFalse(mapped.containsValue("name7"));
+        assertEquals(2002, mapped.entries().parallel().count());
+    }
+
+    @Test
+    public void writeTest1() throws IOException {
+        // the last of several pairs with the same key wins, and an empty table has no pairs
+        MappedHashTable.write(file, List.of(new KVPair("a", "1"), new KVPair("b", "2"), new KVPair("a", "3")).iterator());
+        mapped = MappedHashTable.open(file);
+        assertEquals(2, mapped.size());
+        assertEquals("3", mapped.get("a"));
+        MappedHashTable.write(file, List.<KVPair>of().iterator());
+        mapped = MappedHashTable.open(file);
+        assertEquals(0, mapped.size());
+        assertNull(mapped.get("a"));
+    }
+
+    @Test
+    public void readOnlyTest1() throws IOException {
+        // writes are refused, and files that are not tables are not mapped
+        MappedHashTable.write(file, List.of(new KVPair("a", "1")).iterator());
+        mapped = MappedHashTable.open(file);
+        try {
+            mapped.put("b", "2");
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+        try {
+            mapped.remove("a");
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+        Files.write(file, "name,number\n".getBytes(StandardCharsets.UTF_8));
+        try {
+            MappedHashTable.open(file);
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+}
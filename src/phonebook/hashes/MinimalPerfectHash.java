@@ -0,0 +1,224 @@
+package phonebook.hashes;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ * {@link MinimalPerfectHash} maps each key of a fixed set of n keys to a
+ * distinct index in [0, n), with no collisions and no empty indexes, and keeps
+ * only a few bits per key to do so: it does not store the keys. Keys outside the
+ * set map to an arbitrary index, or to -1, so a table built on it still has to
+ * verify the key it finds at the index.
+ * </p>
+ *
+ * <p>
+ * The construction is BBHash's. The keys are hashed into a bit array of
+ * {@value #GAMMA} &times; n bits; the bits that exactly one key hit are kept and
+ * the others cleared, and the keys that collided are hashed, with another seed,
+ * into a second, smaller array, and so on. A lookup hashes the key level by level
+ * until it meets a set bit, and the index of the key is the <b>rank</b> of that
+ * bit: the number of set bits before it, over all levels, which a table of
+ * cumulative counts every {@value #RANK_BLOCK} bits turns into a couple of
+ * memory reads. The few keys that are still colliding after {@value #MAX_LEVELS}
+ * levels, for instance because their 64-bit hashes are equal, get the last
+ * indexes through a small fallback map.
+ * </p>
+ *
+ * <p>
+ * Every level is built with one parallel pass that sets bits with atomic
+ * {@code or}s and one that collects the colliding keys, over the common
+ * {@link java.util.concurrent.ForkJoinPool}, so building scales with the number
+ * of cores. Each key is hashed once into 64 bits, from its characters, and the
+ * levels rehash those 64 bits; the 32-bit {@link String#hashCode()} would not
+ * tell apart enough of millions of keys.
+ * </p>
+ *
+ * @see MinimalPerfectHashTable
+ */
+public final class MinimalPerfectHash {
+
+    /**
+     * Bits per key of every level. Larger values build faster and look up in fewer
+     * levels, at the cost of more bits per key.
+     */
+    public static final int GAMMA = 2;
+
+    private static final int MAX_LEVELS = 32;
+    private static final int RANK_BLOCK = 512; // Bits, i.e. 8 words
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] bits; // The levels, one after the other, each a whole number of words
+    private final long[] levelStarts; // The first bit of every level, and the end of the last one
+    private final int[] ranks; // The number of set bits before every block of RANK_BLOCK bits
+    private final Map<String, Integer> fallback;
+    private final int size;
+
+    private MinimalPerfectHash(long[] bits, long[] levelStarts, Map<String, Integer> fallback) {
+        this.bits = bits;
+        this.levelStarts = levelStarts;
+        this.fallback = fallback;
+        ranks = new int[(bits.length + RANK_BLOCK / 64 - 1) / (RANK_BLOCK / 64) + 1];
+        int rank = 0;
+        for (int word = 0; word < bits.length; word++) {
+            if (word % (RANK_BLOCK / 64) == 0)
+                ranks[word / (RANK_BLOCK / 64)] = rank;
+            rank += Long.bitCount(bits[word]);
+        }
+        ranks[ranks.length - 1] = rank;
+        size = rank + fallback.size();
+    }
+
+    /**
+     * Builds a minimal perfect hash function for keys, in parallel.
+     *
+     * @param keys The keys. Duplicates are allowed and share their index.
+     * @return A {@link MinimalPerfectHash} that maps the distinct keys onto
+     *         [0, {@link #size()}).
+     * @throws IllegalArgumentException if keys is {@code null} or holds
+     *                                  {@code null}.
+     */
+    public static MinimalPerfectHash build(List<String> keys) {
+        if (keys == null)
+            throw new IllegalArgumentException("Provided: keys=null");
+        long[] hashes = IntStream.range(0, keys.size()).parallel().mapToLong(i -> {
+            String key = keys.get(i);
+            if (key == null)
+                throw new IllegalArgumentException("Provided: a null key at " + i);
+            return hash(key);
+        }).toArray();
+
+        long[][] levels = new long[MAX_LEVELS][];
+        int depth = 0;
+        while (hashes.length > 0 && depth < MAX_LEVELS) {
+            int level = depth++;
+            long length = Math.max(64, ((long) GAMMA * hashes.length + 63) & ~63L);
+            long[] seen = new long[(int) (length / 64)], collided = new long[seen.length];
+            long[] keyHashes = hashes;
+            IntStream.range(0, keyHashes.length).parallel().forEach(i -> {
+                long bit = position(keyHashes[i], level, length);
+                long mask = 1L << bit;
+                int word = (int) (bit >>> 6);
+                if (((long) WORDS.getAndBitwiseOr(seen, word, mask) & mask) != 0)
+                    WORDS.getAndBitwiseOr(collided, word, mask);
+            });
+            IntStream.range(0, seen.length).parallel().forEach(word -> seen[word] &= ~collided[word]);
+            levels[level] = seen;
+            hashes = Arrays.stream(keyHashes).parallel().filter(h -> {
+                long bit = position(h, level, length);
+                return (collided[(int) (bit >>> 6)] & 1L << bit) != 0;
+            }).toArray();
+        }
+
+        long[] levelStarts = new long[depth + 1];
+        int words = 0;
+        for (int level = 0; level < depth; level++) {
+            levelStarts[level + 1] = levelStarts[level] + 64L * levels[level].length;
+            words += levels[level].length;
+        }
+        long[] bits = new long[words];
+        for (int level = 0, word = 0; level < depth; word += levels[level++].length) {
+            System.arraycopy(levels[level], 0, bits, word, levels[level].length);
+        }
+        MinimalPerfectHash function = new MinimalPerfectHash(bits, levelStarts, new HashMap<>());
+        if (hashes.length > 0) { // Keys that never found a bit of their own: number them after the others
+            int next = function.size;
+            for (String key : keys) {
+                if (function.rankOf(hash(key)) < 0 && !function.fallback.containsKey(key))
+                    function.fallback.put(key, next++);
+            }
+            return new MinimalPerfectHash(bits, levelStarts, function.fallback);
+        }
+        return function;
+    }
+
+    /**
+     * Returns the index of a key.
+     *
+     * @param key The key to look up.
+     * @return The index of key in [0, {@link #size()}) if key was one of the keys
+     *         the function was built for; otherwise, an arbitrary index in that
+     *         range, or -1.
+     */
+    public int indexOf(CharSequence key) {
+        int rank = rankOf(hash(key));
+        if (rank >= 0 || fallback.isEmpty())
+            return rank;
+        return fallback.getOrDefault(key.toString(), -1);
+    }
+
+    /**
+     * Returns the number of distinct keys the function was built for.
+     *
+     * @return The number of indexes the function maps keys onto.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of levels that the keys were spread over.
+     *
+     * @return The number of levels.
+     */
+    public int levels() {
+        return levelStarts.length - 1;
+    }
+
+    /**
+     * Returns the memory the function takes, per key: the bit arrays and the rank
+     * table, not counting the fallback map, which is empty in all but freak cases.
+     *
+     * @return The number of bits of metadata per key.
+     */
+    public double bitsPerKey() {
+        return size == 0 ? 0 : (64.0 * bits.length + 32.0 * ranks.length) / size;
+    }
+
+    // The rank of the first set bit that the hash meets, or -1 if it meets none.
+    private int rankOf(long hash) {
+        for (int level = 0; level + 1 < levelStarts.length; level++) {
+            long bit = levelStarts[level] + position(hash, level, levelStarts[level + 1] - levelStarts[level]);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((bits[word] & mask) != 0) {
+                int block = word / (RANK_BLOCK / 64), rank = ranks[block];
+                for (int w = block * (RANK_BLOCK / 64); w < word; w++) {
+                    rank += Long.bitCount(bits[w]);
+                }
+                return rank + Long.bitCount(bits[word] & (mask - 1));
+            }
+        }
+        return -1;
+    }
+
+    // A 64-bit hash of the characters of key.
+    static long hash(CharSequence key) {
+        long hash = 0xcbf29ce484222325L ^ key.length(); // FNV-1a, finished by a full avalanche
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // The bit that a key hits in a level of the given length.
+    private static long position(long hash, int level, long length) {
+        long h = (hash ^ (level + 1) * 0x9e3779b97f4a7c15L) * 0xbf58476d1ce4e5b9L; // hash is well mixed already
+        h ^= h >>> 31;
+        return Math.multiplyHigh(h & Long.MAX_VALUE, length << 1); // Maps [0, 2^63) onto [0, length)
+    }
+
+    // The finalizer of MurmurHash3.
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ h >>> 33;
+    }
+}
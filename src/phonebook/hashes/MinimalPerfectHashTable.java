@@ -0,0 +1,141 @@
+package phonebook.hashes;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.IntStream;
+
+import phonebook.utils.KVPair;
+
+/**
+ * <p>
+ * {@link MinimalPerfectHashTable} is a <b>read-only</b> {@link HashTable} over a
+ * fixed set of pairs, built once by {@link #build(Iterator)}. A
+ * {@link MinimalPerfectHash} of the keys gives every key a slot of its own in
+ * arrays exactly as long as the number of pairs, so a lookup reads one slot and
+ * compares one key, present or not: there is no probing, no chaining and no empty
+ * slot. On top of the pairs themselves, the table takes the few bits per key of
+ * the function, see {@link #bitsPerKey()}.
+ * </p>
+ *
+ * <p>
+ * Since the contents never change, any number of threads may look keys up at the
+ * same time. {@link #put(String, String)} and {@link #remove(String)} throw an
+ * {@link UnsupportedOperationException}.
+ * </p>
+ *
+ * @see MinimalPerfectHash
+ * @see phonebook.StaticPhonebook
+ */
+public class MinimalPerfectHashTable implements HashTable {
+
+    private final MinimalPerfectHash function;
+    private final String[] keys, values; // Slot i holds the pair whose key the function maps to i
+
+    private MinimalPerfectHashTable(MinimalPerfectHash function, String[] keys, String[] values) {
+        this.function = function;
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /**
+     * Builds a table of pairs. The keys are laid out in parallel, on all cores.
+     *
+     * @param pairs The pairs. If a key occurs more than once, the last pair with
+     *              that key wins.
+     * @return A read-only {@link MinimalPerfectHashTable} of pairs.
+     * @throws IllegalArgumentException if a pair is {@code null}.
+     */
+    public static MinimalPerfectHashTable build(Iterator<KVPair> pairs) {
+        List<KVPair> list = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        while (pairs.hasNext()) {
+            KVPair pair = pairs.next();
+            if (pair == null)
+                throw new IllegalArgumentException("Provided: a null pair at " + list.size());
+            list.add(pair);
+            keys.add(pair.getKey());
+        }
+        MinimalPerfectHash function = MinimalPerfectHash.build(keys);
+        int[] indexes = IntStream.range(0, keys.size()).parallel().map(i -> function.indexOf(keys.get(i))).toArray();
+        String[] slotKeys = new String[function.size()], slotValues = new String[function.size()];
+        for (int i = 0; i < indexes.length; i++) { // In order, so that the last duplicate wins
+            slotKeys[indexes[i]] = keys.get(i);
+            slotValues[indexes[i]] = list.get(i).getValue();
+        }
+        return new MinimalPerfectHashTable(function, slotKeys, slotValues);
+    }
+
+    /**
+     * Returns the memory that the table takes per key to find the slots, not
+     * counting the slots and the pairs themselves.
+     *
+     * @return The number of bits of metadata per key.
+     * @see MinimalPerfectHash#bitsPerKey()
+     */
+    public double bitsPerKey() {
+        return function.bitsPerKey();
+    }
+
+    /**
+     * Not supported: a {@link MinimalPerfectHashTable} is read-only.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public String put(String key, String value) {
+        throw new UnsupportedOperationException("MinimalPerfectHashTable is read-only.");
+    }
+
+    @Override
+    public String get(String key) {
+        if (key == null)
+            return null;
+        int index = function.indexOf(key);
+        return index >= 0 && keys[index].equals(key) ? values[index] : null;
+    }
+
+    @Override
+    public String get(CharSequence key) {
+        if (key == null)
+            return null;
+        int index = function.indexOf(key);
+        return index >= 0 && keys[index].contentEquals(key) ? values[index] : null;
+    }
+
+    /**
+     * Not supported: a {@link MinimalPerfectHashTable} is read-only.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public String remove(String key) {
+        throw new UnsupportedOperationException("MinimalPerfectHashTable is read-only.");
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public boolean containsValue(String value) {
+        return value != null && entries().anyMatch(pair -> pair.getValue().equals(value));
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public int capacity() {
+        return keys.length;
+    }
+
+    @Override
+    public Spliterator<KVPair> spliterator() {
+        return IntStream.range(0, keys.length).mapToObj(i -> new KVPair(keys[i], values[i])).spliterator();
+    }
+}
@@ -0,0 +1,83 @@
+package phonebook.hashes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import phonebook.utils.KVPair;
+
+public class MinimalPerfectHashTests {
+
+    @Test
+    public void buildTest1() {
+        // n keys map onto [0, n) without collisions, in a few bits per key
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            keys.add("name" + i);
+        }
+        MinimalPerfectHash function = MinimalPerfectHash.build(keys);
+        assertEquals(keys.size(), function.size());
+        boolean[] taken = new boolean[keys.size()];
+        for (String key : keys) {
+            int index = function.indexOf(key);
+            assertTrue(index >= 0 && index < keys.size());
+            assertTrue("Two keys share index " + index, !taken[index]);
+            taken[index] = true;
+        }
+        assertEquals(function.indexOf("name7"), function.indexOf(new StringBuilder("name7")));
+        assertTrue(function.bitsPerKey() < 4);
+        assertTrue(function.levels() < 32);
+    }
+
+    @Test
+    public void buildTest2() {
+        // duplicate keys share an index, and no keys make an empty function
+        MinimalPerfectHash function = MinimalPerfectHash.build(List.of("a", "b", "a", "", "b"));
+        assertEquals(3, function.size());
+        assertEquals(function.indexOf("a"), function.indexOf("a"));
+        assertTrue(function.indexOf("a") != function.indexOf("b"));
+        assertTrue(function.indexOf("a") != function.indexOf(""));
+        assertTrue(function.indexOf("b") != function.indexOf(""));
+        assertEquals(0, MinimalPerfectHash.build(List.of()).size());
+        assertEquals(-1, MinimalPerfectHash.build(List.of()).indexOf("a"));
+    }
+
+    @Test
+    public void tableTest1() {
+        // every pair is found by String and CharSequence, the last duplicate wins, and missing keys are rejected
+        List<KVPair> pairs = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            pairs.add(new KVPair("name" + i, "number" + i));
+        }
+        pairs.add(new KVPair("Zo\u00EB \uD83D\uDCDE", "\u260E 1"));
+        pairs.add(new KVPair("name7", "number7'"));
+        MinimalPerfectHashTable table = MinimalPerfectHashTable.build(pairs.iterator());
+        assertEquals(5001, table.size());
+        assertEquals(5001, table.capacity());
+        for (int i = 0; i < 5000; i++) {
+            String expected = i == 7 ? "number7'" : "number" + i;
+            assertEquals(expected, table.get("name" + i));
+            assertEquals(expected, table.get(new StringBuilder("name").append(i)));
+        }
+        assertEquals("\u260E 1", table.get("Zo\u00EB \uD83D\uDCDE"));
+        for (int i = 5000; i < 10_000; i++) {
+            assertNull(table.get("name" + i));
+        }
+        assertNull(table.get((String) null));
+        assertTrue(table.containsValue("number8"));
+        assertEquals(5001, table.entries().parallel().count());
+        assertTrue(table.bitsPerKey() < 4);
+        try {
+            table.put("name1", "number1");
+            fail("A MinimalPerfectHashTable should be read-only.");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+    }
+}
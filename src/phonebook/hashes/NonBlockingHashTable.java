@@ -0,0 +1,405 @@
+package phonebook.hashes;
+
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.PrimeGenerator;
+
+/**
+ * <p>
+ * {@link NonBlockingHashTable} is a <b>lock-free</b>, openly addressed
+ * {@link HashTable} in the style of Cliff Click's non-blocking hash map. Keys and
+ * values live in two parallel arrays of atomic references and collisions are
+ * resolved with <b>Linear Probing</b>. Every state change of a cell is a single
+ * compare-and-set, so no thread ever waits for another: readers in particular
+ * never block, not even while the table is being resized.
+ * </p>
+ *
+ * <p>
+ * A key cell goes from empty to holding its key exactly once and never changes
+ * again in that table; this is what keeps probe sequences intact without hard
+ * deletion. A value cell moves freely between empty, a value and a
+ * <b>tombstone</b>, the same soft deletion marker that
+ * {@link OpenAddressingHashTable} uses, so removing and re-adding a key reuses its
+ * cell. Dead keys are dropped when the table is copied.
+ * </p>
+ *
+ * <p>
+ * Once more than half of the key cells are claimed, a new table is attached
+ * behind the current one and every thread that writes to the map copies a chunk
+ * of cells across before doing its own work. A cell is copied by first
+ * <b>freezing</b> its value with a compare-and-set, then inserting the frozen
+ * value into the new table unless the new table already holds a newer one, and
+ * finally marking the old cell as moved. Any operation that runs into a frozen or
+ * moved cell finishes copying that one cell and continues in the new table, and
+ * empty key cells are sealed during the copy so no new key can land behind the
+ * copier's back. When every cell has been copied, the new table is promoted. The
+ * new table's capacity is the next {@link PrimeGenerator} prime, unless live pairs
+ * fill at most a quarter of the old one, in which case the copy just purges
+ * tombstones at the same capacity.
+ * </p>
+ *
+ * @see ConcurrentLinearProbingHashTable
+ * @see OpenAddressingHashTable
+ */
+public class NonBlockingHashTable implements HashTable {
+
+    /**
+     * The number of cells a writer copies to a resized table before its own operation.
+     */
+    private static final int COPY_CHUNK = 64;
+
+    private static final Object TOMBSTONE = new Object();
+    private static final Object MOVED = new Object();
+    private static final String DEAD_KEY = new String(""); // Compared by identity only
+
+    /**
+     * A value that has been frozen for copying. Its cell cannot change any more.
+     */
+    private static final class Frozen {
+        final Object value;
+
+        Frozen(Object value) {
+            this.value = value;
+        }
+    }
+
+    private static final class Table {
+        final AtomicReferenceArray<String> keys;
+        final AtomicReferenceArray<Object> values;
+        final AtomicInteger claimed = new AtomicInteger(); // Key cells holding a key
+        final AtomicReference<Table> next = new AtomicReference<>();
+        final AtomicInteger copyIndex = new AtomicInteger(); // Next chunk to hand to a helper
+        final AtomicInteger copied = new AtomicInteger(); // Cells whose copy has completed
+
+        Table(int length) {
+            keys = new AtomicReferenceArray<>(length);
+            values = new AtomicReferenceArray<>(length);
+        }
+
+        int length() {
+            return keys.length();
+        }
+    }
+
+    private final AtomicReference<Table> top;
+    private final AtomicInteger count;
+
+    /**
+     * Default constructor. Initializes the internal storage with a size equal to
+     * the starting value of {@link PrimeGenerator}.
+     */
+    public NonBlockingHashTable() {
+        top = new AtomicReference<>(new Table(new PrimeGenerator().getCurrPrime()));
+        count = new AtomicInteger();
+    }
+
+    private static int hash(String key, int length) {
+        return (key.hashCode() & 0x7fffffff) % length;
+    }
+
+    // The capacity PrimeGenerator moves to from length.
+    private static int nextPrime(int length) {
+        PrimeGenerator primes = new PrimeGenerator();
+        while (primes.getCurrPrime() < length) {
+            primes.getNextPrime();
+        }
+        return primes.getNextPrime();
+    }
+
+    @Override
+    public String put(String key, String value) {
+        if (key == null || value == null)
+            throw new IllegalArgumentException("Provided: key=" + key + " and value=" + value);
+        putValue(helpCopy(), key, value, false);
+        return value;
+    }
+
+    @Override
+    public String get(String key) {
+        if (key == null)
+            return null;
+        Table t = top.get();
+        while (t != null) {
+            int length = t.length();
+            int index = hash(key, length);
+            Object value = null;
+            boolean forward = true;
+            for (int i = 0; i < length; i++, index = (index + 1) % length) {
+                String k = t.keys.get(index);
+                if (k == null) {
+                    return null; // A clear miss: key cells on a probe path are never emptied
+                }
+                if (k == DEAD_KEY) {
+                    break; // Sealed by a copy: the key can only be in the next table
+                }
+                if (k.equals(key)) {
+                    value = t.values.get(index);
+                    if (value instanceof Frozen || value == MOVED) {
+                        copyCell(t, index);
+                    } else {
+                        forward = false;
+                    }
+                    break;
+                }
+            }
+            if (!forward) {
+                return value instanceof String ? (String) value : null;
+            }
+            t = t.next.get();
+        }
+        return null;
+    }
+
+    @Override
+    public String remove(String key) {
+        if (key == null)
+            return null;
+        Object previous = putValue(helpCopy(), key, TOMBSTONE, false);
+        return previous instanceof String ? (String) previous : null;
+    }
+
+    /**
+     * Stores value (a {@link String} or the tombstone) under key, starting at table t.
+     * A copying store only fills an empty value cell, so it never overwrites a value
+     * written to the new table after the copy started, and does not count towards
+     * {@link #size()}.
+     *
+     * @return The value previously in the cell, or {@code null}.
+     */
+    private Object putValue(Table t, String key, Object value, boolean copying) {
+        outer: while (true) {
+            int length = t.length();
+            int index = hash(key, length);
+            for (int i = 0; i < length; i++, index = (index + 1) % length) {
+                String k = t.keys.get(index);
+                if (k == null) {
+                    if (value == TOMBSTONE) {
+                        return null; // Removing a key that is not there
+                    }
+                    if (t.next.get() == null && t.claimed.get() * 2 <= length) {
+                        if (t.keys.compareAndSet(index, null, key)) {
+                            t.claimed.incrementAndGet();
+                            k = key;
+                        } else {
+                            k = t.keys.get(index); // Lost the race: look at the winner
+                        }
+                    } else {
+                        // Too full, or being copied: seal this cell and go on in the next table.
+                        attachNext(t);
+                        helpCopy();
+                        copyCell(t, index);
+                        t = t.next.get();
+                        continue outer;
+                    }
+                }
+                if (k == DEAD_KEY) {
+                    t = t.next.get();
+                    continue outer;
+                }
+                if (!k.equals(key)) {
+                    continue;
+                }
+                while (true) {
+                    Object current = t.values.get(index);
+                    if (current instanceof Frozen || current == MOVED) {
+                        copyCell(t, index);
+                        t = t.next.get();
+                        continue outer;
+                    }
+                    if (copying && current != null) {
+                        return current; // A newer value made it here first
+                    }
+                    if (value == TOMBSTONE && !(current instanceof String)) {
+                        return null;
+                    }
+                    if (t.values.compareAndSet(index, current, value)) {
+                        if (!copying && value == TOMBSTONE) {
+                            count.decrementAndGet();
+                        } else if (!copying && !(current instanceof String)) {
+                            count.incrementAndGet();
+                        }
+                        return current;
+                    }
+                }
+            }
+            // Every key cell is claimed by another key.
+            attachNext(t);
+            t = t.next.get();
+        }
+    }
+
+    private void attachNext(Table t) {
+        if (t.next.get() == null) {
+            int length = t.length();
+            int live = count.get();
+            t.next.compareAndSet(null, new Table(live * 4 > length ? nextPrime(length) : length));
+        }
+    }
+
+    /**
+     * Copies cell index of t into t's next table, or waits for nothing if another
+     * thread already has. Returns once the cell's value is in the next table.
+     */
+    private void copyCell(Table t, int index) {
+        String key = t.keys.get(index);
+        while (key == null) {
+            if (t.keys.compareAndSet(index, null, DEAD_KEY)) {
+                finishCopy(t);
+                return;
+            }
+            key = t.keys.get(index);
+        }
+        if (key == DEAD_KEY) {
+            return;
+        }
+        Object value = t.values.get(index);
+        while (!(value instanceof Frozen) && value != MOVED) {
+            Frozen frozen = new Frozen(value);
+            if (t.values.compareAndSet(index, value, frozen)) {
+                value = frozen;
+            } else {
+                value = t.values.get(index);
+            }
+        }
+        if (value == MOVED) {
+            return;
+        }
+        Object live = ((Frozen) value).value;
+        if (live instanceof String) {
+            putValue(t.next.get(), key, live, true);
+        }
+        if (t.values.compareAndSet(index, value, MOVED)) {
+            finishCopy(t);
+        }
+    }
+
+    private void finishCopy(Table t) {
+        t.copied.incrementAndGet();
+        promote();
+    }
+
+    // Replaces the top table with its successor for as long as the top one has been copied in full.
+    private void promote() {
+        Table t = top.get();
+        while (t.next.get() != null && t.copied.get() == t.length()) {
+            top.compareAndSet(t, t.next.get());
+            t = top.get();
+        }
+    }
+
+    /**
+     * Copies a chunk of the top table if it is being resized.
+     *
+     * @return The table writes should start from.
+     */
+    private Table helpCopy() {
+        Table t = top.get();
+        if (t.next.get() != null) {
+            int start = t.copyIndex.getAndAdd(COPY_CHUNK);
+            for (int i = start; i < Math.min(start + COPY_CHUNK, t.length()); i++) {
+                copyCell(t, i);
+            }
+            t = top.get();
+        }
+        return t;
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public boolean containsValue(String value) {
+        return values().anyMatch(v -> v.equals(value));
+    }
+
+    @Override
+    public int size() {
+        return count.get();
+    }
+
+    /**
+     * {@inheritDoc} While a resize is in progress, this is the capacity of the table
+     * being copied from.
+     */
+    @Override
+    public int capacity() {
+        return top.get().length();
+    }
+
+    /**
+     * {@inheritDoc} The {@link Spliterator} is <b>weakly consistent</b>: it first
+     * helps any resize in progress to finish, then walks the cells of the top table,
+     * looking up keys whose cells get copied to a newer table along the way. It may
+     * or may not reflect writes made during the traversal. Since keys and values
+     * are stored separately, every reported pair is a fresh {@link KVPair}.
+     */
+    @Override
+    public Spliterator<KVPair> spliterator() {
+        Table t;
+        while ((t = top.get()).next.get() != null) {
+            for (int i = 0; i < t.length(); i++) {
+                copyCell(t, i);
+            }
+        }
+        return new CellSpliterator(t, 0, t.length());
+    }
+
+    private final class CellSpliterator implements Spliterator<KVPair> {
+        private final Table table;
+        private int index;
+        private final int fence;
+
+        CellSpliterator(Table table, int index, int fence) {
+            this.table = table;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super KVPair> action) {
+            while (index < fence) {
+                String key = table.keys.get(index);
+                Object value = table.values.get(index++);
+                if (key == null || key == DEAD_KEY) {
+                    continue;
+                }
+                if (value instanceof Frozen || value == MOVED) {
+                    value = get(key);
+                }
+                if (value instanceof String) {
+                    action.accept(new KVPair(key, (String) value));
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<KVPair> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (mid - index < ParallelScans.LEAF_SIZE) {
+                return null;
+            }
+            var prefix = new CellSpliterator(table, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | CONCURRENT;
+        }
+    }
+}
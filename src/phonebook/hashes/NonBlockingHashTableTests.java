@@ -0,0 +1,163 @@
+package phonebook.hashes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class NonBlockingHashTableTests {
+    NonBlockingHashTable nb;
+    String result;
+
+    @Test
+    public void constructorTest1() {
+        nb = new NonBlockingHashTable();
+        assertEquals(7, nb.capacity());
+        assertEquals(0, nb.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void putTest1() {
+        nb = new NonBlockingHashTable();
+        nb.put("test", null);
+    }
+
+    @Test
+    public void putTest2() {
+        nb = new NonBlockingHashTable();
+        result = nb.put("test", "testy"); // hash of 1
+        result = nb.put("c", "cat"); // also hash of 1
+        assertEquals("cat", result);
+        assertEquals(2, nb.size());
+        assertEquals("testy", nb.get("test"));
+        assertEquals("cat", nb.get("c"));
+        assertNull(nb.get("d"));
+    }
+
+    @Test
+    public void putTest3() {
+        // an existing key is updated in place
+        putTest2();
+        nb.put("c", "cow");
+        assertEquals(2, nb.size());
+        assertEquals("cow", nb.get("c"));
+    }
+
+    @Test
+    public void removeTest1() {
+        putTest2();
+        assertEquals("testy", nb.remove("test"));
+        assertNull(nb.remove("test"));
+        assertNull(nb.remove("d"));
+        assertEquals(1, nb.size());
+        assertFalse(nb.containsKey("test"));
+        assertTrue(nb.containsKey("c")); // still reachable past the removed key
+        assertTrue(nb.containsValue("cat"));
+        assertFalse(nb.containsValue("testy"));
+    }
+
+    @Test
+    public void removeTest2() {
+        // re-adding a removed key reuses its cell
+        removeTest1();
+        nb.put("test", "tested");
+        assertEquals(2, nb.size());
+        assertEquals("tested", nb.get("test"));
+        assertEquals(7, nb.capacity());
+    }
+
+    @Test
+    public void enlargeTest1() {
+        nb = new NonBlockingHashTable();
+        String[] keys = { "test", "c", "e", "g", "h" };
+        for (String key : keys) {
+            nb.put(key, key + key);
+        }
+        assertEquals(13, nb.capacity());
+        assertEquals(5, nb.size());
+        for (String key : keys) {
+            assertEquals(key + key, nb.get(key));
+        }
+    }
+
+    @Test
+    public void purgeTest1() {
+        // churning distinct keys purges dead ones instead of growing the table
+        nb = new NonBlockingHashTable();
+        for (int i = 0; i < 1000; i++) {
+            nb.put("key" + i, "value");
+            nb.remove("key" + i);
+        }
+        assertEquals(0, nb.size());
+        assertEquals(7, nb.capacity());
+        assertEquals(0, nb.entries().count());
+    }
+
+    @Test
+    public void iteratorTest1() {
+        enlargeTest1();
+        nb.remove("e");
+        Map<String, String> pairs = new HashMap<>();
+        nb.forEach(pair -> pairs.put(pair.getKey(), pair.getValue()));
+        assertEquals(Map.of("test", "testtest", "c", "cc", "g", "gg", "h", "hh"), pairs);
+    }
+
+    @Test
+    public void concurrentResizeTest1() throws InterruptedException {
+        // readers must keep finding preloaded keys while writers force several resizes
+        nb = new NonBlockingHashTable();
+        for (int i = 0; i < 50; i++) {
+            nb.put("preloaded" + i, "number" + i);
+        }
+        int writers = 4, perWriter = 400;
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            threads.add(new Thread(() -> {
+                while (!done.get()) {
+                    for (int i = 0; i < 50; i++) {
+                        if (!("number" + i).equals(nb.get("preloaded" + i)))
+                            failure.compareAndSet(null, "Reader lost preloaded" + i);
+                    }
+                }
+            }));
+        }
+        List<Thread> writerThreads = new ArrayList<>();
+        for (int t = 0; t < writers; t++) {
+            int id = t;
+            writerThreads.add(new Thread(() -> {
+                for (int i = 0; i < perWriter; i++) {
+                    nb.put("name" + id + "-" + i, "number" + i);
+                    if (i % 2 == 0)
+                        nb.remove("name" + id + "-" + i);
+                }
+            }));
+        }
+        threads.addAll(writerThreads);
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread writer : writerThreads)
+            writer.join();
+        done.set(true);
+        for (Thread thread : threads)
+            thread.join();
+        assertNull(failure.get());
+        assertEquals(50 + writers * perWriter / 2, nb.size());
+        for (int t = 0; t < writers; t++) {
+            for (int i = 0; i < perWriter; i++) {
+                assertEquals(i % 2 == 0 ? null : "number" + i, nb.get("name" + t + "-" + i));
+            }
+        }
+        assertEquals(nb.size(), nb.entries().count());
+    }
+}
@@ -1,7 +1,12 @@
 package phonebook.hashes;
 
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
 import phonebook.exceptions.UnimplementedMethodException;
 import phonebook.utils.KVPair;
+import phonebook.utils.Keys;
+import phonebook.utils.NoMorePrimesException;
 import phonebook.utils.PrimeGenerator;
 
 /**
@@ -95,6 +100,27 @@ public abstract class OpenAddressingHashTable implements HashTable {
     protected boolean softFlag;
     protected int tombstoneCount;
 
+    /**
+     * The number of keys whose probes {@link #getAll(String[], String[])} interleaves.
+     */
+    protected static final int LOOKUP_GROUP = 8;
+
+    /**
+     * The {@link ProbeSequence} of this table, or {@code null} if its layout depends on the order of insertion. It
+     * lets lookups and resizings probe from outside {@link #get(String)}.
+     */
+    private final ProbeSequence probes = probeSequence();
+
+    /**
+     * Returns the {@link ProbeSequence} of this table, if its layout depends on nothing but the hashes of its keys.
+     * It is called once, while the table is constructed, so it must not read any field; the sequence it returns may.
+     *
+     * @return The probe sequence, or {@code null}, which the default implementation returns.
+     */
+    ProbeSequence probeSequence() {
+        return null;
+    }
+
     protected OpenAddressingHashTable(boolean soft) {
         primeGenerator = new PrimeGenerator();
         table = new KVPair[primeGenerator.getCurrPrime()];
@@ -149,8 +175,11 @@ public abstract class OpenAddressingHashTable implements HashTable {
     /* *************************************************************** */
 
     public boolean containsValue(String value) {
+        if (table.length >= ParallelScans.PARALLEL_THRESHOLD) {
+            return ParallelScans.anyMatch(table, pair -> pair != TOMBSTONE && pair.getValue().equals(value));
+        }
         for (var pair : table) {
-            if (pair != null && pair.getValue() == value) {
+            if (pair != null && pair != TOMBSTONE && pair.getValue().equals(value)) {
                 return true;
             }
         }
@@ -165,10 +194,189 @@ public abstract class OpenAddressingHashTable implements HashTable {
         return table.length;
     }
 
+    /**
+     * {@inheritDoc} The {@link PrimeGenerator} is advanced along its usual growth
+     * sequence, so that the table continues to grow from there as if it had
+     * reached capacity by itself, and stops at the largest prime it knows.
+     */
+    @Override
+    public void presize(int capacity) {
+        if (capacity <= table.length)
+            return;
+        try {
+            while (primeGenerator.getCurrPrime() < capacity) {
+                primeGenerator.getNextPrime();
+            }
+        } catch (NoMorePrimesException e) {
+            // Stay at the largest prime.
+        }
+        if (primeGenerator.getCurrPrime() > table.length)
+            resize(false); // Rehashes into a table of the current prime
+    }
+
     public boolean containsKey(String key) {
         return (get(key) != null);
     }
 
+    /**
+     * {@inheritDoc} Tables whose probe sequence is described by
+     * {@link ProbeSequence#probeIndex(int, int)} hash every key first and then probe in groups
+     * of {@value #LOOKUP_GROUP} keys, one step at a time across the whole group:
+     * first the home cells of all keys in the group are read, then the pairs they
+     * point to, and only then are the keys compared. The loads of each step do not
+     * depend on each other, so the processor can wait for several cache misses at
+     * once instead of one after the other.
+     */
+    @Override
+    public void getAll(String[] keys, String[] out) {
+        ProbeSequence probes = this.probes;
+        if (probes == null) {
+            HashTable.super.getAll(keys, out);
+            return;
+        }
+        if (keys == null || out == null || out.length < keys.length)
+            throw new IllegalArgumentException("Provided: keys=" + (keys == null ? null : keys.length + " keys")
+                    + " and out=" + (out == null ? null : out.length + " cells"));
+        KVPair[] cells = table;
+        int[] homes = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            homes[i] = keys[i] == null ? -1 : hash(keys[i]);
+        }
+        KVPair[] pairs = new KVPair[LOOKUP_GROUP];
+        String[] found = new String[LOOKUP_GROUP];
+        for (int base = 0; base < keys.length; base += LOOKUP_GROUP) {
+            int size = Math.min(LOOKUP_GROUP, keys.length - base);
+            for (int g = 0; g < size; g++) { // The home cells
+                int home = homes[base + g];
+                pairs[g] = home < 0 ? null : cells[home];
+            }
+            for (int g = 0; g < size; g++) { // The keys of the pairs in them
+                found[g] = pairs[g] == null ? null : pairs[g].getKey();
+            }
+            for (int g = 0; g < size; g++) { // The comparisons, and probing on where the home cell did not match
+                String key = keys[base + g];
+                KVPair pair = pairs[g];
+                String value = null;
+                if (pair != null && pair != TOMBSTONE && found[g].equals(key)) {
+                    value = pair.getValue();
+                } else {
+                    for (int attempt = 1; pair != null; attempt++) {
+                        pair = cells[probes.probeIndex(homes[base + g], attempt)];
+                        if (pair != null && pair != TOMBSTONE && pair.getKey().equals(key)) {
+                            value = pair.getValue();
+                            break;
+                        }
+                    }
+                }
+                out[base + g] = value;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc} Tables whose probe sequence is described by
+     * {@link ProbeSequence#probeIndex(int, int)} hash and compare the key in place.
+     */
+    @Override
+    public String get(CharSequence key) {
+        ProbeSequence probes = this.probes;
+        if (key instanceof String || key == null || probes == null)
+            return HashTable.super.get(key);
+        KVPair[] cells = table;
+        int home = (Keys.hash(key) & 0x7fffffff) % cells.length;
+        for (int attempt = 0;; attempt++) {
+            KVPair pair = cells[probes.probeIndex(home, attempt)];
+            if (pair == null)
+                return null;
+            if (pair != TOMBSTONE && pair.getKey().contentEquals(key))
+                return pair.getValue();
+        }
+    }
+
+    /**
+     * {@inheritDoc} Tables whose probe sequence is described by
+     * {@link ProbeSequence#probeIndex(int, int)} hash and compare the bytes in place.
+     */
+    @Override
+    public String get(byte[] utf8, int offset, int length) {
+        ProbeSequence probes = this.probes;
+        if (probes == null)
+            return HashTable.super.get(utf8, offset, length);
+        KVPair[] cells = table;
+        int home = (Keys.hashUtf8(utf8, offset, length) & 0x7fffffff) % cells.length;
+        for (int attempt = 0;; attempt++) {
+            KVPair pair = cells[probes.probeIndex(home, attempt)];
+            if (pair == null)
+                return null;
+            if (pair != TOMBSTONE && Keys.equalsUtf8(pair.getKey(), utf8, offset, length))
+                return pair.getValue();
+        }
+    }
+
+    @Override
+    public Spliterator<KVPair> spliterator() {
+        return new CellSpliterator(table, 0, table.length);
+    }
+
+    /**
+     * A {@link Spliterator} over the cell range [index, fence) of a table, which
+     * reports the live pairs in it and halves the range when split.
+     */
+    private static final class CellSpliterator implements Spliterator<KVPair> {
+        private final KVPair[] cells;
+        private int index;
+        private final int fence;
+
+        CellSpliterator(KVPair[] cells, int index, int fence) {
+            this.cells = cells;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super KVPair> action) {
+            while (index < fence) {
+                KVPair pair = cells[index++];
+                if (pair != null && pair != TOMBSTONE) {
+                    action.accept(pair);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super KVPair> action) {
+            for (; index < fence; index++) {
+                KVPair pair = cells[index];
+                if (pair != null && pair != TOMBSTONE) {
+                    action.accept(pair);
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<KVPair> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (mid - index < ParallelScans.LEAF_SIZE) {
+                return null;
+            }
+            var prefix = new CellSpliterator(cells, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index; // An upper bound: some of the cells are empty
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | ORDERED;
+        }
+    }
+
     protected void resize() {
         resize(true);
     }
@@ -181,6 +389,10 @@ public abstract class OpenAddressingHashTable implements HashTable {
             table = new KVPair[prime];
             count = 0;
             tombstoneCount = 0;
+            if (temp.length >= ParallelScans.PARALLEL_THRESHOLD && probes != null) {
+                count = ParallelScans.rehash(temp, TOMBSTONE, table, this::hash, probes::probeIndex);
+                return;
+            }
             for (var pair : temp) {
                 if (pair != null && !pair.equals(TOMBSTONE)) {
                     put(pair.getKey(), pair.getValue());
@@ -2,6 +2,9 @@ package phonebook.hashes;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Test;
 
 import phonebook.utils.KVPair;
@@ -295,4 +298,15 @@ public class OrderedLinearProbingHashTableTests {
         assertEquals(b, true);
 
     }
+
+    @Test
+    public void iteratorTest1() {
+        // pairs are reported in cell order, so chains come back sorted
+        ol = new OrderedLinearProbingHashTable(false);
+        put(TEST);
+        put(CC);
+        List<String> keys = new ArrayList<>();
+        ol.forEach(pair -> keys.add(pair.getKey()));
+        assertEquals(List.of("c", "test"), keys);
+    }
 }
@@ -0,0 +1,224 @@
+package phonebook.hashes;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntBinaryOperator;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.KVPairList;
+
+/**
+ * <p>
+ * {@link ParallelScans} collects the fork-join tasks that our {@link HashTable}s
+ * use for operations which have to touch <b>every</b> cell of their storage,
+ * like {@link HashTable#containsValue(String)} and the rehash performed when a
+ * table is resized. The cell array is recursively split into ranges of
+ * {@link #LEAF_SIZE} cells, which are then scanned on the common
+ * {@link ForkJoinPool}.
+ * </p>
+ *
+ * <p>
+ * Arrays shorter than {@link #PARALLEL_THRESHOLD} are <b>not</b> split: forking
+ * tasks over a few hundred cells costs more than it saves, so callers are
+ * expected to fall back to their sequential loops below that size.
+ * </p>
+ *
+ * @see OpenAddressingHashTable
+ * @see SeparateChainingHashTable
+ */
+final class ParallelScans {
+
+    /**
+     * Cell arrays at least this long are scanned in parallel.
+     */
+    static final int PARALLEL_THRESHOLD = 2048;
+
+    /**
+     * The number of cells a single fork-join task scans without splitting further.
+     */
+    static final int LEAF_SIZE = 512;
+
+    private static final VarHandle PAIR_CELL = MethodHandles.arrayElementVarHandle(KVPair[].class);
+    private static final VarHandle LIST_CELL = MethodHandles.arrayElementVarHandle(KVPairList[].class);
+
+    private ParallelScans() {
+    }
+
+    /**
+     * Reports whether some non-{@code null} cell of cells satisfies test. Ranges stop
+     * scanning as soon as any range has found a match.
+     *
+     * @param cells The storage to scan.
+     * @param test  The predicate to apply to every non-{@code null} cell.
+     * @param <T>   The cell type.
+     * @return {@code true} if, and only if, some cell satisfies test.
+     */
+    static <T> boolean anyMatch(T[] cells, Predicate<? super T> test) {
+        return ForkJoinPool.commonPool().invoke(new AnyMatch<>(cells, 0, cells.length, test, new AtomicBoolean()));
+    }
+
+    /**
+     * Rehashes the live pairs of an openly addressed source table into dest. Every
+     * pair claims its cell with a compare-and-set, following the probe sequence
+     * given by probe, so ranges can be placed concurrently. The pairs themselves are
+     * moved, not copied.
+     *
+     * @param source    The old storage.
+     * @param tombstone The tombstone instance, whose cells are dropped.
+     * @param dest      The new, empty storage.
+     * @param hash      Maps a key to its home cell in dest.
+     * @param probe     Maps (home cell, attempt) to the cell to try on that attempt.
+     * @return The number of pairs placed in dest.
+     */
+    static int rehash(KVPair[] source, KVPair tombstone, KVPair[] dest, ToIntFunction<String> hash,
+            IntBinaryOperator probe) {
+        return ForkJoinPool.commonPool().invoke(new OpenRehash(source, 0, source.length, tombstone, dest, hash, probe));
+    }
+
+    /**
+     * Rehashes every pair of a separately chained source table into dest. Empty
+     * buckets are installed with a compare-and-set and appended to under their own
+     * monitor, so ranges can be transferred concurrently.
+     *
+     * @param source The old storage.
+     * @param dest   The new, empty storage.
+     * @param hash   Maps a key to its bucket in dest.
+     * @return The number of pairs placed in dest.
+     */
+    static int rehash(KVPairList[] source, KVPairList[] dest, ToIntFunction<String> hash) {
+        return ForkJoinPool.commonPool().invoke(new ChainedRehash(source, 0, source.length, dest, hash));
+    }
+
+    private static final class AnyMatch<T> extends RecursiveTask<Boolean> {
+        private static final long serialVersionUID = 1L;
+
+        private final T[] cells;
+        private final int lo, hi;
+        private final Predicate<? super T> test;
+        private final AtomicBoolean found;
+
+        AnyMatch(T[] cells, int lo, int hi, Predicate<? super T> test, AtomicBoolean found) {
+            this.cells = cells;
+            this.lo = lo;
+            this.hi = hi;
+            this.test = test;
+            this.found = found;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (hi - lo <= LEAF_SIZE) {
+                for (int i = lo; i < hi && !found.get(); i++) {
+                    if (cells[i] != null && test.test(cells[i])) {
+                        found.set(true);
+                    }
+                }
+                return found.get();
+            }
+            int mid = (lo + hi) >>> 1;
+            var left = new AnyMatch<>(cells, lo, mid, test, found);
+            left.fork();
+            boolean right = new AnyMatch<>(cells, mid, hi, test, found).compute();
+            return left.join() || right;
+        }
+    }
+
+    private static final class OpenRehash extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final KVPair[] source;
+        private final int lo, hi;
+        private final KVPair tombstone;
+        private final KVPair[] dest;
+        private final ToIntFunction<String> hash;
+        private final IntBinaryOperator probe;
+
+        OpenRehash(KVPair[] source, int lo, int hi, KVPair tombstone, KVPair[] dest, ToIntFunction<String> hash,
+                IntBinaryOperator probe) {
+            this.source = source;
+            this.lo = lo;
+            this.hi = hi;
+            this.tombstone = tombstone;
+            this.dest = dest;
+            this.hash = hash;
+            this.probe = probe;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (hi - lo <= LEAF_SIZE) {
+                int placed = 0;
+                for (int i = lo; i < hi; i++) {
+                    KVPair pair = source[i];
+                    if (pair == null || pair == tombstone) {
+                        continue;
+                    }
+                    int home = hash.applyAsInt(pair.getKey());
+                    int attempt = 0;
+                    while (!PAIR_CELL.compareAndSet(dest, probe.applyAsInt(home, attempt), (KVPair) null, pair)) {
+                        attempt++;
+                    }
+                    placed++;
+                }
+                return placed;
+            }
+            int mid = (lo + hi) >>> 1;
+            var left = new OpenRehash(source, lo, mid, tombstone, dest, hash, probe);
+            left.fork();
+            int right = new OpenRehash(source, mid, hi, tombstone, dest, hash, probe).compute();
+            return left.join() + right;
+        }
+    }
+
+    private static final class ChainedRehash extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final KVPairList[] source;
+        private final int lo, hi;
+        private final KVPairList[] dest;
+        private final ToIntFunction<String> hash;
+
+        ChainedRehash(KVPairList[] source, int lo, int hi, KVPairList[] dest, ToIntFunction<String> hash) {
+            this.source = source;
+            this.lo = lo;
+            this.hi = hi;
+            this.dest = dest;
+            this.hash = hash;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (hi - lo <= LEAF_SIZE) {
+                int placed = 0;
+                for (int i = lo; i < hi; i++) {
+                    if (source[i] == null) {
+                        continue;
+                    }
+                    for (KVPair pair : source[i]) {
+                        int index = hash.applyAsInt(pair.getKey());
+                        KVPairList bucket = (KVPairList) LIST_CELL.getVolatile(dest, index);
+                        if (bucket == null) {
+                            LIST_CELL.compareAndSet(dest, index, (KVPairList) null, new KVPairList());
+                            bucket = (KVPairList) LIST_CELL.getVolatile(dest, index);
+                        }
+                        synchronized (bucket) {
+                            bucket.addBack(pair.getKey(), pair.getValue());
+                        }
+                        placed++;
+                    }
+                }
+                return placed;
+            }
+            int mid = (lo + hi) >>> 1;
+            var left = new ChainedRehash(source, lo, mid, dest, hash);
+            left.fork();
+            int right = new ChainedRehash(source, mid, hi, dest, hash).compute();
+            return left.join() + right;
+        }
+    }
+}
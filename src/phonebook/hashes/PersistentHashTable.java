@@ -0,0 +1,434 @@
+package phonebook.hashes;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.Keys;
+
+/**
+ * <p>
+ * {@link PersistentHashTable} is a {@link HashTable} backed by a <b>persistent
+ * Hash Array Mapped Trie</b>. The trie consumes the hash code of a key five bits
+ * at a time, and every node only stores the children that exist, next to a
+ * 32-bit bitmap that says which ones they are. Keys whose 32-bit hash codes are
+ * all equal end up in a small collision node at the bottom.
+ * </p>
+ *
+ * <p>
+ * Nodes are never modified. An update copies the nodes on the path from the root
+ * to the key, which is O(log<sub>32</sub> n) nodes, and shares everything else
+ * with the previous version of the trie. This is what makes {@link #snapshot()}
+ * O(1): a snapshot is simply another table over the current root, and from then
+ * on the two tables evolve independently. For the same reason, a
+ * {@link #spliterator()} (and so a scan of {@link #entries()}) always walks the
+ * version of the trie that was current when it was created; writes made during
+ * the scan neither block it nor show up in it.
+ * </p>
+ *
+ * <p>
+ * Like the other non-concurrent tables, a {@link PersistentHashTable} supports
+ * one writer at a time. Its current version is published through a
+ * {@code volatile} field, so {@link #snapshot()} and {@link #get(String)} may be
+ * called from any thread.
+ * </p>
+ *
+ * @see CollisionResolver#HASH_ARRAY_MAPPED_TRIE
+ */
+public class PersistentHashTable implements HashTable {
+
+    private static final int BITS = 5, MASK = (1 << BITS) - 1;
+    private static final int MAX_DEPTH = 32 / BITS + 2; // Bitmap levels plus one collision level
+
+    private static final class Leaf {
+        final int hash;
+        final String key, value;
+
+        Leaf(int hash, String key, String value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * An inner node. Every slot is a {@link Leaf}, a {@link BitmapNode} or a
+     * {@link CollisionNode}, in the order of the bits set in the bitmap.
+     */
+    private static final class BitmapNode {
+        final int bitmap;
+        final Object[] slots;
+
+        BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+    }
+
+    private static final class CollisionNode {
+        final int hash;
+        final Leaf[] leaves;
+
+        CollisionNode(int hash, Leaf[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+    }
+
+    private static final class Version {
+        final BitmapNode root;
+        final int size;
+
+        Version(BitmapNode root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+    }
+
+    private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+    private volatile Version version;
+
+    /**
+     * Default constructor. Creates an empty table.
+     */
+    public PersistentHashTable() {
+        version = new Version(EMPTY, 0);
+    }
+
+    private PersistentHashTable(Version version) {
+        this.version = version;
+    }
+
+    /**
+     * Returns an immutable-by-sharing copy of this table in O(1) time. The snapshot
+     * and this table share all of their storage, and later writes to either one
+     * are not visible in the other.
+     *
+     * @return A new {@link PersistentHashTable} with the records of this one.
+     */
+    public PersistentHashTable snapshot() {
+        return new PersistentHashTable(version);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        if (key == null || value == null)
+            throw new IllegalArgumentException("Provided: key=" + key + " and value=" + value);
+        Version current = version;
+        int[] delta = new int[1];
+        BitmapNode root = put(current.root, new Leaf(key.hashCode(), key, value), 0, delta);
+        if (root != current.root)
+            version = new Version(root, current.size + delta[0]);
+        return value;
+    }
+
+    @Override
+    public String get(String key) {
+        if (key == null)
+            return null;
+        Object bucket = bucketOf(key.hashCode());
+        if (bucket instanceof Leaf) {
+            Leaf leaf = (Leaf) bucket;
+            return leaf.key.equals(key) ? leaf.value : null;
+        } else if (bucket != null) {
+            CollisionNode collisions = (CollisionNode) bucket;
+            int index = indexOf(collisions.leaves, key);
+            return index < 0 ? null : collisions.leaves[index].value;
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc} The key is hashed and compared in place.
+     */
+    @Override
+    public String get(CharSequence key) {
+        if (key == null)
+            return null;
+        Object bucket = bucketOf(Keys.hash(key));
+        if (bucket instanceof Leaf) {
+            Leaf leaf = (Leaf) bucket;
+            return leaf.key.contentEquals(key) ? leaf.value : null;
+        } else if (bucket != null) {
+            for (Leaf leaf : ((CollisionNode) bucket).leaves) {
+                if (leaf.key.contentEquals(key))
+                    return leaf.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc} The bytes are hashed and compared in place.
+     */
+    @Override
+    public String get(byte[] utf8, int offset, int length) {
+        Object bucket = bucketOf(Keys.hashUtf8(utf8, offset, length));
+        if (bucket instanceof Leaf) {
+            Leaf leaf = (Leaf) bucket;
+            return Keys.equalsUtf8(leaf.key, utf8, offset, length) ? leaf.value : null;
+        } else if (bucket != null) {
+            for (Leaf leaf : ((CollisionNode) bucket).leaves) {
+                if (Keys.equalsUtf8(leaf.key, utf8, offset, length))
+                    return leaf.value;
+            }
+        }
+        return null;
+    }
+
+    // The Leaf or CollisionNode that holds the keys of the given hash, if there is one.
+    private Object bucketOf(int hash) {
+        BitmapNode node = version.root;
+        for (int shift = 0;; shift += BITS) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0)
+                return null;
+            Object slot = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (!(slot instanceof BitmapNode))
+                return slot;
+            node = (BitmapNode) slot;
+        }
+    }
+
+    @Override
+    public String remove(String key) {
+        if (key == null)
+            return null;
+        Version current = version;
+        String[] removed = new String[1];
+        Object root = remove(current.root, key, key.hashCode(), 0, removed);
+        if (removed[0] != null)
+            version = new Version(root == null ? EMPTY : (BitmapNode) root, current.size - 1);
+        return removed[0];
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public boolean containsValue(String value) {
+        if (size() >= ParallelScans.PARALLEL_THRESHOLD)
+            return values().parallel().anyMatch(v -> v.equals(value));
+        return values().anyMatch(v -> v.equals(value));
+    }
+
+    @Override
+    public int size() {
+        return version.size;
+    }
+
+    /**
+     * {@inheritDoc} A trie has no empty cells: it only allocates room for the
+     * records it holds, so its capacity is its {@link #size()}.
+     */
+    @Override
+    public int capacity() {
+        return size();
+    }
+
+    private static BitmapNode put(BitmapNode node, Leaf leaf, int shift, int[] delta) {
+        int bit = 1 << ((leaf.hash >>> shift) & MASK);
+        int pos = Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            delta[0] = 1;
+            Object[] slots = new Object[node.slots.length + 1];
+            System.arraycopy(node.slots, 0, slots, 0, pos);
+            slots[pos] = leaf;
+            System.arraycopy(node.slots, pos, slots, pos + 1, node.slots.length - pos);
+            return new BitmapNode(node.bitmap | bit, slots);
+        }
+        Object slot = node.slots[pos], replacement;
+        if (slot instanceof BitmapNode) {
+            replacement = put((BitmapNode) slot, leaf, shift + BITS, delta);
+        } else if (slot instanceof Leaf) {
+            Leaf existing = (Leaf) slot;
+            if (!existing.key.equals(leaf.key)) {
+                delta[0] = 1;
+                replacement = merge(existing, existing.hash, leaf, shift + BITS);
+            } else {
+                replacement = existing.value.equals(leaf.value) ? existing : leaf;
+            }
+        } else {
+            CollisionNode collisions = (CollisionNode) slot;
+            if (collisions.hash != leaf.hash) {
+                delta[0] = 1;
+                replacement = merge(collisions, collisions.hash, leaf, shift + BITS);
+            } else {
+                replacement = put(collisions, leaf, delta);
+            }
+        }
+        return replacement == slot ? node : withSlot(node, pos, replacement);
+    }
+
+    private static CollisionNode put(CollisionNode collisions, Leaf leaf, int[] delta) {
+        Leaf[] leaves = collisions.leaves;
+        int index = indexOf(leaves, leaf.key);
+        if (index >= 0) {
+            if (leaves[index].value.equals(leaf.value))
+                return collisions;
+            leaves = leaves.clone();
+            leaves[index] = leaf;
+        } else {
+            delta[0] = 1;
+            leaves = Arrays.copyOf(leaves, leaves.length + 1);
+            leaves[leaves.length - 1] = leaf;
+        }
+        return new CollisionNode(collisions.hash, leaves);
+    }
+
+    // Builds the smallest subtrie that holds both a Leaf or CollisionNode of hash existingHash and a new Leaf.
+    private static Object merge(Object existing, int existingHash, Leaf leaf, int shift) {
+        if (existingHash == leaf.hash)
+            return new CollisionNode(leaf.hash, new Leaf[] { (Leaf) existing, leaf });
+        int existingIndex = (existingHash >>> shift) & MASK, index = (leaf.hash >>> shift) & MASK;
+        if (existingIndex == index)
+            return new BitmapNode(1 << index, new Object[] { merge(existing, existingHash, leaf, shift + BITS) });
+        Object[] slots = existingIndex < index ? new Object[] { existing, leaf } : new Object[] { leaf, existing };
+        return new BitmapNode((1 << existingIndex) | (1 << index), slots);
+    }
+
+    // Returns the node without the key, or null if the node became empty.
+    private static Object remove(BitmapNode node, String key, int hash, int shift, String[] removed) {
+        int bit = 1 << ((hash >>> shift) & MASK);
+        if ((node.bitmap & bit) == 0)
+            return node;
+        int pos = Integer.bitCount(node.bitmap & (bit - 1));
+        Object slot = node.slots[pos], replacement;
+        if (slot instanceof BitmapNode) {
+            replacement = remove((BitmapNode) slot, key, hash, shift + BITS, removed);
+            if (replacement instanceof BitmapNode) {
+                BitmapNode child = (BitmapNode) replacement;
+                if (child.slots.length == 1 && !(child.slots[0] instanceof BitmapNode))
+                    replacement = child.slots[0]; // Pull a lone record up, so paths stay as short as they can be
+            }
+        } else if (slot instanceof Leaf) {
+            Leaf leaf = (Leaf) slot;
+            if (!leaf.key.equals(key))
+                return node;
+            removed[0] = leaf.value;
+            replacement = null;
+        } else {
+            CollisionNode collisions = (CollisionNode) slot;
+            int index = indexOf(collisions.leaves, key);
+            if (index < 0)
+                return node;
+            removed[0] = collisions.leaves[index].value;
+            if (collisions.leaves.length == 2) {
+                replacement = collisions.leaves[1 - index];
+            } else {
+                Leaf[] leaves = new Leaf[collisions.leaves.length - 1];
+                System.arraycopy(collisions.leaves, 0, leaves, 0, index);
+                System.arraycopy(collisions.leaves, index + 1, leaves, index, leaves.length - index);
+                replacement = new CollisionNode(collisions.hash, leaves);
+            }
+        }
+        if (replacement == slot)
+            return node;
+        if (replacement != null)
+            return withSlot(node, pos, replacement);
+        if (node.slots.length == 1)
+            return null;
+        Object[] slots = new Object[node.slots.length - 1];
+        System.arraycopy(node.slots, 0, slots, 0, pos);
+        System.arraycopy(node.slots, pos + 1, slots, pos, slots.length - pos);
+        return new BitmapNode(node.bitmap & ~bit, slots);
+    }
+
+    private static BitmapNode withSlot(BitmapNode node, int pos, Object slot) {
+        Object[] slots = node.slots.clone();
+        slots[pos] = slot;
+        return new BitmapNode(node.bitmap, slots);
+    }
+
+    private static int indexOf(Leaf[] leaves, String key) {
+        for (int i = 0; i < leaves.length; i++) {
+            if (leaves[i].key.equals(key))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * {@inheritDoc} The {@link Spliterator} walks the version of the trie that was
+     * current when it was created, so unlike the other tables, this one <b>may</b>
+     * be modified while the {@link Spliterator} is in use. It splits by ranges of
+     * child nodes and reports a fresh {@link KVPair} per record.
+     */
+    @Override
+    public Spliterator<KVPair> spliterator() {
+        Version current = version;
+        return new TrieSpliterator(current.root.slots, 0, current.root.slots.length, current.size);
+    }
+
+    private static final class TrieSpliterator implements Spliterator<KVPair> {
+        // A depth-first walk: one array of slots and one position per level.
+        private final Object[][] levels = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth;
+        private int fence; // End of the range of top-level slots that belongs to this spliterator
+        private long estimate;
+
+        TrieSpliterator(Object[] slots, int index, int fence, long estimate) {
+            levels[0] = slots;
+            positions[0] = index;
+            this.fence = fence;
+            this.estimate = estimate;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super KVPair> action) {
+            while (depth >= 0) {
+                Object[] slots = levels[depth];
+                if (positions[depth] >= (depth == 0 ? fence : slots.length)) {
+                    depth--;
+                    continue;
+                }
+                Object slot = slots[positions[depth]++];
+                if (slot instanceof Leaf) {
+                    Leaf leaf = (Leaf) slot;
+                    action.accept(new KVPair(leaf.key, leaf.value));
+                    return true;
+                }
+                depth++;
+                levels[depth] = slot instanceof BitmapNode ? ((BitmapNode) slot).slots : ((CollisionNode) slot).leaves;
+                positions[depth] = 0;
+            }
+            depth = 0;
+            positions[0] = fence;
+            return false;
+        }
+
+        @Override
+        public Spliterator<KVPair> trySplit() {
+            if (depth != 0 || estimate < ParallelScans.LEAF_SIZE)
+                return null;
+            // A range of a single inner node cannot be split, but its children can.
+            while (fence - positions[0] == 1 && levels[0][positions[0]] instanceof BitmapNode) {
+                levels[0] = ((BitmapNode) levels[0][positions[0]]).slots;
+                positions[0] = 0;
+                fence = levels[0].length;
+            }
+            int index = positions[0], mid = (index + fence) >>> 1;
+            if (mid == index)
+                return null;
+            estimate >>>= 1;
+            var prefix = new TrieSpliterator(levels[0], index, mid, estimate);
+            positions[0] = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | IMMUTABLE;
+        }
+    }
+}
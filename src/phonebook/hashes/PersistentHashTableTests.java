@@ -0,0 +1,143 @@
+package phonebook.hashes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PersistentHashTableTests {
+    PersistentHashTable hamt;
+    String result;
+
+    @Test
+    public void constructorTest1() {
+        hamt = new PersistentHashTable();
+        assertEquals(0, hamt.size());
+        assertEquals(0, hamt.capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void putTest1() {
+        hamt = new PersistentHashTable();
+        hamt.put("test", null);
+    }
+
+    @Test
+    public void putTest2() {
+        hamt = new PersistentHashTable();
+        result = hamt.put("test", "testy");
+        result = hamt.put("Aa", "first"); // "Aa" and "BB" share a hash code
+        result = hamt.put("BB", "second");
+        assertEquals("second", result);
+        assertEquals(3, hamt.size());
+        assertEquals("testy", hamt.get("test"));
+        assertEquals("first", hamt.get("Aa"));
+        assertEquals("second", hamt.get("BB"));
+        assertNull(hamt.get("C#")); // Same hash code again, but absent
+    }
+
+    @Test
+    public void putTest3() {
+        // an existing key is updated, not duplicated
+        putTest2();
+        hamt.put("BB", "third");
+        hamt.put("test", "tested");
+        assertEquals(3, hamt.size());
+        assertEquals("third", hamt.get("BB"));
+        assertEquals("tested", hamt.get("test"));
+    }
+
+    @Test
+    public void removeTest1() {
+        putTest2();
+        assertEquals("first", hamt.remove("Aa"));
+        assertNull(hamt.remove("Aa"));
+        assertNull(hamt.remove("C#"));
+        assertEquals(2, hamt.size());
+        assertEquals("second", hamt.get("BB"));
+        assertTrue(hamt.containsKey("test"));
+        assertFalse(hamt.containsValue("first"));
+        assertTrue(hamt.containsValue("second"));
+    }
+
+    @Test
+    public void snapshotTest1() {
+        // a snapshot and its source evolve independently
+        putTest2();
+        PersistentHashTable snapshot = hamt.snapshot();
+        hamt.remove("test");
+        hamt.put("BB", "changed");
+        snapshot.put("new", "key");
+        assertEquals(4, snapshot.size());
+        assertEquals("testy", snapshot.get("test"));
+        assertEquals("second", snapshot.get("BB"));
+        assertNull(hamt.get("new"));
+        assertEquals(2, hamt.size());
+        assertEquals("changed", hamt.get("BB"));
+    }
+
+    @Test
+    public void scanDuringWritesTest1() {
+        // a scan walks the version it started on, even while the table keeps changing
+        hamt = new PersistentHashTable();
+        for (int i = 0; i < 100; i++) {
+            hamt.put("key" + i, "value" + i);
+        }
+        Map<String, String> scanned = new HashMap<>();
+        hamt.forEach(pair -> {
+            scanned.put(pair.getKey(), pair.getValue());
+            hamt.remove(pair.getKey());
+        });
+        assertEquals(100, scanned.size());
+        assertEquals(0, hamt.size());
+    }
+
+    @Test
+    public void randomizedTest1() {
+        hamt = new PersistentHashTable();
+        Map<String, String> expected = new HashMap<>();
+        Random rng = new Random(47);
+        for (int i = 0; i < 20000; i++) {
+            String key = "key" + rng.nextInt(5000);
+            if (rng.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), hamt.remove(key));
+            } else {
+                expected.put(key, "value" + i);
+                hamt.put(key, "value" + i);
+            }
+        }
+        assertEquals(expected.size(), hamt.size());
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), hamt.get(entry.getKey()));
+        }
+        Map<String, String> streamed = new HashMap<>();
+        hamt.entries().parallel().forEach(pair -> {
+            synchronized (streamed) {
+                streamed.put(pair.getKey(), pair.getValue());
+            }
+        });
+        assertEquals(expected, streamed);
+    }
+
+    @Test
+    public void inPlaceGetTest1() {
+        // lookups from a CharSequence or UTF-8 bytes should agree with get, including colliding keys
+        hamt = new PersistentHashTable();
+        hamt.put("Aa", "1");
+        hamt.put("BB", "2"); // Same hash as "Aa"
+        hamt.put("Zo\u00EB", "3");
+        for (String key : new String[] { "Aa", "BB", "Zo\u00EB", "Zoe", "C#" }) {
+            byte[] utf8 = key.getBytes(StandardCharsets.UTF_8);
+            assertEquals(hamt.get(key), hamt.get(new StringBuilder(key)));
+            assertEquals(hamt.get(key), hamt.get(utf8, 0, utf8.length));
+        }
+        assertEquals("2", hamt.get(new StringBuilder("BB")));
+    }
+}
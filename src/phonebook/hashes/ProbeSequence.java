@@ -0,0 +1,37 @@
+package phonebook.hashes;
+
+/**
+ * <p>
+ * {@link ProbeSequence} is the probe sequence of the
+ * {@link OpenAddressingHashTable}s whose placement of a key depends on nothing
+ * but its hash: the cells it may occupy are visited in a fixed order from its
+ * home cell, whatever the order the keys were inserted in. Such tables return
+ * it from {@link OpenAddressingHashTable#probeSequence()}, which keeps it out of
+ * their public API. They can be rehashed in parallel, since the live
+ * pairs may be placed into the new table concurrently and in any order, and can
+ * be probed from outside {@link HashTable#get(String)}, to batch lookups or to
+ * compare keys in place.
+ * </p>
+ *
+ * <p>
+ * Tables whose layout depends on insertion order, like
+ * {@link OrderedLinearProbingHashTable}, have none, and are rehashed
+ * and searched through their own {@link HashTable#put(String, String)} and
+ * {@link HashTable#get(String)}.
+ * </p>
+ *
+ * @see OpenAddressingHashTable
+ */
+interface ProbeSequence {
+
+    /**
+     * Returns the cell that an insertion of a key with home cell home examines on
+     * its attempt-th probe, the 0th probe being the home cell itself.
+     *
+     * @param home    The key's hash, as returned by
+     *                {@link OpenAddressingHashTable#hash(String)}.
+     * @param attempt The number of occupied cells seen so far.
+     * @return The index of the cell to examine.
+     */
+    int probeIndex(int home, int attempt);
+}
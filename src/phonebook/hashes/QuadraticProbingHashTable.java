@@ -137,4 +137,13 @@ public class QuadraticProbingHashTable extends OpenAddressingHashTable {
         // Key not found
         return null;
     }
+
+    /**
+     * {@inheritDoc} Any insertion order yields a valid quadratic probing layout, so this table can be rehashed in parallel.
+     */
+    @Override
+    ProbeSequence probeSequence() {
+        // put() examines the home cell twice (i = 1 also maps to it), so skip the repeat
+        return (home, attempt) -> nextIndex(home, attempt + 1);
+    }
 }
\ No newline at end of file
@@ -180,4 +180,46 @@ public class QuadraticProbingHashTableTests {
         result = qp.get(EE.getKey());
         assertEquals(result, EE.getValue());
     }
+
+    @Test
+    public void parallelResizeTest1() {
+        // hard deletion rehashes all 4999 cells in parallel
+        qp = new QuadraticProbingHashTable(false);
+        for (int i = 0; i < 1500; i++) {
+            qp.put("name" + i, "number" + i);
+        }
+        assertEquals(4999, qp.capacity());
+        qp.remove("name" + 0);
+        assertEquals(4999, qp.capacity());
+        assertEquals(1499, qp.size());
+        assertEquals(null, qp.get("name" + 0));
+        for (int i = 1; i < 1500; i++) {
+            assertEquals("number" + i, qp.get("name" + i));
+        }
+        assertEquals(true, qp.containsValue("number" + 1499));
+        assertEquals(false, qp.containsValue("number" + 0));
+    }
+
+    @Test
+    public void parallelStreamTest1() {
+        parallelResizeTest1();
+        assertEquals(1499, qp.entries().parallel().count());
+        assertEquals(false, qp.keys().parallel().anyMatch(("name" + 0)::equals));
+    }
+
+    @Test
+    public void getAllTest1() {
+        // batched lookups should agree with get
+        parallelResizeTest1();
+        String[] keys = new String[1600], out = new String[1600];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "name" + i;
+        }
+        qp.getAll(keys, out);
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(qp.get(keys[i]), out[i]);
+        }
+        assertEquals(null, out[0]);
+        assertEquals("number" + 1499, out[1499]);
+    }
 }
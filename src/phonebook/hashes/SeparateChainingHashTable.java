@@ -1,6 +1,12 @@
 package phonebook.hashes;
 
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import phonebook.utils.KVPair;
 import phonebook.utils.KVPairList;
+import phonebook.utils.NoMorePrimesException;
 import phonebook.utils.PrimeGenerator;
 
 /**
@@ -111,6 +117,9 @@ public class SeparateChainingHashTable implements HashTable {
     @Override
     // Checks if a value exists anywhere in the table
     public boolean containsValue(String value) {
+        if (table.length >= ParallelScans.PARALLEL_THRESHOLD) {
+            return ParallelScans.anyMatch(table, list -> list.containsValue(value));
+        }
         for (var list : table) {
             if (list != null) {
                 if (list.containsValue(value)) {
@@ -133,6 +142,95 @@ public class SeparateChainingHashTable implements HashTable {
         return table.length; // Or the value of the current prime.
     }
 
+    /**
+     * {@inheritDoc} The table is enlarged one prime at a time, as it would have
+     * been by {@link #enlarge()}, up to the largest prime that
+     * {@link PrimeGenerator} knows.
+     */
+    @Override
+    public void presize(int capacity) {
+        try {
+            while (table.length < capacity) {
+                enlarge();
+            }
+        } catch (NoMorePrimesException e) {
+            // Stay at the largest prime.
+        }
+    }
+
+    @Override
+    // Returns a Spliterator over every pair, split by bucket range
+    public Spliterator<KVPair> spliterator() {
+        return new BucketSpliterator(table, 0, table.length);
+    }
+
+    /**
+     * A {@link Spliterator} over the bucket range [index, fence) of a table, which
+     * reports the pairs of every bucket in it and halves the range when split.
+     */
+    private static final class BucketSpliterator implements Spliterator<KVPair> {
+        private final KVPairList[] buckets;
+        private int index;
+        private final int fence;
+        private Iterator<KVPair> current; // The bucket tryAdvance() is in the middle of, if any
+
+        BucketSpliterator(KVPairList[] buckets, int index, int fence) {
+            this.buckets = buckets;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super KVPair> action) {
+            while (current == null || !current.hasNext()) {
+                current = null;
+                if (index >= fence) {
+                    return false;
+                }
+                KVPairList bucket = buckets[index++];
+                if (bucket != null && !bucket.isEmpty()) {
+                    current = bucket.iterator();
+                }
+            }
+            action.accept(current.next());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super KVPair> action) {
+            if (current != null) {
+                current.forEachRemaining(action);
+                current = null;
+            }
+            for (; index < fence; index++) {
+                if (buckets[index] != null) {
+                    buckets[index].forEach(action);
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<KVPair> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (current != null || mid - index < ParallelScans.LEAF_SIZE) {
+                return null;
+            }
+            var prefix = new BucketSpliterator(buckets, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index; // Buckets, not pairs: chains may be empty or long
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | ORDERED;
+        }
+    }
+
     // Returns the linked list at a specific bucket index
     public KVPairList get(int idx) throws IndexOutOfBoundsException {
         return table[idx];
@@ -152,6 +250,10 @@ public class SeparateChainingHashTable implements HashTable {
         var temp = table; // Save old table
         table = new KVPairList[primeGenerator.getNextPrime()]; // New larger table
         count = 0;
+        if (temp.length >= ParallelScans.PARALLEL_THRESHOLD) {
+            count = ParallelScans.rehash(temp, table, this::hash); // Transfer bucket ranges in parallel
+            return;
+        }
         for (var list : temp) {
             if (list != null) {
                 for (var pair : list) {
@@ -175,6 +277,10 @@ public class SeparateChainingHashTable implements HashTable {
         var temp = table; // Save old table
         table = new KVPairList[primeGenerator.getPreviousPrime()]; // New smaller table
         count = 0;
+        if (temp.length >= ParallelScans.PARALLEL_THRESHOLD) {
+            count = ParallelScans.rehash(temp, table, this::hash); // Transfer bucket ranges in parallel
+            return;
+        }
         for (var list : temp) {
             if (list != null) {
                 for (var pair : list) {
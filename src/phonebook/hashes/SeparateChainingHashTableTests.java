@@ -4,6 +4,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Test;
 
 public class SeparateChainingHashTableTests {
@@ -242,4 +245,62 @@ public class SeparateChainingHashTableTests {
         assertTrue(sc.containsKey("d"));
         assertEquals(3, sc.size());
     }
+
+    @Test
+    public void parallelEnlargeTest1() {
+        // the enlargement out of 2503 cells and the shrink out of 4999 cells rehash in parallel
+        sc = new SeparateChainingHashTable();
+        for (int i = 0; i < 3000; i++) {
+            sc.put("name" + i, "number" + i);
+        }
+        while (sc.capacity() < 4999) {
+            sc.enlarge();
+        }
+        sc.shrink();
+        assertEquals(2503, sc.capacity());
+        assertEquals(3000, sc.size());
+        for (int i = 0; i < 3000; i++) {
+            assertEquals("number" + i, sc.get("name" + i));
+        }
+        assertTrue(sc.containsValue("number" + 2999));
+        assertFalse(sc.containsValue("number" + 3000));
+    }
+
+    @Test
+    public void iteratorTest1() {
+        // every pair of every chain is reported
+        sc = new SeparateChainingHashTable();
+        result = sc.put("test", "testy"); // hash of 1
+        result = sc.put("c", "cat"); // hash of 1
+        result = sc.put("f", "fox"); // hash of 4
+        sc.remove("f");
+        List<String> keys = new ArrayList<>();
+        for (var pair : sc) {
+            keys.add(pair.getKey());
+        }
+        assertEquals(List.of("test", "c"), keys);
+        assertEquals(2, sc.values().count());
+    }
+
+    @Test
+    public void parallelStreamTest1() {
+        parallelEnlargeTest1();
+        assertEquals(3000, sc.entries().parallel().count());
+        assertEquals(3000, sc.keys().parallel().distinct().count());
+    }
+
+    @Test
+    public void presizeTest1() {
+        // presizing enlarges along the same primes, keeping every pair
+        sc = new SeparateChainingHashTable();
+        sc.put("test", "testy");
+        sc.presize(100);
+        assertEquals(163, sc.capacity());
+        assertEquals("testy", sc.get("test"));
+        sc.presize(50); // never shrinks
+        assertEquals(163, sc.capacity());
+        sc.presize(Integer.MAX_VALUE); // stops at the largest prime
+        assertEquals(4999, sc.capacity());
+        assertEquals(1, sc.size());
+    }
 }
@@ -0,0 +1,542 @@
+package phonebook.hashes;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import phonebook.utils.KVPair;
+
+/**
+ * <p>
+ * {@link TieredHashTable} is a <b>thread-safe</b> {@link HashTable} that keeps
+ * every pair in a hashed file on disk, so it can hold far more pairs than fit in
+ * the heap, and keeps the popular ones in memory as well. The <b>disk tier</b> is
+ * a linear-probing table of memory-mapped cells pointing at records appended to
+ * the same file: a lookup that misses memory costs one or two reads of the file,
+ * usually served by the page cache. The <b>hot tier</b> is a bounded cache of
+ * {@link ConcurrentLinearProbingHashTable} shards, whose lookups never lock.
+ * </p>
+ *
+ * <p>
+ * The hot tier evicts by <b>segmented LRU</b>: a key read from disk is admitted
+ * into a probationary segment, and a key that is hit again there is promoted to a
+ * protected segment of {@value #PROTECTED_PERCENT}&#37; of the capacity, whose
+ * least recently used keys fall back to probation. Once the tier is full, a key
+ * read from disk only takes the place of the least recently used one if it was
+ * accessed more often lately, as estimated by a small count-min sketch that is
+ * halved every few accesses per cached pair: this is the <b>TinyLFU</b> admission
+ * of W-TinyLFU, without its window. A scan of cold keys therefore evicts nothing
+ * but cold keys. Every shard has its
+ * own policy, behind its own lock that readers never wait for: a hit records its
+ * key in a small lossy buffer, a miss queues the pair it read, and whichever
+ * reader next wins a {@link ReentrantLock#tryLock()} replays both and evicts. A
+ * reader that loses the race leaves the work to the winner, so <b>eviction never
+ * blocks a reader</b>; when the buffers overflow, accesses are dropped, which
+ * only makes the policy a little less exact.
+ * </p>
+ *
+ * <p>
+ * Writers are serialized, and go to the disk tier first. A writer updates or
+ * removes the cached pair of its key under the policy lock of its shard, and
+ * bumps a stamp of the key's stripe, so that a pair a reader read before the
+ * write is not admitted after it. {@link #getHitRatio()},
+ * {@link #getReadAmplification()} and {@link #getDiskReadsPerLookup()} tell how
+ * well the hot tier is doing.
+ * </p>
+ *
+ * <p>
+ * The table must be {@link #close() closed} to release the file. Operations on a
+ * closed table, and failed reads and writes of the file, throw an
+ * {@link UncheckedIOException}.
+ * </p>
+ *
+ * @see DiskHashFile
+ * @see ConcurrentLinearProbingHashTable
+ */
+public class TieredHashTable implements HashTable, AutoCloseable {
+
+    /**
+     * The share of the hot tier that the protected segment may take, in percent.
+     */
+    public static final int PROTECTED_PERCENT = 80;
+
+    private static final int SHARD_CAPACITY = 1024; // Pairs; a ConcurrentLinearProbingHashTable holds 2499 at most
+    private static final int ACCESS_BUFFER = 64; // Hits recorded per shard between drains
+    private static final int ADMISSION_BUFFER = 64; // Pairs read from disk queued per shard between drains
+    private static final int STAMP_STRIPES = 1024;
+    private static final int SKETCH_DEPTH = 4; // Counters per key in the frequency sketch
+    private static final int SAMPLES_PER_PAIR = 10; // Accesses per cached pair after which the sketch ages
+
+    private final DiskHashFile file;
+    private final ReentrantReadWriteLock diskLock = new ReentrantReadWriteLock();
+    private final Shard[] shards;
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMP_STRIPES); // Writes per stripe of keys
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder();
+    private final LongAdder charsReturned = new LongAdder();
+
+    /**
+     * Opens the table in a file, or creates an empty one if there is no such file.
+     *
+     * @param path        The file of the disk tier.
+     * @param hotCapacity The number of pairs the hot tier may hold.
+     * @throws IllegalArgumentException if hotCapacity is negative.
+     * @throws IOException              if the file cannot be read or created, or is not a table.
+     */
+    public TieredHashTable(Path path, int hotCapacity) throws IOException {
+        if (hotCapacity < 0)
+            throw new IllegalArgumentException("Provided: hotCapacity=" + hotCapacity);
+        int count = Math.max(1, (hotCapacity + SHARD_CAPACITY - 1) / SHARD_CAPACITY);
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(hotCapacity / count + (i < hotCapacity % count ? 1 : 0));
+        }
+        file = DiskHashFile.open(path);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        if (key == null || value == null)
+            throw new IllegalArgumentException("Provided: key=" + key + " and value=" + value);
+        diskLock.writeLock().lock();
+        try {
+            file.put(key, value);
+            shardOf(key).written(key, value);
+            return value;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            diskLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public String get(String key) {
+        if (key == null)
+            return null;
+        Shard shard = shardOf(key);
+        String value = shard.hot.get(key);
+        if (value != null) {
+            hits.increment();
+            shard.recordAccess(key);
+        } else {
+            misses.increment();
+            long stamp;
+            diskLock.readLock().lock();
+            try {
+                stamp = stamps.get(stripeOf(key));
+                value = file.get(key);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                diskLock.readLock().unlock();
+            }
+            if (value != null)
+                shard.recordMiss(key, value, stamp);
+        }
+        if (value != null)
+            charsReturned.add(key.length() + value.length());
+        return value;
+    }
+
+    @Override
+    public String remove(String key) {
+        if (key == null)
+            return null;
+        diskLock.writeLock().lock();
+        try {
+            String value = file.remove(key);
+            if (value != null)
+                shardOf(key).written(key, null);
+            return value;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            diskLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public boolean containsValue(String value) {
+        return value != null && entries().anyMatch(pair -> pair.getValue().equals(value));
+    }
+
+    @Override
+    public int size() {
+        diskLock.readLock().lock();
+        try {
+            return file.size();
+        } finally {
+            diskLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of cells of the disk tier.
+     *
+     * @return The capacity of the disk tier.
+     */
+    @Override
+    public int capacity() {
+        diskLock.readLock().lock();
+        try {
+            return file.capacity();
+        } finally {
+            diskLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of pairs in the hot tier.
+     *
+     * @return The number of cached pairs.
+     */
+    public int hotSize() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.hot.size();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the share of lookups that the hot tier answered. Lookups of absent
+     * keys always miss it, so they lower the ratio too.
+     *
+     * @return {@link #getHits()} over all lookups, or 0 before the first lookup.
+     */
+    public double getHitRatio() {
+        long hit = hits.sum(), lookups = hit + misses.sum();
+        return lookups == 0 ? 0 : (double) hit / lookups;
+    }
+
+    /**
+     * Returns the number of lookups that the hot tier answered, without reading
+     * the file.
+     *
+     * @return The number of hot hits.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that the hot tier did not answer, and that
+     * went to the file: those of keys that were not hot, and those of keys that
+     * are not in the table at all.
+     *
+     * @return The number of hot misses.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of pairs that the hot tier evicted to make room for
+     * others. Pairs that writes removed from it are not counted.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the number of reads of records that lookups made in the file.
+     *
+     * @return The number of disk reads.
+     */
+    public long getDiskReads() {
+        return file.reads();
+    }
+
+    /**
+     * Returns the disk reads per lookup, hot or not.
+     *
+     * @return Disk reads over lookups, or 0 before the first lookup.
+     */
+    public double getDiskReadsPerLookup() {
+        long lookups = hits.sum() + misses.sum();
+        return lookups == 0 ? 0 : (double) file.reads() / lookups;
+    }
+
+    /**
+     * Returns the <b>read amplification</b> of lookups: the bytes they read from
+     * the file, cells probed and records read, per character of the pairs that they
+     * found, which is one byte for ASCII. Lookups that the hot tier answers read
+     * nothing, so a warm hot tier drives it towards 0.
+     *
+     * @return Bytes read per character returned, or 0 before the first pair found.
+     */
+    public double getReadAmplification() {
+        long returned = charsReturned.sum();
+        return returned == 0 ? 0 : (double) file.bytesRead() / returned;
+    }
+
+    /**
+     * Closes the file. The table cannot be used afterwards.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        diskLock.writeLock().lock();
+        try {
+            file.close();
+        } finally {
+            diskLock.writeLock().unlock();
+        }
+    }
+
+    private Shard shardOf(String key) {
+        return shards[(int) (((key.hashCode() * 0x9E3779B9) & 0xffffffffL) * shards.length >>> 32)];
+    }
+
+    private static int stripeOf(String key) {
+        return (key.hashCode() * 0x85EBCA6B) >>> (32 - Integer.numberOfTrailingZeros(STAMP_STRIPES));
+    }
+
+    /**
+     * A pair read from disk by a missing lookup, queued for admission.
+     */
+    private static final class Admission {
+        final String key, value;
+        final long stamp; // Of the stripe of key, before it was read
+
+        Admission(String key, String value, long stamp) {
+            this.key = key;
+            this.value = value;
+            this.stamp = stamp;
+        }
+    }
+
+    /**
+     * A shard of the hot tier: the cached pairs, which readers look up without
+     * locking, and the segmented-LRU order of their keys, which only the holder of
+     * the policy lock touches.
+     */
+    private final class Shard {
+        final ConcurrentLinearProbingHashTable hot = new ConcurrentLinearProbingHashTable(4);
+        final ReentrantLock policyLock = new ReentrantLock();
+        final int capacity, protectedCapacity;
+        // Access-ordered, eldest first; the values are unused
+        final LinkedHashMap<String, Boolean> probation = new LinkedHashMap<>(16, 0.75f, true);
+        final LinkedHashMap<String, Boolean> protectedKeys = new LinkedHashMap<>(16, 0.75f, true);
+        final AtomicReferenceArray<String> accesses = new AtomicReferenceArray<>(ACCESS_BUFFER);
+        final AtomicInteger accessCount = new AtomicInteger();
+        final Queue<Admission> admissions = new ConcurrentLinkedQueue<>();
+        final AtomicInteger admissionCount = new AtomicInteger();
+        final byte[] frequencies; // A count-min sketch of 4-bit counters, halved every SAMPLES_PER_PAIR * capacity
+        int samples;
+
+        Shard(int capacity) {
+            this.capacity = capacity;
+            protectedCapacity = (int) ((long) capacity * PROTECTED_PERCENT / 100);
+            frequencies = new byte[Integer.highestOneBit(Math.max(16, capacity) * 8 - 1)];
+        }
+
+        void recordAccess(String key) {
+            int slot = accessCount.getAndIncrement();
+            if (slot < ACCESS_BUFFER)
+                accesses.lazySet(slot, key);
+            if (slot + 1 >= ACCESS_BUFFER / 2)
+                tryMaintain();
+        }
+
+        void recordMiss(String key, String value, long stamp) {
+            if (capacity == 0)
+                return;
+            if (admissionCount.getAndIncrement() < ADMISSION_BUFFER)
+                admissions.add(new Admission(key, value, stamp));
+            else
+                admissionCount.decrementAndGet(); // Full: drop it, the key will miss again
+            tryMaintain();
+        }
+
+        // Called by writers, which hold the disk write lock: value is null if key was removed.
+        void written(String key, String value) {
+            policyLock.lock();
+            try {
+                stamps.incrementAndGet(stripeOf(key));
+                if (value == null) {
+                    if (hot.remove(key) != null) {
+                        probation.remove(key);
+                        protectedKeys.remove(key);
+                    }
+                } else if (hot.containsKey(key)) {
+                    hot.put(key, value);
+                }
+            } finally {
+                policyLock.unlock();
+            }
+        }
+
+        void tryMaintain() {
+            if (!policyLock.tryLock())
+                return; // Someone else is at it
+            try {
+                drainAccesses();
+                for (Admission admission; (admission = admissions.poll()) != null; ) {
+                    admissionCount.decrementAndGet();
+                    if (admission.stamp == stamps.get(stripeOf(admission.key)) && !hot.containsKey(admission.key))
+                        admit(admission.key, admission.value);
+                }
+            } finally {
+                policyLock.unlock();
+            }
+        }
+
+        private void drainAccesses() {
+            int recorded = Math.min(accessCount.get(), ACCESS_BUFFER);
+            for (int slot = 0; slot < recorded; slot++) {
+                String key = accesses.getAndSet(slot, null);
+                if (key == null)
+                    continue; // Claimed but not written yet: lost
+                increment(key);
+                if (probation.remove(key) != null) { // Hit again on probation: promote
+                    protectedKeys.put(key, Boolean.TRUE);
+                    if (protectedKeys.size() > protectedCapacity) {
+                        Iterator<String> eldest = protectedKeys.keySet().iterator();
+                        String demoted = eldest.next();
+                        eldest.remove();
+                        probation.put(demoted, Boolean.TRUE);
+                    }
+                } else {
+                    protectedKeys.get(key); // Touch, if it is still cached
+                }
+            }
+            accessCount.set(0);
+        }
+
+        private void admit(String key, String value) {
+            increment(key);
+            if (probation.size() + protectedKeys.size() >= capacity) {
+                LinkedHashMap<String, Boolean> segment = probation.isEmpty() ? protectedKeys : probation;
+                Iterator<String> eldest = segment.keySet().iterator();
+                String victim = eldest.next();
+                if (frequency(key) <= frequency(victim))
+                    return; // Not popular enough to take the victim's place
+                hot.remove(victim);
+                eldest.remove();
+                evictions.increment();
+            }
+            hot.put(key, value);
+            probation.put(key, Boolean.TRUE);
+        }
+
+        // Counts an access to key, and ages every count once the sketch has seen enough accesses.
+        private void increment(String key) {
+            int hash = key.hashCode() * 0x9E3779B9;
+            for (int row = 0; row < SKETCH_DEPTH; row++, hash = Integer.rotateLeft(hash * 0x85EBCA6B, 16)) {
+                int index = hash & (frequencies.length - 1);
+                if (frequencies[index] < 15)
+                    frequencies[index]++;
+            }
+            if (++samples >= SAMPLES_PER_PAIR * Math.max(capacity, 16)) {
+                for (int i = 0; i < frequencies.length; i++) {
+                    frequencies[i] >>= 1;
+                }
+                samples /= 2;
+            }
+        }
+
+        // An estimate of the recent accesses to key: the least of its counts.
+        private int frequency(String key) {
+            int hash = key.hashCode() * 0x9E3779B9, frequency = 15;
+            for (int row = 0; row < SKETCH_DEPTH; row++, hash = Integer.rotateLeft(hash * 0x85EBCA6B, 16)) {
+                frequency = Math.min(frequency, frequencies[hash & (frequencies.length - 1)]);
+            }
+            return frequency;
+        }
+    }
+
+    /**
+     * Walks a range of the cells of the disk tier, one pair at a time under the
+     * read lock.
+     */
+    private final class CellSpliterator implements Spliterator<KVPair> {
+        private int cell;
+        private final int end, generation;
+
+        CellSpliterator(int cell, int end, int generation) {
+            this.cell = cell;
+            this.end = end;
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super KVPair> action) {
+            KVPair pair = null;
+            diskLock.readLock().lock();
+            try {
+                if (file.generation() != generation)
+                    throw new ConcurrentModificationException("The disk tier was rebuilt during the traversal.");
+                while (pair == null && cell < end) {
+                    pair = file.pairAt(cell++);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                diskLock.readLock().unlock();
+            }
+            if (pair == null)
+                return false;
+            action.accept(pair);
+            return true;
+        }
+
+        @Override
+        public Spliterator<KVPair> trySplit() {
+            int middle = (cell + end) >>> 1;
+            if (middle - cell < ParallelScans.LEAF_SIZE)
+                return null;
+            CellSpliterator prefix = new CellSpliterator(cell, middle, generation);
+            cell = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - cell;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | DISTINCT;
+        }
+    }
+
+    /**
+     * Returns a {@link Spliterator} over the pairs of the disk tier. Writes may run
+     * during a traversal, which may or may not see them; if they make the disk
+     * tier rebuild, the traversal throws a {@link ConcurrentModificationException}.
+     *
+     * @return A {@link Spliterator} that splits by ranges of cells.
+     */
+    @Override
+    public Spliterator<KVPair> spliterator() {
+        diskLock.readLock().lock();
+        try {
+            return new CellSpliterator(0, file.capacity(), file.generation());
+        } finally {
+            diskLock.readLock().unlock();
+        }
+    }
+}
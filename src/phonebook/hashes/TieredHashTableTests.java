@@ -0,0 +1,214 @@
+package phonebook.hashes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import phonebook.utils.KVPair;
+
+public class TieredHashTableTests {
+    Path file;
+    TieredHashTable tiered;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("phonebook", ".disk");
+        Files.delete(file);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (tiered != null)
+            tiered.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void putGetTest1() throws IOException {
+        // many more pairs than the hot tier holds are all found, through rebuilds of the file
+        tiered = new TieredHashTable(file, 100);
+        for (int i = 0; i < 20000; i++) {
+            assertEquals("number" + i, tiered.put("name" + i, "number" + i));
+        }
+        tiered.put("Zo\u00EB \uD83D\uDCDE", "\u260E 1");
+        tiered.put("", "empty");
+        assertEquals(20002, tiered.size());
+        assertTrue(tiered.capacity() >= 2 * tiered.size());
+        for (int i = 0; i < 20000; i++) {
+            assertEquals("number" + i, tiered.get("name" + i));
+        }
+        assertEquals("\u260E 1", tiered.get(new StringBuilder("Zo\u00EB \uD83D\uDCDE")));
+        assertEquals("empty", tiered.get(""));
+        assertNull(tiered.get("name20000"));
+        assertNull(tiered.get((String) null));
+        assertTrue(tiered.containsKey("name7"));
+        assertTrue(tiered.containsValue("number7"));
+        assertFalse(tiered.containsValue("name7"));
+        assertEquals(20002, tiered.entries().parallel().count());
+        assertTrue(tiered.hotSize() <= 100);
+        try {
+            tiered.put(null, "1");
+            fail("A null key should not be accepted.");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void updateRemoveTest1() throws IOException {
+        // updates and removals reach both tiers, and survive reopening the file
+        tiered = new TieredHashTable(file, 10);
+        Map<String, String> expected = new HashMap<>();
+        for (int i = 0; i < 3000; i++) {
+            tiered.put("name" + i, "number" + i);
+            expected.put("name" + i, "number" + i);
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 20; i++) {
+                assertEquals(expected.get("name" + i), tiered.get("name" + i)); // Warms the hot tier
+            }
+        }
+        for (int i = 0; i < 3000; i += 3) {
+            assertEquals("number" + i, tiered.remove("name" + i));
+            expected.remove("name" + i);
+        }
+        for (int i = 1; i < 3000; i += 3) {
+            tiered.put("name" + i, "new" + i);
+            expected.put("name" + i, "new" + i);
+        }
+        assertNull(tiered.remove("name0"));
+        for (int i = 0; i < 3000; i++) {
+            assertEquals(expected.get("name" + i), tiered.get("name" + i));
+        }
+        tiered.close();
+        tiered = new TieredHashTable(file, 10);
+        assertEquals(expected.size(), tiered.size());
+        for (KVPair pair : tiered) {
+            assertEquals(expected.get(pair.getKey()), pair.getValue());
+        }
+        for (int i = 0; i < 3000; i++) {
+            assertEquals(expected.get("name" + i), tiered.get("name" + i));
+        }
+    }
+
+    @Test
+    public void hotTierTest1() throws IOException {
+        // popular keys end up in the hot tier, which then answers them without reading the file
+        tiered = new TieredHashTable(file, 100);
+        for (int i = 0; i < 5000; i++) {
+            tiered.put("name" + i, "number" + i);
+        }
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 50; i++) {
+                tiered.get("name" + i);
+            }
+            for (int i = 0; i < 200; i++) { // A scan of cold keys
+                tiered.get("name" + (1000 + round * 200 + i));
+            }
+        }
+        long reads = tiered.getDiskReads();
+        for (int i = 0; i < 50; i++) {
+            assertEquals("number" + i, tiered.get("name" + i));
+        }
+        assertTrue("Hot keys were evicted by a scan: " + (tiered.getDiskReads() - reads) + " disk reads",
+                tiered.getDiskReads() - reads < 10);
+        assertTrue(tiered.getHitRatio() > 0 && tiered.getHitRatio() < 1);
+        assertTrue(tiered.getEvictions() > 0);
+        assertTrue(tiered.getReadAmplification() > 0);
+        assertTrue(tiered.hotSize() <= 100);
+    }
+
+    @Test
+    public void concurrentTest1() throws Exception {
+        // readers never see a value that was never written, nor a stale one after the writers are done
+        tiered = new TieredHashTable(file, 64);
+        for (int i = 0; i < 500; i++) {
+            tiered.put("name" + i, "0");
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<?> writer = pool.submit(() -> {
+                for (int version = 1; version <= 20; version++) {
+                    for (int i = 0; i < 500; i++) {
+                        tiered.put("name" + i, Integer.toString(version));
+                    }
+                }
+            });
+            Future<?>[] readers = new Future<?>[3];
+            for (int r = 0; r < readers.length; r++) {
+                readers[r] = pool.submit(() -> {
+                    for (int round = 0; round < 50; round++) {
+                        for (int i = 0; i < 100; i++) {
+                            int version = Integer.parseInt(tiered.get("name" + i));
+                            assertTrue(version >= 0 && version <= 20);
+                        }
+                    }
+                });
+            }
+            writer.get();
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        for (int i = 0; i < 500; i++) {
+            assertEquals("20", tiered.get("name" + i));
+        }
+    }
+
+    @Test
+    public void rebuildTest1() throws IOException {
+        // a rebuild whose new file cannot be moved into place leaves the table usable, with every pair
+        tiered = new TieredHashTable(file, 0);
+        for (int i = 0; i < 400; i++) {
+            tiered.put("name" + i, "number" + i);
+        }
+        Files.delete(file); // The table keeps it open; a directory that is not empty cannot be replaced
+        Files.createDirectory(file);
+        Path blocker = Files.createFile(file.resolve("blocker"));
+        int added = 400;
+        try {
+            for (; added < 2000; added++) {
+                tiered.put("name" + added, "number" + added);
+            }
+            fail("The rebuild should have failed.");
+        } catch (UncheckedIOException expected) {
+        } finally {
+            Files.delete(blocker);
+        }
+        // The put whose rebuild failed had already stored its pair
+        for (int i = 0; i <= added; i++) {
+            assertEquals("number" + i, tiered.get("name" + i));
+        }
+        assertEquals(added + 1, tiered.size());
+    }
+
+    @Test
+    public void openTest1() throws IOException {
+        // a file that is not a table is refused
+        Files.write(file, new byte[64]);
+        try {
+            new TieredHashTable(file, 10);
+            fail("A file of zeroes should not open.");
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package phonebook.indexes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * {@link NamePrefixIndex} is a set of names that answers &quot; which names start
+ * with this prefix? &quot; quickly enough to drive autocompletion. It is a
+ * <b>compressed radix trie</b>: every edge is labelled with a whole substring,
+ * and every node other than the root either ends a name or branches, so the
+ * trie has fewer than two nodes per name.
+ * </p>
+ *
+ * <p>
+ * {@link #findByPrefix(String, int)} walks down the edges that spell the
+ * prefix and then enumerates the subtree beneath it, so its cost is
+ * proportional to the length of the prefix plus the total length of the names
+ * it returns, no matter how many names the index holds. Children are kept
+ * sorted by their first character, so names come out in alphabetical
+ * ({@link String#compareTo(String)}) order.
+ * </p>
+ *
+ * @see phonebook.Phonebook#findNamesByPrefix(String, int)
+ */
+public class NamePrefixIndex {
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static final class Node {
+        String label; // The edge label that leads into this node
+        boolean terminal; // Whether the path to this node spells a name
+        Node[] children = NO_CHILDREN; // Sorted by the first character of their labels
+        int childCount;
+
+        Node(String label, boolean terminal) {
+            this.label = label;
+            this.terminal = terminal;
+        }
+    }
+
+    private final Node root = new Node("", false);
+    private int count;
+
+    /**
+     * Adds a name to the index.
+     *
+     * @param name The name to add.
+     * @return {@code true} if the name was not already in the index.
+     * @throws IllegalArgumentException if name is {@code null}.
+     */
+    public boolean add(String name) {
+        if (name == null)
+            throw new IllegalArgumentException("Provided a null name.");
+        Node node = root;
+        int i = 0;
+        while (i < name.length()) {
+            int pos = childIndex(node, name.charAt(i));
+            if (pos < 0) {
+                insertChild(node, -pos - 1, new Node(name.substring(i), true));
+                count++;
+                return true;
+            }
+            Node child = node.children[pos];
+            int common = commonPrefixLength(child.label, name, i);
+            if (common < child.label.length()) { // Split the edge where the name branches off
+                Node middle = new Node(child.label.substring(0, common), false);
+                child.label = child.label.substring(common);
+                middle.children = new Node[] { child, null };
+                middle.childCount = 1;
+                node.children[pos] = middle;
+                child = middle;
+            }
+            node = child;
+            i += common;
+        }
+        if (node.terminal)
+            return false;
+        node.terminal = true;
+        count++;
+        return true;
+    }
+
+    /**
+     * Removes a name from the index.
+     *
+     * @param name The name to remove.
+     * @return {@code true} if the name was in the index.
+     */
+    public boolean remove(String name) {
+        if (name == null)
+            return false;
+        Node parent = null, node = root;
+        int i = 0, pos = -1;
+        while (i < name.length()) {
+            pos = childIndex(node, name.charAt(i));
+            if (pos < 0)
+                return false;
+            Node child = node.children[pos];
+            if (!name.startsWith(child.label, i))
+                return false;
+            parent = node;
+            node = child;
+            i += child.label.length();
+        }
+        if (!node.terminal)
+            return false;
+        node.terminal = false;
+        count--;
+        if (node == root)
+            return true;
+        // Restore the invariant that every non-root node ends a name or branches.
+        if (node.childCount == 0) {
+            removeChild(parent, pos);
+            if (parent != root && !parent.terminal && parent.childCount == 1)
+                absorbOnlyChild(parent);
+        } else if (node.childCount == 1) {
+            absorbOnlyChild(node);
+        }
+        return true;
+    }
+
+    /**
+     * Queries the index for a name.
+     *
+     * @param name The name to search for.
+     * @return {@code true} if, and only if, the name is in the index.
+     */
+    public boolean contains(String name) {
+        if (name == null)
+            return false;
+        Node node = root;
+        int i = 0;
+        while (i < name.length()) {
+            int pos = childIndex(node, name.charAt(i));
+            if (pos < 0 || !name.startsWith(node.children[pos].label, i))
+                return false;
+            node = node.children[pos];
+            i += node.label.length();
+        }
+        return node.terminal;
+    }
+
+    /**
+     * Returns up to limit names that start with prefix, in alphabetical order.
+     *
+     * @param prefix The prefix to search for. The empty prefix matches every name.
+     * @param limit  The largest number of names to return.
+     * @return A new {@link List} of at most limit names.
+     * @throws IllegalArgumentException if prefix is {@code null} or limit is negative.
+     */
+    public List<String> findByPrefix(String prefix, int limit) {
+        if (prefix == null || limit < 0)
+            throw new IllegalArgumentException("Provided: prefix=" + prefix + " and limit=" + limit);
+        List<String> names = new ArrayList<>(Math.min(limit, 16));
+        Node node = root;
+        StringBuilder path = new StringBuilder(prefix.length() + 16);
+        int i = 0;
+        while (i < prefix.length()) {
+            int pos = childIndex(node, prefix.charAt(i));
+            if (pos < 0)
+                return names;
+            Node child = node.children[pos];
+            int length = Math.min(child.label.length(), prefix.length() - i);
+            if (!child.label.regionMatches(0, prefix, i, length))
+                return names;
+            path.append(child.label);
+            node = child;
+            i += length; // The prefix may end in the middle of an edge
+        }
+        collect(node, path, names, limit);
+        return names;
+    }
+
+    /**
+     * Returns the number of names in the index.
+     *
+     * @return The number of names in the index.
+     */
+    public int size() {
+        return count;
+    }
+
+    // Depth-first, in order: a name comes before every longer name that extends it.
+    private static void collect(Node node, StringBuilder path, List<String> names, int limit) {
+        if (names.size() >= limit)
+            return;
+        if (node.terminal)
+            names.add(path.toString());
+        for (int c = 0; c < node.childCount && names.size() < limit; c++) {
+            Node child = node.children[c];
+            int length = path.length();
+            path.append(child.label);
+            collect(child, path, names, limit);
+            path.setLength(length);
+        }
+    }
+
+    // Binary search by first character; returns -(insertion point) - 1 if absent.
+    private static int childIndex(Node node, char first) {
+        int low = 0, high = node.childCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char c = node.children[mid].label.charAt(0);
+            if (c < first)
+                low = mid + 1;
+            else if (c > first)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -low - 1;
+    }
+
+    private static int commonPrefixLength(String label, String name, int offset) {
+        int max = Math.min(label.length(), name.length() - offset), i = 0;
+        while (i < max && label.charAt(i) == name.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static void insertChild(Node node, int pos, Node child) {
+        if (node.childCount == node.children.length)
+            node.children = Arrays.copyOf(node.children, Math.max(2, node.childCount * 2));
+        System.arraycopy(node.children, pos, node.children, pos + 1, node.childCount - pos);
+        node.children[pos] = child;
+        node.childCount++;
+    }
+
+    private static void removeChild(Node node, int pos) {
+        System.arraycopy(node.children, pos + 1, node.children, pos, node.childCount - pos - 1);
+        node.children[--node.childCount] = null;
+    }
+
+    // Merges a non-terminal node with its single child, which takes the node's place.
+    private static void absorbOnlyChild(Node node) {
+        Node child = node.children[0];
+        node.label = node.label + child.label;
+        node.terminal = child.terminal;
+        node.children = child.children;
+        node.childCount = child.childCount;
+    }
+}
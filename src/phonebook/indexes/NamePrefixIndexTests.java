@@ -0,0 +1,85 @@
+package phonebook.indexes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class NamePrefixIndexTests {
+    NamePrefixIndex index;
+
+    @Test
+    public void addTest1() {
+        index = new NamePrefixIndex();
+        assertTrue(index.add("John"));
+        assertTrue(index.add("Johanna")); // splits the "John" edge after "Joh"
+        assertTrue(index.add("Jo"));
+        assertTrue(index.add("Mary"));
+        assertFalse(index.add("John"));
+        assertEquals(4, index.size());
+        assertTrue(index.contains("Jo"));
+        assertFalse(index.contains("Joh"));
+        assertFalse(index.contains("Johnny"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addTest2() {
+        index = new NamePrefixIndex();
+        index.add(null);
+    }
+
+    @Test
+    public void findTest1() {
+        addTest1();
+        assertEquals(List.of("Jo", "Johanna", "John"), index.findByPrefix("Jo", 10));
+        assertEquals(List.of("Johanna", "John"), index.findByPrefix("Joh", 10));
+        assertEquals(List.of("Johanna"), index.findByPrefix("Joha", 10)); // ends in the middle of an edge
+        assertEquals(List.of("Jo", "Johanna"), index.findByPrefix("J", 2));
+        assertEquals(List.of(), index.findByPrefix("Jon", 10));
+        assertEquals(List.of(), index.findByPrefix("Johnny", 10));
+        assertEquals(List.of("Jo", "Johanna", "John", "Mary"), index.findByPrefix("", 10));
+    }
+
+    @Test
+    public void removeTest1() {
+        addTest1();
+        assertTrue(index.remove("Jo"));
+        assertFalse(index.remove("Jo"));
+        assertFalse(index.remove("Joh"));
+        assertTrue(index.remove("John")); // leaves "Johanna" alone below "Jo", which gets merged with it
+        assertEquals(2, index.size());
+        assertEquals(List.of("Johanna"), index.findByPrefix("Jo", 10));
+        assertTrue(index.add("John"));
+        assertEquals(List.of("Johanna", "John"), index.findByPrefix("Jo", 10));
+    }
+
+    @Test
+    public void randomizedTest1() {
+        // the index should agree with a sorted set through adds and removes
+        index = new NamePrefixIndex();
+        TreeSet<String> expected = new TreeSet<>();
+        Random rng = new Random(47);
+        for (int i = 0; i < 20000; i++) {
+            String name = Integer.toString(rng.nextInt(4000), 5); // Short names over a small alphabet share prefixes
+            if (rng.nextInt(3) == 0)
+                assertEquals(expected.remove(name), index.remove(name));
+            else
+                assertEquals(expected.add(name), index.add(name));
+        }
+        assertEquals(expected.size(), index.size());
+        for (String prefix : new String[] { "", "1", "12", "304", "4444" }) {
+            List<String> matching = new ArrayList<>();
+            for (String name : expected.subSet(prefix, prefix + Character.MAX_VALUE)) {
+                if (matching.size() < 50)
+                    matching.add(name);
+            }
+            assertEquals(matching, index.findByPrefix(prefix, 50));
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package phonebook.indexes;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * <p>
+ * {@link NumberPrefixIndex} is a set of phone numbers that answers
+ * &quot; which numbers start with these digits? &quot;, e.g. every number of an
+ * area code. Numbers are <b>normalized</b> to their digits before they are
+ * indexed, so {@code 894-59-0011}, {@code (894) 590011} and {@code 894590011}
+ * all match the prefix {@code 89459}, and so does the prefix {@code 894-59}.
+ * </p>
+ *
+ * <p>
+ * The index is a <b>digit trie</b> with a fan-out of 10: each node has one
+ * child per decimal digit, and a number is stored, as it was given, at the node
+ * its digits lead to. Every node also counts the numbers in its subtree, so
+ * {@link #countByPrefix(String)} only walks down the prefix, in O(prefix length)
+ * time. {@link #findByPrefix(String)} streams the matching numbers lazily, in
+ * the order of their digits, without collecting them first.
+ * </p>
+ *
+ * @see phonebook.Phonebook#findNumbersByPrefix(String)
+ * @see phonebook.Phonebook#countNumbersByPrefix(String)
+ */
+public class NumberPrefixIndex {
+
+    private static final int RADIX = 10;
+    private static final String[] NO_NUMBERS = new String[0];
+
+    private static final class Node {
+        Node[] children; // Allocated on the first child
+        int count; // Numbers in this subtree
+        String[] numbers = NO_NUMBERS; // Numbers whose digits end here, as given
+        int numberCount;
+    }
+
+    private final Node root = new Node();
+
+    /**
+     * Adds a number to the index.
+     *
+     * @param number The number to add.
+     * @return {@code true} if the number was not already in the index.
+     * @throws IllegalArgumentException if number is {@code null}.
+     */
+    public boolean add(String number) {
+        if (number == null)
+            throw new IllegalArgumentException("Provided a null number.");
+        Node node = root;
+        for (int i = 0; i < number.length(); i++) {
+            int digit = Character.digit(number.charAt(i), RADIX);
+            if (digit < 0)
+                continue;
+            if (node.children == null)
+                node.children = new Node[RADIX];
+            if (node.children[digit] == null)
+                node.children[digit] = new Node();
+            node = node.children[digit];
+        }
+        if (indexOf(node, number) >= 0)
+            return false;
+        if (node.numberCount == node.numbers.length)
+            node.numbers = Arrays.copyOf(node.numbers, Math.max(1, node.numberCount * 2));
+        node.numbers[node.numberCount++] = number;
+        // Only now that the number is known to be new can the counters go up.
+        node = root;
+        root.count++;
+        for (int i = 0; i < number.length(); i++) {
+            int digit = Character.digit(number.charAt(i), RADIX);
+            if (digit >= 0) {
+                node = node.children[digit];
+                node.count++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes a number from the index. It has to be given exactly as it was
+     * added, since numbers that only differ in formatting are kept apart.
+     *
+     * @param number The number to remove.
+     * @return {@code true} if the number was in the index.
+     */
+    public boolean remove(String number) {
+        if (number == null)
+            return false;
+        Node node = find(number);
+        int index = node == null ? -1 : indexOf(node, number);
+        if (index < 0)
+            return false;
+        node.numbers[index] = node.numbers[--node.numberCount];
+        node.numbers[node.numberCount] = null;
+        node = root;
+        root.count--;
+        for (int i = 0; i < number.length(); i++) {
+            int digit = Character.digit(number.charAt(i), RADIX);
+            if (digit < 0)
+                continue;
+            Node child = node.children[digit];
+            if (--child.count == 0) {
+                node.children[digit] = null; // The rest of the path is empty too
+                return true;
+            }
+            node = child;
+        }
+        return true;
+    }
+
+    /**
+     * Counts the numbers whose digits start with the digits of prefix, in
+     * O(prefix length) time.
+     *
+     * @param prefix The prefix to search for. Anything but digits is ignored.
+     * @return The number of matching numbers.
+     * @throws IllegalArgumentException if prefix is {@code null}.
+     */
+    public int countByPrefix(String prefix) {
+        if (prefix == null)
+            throw new IllegalArgumentException("Provided a null prefix.");
+        Node node = find(prefix);
+        return node == null ? 0 : node.count;
+    }
+
+    /**
+     * Streams the numbers whose digits start with the digits of prefix, in the
+     * order of their digits. The stream is lazy: it walks the trie as it is
+     * consumed, so the index should not be modified while it is in use.
+     *
+     * @param prefix The prefix to search for. Anything but digits is ignored.
+     * @return A sequential {@link Stream} over the matching numbers, as they were added.
+     * @throws IllegalArgumentException if prefix is {@code null}.
+     */
+    public Stream<String> findByPrefix(String prefix) {
+        if (prefix == null)
+            throw new IllegalArgumentException("Provided a null prefix.");
+        Node node = find(prefix);
+        return node == null ? Stream.empty() : StreamSupport.stream(new SubtreeSpliterator(node), false);
+    }
+
+    /**
+     * Returns the number of numbers in the index.
+     *
+     * @return The number of numbers in the index.
+     */
+    public int size() {
+        return root.count;
+    }
+
+    // The node that the digits of the key lead to, if there is one.
+    private Node find(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            int digit = Character.digit(key.charAt(i), RADIX);
+            if (digit >= 0)
+                node = node.children == null ? null : node.children[digit];
+        }
+        return node;
+    }
+
+    private static int indexOf(Node node, String number) {
+        for (int i = 0; i < node.numberCount; i++) {
+            if (node.numbers[i].equals(number))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * A depth-first walk over a subtree, with an explicit stack of nodes and the
+     * next digit to visit in each.
+     */
+    private static final class SubtreeSpliterator implements Spliterator<String> {
+        private Node[] nodes = new Node[16];
+        private int[] nextDigit = new int[16];
+        private int depth;
+        private int nextNumber; // In the node on top of the stack, before its children
+        private final long size;
+
+        SubtreeSpliterator(Node subtree) {
+            nodes[0] = subtree;
+            size = subtree.count;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super String> action) {
+            while (depth >= 0) {
+                Node node = nodes[depth];
+                if (nextNumber < node.numberCount) {
+                    action.accept(node.numbers[nextNumber++]);
+                    return true;
+                }
+                Node child = null;
+                while (node.children != null && nextDigit[depth] < RADIX && child == null) {
+                    child = node.children[nextDigit[depth]++];
+                }
+                if (child == null) {
+                    depth--;
+                    nextNumber = Integer.MAX_VALUE; // The parent's own numbers came before its children
+                    continue;
+                }
+                if (++depth == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, depth * 2);
+                    nextDigit = Arrays.copyOf(nextDigit, depth * 2);
+                }
+                nodes[depth] = child;
+                nextDigit[depth] = 0;
+                nextNumber = 0;
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<String> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return size;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | ORDERED;
+        }
+    }
+}
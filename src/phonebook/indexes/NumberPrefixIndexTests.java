@@ -0,0 +1,81 @@
+package phonebook.indexes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class NumberPrefixIndexTests {
+    NumberPrefixIndex index;
+
+    @Test
+    public void addTest1() {
+        index = new NumberPrefixIndex();
+        assertTrue(index.add("894-59-0011"));
+        assertTrue(index.add("(894) 590011")); // Same digits, kept apart
+        assertTrue(index.add("705-12-7500"));
+        assertTrue(index.add("894-60-0000"));
+        assertFalse(index.add("894-59-0011"));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void countTest1() {
+        addTest1();
+        assertEquals(3, index.countByPrefix("894"));
+        assertEquals(2, index.countByPrefix("894-59"));
+        assertEquals(2, index.countByPrefix("89459"));
+        assertEquals(1, index.countByPrefix("7"));
+        assertEquals(0, index.countByPrefix("1"));
+        assertEquals(4, index.countByPrefix(""));
+    }
+
+    @Test
+    public void findTest1() {
+        addTest1();
+        assertEquals(List.of("705-12-7500"), index.findByPrefix("70").collect(Collectors.toList()));
+        assertEquals(2, index.findByPrefix("894 59").count());
+        assertEquals(List.of("894-60-0000"), index.findByPrefix("8946").collect(Collectors.toList()));
+        assertEquals(0, index.findByPrefix("8947").count());
+    }
+
+    @Test
+    public void removeTest1() {
+        addTest1();
+        assertTrue(index.remove("894-59-0011"));
+        assertFalse(index.remove("894-59-0011"));
+        assertFalse(index.remove("894590011")); // Not added in this format
+        assertEquals(1, index.countByPrefix("89459"));
+        assertTrue(index.remove("(894) 590011"));
+        assertEquals(0, index.countByPrefix("89459"));
+        assertEquals(1, index.countByPrefix("894"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void randomizedTest1() {
+        // counts and enumeration should agree with a sorted set through adds and removes
+        index = new NumberPrefixIndex();
+        TreeSet<String> expected = new TreeSet<>();
+        Random rng = new Random(47);
+        for (int i = 0; i < 20000; i++) {
+            String number = Integer.toString(100000 + rng.nextInt(5000));
+            if (rng.nextInt(3) == 0)
+                assertEquals(expected.remove(number), index.remove(number));
+            else
+                assertEquals(expected.add(number), index.add(number));
+        }
+        assertEquals(expected.size(), index.size());
+        for (String prefix : new String[] { "", "1", "10", "102", "1049", "99" }) {
+            List<String> matching = List.copyOf(expected.subSet(prefix, prefix + Character.MAX_VALUE));
+            assertEquals(matching.size(), index.countByPrefix(prefix));
+            assertEquals(matching, index.findByPrefix(prefix).collect(Collectors.toList()));
+        }
+    }
+}
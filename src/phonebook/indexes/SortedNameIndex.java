@@ -0,0 +1,101 @@
+package phonebook.indexes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import phonebook.utils.KVPair;
+
+/**
+ * <p>
+ * {@link SortedNameIndex} keeps &lt;name, number&gt; pairs in alphabetical
+ * ({@link String#compareTo(String)}) order of their names, for ordered and
+ * paginated listings. It is backed by a {@link ConcurrentSkipListMap}, so
+ * locating the start of a listing takes O(log n) time and every further entry
+ * O(1), for O(log n + k) in total, and its listings never fail because of a
+ * concurrent update.
+ * </p>
+ *
+ * @see phonebook.Phonebook#range(String, String)
+ * @see phonebook.Phonebook#page(String, int)
+ */
+public class SortedNameIndex {
+
+    private final ConcurrentSkipListMap<String, String> entries = new ConcurrentSkipListMap<>();
+
+    /**
+     * Adds or updates the entry of a name.
+     *
+     * @param name   The name of the entry.
+     * @param number The number of the entry.
+     * @throws IllegalArgumentException if either argument is {@code null}.
+     */
+    public void put(String name, String number) {
+        if (name == null || number == null)
+            throw new IllegalArgumentException("Provided: name=" + name + " and number=" + number);
+        entries.put(name, number);
+    }
+
+    /**
+     * Removes the entry of a name.
+     *
+     * @param name The name whose entry to remove.
+     * @return {@code true} if the name was in the index.
+     */
+    public boolean remove(String name) {
+        return name != null && entries.remove(name) != null;
+    }
+
+    /**
+     * Returns the entries whose names lie between fromName, inclusive, and
+     * toName, exclusive, in alphabetical order.
+     *
+     * @param fromName The smallest name to return.
+     * @param toName   The name to stop before.
+     * @return A new {@link List} of fresh {@link KVPair}s.
+     * @throws IllegalArgumentException if either argument is {@code null}, or if fromName comes after toName.
+     */
+    public List<KVPair> range(String fromName, String toName) {
+        if (fromName == null || toName == null || fromName.compareTo(toName) > 0)
+            throw new IllegalArgumentException("Provided: fromName=" + fromName + " and toName=" + toName);
+        return copy(entries.subMap(fromName, true, toName, false), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns up to n entries whose names come right after afterName, in
+     * alphabetical order. Passing the last name of a page as afterName returns the
+     * next page.
+     *
+     * @param afterName The name to start after, exclusive, or {@code null} to start from the first name.
+     * @param n         The largest number of entries to return.
+     * @return A new {@link List} of at most n fresh {@link KVPair}s.
+     * @throws IllegalArgumentException if n is negative.
+     */
+    public List<KVPair> page(String afterName, int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("Provided a negative page size: " + n);
+        return copy(afterName == null ? entries : entries.tailMap(afterName, false), n);
+    }
+
+    /**
+     * Returns the number of entries in the index. Unlike the other methods, this
+     * one runs in linear time.
+     *
+     * @return The number of entries in the index.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private static List<KVPair> copy(NavigableMap<String, String> view, int limit) {
+        List<KVPair> pairs = new ArrayList<>(Math.min(limit, 16));
+        for (Map.Entry<String, String> entry : view.entrySet()) {
+            if (pairs.size() >= limit)
+                break;
+            pairs.add(new KVPair(entry.getKey(), entry.getValue()));
+        }
+        return pairs;
+    }
+}
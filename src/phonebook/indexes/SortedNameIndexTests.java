@@ -0,0 +1,69 @@
+package phonebook.indexes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import phonebook.utils.KVPair;
+
+public class SortedNameIndexTests {
+    SortedNameIndex index;
+
+    private static List<String> names(List<KVPair> pairs) {
+        return pairs.stream().map(KVPair::getKey).collect(Collectors.toList());
+    }
+
+    @Test
+    public void putTest1() {
+        index = new SortedNameIndex();
+        index.put("Mary", "888-1212-3340");
+        index.put("Arnold", "894-59-0011");
+        index.put("Jessie", "705-12-7500");
+        index.put("Tiffany", "894-59-0011");
+        index.put("Arnold", "555-0000"); // An update, not a second entry
+        assertEquals(4, index.size());
+        assertEquals(new KVPair("Arnold", "555-0000"), index.page(null, 1).get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void putTest2() {
+        index = new SortedNameIndex();
+        index.put(null, "555-0000");
+    }
+
+    @Test
+    public void rangeTest1() {
+        putTest1();
+        assertEquals(List.of("Arnold", "Jessie"), names(index.range("A", "K")));
+        assertEquals(List.of("Jessie", "Mary"), names(index.range("Jessie", "Tiffany"))); // Upper bound excluded
+        assertEquals(List.of(), names(index.range("N", "S")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rangeTest2() {
+        putTest1();
+        index.range("Z", "A");
+    }
+
+    @Test
+    public void pageTest1() {
+        putTest1();
+        assertEquals(List.of("Arnold", "Jessie"), names(index.page(null, 2)));
+        assertEquals(List.of("Mary", "Tiffany"), names(index.page("Jessie", 2)));
+        assertEquals(List.of(), names(index.page("Tiffany", 2)));
+        assertEquals(List.of("Jessie"), names(index.page("B", 1))); // afterName need not be in the index
+    }
+
+    @Test
+    public void removeTest1() {
+        putTest1();
+        assertTrue(index.remove("Jessie"));
+        assertFalse(index.remove("Jessie"));
+        assertEquals(List.of("Arnold", "Mary"), names(index.page(null, 2)));
+    }
+}
@@ -0,0 +1,293 @@
+package phonebook.indexes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * <p>
+ * {@link TrigramIndex} is a set of names that finds the names most similar to a
+ * possibly mistyped one. Every name is broken into its <b>trigrams</b>, the
+ * overlapping three-character windows of the name in lower case, padded with two
+ * spaces in front and one at the back so that the first characters weigh in as
+ * well. An inverted index maps every trigram to the ids of the names that contain
+ * it, as a growable {@code int[]}. Trigrams are packed into {@code long}s, which
+ * key an open-addressing table of their own, so that neither updates nor lookups
+ * box a {@link Long}.
+ * </p>
+ *
+ * <p>
+ * {@link #findSimilar(String, int)} only looks at the postings of the trigrams
+ * of the query, counting how many trigrams each candidate shares with it, and
+ * ranks the candidates by their <b>Dice coefficient</b>, 2 |A &cap; B| / (|A| +
+ * |B|). Names without a trigram in common with the query are never touched, so
+ * there is no scan over the whole index.
+ * </p>
+ *
+ * <p>
+ * Removal is lazy: the id of a removed name is only marked dead, and lookups skip
+ * dead ids. Once the dead ids outnumber the live ones, the postings are rebuilt
+ * from the live names, which keeps removal amortized O(trigrams per name).
+ * Lookups may run concurrently with each other, but not with updates.
+ * </p>
+ *
+ * @see phonebook.Phonebook#findSimilarNames(String, int)
+ */
+public class TrigramIndex {
+
+    private static final int MIN_REBUILD = 64; // Dead ids to tolerate regardless of size
+
+    /**
+     * A growable list of name ids.
+     */
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length)
+                ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+    }
+
+    /**
+     * The postings of every trigram, by linear probing on the packed trigram. A
+     * trigram's postings are never removed on their own, only all at once by a
+     * rebuild, so there are no tombstones.
+     */
+    private static final class PostingsTable {
+        private long[] grams = new long[64];
+        private Postings[] lists = new Postings[64]; // null marks an empty cell, since any long is a trigram
+        private int size;
+
+        Postings get(long gram) {
+            int mask = grams.length - 1;
+            for (int i = slot(gram, mask); ; i = (i + 1) & mask) {
+                Postings list = lists[i];
+                if (list == null || grams[i] == gram)
+                    return list;
+            }
+        }
+
+        Postings getOrAdd(long gram) {
+            int mask = grams.length - 1, i = slot(gram, mask);
+            for (; lists[i] != null; i = (i + 1) & mask) {
+                if (grams[i] == gram)
+                    return lists[i];
+            }
+            Postings list = new Postings();
+            grams[i] = gram;
+            lists[i] = list;
+            if (++size * 2 > grams.length)
+                grow();
+            return list;
+        }
+
+        void clear() {
+            grams = new long[64];
+            lists = new Postings[64];
+            size = 0;
+        }
+
+        private void grow() {
+            long[] oldGrams = grams;
+            Postings[] oldLists = lists;
+            grams = new long[oldGrams.length * 2];
+            lists = new Postings[oldLists.length * 2];
+            int mask = grams.length - 1;
+            for (int j = 0; j < oldLists.length; j++) {
+                if (oldLists[j] == null)
+                    continue;
+                int i = slot(oldGrams[j], mask);
+                while (lists[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                grams[i] = oldGrams[j];
+                lists[i] = oldLists[j];
+            }
+        }
+
+        // Fibonacci hashing: the top bits of the product spread the 48 bits of a trigram over the table.
+        private static int slot(long gram, int mask) {
+            return (int) ((gram * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        }
+    }
+
+    private final PostingsTable postings = new PostingsTable();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[16]; // By id; null once removed
+    private int[] gramCounts = new int[16]; // Distinct trigrams per id
+    private int nextId, dead;
+    private final ThreadLocal<int[]> scratch = new ThreadLocal<>(); // Shared-trigram counts per id, for lookups
+
+    /**
+     * Adds a name to the index.
+     *
+     * @param name The name to add.
+     * @return {@code true} if the name was not already in the index.
+     * @throws IllegalArgumentException if name is {@code null}.
+     */
+    public boolean add(String name) {
+        if (name == null)
+            throw new IllegalArgumentException("Provided a null name.");
+        if (ids.containsKey(name))
+            return false;
+        index(name);
+        return true;
+    }
+
+    /**
+     * Removes a name from the index.
+     *
+     * @param name The name to remove.
+     * @return {@code true} if the name was in the index.
+     */
+    public boolean remove(String name) {
+        Integer id = name == null ? null : ids.remove(name);
+        if (id == null)
+            return false;
+        names[id] = null;
+        if (++dead > Math.max(MIN_REBUILD, ids.size()))
+            rebuild();
+        return true;
+    }
+
+    /**
+     * Returns up to k names of the index that are most similar to name, most
+     * similar first. Names that share no trigram with name are never returned; a
+     * name that is in the index is always its own best match.
+     *
+     * @param name The name to search for, possibly mistyped.
+     * @param k    The largest number of names to return.
+     * @return A new {@link List} of at most k names.
+     * @throws IllegalArgumentException if name is {@code null} or k is negative.
+     */
+    public List<String> findSimilar(String name, int k) {
+        if (name == null || k < 0)
+            throw new IllegalArgumentException("Provided: name=" + name + " and k=" + k);
+        if (k == 0)
+            return new ArrayList<>();
+        long[] grams = trigrams(name);
+        int[] shared = scratch.get();
+        if (shared == null || shared.length < nextId) {
+            shared = new int[Math.max(nextId, 16)];
+            scratch.set(shared);
+        }
+        int[] touched = new int[16];
+        int touchedCount = 0;
+        for (long gram : grams) {
+            Postings list = postings.get(gram);
+            if (list == null)
+                continue;
+            for (int i = 0; i < list.size; i++) {
+                int id = list.ids[i];
+                if (shared[id]++ == 0) {
+                    if (touchedCount == touched.length)
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    touched[touchedCount++] = id;
+                }
+            }
+        }
+        // A min-heap of the best k candidates so far, weakest on top.
+        PriorityQueue<Candidate> best = new PriorityQueue<>(k + 1);
+        for (int t = 0; t < touchedCount; t++) {
+            int id = touched[t];
+            String candidate = names[id];
+            if (candidate != null) {
+                double score = 2.0 * shared[id] / (grams.length + gramCounts[id]);
+                best.add(new Candidate(candidate, score));
+                if (best.size() > k)
+                    best.poll();
+            }
+            shared[id] = 0;
+        }
+        List<String> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(best.poll().name);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Returns the number of names in the index.
+     *
+     * @return The number of names in the index.
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    private static final class Candidate implements Comparable<Candidate> {
+        final String name;
+        final double score;
+
+        Candidate(String name, double score) {
+            this.name = name;
+            this.score = score;
+        }
+
+        // Weaker first: lower score, then the alphabetically later name.
+        @Override
+        public int compareTo(Candidate other) {
+            int byScore = Double.compare(score, other.score);
+            return byScore != 0 ? byScore : other.name.compareTo(name);
+        }
+    }
+
+    private void index(String name) {
+        int id = nextId++;
+        if (id == names.length) {
+            names = Arrays.copyOf(names, id * 2);
+            gramCounts = Arrays.copyOf(gramCounts, id * 2);
+        }
+        long[] grams = trigrams(name);
+        names[id] = name;
+        gramCounts[id] = grams.length;
+        ids.put(name, id);
+        for (long gram : grams) {
+            postings.getOrAdd(gram).add(id);
+        }
+    }
+
+    // Renumbers the live names densely and rebuilds the postings without the dead ids.
+    private void rebuild() {
+        String[] live = new String[ids.size()];
+        int count = 0;
+        for (int id = 0; id < nextId; id++) {
+            if (names[id] != null)
+                live[count++] = names[id];
+        }
+        postings.clear();
+        ids.clear();
+        names = new String[Math.max(16, live.length * 2)];
+        gramCounts = new int[names.length];
+        nextId = 0;
+        dead = 0;
+        for (String name : live) {
+            index(name);
+        }
+    }
+
+    // The distinct trigrams of the padded name, lower-cased in Locale.ROOT, each packed into a long, sorted.
+    private static long[] trigrams(String name) {
+        String padded = "  " + name.toLowerCase(Locale.ROOT) + " ";
+        long[] grams = new long[padded.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = (long) padded.charAt(i) << 32 | (long) padded.charAt(i + 1) << 16 | padded.charAt(i + 2);
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1])
+                grams[distinct++] = grams[i];
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+}
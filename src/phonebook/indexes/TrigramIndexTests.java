@@ -0,0 +1,99 @@
+package phonebook.indexes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Test;
+
+public class TrigramIndexTests {
+    TrigramIndex index;
+
+    @Test
+    public void addTest1() {
+        index = new TrigramIndex();
+        assertTrue(index.add("Jonathan Smith"));
+        assertTrue(index.add("Johnathan Smyth"));
+        assertTrue(index.add("Mary Jones"));
+        assertTrue(index.add("Jessie Smith"));
+        assertFalse(index.add("Mary Jones"));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void findTest1() {
+        addTest1();
+        assertEquals(List.of("Jonathan Smith", "Johnathan Smyth"), index.findSimilar("Jonathon Smith", 2));
+        assertEquals("Mary Jones", index.findSimilar("mary jone", 1).get(0)); // Case does not matter
+        assertEquals("Jessie Smith", index.findSimilar("Jessie Smith", 4).get(0));
+        assertEquals(List.of(), index.findSimilar("Qqq", 3));
+        assertEquals(List.of(), index.findSimilar("Jonathan Smith", 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findTest2() {
+        addTest1();
+        index.findSimilar(null, 3);
+    }
+
+    @Test
+    public void findTest3() {
+        // in a Turkish locale, "I" lower-cases to a dotless i, which must not make "LIZ" look less like "liz" than "Lisa"
+        Locale original = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            index = new TrigramIndex();
+            index.add("LIZ");
+            index.add("Lisa");
+            assertEquals(List.of("LIZ"), index.findSimilar("liz", 1));
+        } finally {
+            Locale.setDefault(original);
+        }
+    }
+
+    @Test
+    public void removeTest1() {
+        addTest1();
+        assertTrue(index.remove("Jonathan Smith"));
+        assertFalse(index.remove("Jonathan Smith"));
+        assertEquals("Johnathan Smyth", index.findSimilar("Jonathon Smith", 1).get(0));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void rebuildTest1() {
+        // enough removals to trigger a rebuild of the postings, which must keep every live name findable
+        index = new TrigramIndex();
+        for (int i = 0; i < 1000; i++) {
+            index.add("Name " + i);
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            if (i % 2 == 0)
+                index.remove("Name " + i);
+        }
+        for (int i = 1; i < 1000; i += 2) {
+            index.remove("Name " + i);
+        }
+        assertEquals(333, index.size());
+        for (int i = 0; i < 1000; i += 2) {
+            boolean live = i % 3 != 0;
+            assertEquals("Name " + i, live, index.findSimilar("Name " + i, 1).equals(List.of("Name " + i)));
+        }
+    }
+
+    @Test
+    public void postingsTest1() {
+        // trigrams of any chars are told apart, including the one that packs into 0, across growth of the postings
+        index = new TrigramIndex();
+        index.add("\u0000\u0000\u0000");
+        for (char c = '\u4E00'; c < '\u5200'; c++) { // Ideographs, which have no case
+            index.add("" + c + c + c);
+        }
+        assertEquals(List.of("\u0000\u0000\u0000"), index.findSimilar("\u0000\u0000\u0000", 1));
+        assertEquals(List.of("\u4E23\u4E23\u4E23"), index.findSimilar("\u4E23\u4E23\u4E23", 1));
+        assertEquals(List.of(), index.findSimilar("zzz", 1));
+    }
+}
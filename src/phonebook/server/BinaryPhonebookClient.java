@@ -0,0 +1,212 @@
+package phonebook.server;
+
+import static phonebook.server.BinaryProtocol.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>{@link BinaryPhonebookClient} talks to a {@link BinaryPhonebookServer} over one blocking connection. The batch
+ * methods {@link #getNumbersOf(String[], String[])} and {@link #getOwnersOf(String[], String[])} <b>pipeline</b>
+ * their requests: up to {@value #WINDOW} requests go out in a single write before their responses are read, so a
+ * batch costs one round trip per window instead of one per key.</p>
+ *
+ * <p>A {@link BinaryPhonebookClient} is not thread-safe; give every thread a connection of its own.</p>
+ *
+ * @see BinaryPhonebookServer
+ */
+public class BinaryPhonebookClient implements AutoCloseable {
+
+    /**
+     * The largest number of requests a batch sends before reading their responses.
+     */
+    public static final int WINDOW = 256;
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocate(HEADER + MAX_FRAME);
+    private final ByteBuffer in = ByteBuffer.allocate(HEADER + MAX_FRAME);
+    private final int[] pending = new int[WINDOW]; // The index in the batch of every request in flight
+
+    /**
+     * Connects to a {@link BinaryPhonebookServer}.
+     *
+     * @param address The address of the server.
+     * @throws IOException if the connection cannot be made.
+     */
+    public BinaryPhonebookClient(InetSocketAddress address) throws IOException {
+        channel = SocketChannel.open(address);
+        channel.socket().setTcpNoDelay(true);
+        in.flip(); // Empty, in read mode
+    }
+
+    /**
+     * Retrieves the number of a name.
+     *
+     * @param name The name to search for.
+     * @return The number of name, or {@code null} if name is {@code null} or not in the phonebook.
+     * @throws IOException if the connection fails or the server could not look the name up.
+     */
+    public String getNumberOf(String name) throws IOException {
+        String[] result = new String[1];
+        lookups(GET_NUMBER, new String[] { name }, result);
+        return result[0];
+    }
+
+    /**
+     * Retrieves the owner of a number.
+     *
+     * @param number The number to search for.
+     * @return The owner of number, or {@code null} if number is {@code null} or not in the phonebook.
+     * @throws IOException if the connection fails or the server could not look the number up.
+     */
+    public String getOwnerOf(String number) throws IOException {
+        String[] result = new String[1];
+        lookups(GET_OWNER, new String[] { number }, result);
+        return result[0];
+    }
+
+    /**
+     * Retrieves the numbers of many names, pipelining the requests.
+     *
+     * @param names The names to search for.
+     * @param out   Where to store the number of names[i], or {@code null}, at i. Must be at least as long as names.
+     * @throws IOException if the connection fails or the server could not look a name up.
+     * @throws IllegalArgumentException if either array is {@code null}, or out is shorter than names.
+     */
+    public void getNumbersOf(String[] names, String[] out) throws IOException {
+        lookups(GET_NUMBER, names, out);
+    }
+
+    /**
+     * Retrieves the owners of many numbers, pipelining the requests.
+     *
+     * @param numbers The numbers to search for.
+     * @param out     Where to store the owner of numbers[i], or {@code null}, at i. Must be at least as long as
+     *                numbers.
+     * @throws IOException if the connection fails or the server could not look a number up.
+     * @throws IllegalArgumentException if either array is {@code null}, or out is shorter than numbers.
+     */
+    public void getOwnersOf(String[] numbers, String[] out) throws IOException {
+        lookups(GET_OWNER, numbers, out);
+    }
+
+    /**
+     * Adds an entry to the phonebook.
+     *
+     * @param name   The name of the entry.
+     * @param number The number of the entry.
+     * @throws IOException if the connection fails or the server could not add the entry.
+     * @throws IllegalArgumentException if either argument is {@code null}.
+     */
+    public void addEntry(String name, String number) throws IOException {
+        update(ADD_ENTRY, name, number);
+    }
+
+    /**
+     * Deletes an entry from the phonebook.
+     *
+     * @param name   The name of the entry.
+     * @param number The number of the entry.
+     * @throws IOException if the connection fails or the server could not delete the entry.
+     * @throws IllegalArgumentException if either argument is {@code null}.
+     */
+    public void deleteEntry(String name, String number) throws IOException {
+        update(DELETE_ENTRY, name, number);
+    }
+
+    /**
+     * Closes the connection.
+     *
+     * @throws IOException if the connection cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void lookups(byte operation, String[] keys, String[] values) throws IOException {
+        if (keys == null || values == null || values.length < keys.length)
+            throw new IllegalArgumentException("Provided: keys=" + (keys == null ? null : keys.length + " keys")
+                    + " and out=" + (values == null ? null : values.length + " cells"));
+        int next = 0;
+        while (next < keys.length) {
+            out.clear();
+            int sent = 0;
+            for (; next < keys.length && sent < WINDOW; next++) {
+                String key = keys[next];
+                if (key == null) {
+                    values[next] = null;
+                    continue;
+                }
+                int length = 1 + utf8Length(key);
+                if (length > MAX_FRAME)
+                    throw new IllegalArgumentException("Key too long: " + length + " bytes.");
+                if (out.remaining() < Integer.BYTES + length)
+                    break;
+                out.putInt(length).put(operation);
+                putUtf8(out, key);
+                pending[sent++] = next;
+            }
+            send();
+            for (int i = 0; i < sent; i++) {
+                values[pending[i]] = receive(true);
+            }
+        }
+    }
+
+    private void update(byte operation, String name, String number) throws IOException {
+        if (name == null || number == null)
+            throw new IllegalArgumentException("Provided: name=" + name + " and number=" + number);
+        int nameLength = utf8Length(name), length = 1 + 2 + nameLength + utf8Length(number);
+        if (nameLength > 0xffff || length > MAX_FRAME)
+            throw new IllegalArgumentException("Entry too long: " + length + " bytes.");
+        out.clear();
+        out.putInt(length).put(operation).putShort((short) nameLength);
+        putUtf8(out, name);
+        putUtf8(out, number);
+        send();
+        receive(false);
+    }
+
+    private void send() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+    }
+
+    // Reads the next response: the value of a lookup, null if it was not found, or null for a successful update.
+    private String receive(boolean lookup) throws IOException {
+        fill(Integer.BYTES);
+        int length = in.getInt();
+        if (length < 1 || length > MAX_FRAME)
+            throw new IOException("Bad frame length: " + length);
+        fill(length);
+        byte status = in.get();
+        String value = null;
+        if (length > 1)
+            value = new String(in.array(), in.arrayOffset() + in.position(), length - 1, StandardCharsets.UTF_8);
+        in.position(in.position() + length - 1);
+        if (status == OK)
+            return lookup ? value : null;
+        if (status == NOT_FOUND && lookup)
+            return null;
+        throw new IOException("The server answered with status " + status + ".");
+    }
+
+    // Makes sure that at least n bytes are ready to be read from in.
+    private void fill(int n) throws IOException {
+        if (in.remaining() >= n)
+            return;
+        in.compact();
+        while (in.position() < n) {
+            if (channel.read(in) < 0)
+                throw new EOFException("The server closed the connection.");
+        }
+        in.flip();
+    }
+}
@@ -0,0 +1,342 @@
+package phonebook.server;
+
+import static phonebook.server.BinaryProtocol.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import phonebook.ConcurrentPhonebook;
+import phonebook.Phonebook;
+import phonebook.hashes.CollisionResolver;
+import phonebook.utils.Keys;
+
+/**
+ * <p>{@link BinaryPhonebookServer} serves a {@link Phonebook} over a compact, length-prefixed binary protocol (see
+ * {@link BinaryProtocol}) for service-to-service lookups, without the framing costs of HTTP. One thread runs a
+ * non-blocking {@link Selector} loop over every connection, so the server uses one core however many clients it
+ * has.</p>
+ *
+ * <p>Clients may <b>pipeline</b>: every read is parsed into as many complete requests as it holds, and all their
+ * responses are queued before anything is written. Requests are parsed straight out of each connection's read buffer:
+ * keys are looked up with {@link Phonebook#getNumberOf(byte[], int, int)} and
+ * {@link Phonebook#getOwnerOf(byte[], int, int)}, which allocate nothing on the tables that support it. Responses are
+ * encoded into <b>direct</b> buffers taken from a pool, and all the buffers queued on a connection go out in one
+ * <b>gathering write</b>. A connection whose client does not read its responses stops being read from once
+ * {@value #MAX_PENDING_BUFFERS} buffers are queued, so a single client cannot exhaust the pool.</p>
+ *
+ * <p>A frame that is longer than {@link BinaryProtocol#MAX_FRAME} or has an unknown operation code closes its
+ * connection. Since the selector thread and the rest of the application may use the {@link Phonebook} at the same
+ * time, it has to be thread-safe, like a {@link ConcurrentPhonebook}.</p>
+ *
+ * @see BinaryPhonebookClient
+ * @see HttpPhonebookServer
+ */
+public class BinaryPhonebookServer implements AutoCloseable {
+
+    /**
+     * The capacity of the pooled response buffers.
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The number of response buffers a connection may have queued before the server stops reading its requests.
+     */
+    public static final int MAX_PENDING_BUFFERS = 16;
+
+    private static final int INITIAL_READ_BUFFER = 4096;
+
+    private final Phonebook phonebook;
+    private final Selector selector;
+    private final ServerSocketChannel listener;
+    private final ArrayDeque<ByteBuffer> pool = new ArrayDeque<>(); // Only touched by the selector thread
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_PENDING_BUFFERS + 1];
+    private final Thread loop;
+
+    /**
+     * The state of one client connection.
+     */
+    private static final class Connection {
+        ByteBuffer in = ByteBuffer.allocate(INITIAL_READ_BUFFER); // Heap, so keys can be looked up in place
+        final ArrayDeque<ByteBuffer> out = new ArrayDeque<>(); // Flipped, except for the last one
+        boolean filling; // Whether the last buffer of out is still being written to
+    }
+
+    /**
+     * Creates a server for phonebook, bound to address but not yet started.
+     *
+     * @param phonebook A thread-safe {@link Phonebook} to serve.
+     * @param address   The address to listen on. Port 0 picks any free port; see {@link #getPort()}.
+     * @throws IOException if the server cannot bind to address.
+     * @throws IllegalArgumentException if either argument is {@code null}.
+     */
+    public BinaryPhonebookServer(Phonebook phonebook, InetSocketAddress address) throws IOException {
+        if (phonebook == null || address == null)
+            throw new IllegalArgumentException("Provided: phonebook=" + phonebook + " and address=" + address);
+        this.phonebook = phonebook;
+        selector = Selector.open();
+        listener = ServerSocketChannel.open();
+        listener.bind(address, HttpPhonebookServer.BACKLOG);
+        listener.configureBlocking(false);
+        listener.register(selector, SelectionKey.OP_ACCEPT);
+        loop = new Thread(this::run, "phonebook-binary-server");
+        loop.setDaemon(true);
+    }
+
+    /**
+     * Starts accepting connections, on a thread of its own.
+     */
+    public void start() {
+        loop.start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return The port the server is bound to.
+     * @throws IOException if the listening socket has been closed.
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) listener.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Stops the server and closes every connection.
+     *
+     * @throws IOException if the selector cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        selector.wakeup();
+        if (loop.isAlive()) {
+            loop.interrupt();
+            try {
+                loop.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    /**
+     * Serves a new, empty {@link ConcurrentPhonebook} until the JVM is stopped.
+     *
+     * @param args The port to listen on; 9090 if omitted.
+     * @throws IOException if the server cannot bind to the port.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 9090;
+        var phonebook = new ConcurrentPhonebook(CollisionResolver.SEPARATE_CHAINING, CollisionResolver.SEPARATE_CHAINING);
+        var server = new BinaryPhonebookServer(phonebook, new InetSocketAddress(port));
+        server.start();
+        System.out.println("Serving on port " + server.getPort() + ".");
+        server.loop.join();
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    try {
+                        serve(key);
+                    } catch (IOException e) {
+                        drop(key); // The client went away or broke the protocol; the others carry on.
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            // The server is being closed.
+        }
+    }
+
+    private void accept() {
+        SocketChannel channel = null;
+        try {
+            channel = listener.accept();
+            if (channel == null)
+                return;
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.register(selector, SelectionKey.OP_READ, new Connection());
+        } catch (IOException e) {
+            // Out of file descriptors, or the client gave up already; keep serving the others.
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Already gone.
+                }
+            }
+        }
+    }
+
+    private void serve(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        if (key.isReadable() && channel.read(connection.in) < 0) {
+            drop(key);
+            return;
+        }
+        // Frames left over from a read that hit the backpressure limit are handled as soon as writes make room.
+        boolean handled;
+        do {
+            connection.in.flip();
+            int before = connection.in.position();
+            handleRequests(connection);
+            handled = connection.in.position() != before;
+            connection.in.compact();
+            flush(channel, connection);
+        } while (handled && connection.in.position() > 0);
+        int interest = connection.out.isEmpty() ? 0 : SelectionKey.OP_WRITE;
+        if (connection.out.size() < MAX_PENDING_BUFFERS)
+            interest |= SelectionKey.OP_READ; // Backpressure: stop reading a client that does not read
+        key.interestOps(interest);
+    }
+
+    // Handles every complete frame in the (flipped) read buffer, leaving its position at the first incomplete one.
+    private void handleRequests(Connection connection) throws IOException {
+        ByteBuffer in = connection.in;
+        while (in.remaining() >= Integer.BYTES && connection.out.size() < MAX_PENDING_BUFFERS) {
+            int start = in.position(), length = in.getInt(start);
+            if (length < 1 || length > MAX_FRAME)
+                throw new IOException("Bad frame length: " + length);
+            if (in.remaining() < Integer.BYTES + length) {
+                if (in.capacity() < Integer.BYTES + length) { // Grow to fit the frame, up to MAX_FRAME
+                    ByteBuffer larger = ByteBuffer.allocate(Math.max(Integer.BYTES + length, in.capacity() * 2));
+                    larger.put(in).flip();
+                    connection.in = in = larger;
+                }
+                return;
+            }
+            handle(connection, in.array(), in.arrayOffset() + start + Integer.BYTES, length);
+            in.position(start + Integer.BYTES + length);
+        }
+    }
+
+    private void handle(Connection connection, byte[] frame, int offset, int length) throws IOException {
+        byte operation = frame[offset];
+        int payload = offset + 1, payloadLength = length - 1;
+        switch (operation) {
+            case GET_NUMBER:
+            case GET_OWNER:
+                String value;
+                try {
+                    value = operation == GET_NUMBER ? phonebook.getNumberOf(frame, payload, payloadLength)
+                            : phonebook.getOwnerOf(frame, payload, payloadLength);
+                } catch (RuntimeException e) { // E.g. a disk-backed table that could not be read
+                    respond(connection, FAILED, null);
+                    break;
+                }
+                respond(connection, value == null ? NOT_FOUND : OK, value);
+                break;
+            case ADD_ENTRY:
+            case DELETE_ENTRY:
+                int nameLength = payloadLength < 2 ? -1 : (frame[payload] & 0xff) << 8 | frame[payload + 1] & 0xff;
+                if (nameLength < 0 || nameLength > payloadLength - 2) {
+                    respond(connection, BAD_REQUEST, null);
+                    break;
+                }
+                String name = Keys.decodeUtf8(frame, payload + 2, nameLength);
+                String number = Keys.decodeUtf8(frame, payload + 2 + nameLength, payloadLength - 2 - nameLength);
+                if (name == null || number == null) {
+                    respond(connection, BAD_REQUEST, null);
+                    break;
+                }
+                try {
+                    if (operation == ADD_ENTRY)
+                        phonebook.addEntry(name, number);
+                    else
+                        phonebook.deleteEntry(name, number);
+                } catch (RuntimeException e) { // E.g. a full table
+                    respond(connection, FAILED, null);
+                    break;
+                }
+                respond(connection, OK, null);
+                break;
+            default:
+                throw new IOException("Unknown operation: " + operation);
+        }
+    }
+
+    private void respond(Connection connection, byte status, String value) {
+        int valueLength = value == null ? 0 : utf8Length(value);
+        ByteBuffer buffer = connection.filling ? connection.out.peekLast() : null;
+        if (buffer == null || buffer.remaining() < HEADER + valueLength) {
+            if (buffer != null)
+                buffer.flip();
+            buffer = HEADER + valueLength > BUFFER_SIZE ? ByteBuffer.allocateDirect(HEADER + valueLength) : take();
+            connection.out.addLast(buffer);
+            connection.filling = true;
+        }
+        buffer.putInt(1 + valueLength).put(status);
+        if (value != null)
+            putUtf8(buffer, value);
+    }
+
+    // Writes as much of the queued responses as the socket takes, in one gathering write.
+    private void flush(SocketChannel channel, Connection connection) throws IOException {
+        if (connection.out.isEmpty())
+            return;
+        if (connection.filling) {
+            connection.out.peekLast().flip();
+            connection.filling = false;
+        }
+        int count = 0;
+        for (ByteBuffer buffer : connection.out) {
+            gather[count++] = buffer;
+        }
+        channel.write(gather, 0, count);
+        while (!connection.out.isEmpty() && !connection.out.peekFirst().hasRemaining()) {
+            release(connection.out.pollFirst());
+        }
+        Arrays.fill(gather, 0, count, null);
+    }
+
+    private ByteBuffer take() {
+        ByteBuffer buffer = pool.pollFirst();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private void release(ByteBuffer buffer) {
+        if (buffer.capacity() == BUFFER_SIZE) {
+            buffer.clear();
+            pool.addFirst(buffer); // Most recently used first, while it is still in cache
+        }
+    }
+
+    private void drop(SelectionKey key) {
+        key.cancel();
+        Connection connection = (Connection) key.attachment();
+        if (connection != null) {
+            for (ByteBuffer buffer : connection.out) {
+                release(buffer);
+            }
+            connection.out.clear();
+        }
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // Already gone.
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package phonebook.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import phonebook.ConcurrentPhonebook;
+import phonebook.Phonebook;
+import phonebook.hashes.CollisionResolver;
+
+public class BinaryPhonebookServerTests {
+    BinaryPhonebookServer server;
+    ConcurrentPhonebook phonebook;
+    BinaryPhonebookClient client;
+    InetSocketAddress address;
+
+    @Before
+    public void setUp() throws IOException {
+        phonebook = new ConcurrentPhonebook(CollisionResolver.SEPARATE_CHAINING, CollisionResolver.SEPARATE_CHAINING);
+        server = new BinaryPhonebookServer(phonebook, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+        client = new BinaryPhonebookClient(address);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void singleTest1() throws IOException {
+        // every operation, one at a time
+        client.addEntry("Jessie", "705-12-7500");
+        client.addEntry("Zo\u00EB", "\u260E 1"); // Multi-byte UTF-8 both ways
+        assertEquals("705-12-7500", client.getNumberOf("Jessie"));
+        assertEquals("Zo\u00EB", client.getOwnerOf("\u260E 1"));
+        assertEquals("\u260E 1", phonebook.getNumberOf("Zo\u00EB"));
+        assertNull(client.getNumberOf("Mary"));
+        assertNull(client.getNumberOf(null));
+        client.deleteEntry("Jessie", "705-12-7500");
+        assertNull(client.getOwnerOf("705-12-7500"));
+        assertEquals(1, phonebook.size());
+    }
+
+    @Test
+    public void pipelineTest1() throws IOException {
+        // a batch many windows long comes back complete and in order
+        for (int i = 0; i < 3000; i++) {
+            phonebook.addEntry("Name" + i, "555-" + i);
+        }
+        String[] names = new String[20000], numbers = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = i % 1000 == 999 ? null : "Name" + (i % 3500);
+        }
+        client.getNumbersOf(names, numbers);
+        for (int i = 0; i < names.length; i++) {
+            assertEquals(names[i] == null ? null : phonebook.getNumberOf(names[i]), numbers[i]);
+        }
+        assertEquals("555-1", numbers[1]);
+        assertNull(numbers[3200]);
+    }
+
+    @Test
+    public void concurrentClientsTest1() throws Exception {
+        // several connections are served side by side
+        phonebook.addEntry("Jessie", "705-12-7500");
+        BinaryPhonebookClient[] clients = new BinaryPhonebookClient[8];
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = new BinaryPhonebookClient(address);
+        }
+        for (int round = 0; round < 100; round++) {
+            for (BinaryPhonebookClient other : clients) {
+                assertEquals("705-12-7500", other.getNumberOf("Jessie"));
+            }
+        }
+        for (BinaryPhonebookClient other : clients) {
+            other.close();
+        }
+    }
+
+    @Test
+    public void malformedTest1() throws IOException {
+        // a bad payload is answered; a bad frame closes only its own connection
+        try (SocketChannel raw = SocketChannel.open(address)) {
+            raw.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 4, BinaryProtocol.ADD_ENTRY, 0, 9, 'x' })); // Name too long
+            ByteBuffer response = ByteBuffer.allocate(5);
+            while (response.hasRemaining()) {
+                assertTrue(raw.read(response) >= 0);
+            }
+            assertEquals(1, response.getInt(0));
+            assertEquals(BinaryProtocol.BAD_REQUEST, response.get(4));
+            raw.write(ByteBuffer.wrap(new byte[] { 0x7f, 0, 0, 0, BinaryProtocol.GET_NUMBER })); // Frame too long
+            assertEquals(-1, raw.read(ByteBuffer.allocate(1)));
+        }
+        assertNull(client.getNumberOf("x"));
+        assertEquals(0, phonebook.size());
+    }
+
+    @Test
+    public void failedLookupTest1() throws IOException {
+        // a lookup that throws is answered with FAILED, and the server keeps serving
+        Phonebook failing = new Phonebook(CollisionResolver.SEPARATE_CHAINING, CollisionResolver.SEPARATE_CHAINING) {
+            @Override
+            public String getNumberOf(byte[] utf8, int offset, int length) {
+                throw new UncheckedIOException(new IOException("Disk read failed."));
+            }
+        };
+        failing.addEntry("Jessie", "705-12-7500");
+        try (BinaryPhonebookServer failingServer = new BinaryPhonebookServer(failing,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            failingServer.start();
+            InetSocketAddress failingAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                    failingServer.getPort());
+            try (BinaryPhonebookClient failingClient = new BinaryPhonebookClient(failingAddress)) {
+                try {
+                    failingClient.getNumberOf("Jessie");
+                    fail("The failed lookup should be reported.");
+                } catch (IOException expected) {
+                }
+                assertEquals("Jessie", failingClient.getOwnerOf("705-12-7500"));
+            }
+            try (BinaryPhonebookClient other = new BinaryPhonebookClient(failingAddress)) {
+                assertEquals("Jessie", other.getOwnerOf("705-12-7500"));
+            }
+        }
+    }
+}
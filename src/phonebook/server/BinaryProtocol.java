@@ -0,0 +1,77 @@
+package phonebook.server;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>The wire format shared by {@link BinaryPhonebookServer} and {@link BinaryPhonebookClient}. Every message is a
+ * <b>frame</b>: a big-endian {@code int} with the number of bytes that follow, then a one-byte code, then the
+ * payload.</p>
+ *
+ * <ul>
+ *     <li>Requests carry an operation code. {@link #GET_NUMBER} and {@link #GET_OWNER} carry the UTF-8 key as their
+ *     whole payload; {@link #ADD_ENTRY} and {@link #DELETE_ENTRY} carry an unsigned 16-bit length, that many bytes of
+ *     UTF-8 name, and the UTF-8 number in the rest of the frame.</li>
+ *     <li>Responses carry a status code: {@link #OK}, {@link #NOT_FOUND}, {@link #BAD_REQUEST} for a malformed
+ *     payload, or {@link #FAILED} if the {@link phonebook.Phonebook} threw. {@link #OK} responses to lookups carry
+ *     the UTF-8 value; every other response has no payload.</li>
+ * </ul>
+ *
+ * <p>A client may send any number of requests without waiting; the responses come back in the same order.</p>
+ */
+final class BinaryProtocol {
+
+    static final byte GET_NUMBER = 1, GET_OWNER = 2, ADD_ENTRY = 3, DELETE_ENTRY = 4;
+    static final byte OK = 0, NOT_FOUND = 1, BAD_REQUEST = 2, FAILED = 3;
+
+    /**
+     * The largest number of bytes a frame may hold after its length.
+     */
+    static final int MAX_FRAME = 1 << 16;
+
+    /**
+     * The bytes of a frame before its payload: the length and the code.
+     */
+    static final int HEADER = Integer.BYTES + 1;
+
+    private BinaryProtocol() {
+    }
+
+    // The number of bytes of the UTF-8 encoding of s; unpaired surrogates count like the '?' they are replaced by.
+    static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return length;
+    }
+
+    // Encodes s into buffer, which must have utf8Length(s) bytes left, without allocating.
+    static void putUtf8(ByteBuffer buffer, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xc0 | c >> 6)).put((byte) (0x80 | c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                buffer.put((byte) (0xf0 | codePoint >> 18)).put((byte) (0x80 | codePoint >> 12 & 0x3f))
+                        .put((byte) (0x80 | codePoint >> 6 & 0x3f)).put((byte) (0x80 | codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xe0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3f)).put((byte) (0x80 | c & 0x3f));
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package phonebook.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import phonebook.ConcurrentPhonebook;
+import phonebook.Phonebook;
+import phonebook.hashes.CollisionResolver;
+
+/**
+ * <p>{@link HttpPhonebookServer} serves a {@link Phonebook} over HTTP/1.1, on the JDK's built-in
+ * {@link HttpServer}. It understands four requests, whose arguments travel as URL-encoded query parameters and whose
+ * results come back as plain UTF-8 text:</p>
+ *
+ * <ul>
+ *     <li>{@code GET /number?name=N}: the number of N, or {@code 404 Not Found};</li>
+ *     <li>{@code GET /owner?number=M}: the owner of M, or {@code 404 Not Found};</li>
+ *     <li>{@code PUT /entry?name=N&number=M}: {@link Phonebook#addEntry(String, String)}, answered with
+ *     {@code 204 No Content};</li>
+ *     <li>{@code DELETE /entry?name=N&number=M}: {@link Phonebook#deleteEntry(String, String)}, answered with
+ *     {@code 204 No Content}.</li>
+ * </ul>
+ *
+ * <p>Missing parameters are answered with {@code 400 Bad Request} and other methods with
+ * {@code 405 Method Not Allowed}, as are updates of a phonebook that cannot be changed. Any other exception from the
+ * {@link Phonebook} is answered with {@code 500 Internal Server Error}.</p>
+ *
+ * <p>Every request runs on its own <b>virtual thread</b> when the JVM has them (Java 21 and later), so that a slow
+ * client never holds on to a scarce platform thread. The server is compiled for Java 11, so the virtual-thread
+ * executor is looked up reflectively; on older JVMs requests run on a fixed pool of platform threads instead, which
+ * suits them just as well since no handler ever blocks on anything but its own exchange. Since requests run
+ * concurrently, the {@link Phonebook} has to be thread-safe, like a {@link ConcurrentPhonebook}.</p>
+ *
+ * <p>The server leaves the JVM-wide tuning of the JDK server alone; see {@link #tuneJdkServer()}.</p>
+ *
+ * @see phonebook.benchmarks.HttpLoadTest
+ */
+public class HttpPhonebookServer implements AutoCloseable {
+
+    /**
+     * The number of connections the operating system may queue before the server accepts them.
+     */
+    public static final int BACKLOG = 16384;
+
+    private final Phonebook phonebook;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    /**
+     * Creates a server for phonebook, bound to address but not yet started.
+     *
+     * @param phonebook A thread-safe {@link Phonebook} to serve.
+     * @param address   The address to listen on. Port 0 picks any free port; see {@link #getPort()}.
+     * @throws IOException if the server cannot bind to address.
+     * @throws IllegalArgumentException if either argument is {@code null}.
+     */
+    public HttpPhonebookServer(Phonebook phonebook, InetSocketAddress address) throws IOException {
+        if (phonebook == null || address == null)
+            throw new IllegalArgumentException("Provided: phonebook=" + phonebook + " and address=" + address);
+        this.phonebook = phonebook;
+        server = HttpServer.create(address, BACKLOG);
+        server.createContext("/number", exchange -> lookup(exchange, "name", true));
+        server.createContext("/owner", exchange -> lookup(exchange, "number", false));
+        server.createContext("/entry", this::update);
+        ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+        virtualThreads = virtual != null;
+        executor = virtualThreads ? virtual : newPlatformExecutor();
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return The port the server is bound to.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Reports whether requests run on virtual threads.
+     *
+     * @return {@code true} if the JVM supports virtual threads, {@code false} if requests run on platform threads.
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Stops the server: closes the listening socket, lets the requests in progress finish for up to a second and
+     * shuts the executor down.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    /**
+     * Tunes the JDK's {@link HttpServer} for many small requests on many connections, through the system properties
+     * it reads its tuning from, unless they are already set, e.g. with {@code -D} flags. By default it keeps at most
+     * 200 idle keep-alive connections, closing the others under their clients, and lets Nagle's algorithm hold back
+     * small responses for up to a delayed-ACK timeout; this sets {@code sun.net.httpserver.maxIdleConnections} to
+     * {@value #BACKLOG} and {@code sun.net.httpserver.nodelay} to {@code true}. The properties apply to every server
+     * in the JVM and are read once, when the first one is created, so this method is for applications to call at the
+     * start of their {@code main}.
+     */
+    public static void tuneJdkServer() {
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null)
+            System.setProperty("sun.net.httpserver.maxIdleConnections", Integer.toString(BACKLOG));
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    /**
+     * Serves a new, empty {@link ConcurrentPhonebook} until the JVM is stopped, on a JDK server tuned by
+     * {@link #tuneJdkServer()}.
+     *
+     * @param args The port to listen on; 8080 if omitted.
+     * @throws IOException if the server cannot bind to the port.
+     */
+    public static void main(String[] args) throws IOException {
+        tuneJdkServer();
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        var phonebook = new ConcurrentPhonebook(CollisionResolver.SEPARATE_CHAINING, CollisionResolver.SEPARATE_CHAINING);
+        var server = new HttpPhonebookServer(phonebook, new InetSocketAddress(port));
+        server.start();
+        System.out.println("Serving on port " + server.getPort()
+                + (server.usesVirtualThreads() ? " with virtual threads." : " with platform threads."));
+    }
+
+    private void lookup(HttpExchange exchange, String parameter, boolean byName) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "Use GET.");
+                return;
+            }
+            String key = parameters(exchange).get(parameter);
+            if (key == null) {
+                respond(exchange, 400, "Missing parameter: " + parameter + ".");
+                return;
+            }
+            String value;
+            try {
+                value = byName ? phonebook.getNumberOf(key) : phonebook.getOwnerOf(key);
+            } catch (RuntimeException e) { // E.g. a disk-backed table that could not be read
+                respond(exchange, 500, "The phonebook failed.");
+                return;
+            }
+            if (value == null)
+                respond(exchange, 404, "Not found.");
+            else
+                respond(exchange, 200, value);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void update(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!"PUT".equals(method) && !"DELETE".equals(method)) {
+                respond(exchange, 405, "Use PUT or DELETE.");
+                return;
+            }
+            Map<String, String> parameters = parameters(exchange);
+            String name = parameters.get("name"), number = parameters.get("number");
+            if (name == null || number == null) {
+                respond(exchange, 400, "Missing parameter: " + (name == null ? "name" : "number") + ".");
+                return;
+            }
+            try {
+                if ("PUT".equals(method))
+                    phonebook.addEntry(name, number);
+                else
+                    phonebook.deleteEntry(name, number);
+            } catch (UnsupportedOperationException e) { // A read-only phonebook
+                respond(exchange, 405, "The phonebook cannot be changed.");
+                return;
+            } catch (RuntimeException e) { // E.g. a full table
+                respond(exchange, 500, "The phonebook failed.");
+                return;
+            }
+            respond(exchange, 204, "");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Map<String, String> parameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null)
+            return parameters;
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() exists from Java 21 on; this class is compiled for Java 11.
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformExecutor() {
+        AtomicInteger created = new AtomicInteger();
+        return Executors.newFixedThreadPool(2 * Runtime.getRuntime().availableProcessors(), task -> {
+            Thread thread = new Thread(task, "phonebook-http-" + created.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,104 @@
+package phonebook.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import phonebook.ConcurrentPhonebook;
+import phonebook.Phonebook;
+import phonebook.hashes.CollisionResolver;
+
+public class HttpPhonebookServerTests {
+    HttpPhonebookServer server;
+    ConcurrentPhonebook phonebook;
+    HttpClient client;
+    String base;
+
+    @Before
+    public void setUp() throws IOException {
+        phonebook = new ConcurrentPhonebook(CollisionResolver.LINEAR_PROBING, CollisionResolver.LINEAR_PROBING);
+        server = new HttpPhonebookServer(phonebook, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        base = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    private HttpResponse<String> send(String method, String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + path))
+                .method(method, HttpRequest.BodyPublishers.noBody()).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    public void lookupTest1() throws IOException, InterruptedException {
+        // lookups answer with the value, or 404
+        phonebook.addEntry("Jessie", "705-12-7500");
+        HttpResponse<String> response = send("GET", "/number?name=Jessie");
+        assertEquals(200, response.statusCode());
+        assertEquals("705-12-7500", response.body());
+        assertEquals("Jessie", send("GET", "/owner?number=705-12-7500").body());
+        assertEquals(404, send("GET", "/number?name=Mary").statusCode());
+    }
+
+    @Test
+    public void updateTest1() throws IOException, InterruptedException {
+        // names and numbers are URL-decoded
+        assertEquals(204, send("PUT", "/entry?name=Mary%20Jane&number=%2B1%20888").statusCode());
+        assertEquals("+1 888", phonebook.getNumberOf("Mary Jane"));
+        assertEquals("+1 888", send("GET", "/number?name=Mary+Jane").body());
+        assertEquals(204, send("DELETE", "/entry?name=Mary%20Jane&number=%2B1%20888").statusCode());
+        assertNull(phonebook.getNumberOf("Mary Jane"));
+        assertEquals(404, send("GET", "/owner?number=%2B1%20888").statusCode());
+    }
+
+    @Test
+    public void badRequestTest1() throws IOException, InterruptedException {
+        // missing parameters and unsupported methods are rejected
+        assertEquals(400, send("GET", "/number").statusCode());
+        assertEquals(400, send("GET", "/owner?name=Jessie").statusCode());
+        assertEquals(400, send("PUT", "/entry?name=Jessie").statusCode());
+        assertEquals(405, send("POST", "/number?name=Jessie").statusCode());
+        assertEquals(405, send("GET", "/entry?name=Jessie&number=705-12-7500").statusCode());
+        assertEquals(0, phonebook.size());
+    }
+
+    @Test
+    public void failureTest1() throws IOException, InterruptedException {
+        // exceptions from the phonebook are answered with a status, and the server keeps serving
+        Phonebook failing = new Phonebook(CollisionResolver.LINEAR_PROBING, CollisionResolver.LINEAR_PROBING) {
+            @Override
+            public String getNumberOf(String name) {
+                throw new IllegalStateException("Provided: name=" + name);
+            }
+
+            @Override
+            public void addEntry(String name, String number) {
+                throw new UnsupportedOperationException("Read-only.");
+            }
+        };
+        try (HttpPhonebookServer failingServer = new HttpPhonebookServer(failing,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            failingServer.start();
+            base = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + failingServer.getPort();
+            assertEquals(500, send("GET", "/number?name=Jessie").statusCode());
+            assertEquals(405, send("PUT", "/entry?name=Jessie&number=705-12-7500").statusCode());
+            assertEquals(404, send("GET", "/owner?number=705-12-7500").statusCode());
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package phonebook.utils;
 
 import java.util.Iterator;
+import java.util.function.Consumer;
 
 /**
  * <p>{@link KVPairList} is a simple linked list storing pairs of {@link String}s. It offers <b>constant-time</b>
@@ -339,6 +340,20 @@ public class KVPairList implements Iterable<KVPair>{
         };
     }
 
+    /**
+     * Hands every pair of the {@link KVPairList} to action, front to back. Walks the nodes directly instead of
+     * going through {@link #iterator()}, so it allocates nothing.
+     * @param action The {@link Consumer} to apply to every pair.
+     */
+    @Override
+    public void forEach(Consumer<? super KVPair> action){
+        Node current = head;
+        while(current != null){
+            action.accept(current.pair);
+            current = current.next;
+        }
+    }
+
     @Override
     public String toString() {
         StringBuilder ret = new StringBuilder();
@@ -0,0 +1,178 @@
+package phonebook.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>
+ * {@link Keys} hashes and compares lookup keys that are not {@link String}s yet:
+ * any {@link CharSequence}, or a slice of a {@code byte[]} holding UTF-8, such as
+ * the bytes of a request that was just read off the network. The hashes equal
+ * the {@link String#hashCode()} of the key the input stands for, so they find
+ * the same cells as the {@link String} itself would, and neither hashing nor
+ * comparing allocates anything.
+ * </p>
+ *
+ * <p>
+ * UTF-8 is decoded strictly: overlong encodings, encoded surrogates and
+ * truncated sequences make a slice <b>malformed</b>, and a malformed slice is
+ * equal to no key.
+ * </p>
+ *
+ * @see phonebook.hashes.HashTable#get(CharSequence)
+ * @see phonebook.hashes.HashTable#get(byte[], int, int)
+ */
+public final class Keys {
+
+    private Keys() {
+    }
+
+    /**
+     * Hashes a {@link CharSequence} like {@link String#hashCode()} would hash its
+     * characters.
+     *
+     * @param key The key to hash.
+     * @return {@code key.toString().hashCode()}, without creating the {@link String}.
+     */
+    public static int hash(CharSequence key) {
+        if (key instanceof String)
+            return key.hashCode(); // Cached
+        int hash = 0;
+        for (int i = 0; i < key.length(); i++) {
+            hash = 31 * hash + key.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * Hashes a slice of UTF-8 bytes like {@link String#hashCode()} would hash the
+     * {@link String} they decode to.
+     *
+     * @param utf8   The bytes.
+     * @param offset The index of the first byte of the slice.
+     * @param length The number of bytes in the slice.
+     * @return The hash of the decoded key. Malformed slices hash to some arbitrary value.
+     * @throws IllegalArgumentException if utf8 is {@code null} or the slice is out of its bounds.
+     */
+    public static int hashUtf8(byte[] utf8, int offset, int length) {
+        checkSlice(utf8, offset, length);
+        int hash = 0;
+        for (int i = offset, end = offset + length; i < end;) {
+            int codePoint = codePointAt(utf8, i, end);
+            if (codePoint < 0)
+                return hash;
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                hash = 31 * hash + codePoint;
+            } else {
+                hash = 31 * hash + Character.highSurrogate(codePoint);
+                hash = 31 * hash + Character.lowSurrogate(codePoint);
+            }
+            i += encodedLength(codePoint);
+        }
+        return hash;
+    }
+
+    /**
+     * Checks whether a slice of UTF-8 bytes decodes to key.
+     *
+     * @param key    The key to compare to.
+     * @param utf8   The bytes.
+     * @param offset The index of the first byte of the slice.
+     * @param length The number of bytes in the slice.
+     * @return {@code true} if the slice is well-formed and decodes to exactly key.
+     * @throws IllegalArgumentException if utf8 is {@code null} or the slice is out of its bounds.
+     */
+    public static boolean equalsUtf8(String key, byte[] utf8, int offset, int length) {
+        checkSlice(utf8, offset, length);
+        // Every char takes one to three bytes; a supplementary pair, two chars, takes four.
+        if (key == null || length < key.length() || length > 3 * key.length())
+            return false;
+        int k = 0;
+        for (int i = offset, end = offset + length; i < end;) {
+            int codePoint = codePointAt(utf8, i, end);
+            if (codePoint < 0)
+                return false;
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                if (k == key.length() || key.charAt(k++) != codePoint)
+                    return false;
+            } else {
+                if (k + 1 >= key.length() || key.charAt(k) != Character.highSurrogate(codePoint)
+                        || key.charAt(k + 1) != Character.lowSurrogate(codePoint))
+                    return false;
+                k += 2;
+            }
+            i += encodedLength(codePoint);
+        }
+        return k == key.length();
+    }
+
+    /**
+     * Decodes a slice of UTF-8 bytes into a new {@link String}, for the lookups
+     * that cannot work on the bytes in place.
+     *
+     * @param utf8   The bytes.
+     * @param offset The index of the first byte of the slice.
+     * @param length The number of bytes in the slice.
+     * @return The decoded key, or {@code null} if the slice is malformed.
+     * @throws IllegalArgumentException if utf8 is {@code null} or the slice is out of its bounds.
+     */
+    public static String decodeUtf8(byte[] utf8, int offset, int length) {
+        checkSlice(utf8, offset, length);
+        try {
+            return StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(utf8, offset, length)).toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+
+    // The code point of the sequence that starts at i, or -1 if it is malformed or runs past end.
+    private static int codePointAt(byte[] utf8, int i, int end) {
+        int lead = utf8[i] & 0xff;
+        if (lead < 0x80)
+            return lead;
+        int length, codePoint, min;
+        if (lead >= 0xc2 && lead < 0xe0) { // 0xc0 and 0xc1 only start overlong encodings
+            length = 2;
+            codePoint = lead & 0x1f;
+            min = 0x80;
+        } else if (lead >= 0xe0 && lead < 0xf0) {
+            length = 3;
+            codePoint = lead & 0x0f;
+            min = 0x800;
+        } else if (lead >= 0xf0 && lead < 0xf5) {
+            length = 4;
+            codePoint = lead & 0x07;
+            min = Character.MIN_SUPPLEMENTARY_CODE_POINT;
+        } else {
+            return -1;
+        }
+        if (i + length > end)
+            return -1;
+        for (int j = 1; j < length; j++) {
+            int next = utf8[i + j] & 0xff;
+            if ((next & 0xc0) != 0x80)
+                return -1;
+            codePoint = codePoint << 6 | next & 0x3f;
+        }
+        if (codePoint < min || codePoint > Character.MAX_CODE_POINT
+                || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE))
+            return -1;
+        return codePoint;
+    }
+
+    // The number of bytes of the shortest encoding of a code point, the only one that codePointAt accepts.
+    private static int encodedLength(int codePoint) {
+        if (codePoint < 0x80)
+            return 1;
+        if (codePoint < 0x800)
+            return 2;
+        return codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT ? 3 : 4;
+    }
+
+    private static void checkSlice(byte[] utf8, int offset, int length) {
+        if (utf8 == null || offset < 0 || length < 0 || offset > utf8.length - length)
+            throw new IllegalArgumentException("Provided: utf8=" + (utf8 == null ? null : utf8.length + " bytes")
+                    + ", offset=" + offset + " and length=" + length);
+    }
+}
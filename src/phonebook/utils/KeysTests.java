@@ -0,0 +1,96 @@
+package phonebook.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class KeysTests {
+
+    private static final String[] KEYS = { "", "Jessie", "705-12-7500", "Zo\u00EB \u00C5ngstr\u00F6m", "\u20AC100", "\u4F60\u597D",
+            "G\uD834\uDD1E clef" }; // Two-, three- and four-byte sequences
+
+    @Test
+    public void hashTest1() {
+        // hashes should equal those of the Strings
+        for (String key : KEYS) {
+            assertEquals(key.hashCode(), Keys.hash(new StringBuilder(key)));
+            byte[] utf8 = key.getBytes(StandardCharsets.UTF_8);
+            assertEquals(key.hashCode(), Keys.hashUtf8(utf8, 0, utf8.length));
+        }
+    }
+
+    @Test
+    public void equalsTest1() {
+        // slices should only equal the Strings they encode
+        for (String key : KEYS) {
+            byte[] utf8 = ("[" + key + "]").getBytes(StandardCharsets.UTF_8);
+            assertTrue(Keys.equalsUtf8(key, utf8, 1, utf8.length - 2));
+            assertFalse(Keys.equalsUtf8(key + "x", utf8, 1, utf8.length - 2));
+            assertFalse(Keys.equalsUtf8("[" + key, utf8, 1, utf8.length - 2));
+            assertFalse(Keys.equalsUtf8(key, utf8, 0, utf8.length - 1));
+            assertEquals(key, Keys.decodeUtf8(utf8, 1, utf8.length - 2));
+        }
+        assertFalse(Keys.equalsUtf8(null, new byte[0], 0, 0));
+    }
+
+    @Test
+    public void malformedTest1() {
+        // overlong, surrogate, truncated and out-of-range sequences match nothing
+        byte[][] malformed = { { (byte) 0xc0, (byte) 0x80 }, { (byte) 0xed, (byte) 0xa0, (byte) 0x80 },
+                { (byte) 0xe2, (byte) 0x82 }, { (byte) 0xf5, (byte) 0x80, (byte) 0x80, (byte) 0x80 },
+                { 'a', (byte) 0x80 } };
+        for (byte[] utf8 : malformed) {
+            String replaced = new String(utf8, StandardCharsets.UTF_8);
+            assertFalse(Keys.equalsUtf8(replaced, utf8, 0, utf8.length));
+            assertNull(Keys.decodeUtf8(utf8, 0, utf8.length));
+        }
+    }
+
+    @Test
+    public void sliceTest1() {
+        // slices out of bounds are rejected
+        byte[] utf8 = new byte[4];
+        int[][] slices = { { -1, 2 }, { 0, 5 }, { 3, 2 }, { 2, -1 } };
+        for (int[] slice : slices) {
+            try {
+                Keys.hashUtf8(utf8, slice[0], slice[1]);
+                assertFalse(true); // shouldn't get here
+            } catch (IllegalArgumentException e) {
+                assertTrue(true); // should get here
+            }
+        }
+        try {
+            Keys.equalsUtf8("", null, 0, 0);
+            assertFalse(true); // shouldn't get here
+        } catch (IllegalArgumentException e) {
+            assertTrue(true); // should get here
+        }
+    }
+
+    @Test
+    public void randomizedTest1() {
+        // random well-formed keys should hash and compare like their Strings
+        Random rng = new Random(47);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder key = new StringBuilder();
+            for (int length = rng.nextInt(12); length > 0; length--) {
+                int codePoint;
+                do {
+                    codePoint = rng.nextInt(4) == 0 ? rng.nextInt(Character.MAX_CODE_POINT + 1) : rng.nextInt(0x800);
+                } while (Character.getType(codePoint) == Character.SURROGATE);
+                key.appendCodePoint(codePoint);
+            }
+            String string = key.toString();
+            byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+            assertEquals(string.hashCode(), Keys.hash(key));
+            assertEquals(string.hashCode(), Keys.hashUtf8(utf8, 0, utf8.length));
+            assertTrue(Keys.equalsUtf8(string, utf8, 0, utf8.length));
+        }
+    }
+}
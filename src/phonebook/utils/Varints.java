@@ -0,0 +1,106 @@
+package phonebook.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * {@link Varints} reads and writes the byte counts that the binary files of the
+ * phonebook put in front of every UTF-8 string, as <b>unsigned LEB128</b> ints:
+ * seven bits per byte, least significant first, with the top bit set on every
+ * byte but the last. A count below 128 takes a single byte, and no int takes
+ * more than {@value #MAX_BYTES}.
+ * </p>
+ *
+ * <p>
+ * Snapshots, the write-ahead log, the runs of the CSV exporter and the files of
+ * the mapped and disk-backed hash tables all use this one encoding.
+ * </p>
+ */
+public final class Varints {
+
+    /**
+     * The largest number of bytes an int takes.
+     */
+    public static final int MAX_BYTES = 5;
+
+    private Varints() {
+    }
+
+    /**
+     * Returns the number of bytes that {@link #put(ByteBuffer, int)} writes for a
+     * value.
+     *
+     * @param value The value, which must not be negative.
+     * @return A number from 1 to {@value #MAX_BYTES}.
+     */
+    public static int sizeOf(int value) {
+        return value < 1 << 7 ? 1 : value < 1 << 14 ? 2 : value < 1 << 21 ? 3 : value < 1 << 28 ? 4 : 5;
+    }
+
+    /**
+     * Writes a value at the position of a buffer, and moves past it.
+     *
+     * @param buffer The buffer, with room for {@link #sizeOf(int)} bytes.
+     * @param value  The value, which must not be negative.
+     * @throws java.nio.BufferOverflowException if the buffer has too little room.
+     */
+    public static void put(ByteBuffer buffer, int value) {
+        for (; value >= 0x80; value >>>= 7) {
+            buffer.put((byte) (value & 0x7f | 0x80));
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Writes a string at the position of a buffer, as its byte count followed by
+     * its bytes, and moves past it.
+     *
+     * @param buffer The buffer, with room for {@value #MAX_BYTES} bytes more than
+     *               the string.
+     * @param utf8   The UTF-8 bytes of the string.
+     * @throws java.nio.BufferOverflowException if the buffer has too little room.
+     */
+    public static void putString(ByteBuffer buffer, byte[] utf8) {
+        put(buffer, utf8.length);
+        buffer.put(utf8);
+    }
+
+    /**
+     * Reads a value at an index of a buffer, without moving its position.
+     *
+     * @param buffer The buffer.
+     * @param index  The index of the first byte of the value.
+     * @return The value in the low 32 bits and the number of bytes it takes in
+     *         the high 32 bits, or -1 if the buffer ends before the value does, or
+     *         the value does not fit in {@value #MAX_BYTES} bytes and a
+     *         non-negative int.
+     */
+    public static long get(ByteBuffer buffer, int index) {
+        int value = 0;
+        for (int i = 0; i < MAX_BYTES && index + i < buffer.limit(); i++) {
+            byte b = buffer.get(index + i);
+            value |= (b & 0x7f) << 7 * i;
+            if (b >= 0)
+                return i == MAX_BYTES - 1 && b > 0x07 ? -1 : (long) (i + 1) << 32 | value; // At most 31 bits
+        }
+        return -1;
+    }
+
+    /**
+     * Reads a value at the position of a buffer, and moves past it. A reader that
+     * streams a file through the buffer and gets -1 with fewer than
+     * {@value #MAX_BYTES} bytes remaining should read more and try again.
+     *
+     * @param buffer The buffer.
+     * @return The value, or -1 if the buffer ends before the value does, or the
+     *         value is malformed, in which case the position is unchanged.
+     * @see #get(ByteBuffer, int)
+     */
+    public static int get(ByteBuffer buffer) {
+        long value = get(buffer, buffer.position());
+        if (value < 0)
+            return -1;
+        buffer.position(buffer.position() + (int) (value >>> 32));
+        return (int) value;
+    }
+}
@@ -0,0 +1,61 @@
+package phonebook.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class VarintsTests {
+
+    private static final int[] VALUES = { 0, 1, 127, 128, 300, 16383, 16384, 1 << 21, (1 << 28) - 1, 1 << 28,
+            Integer.MAX_VALUE };
+
+    @Test
+    public void roundTripTest1() {
+        // every value reads back as written, in as many bytes as sizeOf says
+        ByteBuffer buffer = ByteBuffer.allocate(VALUES.length * Varints.MAX_BYTES);
+        for (int value : VALUES) {
+            int before = buffer.position();
+            Varints.put(buffer, value);
+            assertEquals(Varints.sizeOf(value), buffer.position() - before);
+        }
+        buffer.flip();
+        for (int value : VALUES) {
+            assertEquals(value, Varints.get(buffer));
+        }
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void getTest1() {
+        // absolute reads return the byte count along with the value
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 'x', (byte) 0xac, 0x02 });
+        assertEquals(2L << 32 | 300, Varints.get(buffer, 1));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void truncatedTest1() {
+        // a value cut short, or longer than an int, is not read and leaves the position alone
+        ByteBuffer truncated = ByteBuffer.wrap(new byte[] { (byte) 0x80, (byte) 0x80 });
+        assertEquals(-1, Varints.get(truncated));
+        assertEquals(0, truncated.position());
+        ByteBuffer overlong = ByteBuffer.wrap(new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f });
+        assertEquals(-1, Varints.get(overlong));
+        ByteBuffer endless = ByteBuffer.wrap(new byte[] { (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                (byte) 0x80, 0x00 });
+        assertEquals(-1, Varints.get(endless));
+    }
+
+    @Test
+    public void putStringTest1() {
+        // strings are their byte count, then their bytes
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        Varints.putString(buffer, new byte[] { 'J', 'o' });
+        buffer.flip();
+        assertEquals(2, Varints.get(buffer));
+        assertEquals('J', buffer.get());
+        assertEquals('o', buffer.get());
+    }
+}